@@ -0,0 +1,219 @@
+package com.aquent.crudapp.benchmark;
+
+import com.aquent.crudapp.data_access.AssociationIndex;
+import com.aquent.crudapp.data_access.jdbcClientDAO;
+import com.aquent.crudapp.model.Page;
+import com.aquent.crudapp.model.PageCursor;
+import com.aquent.crudapp.model.Person;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.namedparam.MapSqlParameterSource;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Benchmarks of the queries over client_person_associations behind a client's contacts and its
+ * contact picker, with and without the composite (client_id, person_id) and (person_id, client_id)
+ * indexes. Without them, the table has single column indexes on its foreign keys, as it had
+ * before.
+ *
+ * The picker's anti-join is measured both as a correlated NOT EXISTS and as an uncorrelated NOT IN,
+ * for the whole listing, a first page and a page after a random cursor; a page after a cursor is
+ * also read through the DAO. Each operation is one query.
+ *
+ * The default data set is 100,000 people and 10,000 clients of 100 contacts each, 1,000,000
+ * associations; other sizes are chosen with -p persons=... -p contactsPerClient=....
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class AssociationQueryBenchmark {
+
+    /** The number of rows on a picker page, as in the controllers */
+    private static final int PAGE_SIZE = 50;
+
+    /** The number of cursors read at setup */
+    private static final int SAMPLE_SIZE = 1024;
+
+    /** The associated-entity query, as the DAO runs it */
+    private static final String ASSOCIATED_IDS = "SELECT a.person_id " +
+                                                 "FROM client_person_associations a " +
+                                                 "JOIN person p " +
+                                                 "ON p.person_id = a.person_id " +
+                                                 "WHERE a.client_id = :clientId " +
+                                                 "AND p.deleted_at IS NULL";
+
+    private static final String SELECT_PEOPLE = "SELECT person_id, first_name, last_name, " +
+                                                "email_address, street_address, city, state, " +
+                                                "zip_code, version, client_count FROM person ";
+
+    private static final String WHERE_NOT_EXISTS = "WHERE deleted_at IS NULL " +
+                                                   "AND NOT EXISTS (" +
+                                                       "SELECT 1 " +
+                                                       "FROM client_person_associations a " +
+                                                       "WHERE a.client_id = :clientId " +
+                                                       "AND a.person_id = person.person_id" +
+                                                   ") ";
+
+    private static final String WHERE_NOT_IN = "WHERE deleted_at IS NULL " +
+                                               "AND person_id NOT IN (" +
+                                                   "SELECT a.person_id " +
+                                                   "FROM client_person_associations a " +
+                                                   "WHERE a.client_id = :clientId" +
+                                               ") ";
+
+    private static final String ORDER = "ORDER BY first_name, last_name, person_id ";
+
+    private static final String AFTER = "AND first_name >= :firstName " +
+                                        "AND (first_name > :firstName " +
+                                             "OR last_name > :lastName " +
+                                             "OR (last_name = :lastName " +
+                                                 "AND person_id > :personId)) ";
+
+    private static final String LIMIT = "LIMIT :limit";
+
+    @Param("100000")
+    private int persons;
+
+    @Param("100")
+    private int contactsPerClient;
+
+    @Param({"true", "false"})
+    private boolean compositeIndexes;
+
+    private BenchmarkDatabase database;
+
+    private jdbcClientDAO clientDao;
+
+    private List<PageCursor> cursors;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        database = BenchmarkDatabase.seedUniform(persons, contactsPerClient, 42L);
+
+        if (!compositeIndexes) {
+            JdbcTemplate jdbcTemplate = new JdbcTemplate(database.dataSource());
+            jdbcTemplate.execute("CREATE INDEX client_idx ON client_person_associations " +
+                                 "(client_id)");
+            jdbcTemplate.execute("CREATE INDEX person_idx ON client_person_associations " +
+                                 "(person_id)");
+            jdbcTemplate.execute("DROP INDEX client_person_idx");
+            jdbcTemplate.execute("DROP INDEX person_client_idx");
+        }
+
+        AssociationIndex associationIndex =
+                new AssociationIndex(database.namedParameterJdbcTemplate());
+        associationIndex.load();
+        clientDao = new jdbcClientDAO(database.namedParameterJdbcTemplate(), 500,
+                                      associationIndex);
+
+        cursors = new ArrayList<>(SAMPLE_SIZE);
+        for (int i = 0; i < SAMPLE_SIZE; i++) {
+            Person person = clientDao.readAssociatedEntity(
+                    1 + ThreadLocalRandom.current().nextInt(database.getPersons()));
+            cursors.add(new PageCursor(person.getFirstName(), person.getLastName(),
+                                       person.getEntityId(), PageCursor.Direction.AFTER));
+        }
+
+        System.out.printf("Seeded %d people, %d clients and %d associations%n",
+                          database.getPersons(), database.getClients(),
+                          database.getAssociations());
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        database.close();
+    }
+
+    @Benchmark
+    public List<Integer> associatedIds() {
+        return database.namedParameterJdbcTemplate().queryForList(
+                ASSOCIATED_IDS, new MapSqlParameterSource("clientId", randomClientId()),
+                Integer.class);
+    }
+
+    @Benchmark
+    public Object availableNotExistsAll() {
+        return available(WHERE_NOT_EXISTS + ORDER, null);
+    }
+
+    @Benchmark
+    public Object availableNotInAll() {
+        return available(WHERE_NOT_IN + ORDER, null);
+    }
+
+    @Benchmark
+    public Object availableNotExistsFirstPage() {
+        return available(WHERE_NOT_EXISTS + ORDER + LIMIT, null);
+    }
+
+    @Benchmark
+    public Object availableNotInFirstPage() {
+        return available(WHERE_NOT_IN + ORDER + LIMIT, null);
+    }
+
+    @Benchmark
+    public Object availableNotExistsPageAfterCursor() {
+        return available(WHERE_NOT_EXISTS + AFTER + ORDER + LIMIT, randomCursor());
+    }
+
+    @Benchmark
+    public Object availableNotInPageAfterCursor() {
+        return available(WHERE_NOT_IN + AFTER + ORDER + LIMIT, randomCursor());
+    }
+
+    @Benchmark
+    public Page<Person> availablePageAfterCursor() {
+        return clientDao.getAvailableAssociations(randomClientId(), randomCursor(), PAGE_SIZE);
+    }
+
+    /**
+     * Read the people not associated with a random client, as rows of columns.
+     */
+    private List<Object[]> available(String where, PageCursor cursor) {
+        MapSqlParameterSource parameters = new MapSqlParameterSource();
+        parameters.addValue("clientId", randomClientId());
+        parameters.addValue("limit", PAGE_SIZE + 1);
+        if (cursor != null) {
+            parameters.addValue("firstName", cursor.getPrimaryKey());
+            parameters.addValue("lastName", cursor.getSecondaryKey());
+            parameters.addValue("personId", cursor.getEntityId());
+        }
+
+        return database.namedParameterJdbcTemplate().query(
+                SELECT_PEOPLE + where, parameters, (rs, rowNum) -> {
+                    Object[] row = new Object[10];
+                    for (int i = 0; i < row.length; i++) {
+                        row[i] = rs.getObject(i + 1);
+                    }
+                    return row;
+                });
+    }
+
+    private PageCursor randomCursor() {
+        return cursors.get(ThreadLocalRandom.current().nextInt(cursors.size()));
+    }
+
+    private int randomClientId() {
+        return 1 + ThreadLocalRandom.current().nextInt(database.getClients());
+    }
+
+}
@@ -0,0 +1,174 @@
+package com.aquent.crudapp.benchmark;
+
+import com.zaxxer.hikari.HikariDataSource;
+import org.springframework.core.io.ClassPathResource;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+import org.springframework.jdbc.datasource.init.ResourceDatabasePopulator;
+
+import javax.sql.DataSource;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+import java.util.function.ToIntFunction;
+
+/**
+ * A private in-memory H2 database with the application schema, seeded with generated data.
+ *
+ * There is one client for every ten people. Each client is associated with a number of people
+ * drawn from a Pareto distribution, so most clients have one or a few contacts and a few have
+ * thousands, as in real contact data, or, for measuring queries over a table of associations of a
+ * given size, with the same number of people. The data is generated from a fixed seed, so every
+ * run of a given size sees the same data.
+ */
+final class BenchmarkDatabase implements AutoCloseable {
+
+    /** The number of rows inserted per JDBC batch while seeding */
+    private static final int BATCH_SIZE = 5_000;
+
+    /** The smallest number of contacts a client has */
+    private static final int MIN_FAN_OUT = 1;
+
+    private static final String INSERT_PERSON = "INSERT INTO person (first_name, last_name, " +
+                                                "email_address, street_address, city, state, " +
+                                                "zip_code) VALUES (?, ?, ?, ?, ?, ?, ?)";
+
+    private static final String INSERT_CLIENT = "INSERT INTO client (company_name, website, " +
+                                                "phone, street_address, city, state, zip_code) " +
+                                                "VALUES (?, ?, ?, ?, ?, ?, ?)";
+
+    private static final String INSERT_ASSOCIATION = "INSERT INTO client_person_associations " +
+                                                     "(client_id, person_id) VALUES (?, ?)";
+
+    private final HikariDataSource dataSource;
+
+    private final int persons;
+
+    private final int clients;
+
+    private final int associations;
+
+    private BenchmarkDatabase(HikariDataSource dataSource, int persons, int clients,
+                              int associations) {
+        this.dataSource = dataSource;
+        this.persons = persons;
+        this.clients = clients;
+        this.associations = associations;
+    }
+
+    /**
+     * Create and seed a database.
+     *
+     * @param persons The number of people
+     * @param fanOutExponent The Pareto shape of the number of contacts per client; smaller
+     *                       values give a heavier tail
+     * @param seed The seed for the generated data
+     * @return The seeded database
+     */
+    static BenchmarkDatabase seed(int persons, double fanOutExponent, long seed) {
+        return seed(persons, random -> (int) Math.min(persons, MIN_FAN_OUT /
+                                                               Math.pow(1.0 - random.nextDouble(),
+                                                                        1.0 / fanOutExponent)),
+                    seed);
+    }
+
+    /**
+     * Create and seed a database in which every client is associated with the same number of
+     * people.
+     *
+     * @param persons The number of people
+     * @param contactsPerClient The number of people associated with each client
+     * @param seed The seed for the generated data
+     * @return The seeded database
+     */
+    static BenchmarkDatabase seedUniform(int persons, int contactsPerClient, long seed) {
+        int fanOut = Math.min(persons, contactsPerClient);
+        return seed(persons, random -> fanOut, seed);
+    }
+
+    private static BenchmarkDatabase seed(int persons, ToIntFunction<Random> fanOuts, long seed) {
+        HikariDataSource dataSource = new HikariDataSource();
+        dataSource.setJdbcUrl("jdbc:h2:mem:benchmark-" + System.nanoTime() + ";DB_CLOSE_DELAY=-1");
+        dataSource.setUsername("sa");
+        dataSource.setPassword("");
+        new ResourceDatabasePopulator(new ClassPathResource("schema.sql")).execute(dataSource);
+
+        JdbcTemplate jdbcTemplate = new JdbcTemplate(dataSource);
+        Random random = new Random(seed);
+        int clients = Math.max(1, persons / 10);
+
+        List<Object[]> batch = new ArrayList<>(BATCH_SIZE);
+        for (int i = 1; i <= persons; i++) {
+            batch.add(new Object[] {"First" + random.nextInt(persons), "Last" + i,
+                                    "person" + i + "@example.com", i + " Main Street",
+                                    "Asheville", "NC", "28801"});
+            flushIfFull(jdbcTemplate, INSERT_PERSON, batch, i == persons);
+        }
+
+        for (int i = 1; i <= clients; i++) {
+            batch.add(new Object[] {"Company " + random.nextInt(clients),
+                                    "company" + i + ".example.com", "8285550100",
+                                    i + " Market Street", "Asheville", "NC", "28801"});
+            flushIfFull(jdbcTemplate, INSERT_CLIENT, batch, i == clients);
+        }
+
+        int associations = 0;
+        for (int clientId = 1; clientId <= clients; clientId++) {
+            int fanOut = fanOuts.applyAsInt(random);
+            Set<Integer> contacts = new HashSet<>();
+            while (contacts.size() < fanOut) {
+                contacts.add(1 + random.nextInt(persons));
+            }
+
+            for (Integer personId : contacts) {
+                batch.add(new Object[] {clientId, personId});
+                flushIfFull(jdbcTemplate, INSERT_ASSOCIATION, batch, false);
+            }
+
+            associations += fanOut;
+        }
+        flushIfFull(jdbcTemplate, INSERT_ASSOCIATION, batch, true);
+
+        return new BenchmarkDatabase(dataSource, persons, clients, associations);
+    }
+
+    /**
+     * Insert the batched rows once the batch is full, or when forced.
+     */
+    private static void flushIfFull(JdbcTemplate jdbcTemplate, String sql, List<Object[]> batch,
+                                    boolean force) {
+        if (batch.size() >= BATCH_SIZE || (force && !batch.isEmpty())) {
+            jdbcTemplate.batchUpdate(sql, batch);
+            batch.clear();
+        }
+    }
+
+    NamedParameterJdbcTemplate namedParameterJdbcTemplate() {
+        return new NamedParameterJdbcTemplate(dataSource);
+    }
+
+    DataSource dataSource() {
+        return dataSource;
+    }
+
+    int getPersons() {
+        return persons;
+    }
+
+    int getClients() {
+        return clients;
+    }
+
+    int getAssociations() {
+        return associations;
+    }
+
+    @Override
+    public void close() {
+        new JdbcTemplate(dataSource).execute("SHUTDOWN");
+        dataSource.close();
+    }
+
+}
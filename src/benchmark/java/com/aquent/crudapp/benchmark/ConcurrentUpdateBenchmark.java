@@ -0,0 +1,145 @@
+package com.aquent.crudapp.benchmark;
+
+import com.aquent.crudapp.data_access.AssociationIndex;
+import com.aquent.crudapp.data_access.JdbcPersonDAO;
+import com.aquent.crudapp.data_access.PersonRowMapper;
+import com.aquent.crudapp.interfaces.EntityDao;
+import com.aquent.crudapp.model.Client;
+import com.aquent.crudapp.model.Person;
+import org.openjdk.jmh.annotations.AuxCounters;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.dao.OptimisticLockingFailureException;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+import org.springframework.jdbc.datasource.DataSourceTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.Collections;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Benchmarks of concurrent edits of the same few people, comparing the versioned compare-and-set
+ * update of {@link JdbcPersonDAO} with locking the row for the whole edit.
+ *
+ * Each edit reads a person, waits for a think time standing in for the user, changes the city and
+ * saves. The optimistic edit reads without a lock and retries from the read when its update
+ * finds the version changed; the retries are reported as the "conflicts" counter. The locking
+ * edit reads with SELECT ... FOR UPDATE in a transaction, so concurrent edits of a person wait
+ * for each other, think time included.
+ *
+ * Contention is set by the number of people the edits are spread over, with -p hotRows.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@Threads(4)
+public class ConcurrentUpdateBenchmark {
+
+    private static final String READ_PERSON_FOR_UPDATE = "SELECT * FROM person " +
+                                                         "WHERE person_id = :personId " +
+                                                         "FOR UPDATE";
+
+    private static final String[] CITIES = {"Asheville", "Boston", "Chicago", "Denver"};
+
+    @Param({"1", "16", "1024"})
+    private int hotRows;
+
+    @Param({"0", "200"})
+    private int thinkMicros;
+
+    private BenchmarkDatabase database;
+
+    private NamedParameterJdbcTemplate namedParameterJdbcTemplate;
+
+    private TransactionTemplate transactionTemplate;
+
+    private EntityDao<Person, Client> personDao;
+
+    /**
+     * The number of optimistic edits which had to be retried, per thread.
+     */
+    @State(Scope.Thread)
+    @AuxCounters(AuxCounters.Type.EVENTS)
+    public static class Conflicts {
+
+        public long conflicts;
+
+    }
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        database = BenchmarkDatabase.seed(Math.max(hotRows, 1_000), 1.5, 42L);
+        namedParameterJdbcTemplate = database.namedParameterJdbcTemplate();
+        transactionTemplate = new TransactionTemplate(
+                new DataSourceTransactionManager(database.dataSource()));
+
+        AssociationIndex associationIndex = new AssociationIndex(namedParameterJdbcTemplate);
+        associationIndex.load();
+        personDao = new JdbcPersonDAO(namedParameterJdbcTemplate, 500, associationIndex);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        database.close();
+    }
+
+    @Benchmark
+    public void optimistic(Conflicts conflicts) {
+        int personId = randomHotPersonId();
+
+        while (true) {
+            Person person = personDao.readEntity(personId);
+            edit(person);
+
+            try {
+                personDao.updateEntity(person);
+                return;
+            } catch (OptimisticLockingFailureException e) {
+                conflicts.conflicts++;
+            }
+        }
+    }
+
+    @Benchmark
+    public void locking() {
+        int personId = randomHotPersonId();
+
+        transactionTemplate.executeWithoutResult(status -> {
+            Person person = namedParameterJdbcTemplate.queryForObject(
+                    READ_PERSON_FOR_UPDATE, Collections.singletonMap("personId", personId),
+                    new PersonRowMapper());
+            edit(person);
+            personDao.updateEntity(person);
+        });
+    }
+
+    private void edit(Person person) {
+        if (thinkMicros > 0) {
+            LockSupport.parkNanos(TimeUnit.MICROSECONDS.toNanos(thinkMicros));
+        }
+
+        person.setCity(CITIES[ThreadLocalRandom.current().nextInt(CITIES.length)]);
+    }
+
+    private int randomHotPersonId() {
+        return 1 + ThreadLocalRandom.current().nextInt(hotRows);
+    }
+
+}
@@ -0,0 +1,257 @@
+package com.aquent.crudapp.benchmark;
+
+import com.aquent.crudapp.data_access.AssociationIndex;
+import com.aquent.crudapp.data_access.JdbcPersonDAO;
+import com.aquent.crudapp.data_access.jdbcClientDAO;
+import com.aquent.crudapp.interfaces.EntityDao;
+import com.aquent.crudapp.model.Client;
+import com.aquent.crudapp.model.PageCursor;
+import com.aquent.crudapp.model.Person;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Benchmarks of every {@link EntityDao} method, run against a seeded {@link BenchmarkDatabase}.
+ *
+ * Methods are measured on {@link JdbcPersonDAO}; the association reads are measured from both
+ * sides, as the client side carries the heavy tail of the fan-out. Each operation picks random
+ * existing IDs. Operations which would change the size of the data set are measured in pairs
+ * which undo each other, e.g. add then remove an association, except for create, which only adds
+ * rows to a table the run does not grow by much.
+ *
+ * Data set sizes are chosen with -p persons=10000,100000,1000000.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class EntityDaoBenchmark {
+
+    /** The number of rows on a page, as in the controllers */
+    private static final int PAGE_SIZE = 50;
+
+    /** The number of rows created by one createEntities call */
+    private static final int CREATE_BATCH_SIZE = 100;
+
+    /** The number of associations written by one addAssociations/removeAssociations call */
+    private static final int ASSOCIATION_BATCH_SIZE = 10;
+
+    /** The number of people read at setup for the update benchmark */
+    private static final int SAMPLE_SIZE = 1024;
+
+    @Param("10000")
+    private int persons;
+
+    @Param("1.5")
+    private double fanOutExponent;
+
+    private BenchmarkDatabase database;
+
+    private AssociationIndex.View personIndex;
+
+    private EntityDao<Person, Client> personDao;
+
+    private EntityDao<Client, Person> clientDao;
+
+    private List<Person> sample;
+
+    private List<Person> createBatch;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        database = BenchmarkDatabase.seed(persons, fanOutExponent, 42L);
+
+        AssociationIndex associationIndex =
+                new AssociationIndex(database.namedParameterJdbcTemplate());
+        associationIndex.load();
+        personIndex = associationIndex.personView();
+        personDao = new JdbcPersonDAO(database.namedParameterJdbcTemplate(), 500,
+                                      associationIndex);
+        clientDao = new jdbcClientDAO(database.namedParameterJdbcTemplate(), 500,
+                                      associationIndex);
+
+        sample = new ArrayList<>(SAMPLE_SIZE);
+        for (int i = 0; i < SAMPLE_SIZE; i++) {
+            sample.add(personDao.readEntity(randomPersonId()));
+        }
+
+        createBatch = new ArrayList<>(CREATE_BATCH_SIZE);
+        for (int i = 0; i < CREATE_BATCH_SIZE; i++) {
+            createBatch.add(newPerson());
+        }
+
+        System.out.printf("Seeded %d people, %d clients and %d associations%n",
+                          database.getPersons(), database.getClients(),
+                          database.getAssociations());
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        database.close();
+    }
+
+    @Benchmark
+    public void listEntities(Blackhole blackhole) {
+        blackhole.consume(personDao.listEntities());
+    }
+
+    @Benchmark
+    public Object listFirstPage() {
+        return personDao.listEntities(null, PAGE_SIZE);
+    }
+
+    @Benchmark
+    public Object listPageAfterCursor() {
+        Person person = randomSample();
+        return personDao.listEntities(new PageCursor(person.getFirstName(), person.getLastName(),
+                                                     person.getEntityId(),
+                                                     PageCursor.Direction.AFTER), PAGE_SIZE);
+    }
+
+    @Benchmark
+    public void forEachEntity(Blackhole blackhole) {
+        personDao.forEachEntity(blackhole::consume);
+    }
+
+    @Benchmark
+    public Object readEntity() {
+        return personDao.readEntity(randomPersonId());
+    }
+
+    @Benchmark
+    public Object readAssociatedEntity() {
+        return personDao.readAssociatedEntity(randomClientId());
+    }
+
+    @Benchmark
+    public Object createEntity() {
+        return personDao.createEntity(newPerson());
+    }
+
+    @Benchmark
+    public int createEntities() {
+        return personDao.createEntities(createBatch);
+    }
+
+    @Benchmark
+    public void updateEntity() {
+        personDao.updateEntity(randomSample());
+    }
+
+    @Benchmark
+    public void createThenDeleteEntity() {
+        personDao.deleteEntity(personDao.createEntity(newPerson()));
+    }
+
+    @Benchmark
+    public Object getAssociationsOfPerson() {
+        return personDao.getAssociations(randomPersonId());
+    }
+
+    @Benchmark
+    public Object getAssociationsOfClient() {
+        return clientDao.getAssociations(randomClientId());
+    }
+
+    @Benchmark
+    public Object getAvailableAssociationsOfPerson() {
+        return personDao.getAvailableAssociations(randomPersonId(), null, PAGE_SIZE);
+    }
+
+    @Benchmark
+    public Object getAvailableAssociationsOfClient() {
+        return clientDao.getAvailableAssociations(randomClientId(), null, PAGE_SIZE);
+    }
+
+    @Benchmark
+    public void addThenRemoveAssociation() {
+        int personId = randomPersonId();
+        int clientId = randomUnassociatedClientId(personId);
+        personDao.addAssociation(personId, clientId);
+        personDao.removeAssociation(personId, clientId);
+    }
+
+    @Benchmark
+    public void addThenRemoveAssociations() {
+        int personId = randomPersonId();
+        Set<Integer> clientIds = new HashSet<>();
+        while (clientIds.size() < ASSOCIATION_BATCH_SIZE) {
+            clientIds.add(randomUnassociatedClientId(personId));
+        }
+
+        personDao.addAssociations(personId, clientIds);
+        personDao.removeAssociations(personId, clientIds);
+    }
+
+    @Benchmark
+    public void syncAssociationsThenRestore() {
+        int personId = randomPersonId();
+        List<Integer> current = new ArrayList<>();
+        for (Client client : personDao.getAssociations(personId)) {
+            current.add(client.getEntityId());
+        }
+
+        Set<Integer> desired = new HashSet<>(current);
+        desired.add(randomUnassociatedClientId(personId));
+        personDao.syncAssociations(personId, desired);
+        personDao.syncAssociations(personId, current);
+    }
+
+    private int randomPersonId() {
+        return 1 + ThreadLocalRandom.current().nextInt(database.getPersons());
+    }
+
+    private int randomClientId() {
+        return 1 + ThreadLocalRandom.current().nextInt(database.getClients());
+    }
+
+    /**
+     * Pick a client which is not associated with a person, so that adding then removing the
+     * association leaves the data as it was.
+     */
+    private int randomUnassociatedClientId(int personId) {
+        int clientId;
+        do {
+            clientId = randomClientId();
+        } while (personIndex.isAssociated(personId, clientId));
+        return clientId;
+    }
+
+    private Person randomSample() {
+        return sample.get(ThreadLocalRandom.current().nextInt(sample.size()));
+    }
+
+    private static Person newPerson() {
+        Person person = new Person();
+        person.setFirstName("Benchmark");
+        person.setLastName("Person");
+        person.setEmailAddress("benchmark@example.com");
+        person.setStreetAddress("1 Main Street");
+        person.setCity("Asheville");
+        person.setState("NC");
+        person.setZipCode("28801");
+        return person;
+    }
+
+}
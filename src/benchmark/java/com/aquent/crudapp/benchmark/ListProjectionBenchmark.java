@@ -0,0 +1,184 @@
+package com.aquent.crudapp.benchmark;
+
+import com.aquent.crudapp.data_access.AssociationIndex;
+import com.aquent.crudapp.data_access.JdbcPersonDAO;
+import com.aquent.crudapp.data_access.jdbcClientDAO;
+import com.aquent.crudapp.model.Client;
+import com.aquent.crudapp.model.ClientSummary;
+import com.aquent.crudapp.model.Page;
+import com.aquent.crudapp.model.PageCursor;
+import com.aquent.crudapp.model.Person;
+import com.aquent.crudapp.model.PersonSummary;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.jdbc.core.RowMapper;
+import org.springframework.jdbc.core.namedparam.MapSqlParameterSource;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Benchmarks of the queries behind the list and picker pages, comparing whole entities read with
+ * SELECT * and mapped by column name, as the pages used to, against the explicit column lists
+ * mapped by index and the summary projections the pages read now.
+ *
+ * Each operation reads one row, so the score is rows per second; run with -prof gc, the
+ * gc.alloc.rate.norm is the bytes allocated per row. Each invocation reads a page of
+ * {@link #ROWS} rows after a random cursor, or the first page of a random client's picker.
+ *
+ * Data set sizes are chosen with -p persons=10000,100000.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class ListProjectionBenchmark {
+
+    /** The number of rows read per invocation */
+    private static final int ROWS = 500;
+
+    /** The number of cursors read at setup */
+    private static final int SAMPLE_SIZE = 1024;
+
+    /** The listing query before the explicit column lists, after a cursor */
+    private static final String SELECT_STAR_PAGE = "SELECT * FROM person " +
+                                                   "WHERE first_name >= :firstName " +
+                                                   "AND (first_name > :firstName " +
+                                                        "OR last_name > :lastName " +
+                                                        "OR (last_name = :lastName " +
+                                                            "AND person_id > :personId)) " +
+                                                   "ORDER BY first_name, last_name, person_id " +
+                                                   "LIMIT :limit";
+
+    /** The row mapper before mapping by index, looking each column up by name on every row */
+    private static final RowMapper<Person> BY_NAME = (rs, rowNum) -> {
+        Person person = new Person();
+        person.setEntityId(rs.getInt("person_id"));
+        person.setFirstName(rs.getString("first_name"));
+        person.setLastName(rs.getString("last_name"));
+        person.setEmailAddress(rs.getString("email_address"));
+        person.setStreetAddress(rs.getString("street_address"));
+        person.setCity(rs.getString("city"));
+        person.setState(rs.getString("state"));
+        person.setZipCode(rs.getString("zip_code"));
+        person.setVersion(rs.getInt("version"));
+        return person;
+    };
+
+    @Param("10000")
+    private int persons;
+
+    @Param("1.5")
+    private double fanOutExponent;
+
+    private BenchmarkDatabase database;
+
+    private JdbcPersonDAO personDao;
+
+    private jdbcClientDAO clientDao;
+
+    private List<PageCursor> cursors;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        database = BenchmarkDatabase.seed(persons, fanOutExponent, 42L);
+
+        AssociationIndex associationIndex =
+                new AssociationIndex(database.namedParameterJdbcTemplate());
+        associationIndex.load();
+        personDao = new JdbcPersonDAO(database.namedParameterJdbcTemplate(), 500,
+                                      associationIndex);
+        clientDao = new jdbcClientDAO(database.namedParameterJdbcTemplate(), 500,
+                                      associationIndex);
+
+        cursors = new ArrayList<>(SAMPLE_SIZE);
+        for (int i = 0; i < SAMPLE_SIZE; i++) {
+            Person person = personDao.readEntity(
+                    1 + ThreadLocalRandom.current().nextInt(database.getPersons()));
+            cursors.add(new PageCursor(person.getFirstName(), person.getLastName(),
+                                       person.getEntityId(), PageCursor.Direction.AFTER));
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        database.close();
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(ROWS)
+    public List<Person> listPageSelectStarByName() {
+        PageCursor cursor = randomCursor();
+        MapSqlParameterSource parameters = new MapSqlParameterSource();
+        parameters.addValue("limit", ROWS + 1);
+        parameters.addValue("firstName", cursor.getPrimaryKey());
+        parameters.addValue("lastName", cursor.getSecondaryKey());
+        parameters.addValue("personId", cursor.getEntityId());
+        return database.namedParameterJdbcTemplate().query(SELECT_STAR_PAGE, parameters, BY_NAME);
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(ROWS)
+    public Object listPageEntities() {
+        return personDao.listEntities(randomCursor(), ROWS);
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(ROWS)
+    public Object listPageSummaries() {
+        return personDao.listSummaries(randomCursor(), ROWS);
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(ROWS)
+    public Page<Person> pickerEntities() {
+        return clientDao.getAvailableAssociations(randomClientId(), null, ROWS);
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(ROWS)
+    public Page<PersonSummary> pickerSummaries() {
+        return clientDao.getAvailableAssociationSummaries(randomClientId(), null, ROWS);
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(ROWS)
+    public Page<Client> clientPickerEntities() {
+        return personDao.getAvailableAssociations(randomPersonId(), null, ROWS);
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(ROWS)
+    public Page<ClientSummary> clientPickerSummaries() {
+        return personDao.getAvailableAssociationSummaries(randomPersonId(), null, ROWS);
+    }
+
+    private PageCursor randomCursor() {
+        return cursors.get(ThreadLocalRandom.current().nextInt(cursors.size()));
+    }
+
+    private int randomPersonId() {
+        return 1 + ThreadLocalRandom.current().nextInt(database.getPersons());
+    }
+
+    private int randomClientId() {
+        return 1 + ThreadLocalRandom.current().nextInt(database.getClients());
+    }
+
+}
@@ -0,0 +1,394 @@
+package com.aquent.crudapp.benchmark;
+
+import org.HdrHistogram.Histogram;
+import org.HdrHistogram.Recorder;
+
+import java.io.File;
+import java.io.FileNotFoundException;
+import java.io.PrintStream;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.time.Duration;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+import java.util.regex.Pattern;
+
+/**
+ * Load generator replaying the flows of real users of the HTML pages against a running instance
+ * of the application, reporting the latency of each endpoint at a given throughput.
+ *
+ * Users arrive at a fixed average rate, at random as a Poisson process, whether or not earlier
+ * users have been served, and each follows one of the {@link Flow}s, chosen by weight. At most a
+ * given number of users are served at once; the rest wait their turn, as requests would wait for
+ * a browser connection. Each request is recorded in an HdrHistogram under its endpoint, and each
+ * flow from the time its user arrived, as is the first request of the flow, so that time spent
+ * waiting behind a slow server counts rather than being omitted. Users arriving during the warmup
+ * are not recorded. The rates per second are of the users arriving in the measured seconds, whose
+ * requests are counted even if they are answered once the measured seconds are over.
+ *
+ * Start the application, for example with mvn spring-boot:run, then run
+ * mvn -Pbenchmark test-compile exec:exec@load-test -Dload.args="--rate=50 --duration=120"
+ *
+ * Options, with their defaults: --url=http://localhost:8081 --rate=20 (users per second)
+ * --concurrency=16 --warmup=30 --duration=60 (seconds) --histograms=target/load-test (a
+ * percentile distribution file per endpoint, for plotting). The flows create and delete their
+ * own clients, and leave the associations they add removed again.
+ */
+public final class LoadGenerator {
+
+    /** The ID in a link to a client's page */
+    private static final Pattern CLIENT_LINK = Pattern.compile("/client/client-view/(\\d+)\"");
+
+    /** The ID in a link to a person's page */
+    private static final Pattern PERSON_LINK = Pattern.compile("/person/person-view/(\\d+)\"");
+
+    /** The ID of each person offered on the available contacts page */
+    private static final Pattern AVAILABLE_CONTACT =
+            Pattern.compile("action=\"/client/available-contacts/(\\d+)\"");
+
+    /** The ID of each client offered on the available clients page */
+    private static final Pattern AVAILABLE_CLIENT =
+            Pattern.compile("action=\"/person/available-clients/(\\d+)\"");
+
+    /**
+     * A flow of requests made by a user.
+     */
+    enum Flow {
+
+        /** Lists the clients and views one of them */
+        VIEW_CLIENT(30) {
+            @Override
+            void run(LoadSession session) throws Exception {
+                int clientId = session.get("GET /client/list", "/client/list")
+                                      .randomId(CLIENT_LINK);
+                session.get("GET /client/client-view/{id}", "/client/client-view/" + clientId);
+            }
+        },
+
+        /** Lists the people and views one of them */
+        VIEW_PERSON(20) {
+            @Override
+            void run(LoadSession session) throws Exception {
+                int personId = session.get("GET /person/list", "/person/list")
+                                      .randomId(PERSON_LINK);
+                session.get("GET /person/person-view/{id}", "/person/person-view/" + personId);
+            }
+        },
+
+        /**
+         * Edits a client, saving it with Add Contact, adds one of the people offered, then
+         * removes them again from the client's page; stops short if every person is a contact
+         */
+        ADD_CONTACT(20) {
+            @Override
+            void run(LoadSession session) throws Exception {
+                int clientId = session.get("GET /client/list", "/client/list")
+                                      .randomId(CLIENT_LINK);
+                Map<String, String> form = session.get("GET /client/edit/{id}",
+                                                       "/client/edit/" + clientId)
+                                                  .formValues();
+                form.put("command", "Add Contact");
+                List<Integer> available = session.post("POST /client/edit", "/client/edit",
+                                                       form)
+                                                 .ids(AVAILABLE_CONTACT);
+                if (available.isEmpty()) {
+                    return;
+                }
+                int personId = available.get(ThreadLocalRandom.current()
+                                                              .nextInt(available.size()));
+
+                Map<String, String> add = new LinkedHashMap<>();
+                add.put("entityId", String.valueOf(clientId));
+                add.put("referrer", "edit");
+                session.follow("GET /client/edit/{id}",
+                               session.post("POST /client/available-contacts/{id}",
+                                            "/client/available-contacts/" + personId, add));
+
+                Map<String, String> remove = new LinkedHashMap<>();
+                remove.put("entityId", String.valueOf(clientId));
+                remove.put("command", "Remove");
+                session.follow("GET /client/client-view/{id}",
+                               session.post("POST /client/remove/{id}",
+                                            "/client/remove/" + personId, remove));
+            }
+        },
+
+        /**
+         * Views the clients a person could be associated with, adds one, then removes it again
+         * from the person's edit page; stops short if there are none
+         */
+        ADD_CLIENT(15) {
+            @Override
+            void run(LoadSession session) throws Exception {
+                int personId = session.get("GET /person/list", "/person/list")
+                                      .randomId(PERSON_LINK);
+                List<Integer> available = session.get("GET /person/available-clients/{id}",
+                                                      "/person/available-clients/" + personId)
+                                                 .ids(AVAILABLE_CLIENT);
+                if (available.isEmpty()) {
+                    return;
+                }
+                int clientId = available.get(ThreadLocalRandom.current()
+                                                              .nextInt(available.size()));
+
+                Map<String, String> add = new LinkedHashMap<>();
+                add.put("entityId", String.valueOf(personId));
+                add.put("referrer", "view");
+                session.follow("GET /person/person-view/{id}",
+                               session.post("POST /person/available-clients/{id}",
+                                            "/person/available-clients/" + clientId, add));
+
+                session.post("POST /person/edit/{id}-{id}",
+                             "/person/edit/" + personId + "-" + clientId,
+                             Collections.singletonMap("command", "Remove Client"));
+            }
+        },
+
+        /** Creates a client, finds it by searching, and deletes it */
+        CREATE_AND_DELETE_CLIENT(15) {
+            @Override
+            void run(LoadSession session) throws Exception {
+                String tag = Long.toString(ThreadLocalRandom.current().nextLong(1L << 40), 36);
+                session.get("GET /client/create", "/client/create");
+
+                Map<String, String> form = new LinkedHashMap<>();
+                form.put("companyName", "Load Test " + tag);
+                form.put("website", "https://example.com");
+                form.put("phone", "617-555-0100");
+                form.put("streetAddress", "1 Main Street");
+                form.put("city", "Boston");
+                form.put("state", "MA");
+                form.put("zipCode", "02110");
+                session.follow("GET /client/list",
+                               session.post("POST /client/create", "/client/create", form));
+
+                int clientId = session.get("GET /search", "/search?q=" + tag)
+                                      .randomId(CLIENT_LINK);
+                session.get("GET /client/delete/{id}", "/client/delete/" + clientId);
+
+                Map<String, String> delete = new LinkedHashMap<>();
+                delete.put("entityId", String.valueOf(clientId));
+                delete.put("command", "Delete");
+                session.follow("GET /client/list",
+                               session.post("POST /client/delete", "/client/delete", delete));
+            }
+        };
+
+        private final int weight;
+
+        Flow(int weight) {
+            this.weight = weight;
+        }
+
+        /**
+         * Makes the flow's requests.
+         *
+         * @param session The user's session
+         */
+        abstract void run(LoadSession session) throws Exception;
+
+        /**
+         * @return A flow chosen at random, in proportion to the weights
+         */
+        static Flow random() {
+            int total = 0;
+            for (Flow flow : values()) {
+                total += flow.weight;
+            }
+
+            int choice = ThreadLocalRandom.current().nextInt(total);
+            for (Flow flow : values()) {
+                choice -= flow.weight;
+                if (choice < 0) {
+                    return flow;
+                }
+            }
+            throw new IllegalStateException();
+        }
+
+    }
+
+    /**
+     * The latencies and failures recorded for an endpoint or a flow.
+     */
+    private static final class Stats {
+
+        private final Recorder latency = new Recorder(3);
+
+        private final LongAdder failures = new LongAdder();
+
+        void record(long nanos, boolean failed) {
+            latency.recordValue(TimeUnit.NANOSECONDS.toMicros(nanos));
+            if (failed) {
+                failures.increment();
+            }
+        }
+
+    }
+
+    private final URI baseUri;
+
+    private final double rate;
+
+    private final int concurrency;
+
+    private final Duration warmup;
+
+    private final Duration duration;
+
+    private final File histograms;
+
+    private final Map<String, Stats> endpoints = new ConcurrentHashMap<>();
+
+    private final Map<Flow, Stats> flows = new ConcurrentHashMap<>();
+
+    private final AtomicLong lastFailureLogged = new AtomicLong();
+
+    private LoadGenerator(Map<String, String> options) {
+        this.baseUri = URI.create(options.getOrDefault("url", "http://localhost:8081"));
+        this.rate = Double.parseDouble(options.getOrDefault("rate", "20"));
+        this.concurrency = Integer.parseInt(options.getOrDefault("concurrency", "16"));
+        this.warmup = Duration.ofSeconds(Long.parseLong(options.getOrDefault("warmup", "30")));
+        this.duration = Duration.ofSeconds(Long.parseLong(options.getOrDefault("duration", "60")));
+        this.histograms = new File(options.getOrDefault("histograms", "target/load-test"));
+    }
+
+    public static void main(String[] args) throws Exception {
+        Map<String, String> options = new LinkedHashMap<>();
+        for (String arg : args) {
+            if (!arg.startsWith("--") || !arg.contains("=")) {
+                throw new IllegalArgumentException("Expected --option=value, got " + arg);
+            }
+            options.put(arg.substring(2, arg.indexOf('=')), arg.substring(arg.indexOf('=') + 1));
+        }
+
+        new LoadGenerator(options).run();
+    }
+
+    private void run() throws InterruptedException, FileNotFoundException {
+        ExecutorService users = Executors.newFixedThreadPool(concurrency);
+        HttpClient client = HttpClient.newBuilder()
+                                      .version(HttpClient.Version.HTTP_1_1)
+                                      .followRedirects(HttpClient.Redirect.NEVER)
+                                      .connectTimeout(Duration.ofSeconds(10))
+                                      .build();
+        Random arrivals = new Random();
+
+        System.out.printf("%.1f users/s, at most %d at once, against %s: %d s warmup, " +
+                          "%d s measured%n", rate, concurrency, baseUri, warmup.getSeconds(),
+                          duration.getSeconds());
+
+        long start = System.nanoTime();
+        long measureFrom = start + warmup.toNanos();
+        long end = measureFrom + duration.toNanos();
+        long arrival = start;
+
+        while (arrival < end) {
+            long delay = arrival - System.nanoTime();
+            if (delay > 0) {
+                LockSupport.parkNanos(delay);
+            }
+
+            long arrived = arrival;
+            Flow flow = Flow.random();
+            boolean measured = arrived >= measureFrom;
+            users.execute(() -> visit(client, flow, arrived, measured));
+
+            arrival += (long) (-Math.log(1 - arrivals.nextDouble()) / rate * 1e9);
+        }
+
+        users.shutdown();
+        if (!users.awaitTermination(1, TimeUnit.MINUTES)) {
+            System.out.println("Users still being served after a minute were abandoned");
+            users.shutdownNow();
+        }
+
+        report(duration.getSeconds());
+    }
+
+    private void visit(HttpClient client, Flow flow, long arrived, boolean measured) {
+        LoadSession session = new LoadSession(client, baseUri, measured ?
+                (endpoint, nanos, failed) -> stats(endpoints, endpoint).record(nanos, failed) :
+                null, arrived);
+        boolean failed = false;
+
+        try {
+            flow.run(session);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return;
+        } catch (Exception e) {
+            failed = true;
+            long now = System.nanoTime();
+            long last = lastFailureLogged.get();
+            if (now - last > TimeUnit.SECONDS.toNanos(5) &&
+                lastFailureLogged.compareAndSet(last, now)) {
+                System.out.println(flow + " failed: " + e);
+            }
+        }
+
+        if (measured) {
+            stats(flows, flow).record(System.nanoTime() - arrived, failed);
+        }
+    }
+
+    private static <K> Stats stats(Map<K, Stats> stats, K key) {
+        return stats.computeIfAbsent(key, k -> new Stats());
+    }
+
+    /**
+     * @param seconds The length of the measured window
+     */
+    private void report(long seconds) throws FileNotFoundException {
+        if (!histograms.isDirectory() && !histograms.mkdirs()) {
+            throw new FileNotFoundException("Could not create " + histograms);
+        }
+
+        System.out.printf("%n%-42s %7s %8s %8s %8s %8s %8s %8s %8s%n", "Latency in ms",
+                          "count", "per s", "p50", "p90", "p99", "p99.9", "max", "failed");
+
+        Map<String, Stats> rows = new TreeMap<>(endpoints);
+        for (Flow flow : Flow.values()) {
+            if (flows.containsKey(flow)) {
+                rows.put("flow " + flow, flows.get(flow));
+            }
+        }
+
+        for (Map.Entry<String, Stats> row : rows.entrySet()) {
+            Histogram histogram = row.getValue().latency.getIntervalHistogram();
+            System.out.printf("%-42s %7d %8.1f %8.1f %8.1f %8.1f %8.1f %8.1f %8d%n",
+                              row.getKey(), histogram.getTotalCount(),
+                              (double) histogram.getTotalCount() / Math.max(1, seconds),
+                              millis(histogram.getValueAtPercentile(50)),
+                              millis(histogram.getValueAtPercentile(90)),
+                              millis(histogram.getValueAtPercentile(99)),
+                              millis(histogram.getValueAtPercentile(99.9)),
+                              millis(histogram.getMaxValue()),
+                              row.getValue().failures.sum());
+
+            String fileName = row.getKey().replaceAll("[^A-Za-z0-9]+", "-") + ".hgrm";
+            try (PrintStream out = new PrintStream(new File(histograms, fileName))) {
+                histogram.outputPercentileDistribution(out, 1000.0);
+            }
+        }
+
+        System.out.println("\nPercentile distributions, in ms, written to " + histograms);
+    }
+
+    private static double millis(long micros) {
+        return micros / 1000.0;
+    }
+
+}
@@ -0,0 +1,249 @@
+package com.aquent.crudapp.benchmark;
+
+import java.io.IOException;
+import java.net.URI;
+import java.net.URLEncoder;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.StringJoiner;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * One simulated user's visit to the application, as a browser makes it: each request carries the
+ * cookies set by the earlier ones, and redirects are followed as requests of their own.
+ *
+ * Every request is timed and recorded under the name of its endpoint, such as
+ * "GET /client/edit/{id}", unless the visit started during the warmup. The first request is
+ * timed from the user's arrival, when it was due to be sent, rather than from when a thread was
+ * free to send it, so that the time it waited behind slow responses is not omitted; the rest are
+ * sent as soon as the one before has been answered.
+ */
+final class LoadSession {
+
+    /**
+     * Records the outcome of each request.
+     */
+    @FunctionalInterface
+    interface Recorder {
+
+        /**
+         * @param endpoint The name of the endpoint requested
+         * @param nanos The time from when the request was due to be sent to receiving all of
+         *              the response
+         * @param failed true if the request failed or was answered with an error status
+         */
+        void record(String endpoint, long nanos, boolean failed);
+
+    }
+
+    /**
+     * A response, with its whole body read.
+     */
+    static final class Response {
+
+        private final int status;
+
+        private final String body;
+
+        private final String location;
+
+        Response(int status, String body, String location) {
+            this.status = status;
+            this.body = body;
+            this.location = location;
+        }
+
+        String getBody() {
+            return body;
+        }
+
+        /**
+         * @param pattern A pattern whose first group is an ID, such as the ID in a link
+         * @return Every ID matched in the body, in order
+         */
+        List<Integer> ids(Pattern pattern) {
+            List<Integer> ids = new ArrayList<>();
+            Matcher matcher = pattern.matcher(body);
+            while (matcher.find()) {
+                ids.add(Integer.valueOf(matcher.group(1)));
+            }
+            return ids;
+        }
+
+        /**
+         * @param pattern A pattern whose first group is an ID
+         * @return One of the IDs matched in the body, chosen at random
+         * @throws IllegalStateException if there are none
+         */
+        int randomId(Pattern pattern) {
+            List<Integer> ids = ids(pattern);
+            if (ids.isEmpty()) {
+                throw new IllegalStateException("No match of " + pattern + " in the page");
+            }
+            return ids.get(ThreadLocalRandom.current().nextInt(ids.size()));
+        }
+
+        /**
+         * @return The values of the named text and hidden inputs in the body, as a browser would
+         *         submit them; submit buttons are left out
+         */
+        Map<String, String> formValues() {
+            Map<String, String> values = new LinkedHashMap<>();
+            Matcher matcher = INPUT.matcher(body);
+            while (matcher.find()) {
+                if (!"submit".equals(matcher.group(1))) {
+                    values.put(matcher.group(2), unescape(matcher.group(3)));
+                }
+            }
+            return values;
+        }
+
+    }
+
+    /** An input with a type, a name and a value, in the order the templates write them */
+    private static final Pattern INPUT = Pattern.compile(
+            "<input[^>]*?type=\"(\\w+)\"[^>]*?name=\"(\\w+)\"[^>]*?value=\"([^\"]*)\"");
+
+    private static final Duration TIMEOUT = Duration.ofSeconds(30);
+
+    private final HttpClient client;
+
+    private final URI baseUri;
+
+    private final Recorder recorder;
+
+    private final Map<String, String> cookies = new LinkedHashMap<>();
+
+    /** When the first request was due to be sent, the user's arrival */
+    private final long arrived;
+
+    private boolean sent;
+
+    /**
+     * Instantiates a LoadSession
+     *
+     * @param client The client sending the requests, which does not follow redirects
+     * @param baseUri The URI of the application
+     * @param recorder Records each request, or null not to record them
+     * @param arrived The System.nanoTime() at which the user arrived
+     */
+    LoadSession(HttpClient client, URI baseUri, Recorder recorder, long arrived) {
+        this.client = client;
+        this.baseUri = baseUri;
+        this.recorder = recorder;
+        this.arrived = arrived;
+    }
+
+    /**
+     * GETs a page.
+     *
+     * @param endpoint The name of the endpoint, under which the request is recorded
+     * @param path The path and query of the page
+     * @return The response
+     * @throws IOException if the request fails or is answered with an error status
+     */
+    Response get(String endpoint, String path) throws IOException, InterruptedException {
+        return send(endpoint, HttpRequest.newBuilder(baseUri.resolve(path)).GET());
+    }
+
+    /**
+     * POSTs a form.
+     *
+     * @param endpoint The name of the endpoint, under which the request is recorded
+     * @param path The path the form is posted to
+     * @param form The form's fields
+     * @return The response
+     * @throws IOException if the request fails or is answered with an error status
+     */
+    Response post(String endpoint, String path, Map<String, String> form)
+            throws IOException, InterruptedException {
+        StringJoiner body = new StringJoiner("&");
+        for (Map.Entry<String, String> field : form.entrySet()) {
+            body.add(URLEncoder.encode(field.getKey(), StandardCharsets.UTF_8) + "=" +
+                     URLEncoder.encode(field.getValue(), StandardCharsets.UTF_8));
+        }
+
+        return send(endpoint, HttpRequest.newBuilder(baseUri.resolve(path))
+                                         .header("Content-Type",
+                                                 "application/x-www-form-urlencoded")
+                                         .POST(HttpRequest.BodyPublishers.ofString(
+                                                 body.toString())));
+    }
+
+    /**
+     * GETs the page a response redirected to.
+     *
+     * @param endpoint The name of the endpoint redirected to
+     * @param redirect The redirect
+     * @return The response
+     * @throws IOException if the response was not a redirect, or the request fails or is
+     *                     answered with an error status
+     */
+    Response follow(String endpoint, Response redirect) throws IOException, InterruptedException {
+        if (redirect.location == null) {
+            throw new IOException("Expected a redirect to " + endpoint + ", got " +
+                                  redirect.status);
+        }
+        return get(endpoint, redirect.location);
+    }
+
+    private Response send(String endpoint, HttpRequest.Builder request)
+            throws IOException, InterruptedException {
+        request.timeout(TIMEOUT);
+        if (!cookies.isEmpty()) {
+            StringJoiner cookie = new StringJoiner("; ");
+            cookies.forEach((name, value) -> cookie.add(name + "=" + value));
+            request.header("Cookie", cookie.toString());
+        }
+
+        long start = sent ? System.nanoTime() : arrived;
+        sent = true;
+        HttpResponse<String> response;
+        try {
+            response = client.send(request.build(), HttpResponse.BodyHandlers.ofString());
+        } catch (IOException e) {
+            record(endpoint, System.nanoTime() - start, true);
+            throw e;
+        }
+        boolean failed = response.statusCode() >= 400;
+        record(endpoint, System.nanoTime() - start, failed);
+
+        if (failed) {
+            throw new IOException(endpoint + " answered " + response.statusCode());
+        }
+
+        for (String setCookie : response.headers().allValues("Set-Cookie")) {
+            String[] nameValue = setCookie.split(";", 2)[0].split("=", 2);
+            if (nameValue.length == 2) {
+                cookies.put(nameValue[0].trim(), nameValue[1].trim());
+            }
+        }
+
+        return new Response(response.statusCode(), response.body(),
+                            response.headers().firstValue("Location").orElse(null));
+    }
+
+    private void record(String endpoint, long nanos, boolean failed) {
+        if (recorder != null) {
+            recorder.record(endpoint, nanos, failed);
+        }
+    }
+
+    private static String unescape(String html) {
+        return html.replace("&quot;", "\"")
+                   .replace("&#39;", "'")
+                   .replace("&lt;", "<")
+                   .replace("&gt;", ">")
+                   .replace("&amp;", "&");
+    }
+
+}
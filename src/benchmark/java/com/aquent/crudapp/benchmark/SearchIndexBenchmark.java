@@ -0,0 +1,153 @@
+package com.aquent.crudapp.benchmark;
+
+import com.aquent.crudapp.model.Client;
+import com.aquent.crudapp.model.Person;
+import com.aquent.crudapp.search.SearchIndex;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Benchmarks of {@link SearchIndex} queries and updates, run against an index of generated
+ * people and clients, without a database.
+ *
+ * Names are drawn from small vocabularies so that, as in real contact data, some terms match a
+ * large share of the documents. Index sizes are chosen with -p documents=100000,1000000.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = "-Xmx2g")
+public class SearchIndexBenchmark {
+
+    /** The number of hits asked for, as by autocomplete */
+    private static final int LIMIT = 10;
+
+    /** The number of documents indexed together while loading */
+    private static final int LOAD_BATCH_SIZE = 10_000;
+
+    private static final String[] FIRST_NAMES = {"James", "Mary", "John", "Patricia", "Robert",
+                                                 "Jennifer", "Michael", "Linda", "William",
+                                                 "Elizabeth", "David", "Barbara", "Richard",
+                                                 "Susan", "Joseph", "Jessica", "Thomas", "Sarah",
+                                                 "Charles", "Karen"};
+
+    private static final String[] CITIES = {"Asheville", "Boston", "Chicago", "Denver", "Austin",
+                                            "Seattle", "Portland", "Atlanta", "Phoenix",
+                                            "Columbus"};
+
+    @Param("1000000")
+    private int documents;
+
+    private SearchIndex searchIndex;
+
+    private int persons;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        Random random = new Random(42L);
+        searchIndex = new SearchIndex();
+        persons = documents - documents / 10;
+
+        List<Person> personBatch = new ArrayList<>(LOAD_BATCH_SIZE);
+        for (int i = 1; i <= persons; i++) {
+            personBatch.add(person(i, random));
+            if (personBatch.size() == LOAD_BATCH_SIZE || i == persons) {
+                searchIndex.indexPeople(personBatch);
+                personBatch.clear();
+            }
+        }
+
+        List<Client> clientBatch = new ArrayList<>(LOAD_BATCH_SIZE);
+        for (int i = 1; i <= documents / 10; i++) {
+            clientBatch.add(client(i, random));
+            if (clientBatch.size() == LOAD_BATCH_SIZE || i == documents / 10) {
+                searchIndex.indexClients(clientBatch);
+                clientBatch.clear();
+            }
+        }
+
+        System.out.printf("Indexed %d documents%n", searchIndex.size());
+    }
+
+    /** A rare last name, as when looking someone up */
+    @Benchmark
+    public Object exactRareTerm() {
+        return searchIndex.search("last" + randomPersonId(), null, LIMIT);
+    }
+
+    /** One letter typed: the widest prefix */
+    @Benchmark
+    public Object oneLetterPrefix() {
+        return searchIndex.search("j", null, LIMIT);
+    }
+
+    /** Three letters of a common name typed */
+    @Benchmark
+    public Object commonPrefix() {
+        return searchIndex.search("mic", null, LIMIT);
+    }
+
+    /** Two common terms, the second partly typed: a large intersection */
+    @Benchmark
+    public Object commonTermsWithPrefix() {
+        return searchIndex.search("mary bost", null, LIMIT);
+    }
+
+    /** A common and a rare term */
+    @Benchmark
+    public Object commonAndRareTerms() {
+        return searchIndex.search("james last" + randomPersonId(), SearchIndex.DocumentType.PERSON,
+                                  LIMIT);
+    }
+
+    /** Reindex a person as if edited, outside of a transaction */
+    @Benchmark
+    public void reindexPerson() {
+        int personId = randomPersonId();
+        searchIndex.index(personId, person(personId, ThreadLocalRandom.current()));
+    }
+
+    private int randomPersonId() {
+        return 1 + ThreadLocalRandom.current().nextInt(persons);
+    }
+
+    private static Person person(int personId, Random random) {
+        Person person = new Person();
+        person.setEntityId(personId);
+        person.setFirstName(FIRST_NAMES[random.nextInt(FIRST_NAMES.length)]);
+        person.setLastName("Last" + personId);
+        person.setEmailAddress("person" + personId + "@example.com");
+        person.setCity(CITIES[random.nextInt(CITIES.length)]);
+        person.setZipCode(String.format("%05d", random.nextInt(100_000)));
+        return person;
+    }
+
+    private static Client client(int clientId, Random random) {
+        Client client = new Client();
+        client.setEntityId(clientId);
+        client.setCompanyName("Company " + clientId);
+        client.setWebsite("www.company" + clientId + ".example.com");
+        client.setCity(CITIES[random.nextInt(CITIES.length)]);
+        client.setZipCode(String.format("%05d", random.nextInt(100_000)));
+        return client;
+    }
+
+}
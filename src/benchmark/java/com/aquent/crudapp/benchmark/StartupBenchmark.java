@@ -0,0 +1,176 @@
+package com.aquent.crudapp.benchmark;
+
+import com.aquent.crudapp.startup.PageRequests;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.File;
+import java.io.IOException;
+import java.net.ServerSocket;
+import java.net.URL;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Benchmark of the time from launching the application to its first successful request: a GET
+ * of the person listing, which needs the database initialized and the whole web stack.
+ *
+ * Each invocation launches the plain jar built by the Maven cds profile in a fresh JVM, polls the
+ * listing until it answers 200, then stops the JVM. The application is launched with the default
+ * settings or the fast-startup profile, with -p profile, and with or without a class data sharing
+ * archive, with -p cds. The archive is recorded before the trial by a training run of the same
+ * profile, as the cds profile does; it needs JDK 13 or later. Run with
+ * mvn -Pbenchmark,cds verify -Djmh.args=StartupBenchmark
+ *
+ * The output of the launched JVMs goes to target/startup-benchmark.log.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2)
+@Measurement(iterations = 10)
+@Fork(1)
+public class StartupBenchmark {
+
+    /** The request which has to succeed */
+    private static final String FIRST_REQUEST = "/person/list";
+
+    /** How long to wait for a launched application before giving up */
+    private static final long TIMEOUT_MILLIS = 120_000;
+
+    private static final File TARGET = new File("target");
+
+    private static final File LOG = new File(TARGET, "startup-benchmark.log");
+
+    @Param({"default", "fast-startup"})
+    private String profile;
+
+    @Param({"false", "true"})
+    private boolean cds;
+
+    private File jar;
+
+    private File archive;
+
+    private Process process;
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException, InterruptedException {
+        File[] jars = TARGET.listFiles((directory, name) -> name.endsWith("-cds.jar"));
+        if (jars == null || jars.length != 1) {
+            throw new IllegalStateException("Build the jar with the Maven cds profile first");
+        }
+        jar = jars[0];
+
+        if (!cds) {
+            return;
+        }
+
+        archive = File.createTempFile("startup-benchmark", ".jsa");
+        Files.delete(archive.toPath());
+
+        Process training = launch("-XX:ArchiveClassesAtExit=" + archive, "--server.port=0",
+                                  "--crudapp.startup.training-run=true");
+        if (!training.waitFor(TIMEOUT_MILLIS, TimeUnit.MILLISECONDS) || !archive.isFile()) {
+            training.destroyForcibly();
+            throw new IllegalStateException("The training run did not write " + archive +
+                                            ", see " + LOG);
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException {
+        if (archive != null) {
+            Files.deleteIfExists(archive.toPath());
+        }
+    }
+
+    @TearDown(Level.Invocation)
+    public void stop() throws InterruptedException {
+        if (process != null) {
+            process.destroy();
+            if (!process.waitFor(30, TimeUnit.SECONDS)) {
+                process.destroyForcibly().waitFor();
+            }
+            process = null;
+        }
+    }
+
+    @Benchmark
+    public int firstRequest() throws IOException, InterruptedException {
+        int port = freePort();
+        process = cds ? launch("-XX:SharedArchiveFile=" + archive, "--server.port=" + port) :
+                  launch(null, "--server.port=" + port);
+
+        URL url = new URL("http://localhost:" + port + FIRST_REQUEST);
+        long deadline = System.currentTimeMillis() + TIMEOUT_MILLIS;
+
+        while (System.currentTimeMillis() < deadline && process.isAlive()) {
+            int status = get(url);
+            if (status == 200) {
+                return status;
+            }
+            Thread.sleep(5);
+        }
+
+        throw new IllegalStateException("The application did not answer " + FIRST_REQUEST +
+                                        ", see " + LOG);
+    }
+
+    /**
+     * Launch the application in a JVM of its own.
+     *
+     * @param jvmOption A JVM option, or null for none
+     * @param arguments The application arguments
+     * @return The process
+     */
+    private Process launch(String jvmOption, String... arguments) throws IOException {
+        List<String> command = new ArrayList<>();
+        command.add(new File(System.getProperty("java.home"), "bin/java").getPath());
+        if (jvmOption != null) {
+            command.add(jvmOption);
+        }
+        command.add("-jar");
+        command.add(jar.getPath());
+        command.addAll(Arrays.asList(arguments));
+        if (!"default".equals(profile)) {
+            command.add("--spring.profiles.active=" + profile);
+        }
+
+        return new ProcessBuilder(command).redirectErrorStream(true)
+                                          .redirectOutput(ProcessBuilder.Redirect.appendTo(LOG))
+                                          .start();
+    }
+
+    /**
+     * @return The status of a GET of the URL, or -1 if nothing is listening yet
+     */
+    private static int get(URL url) {
+        try {
+            return PageRequests.get(url);
+        } catch (IOException e) {
+            return -1;
+        }
+    }
+
+    private static int freePort() throws IOException {
+        try (ServerSocket socket = new ServerSocket(0)) {
+            return socket.getLocalPort();
+        }
+    }
+
+}
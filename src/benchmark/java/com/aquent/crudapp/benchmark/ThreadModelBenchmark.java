@@ -0,0 +1,117 @@
+package com.aquent.crudapp.benchmark;
+
+import com.aquent.crudapp.Application;
+import com.aquent.crudapp.threads.VirtualThreadConfiguration;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.boot.SpringApplication;
+import org.springframework.boot.web.context.WebServerApplicationContext;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.Duration;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Benchmark of the application serving many concurrent users on platform threads or on virtual
+ * threads, with -p threads=platform,virtual.
+ *
+ * The application runs in this JVM with its default connection pool. Each operation is one of
+ * {@link #USERS} concurrent requests for the person listing, all sent at once, so the throughput
+ * is in requests per second. Tomcat serves at most server.tomcat.threads.max (200) of them at a
+ * time on platform threads, and the rest wait in its queue; on virtual threads every request is
+ * taken on, and they wait for a connection instead. Virtual threads need Java 21 or later; on an
+ * older JVM the virtual trial fails rather than measure platform threads under its name.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 5)
+@Measurement(iterations = 5, time = 5)
+@Fork(value = 1, jvmArgsAppend = "-Xmx1g")
+public class ThreadModelBenchmark {
+
+    /** The number of users requesting at once */
+    private static final int USERS = 1_000;
+
+    @Param({"platform", "virtual"})
+    private String threads;
+
+    private ConfigurableApplicationContext context;
+
+    private ExecutorService clientExecutor;
+
+    private HttpClient client;
+
+    private HttpRequest request;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        context = SpringApplication.run(Application.class, "--server.port=0",
+                                        "--spring.main.banner-mode=off",
+                                        "--crudapp.threads.virtual=" + "virtual".equals(threads));
+        if ("virtual".equals(threads) &&
+            !context.getBean(VirtualThreadConfiguration.class).isServingOnVirtualThreads()) {
+            context.close();
+            throw new IllegalStateException("Java " +
+                                            System.getProperty("java.specification.version") +
+                                            " has no virtual threads; run -p threads=platform");
+        }
+        int port = ((WebServerApplicationContext) context).getWebServer().getPort();
+
+        clientExecutor = Executors.newFixedThreadPool(4);
+        client = HttpClient.newBuilder()
+                           .version(HttpClient.Version.HTTP_1_1)
+                           .executor(clientExecutor)
+                           .build();
+        request = HttpRequest.newBuilder(URI.create("http://localhost:" + port + "/person/list"))
+                             .timeout(Duration.ofMinutes(1))
+                             .build();
+    }
+
+    /**
+     * Stop the application, which also shuts down the executor of its virtual threads.
+     */
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        clientExecutor.shutdownNow();
+        context.close();
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(USERS)
+    public void concurrentUsers() {
+        CompletableFuture<?>[] responses = new CompletableFuture<?>[USERS];
+        for (int i = 0; i < USERS; i++) {
+            responses[i] = client.sendAsync(request, HttpResponse.BodyHandlers.discarding())
+                                 .thenAccept(response -> {
+                                     if (response.statusCode() != 200) {
+                                         throw new IllegalStateException(
+                                                 "GET /person/list answered " +
+                                                 response.statusCode());
+                                     }
+                                 });
+        }
+
+        CompletableFuture.allOf(responses).join();
+    }
+
+}
@@ -0,0 +1,96 @@
+package com.aquent.crudapp.assets;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Locale;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+import java.util.zip.Deflater;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Build step which writes a gzipped copy beside each compressible static asset, run by Maven
+ * once the resources are copied. It lives in src/build/java and is run from its source file by
+ * the java launcher, so it is not packaged with the application and it depends on nothing but
+ * the JDK.
+ *
+ * The resource chain serves file.css.gz in place of file.css to clients which accept gzip, so
+ * the assets are compressed once, at the best compression level, rather than on every response.
+ * Copies which would not be smaller than the file are not written. Brotli copies (file.css.br)
+ * are served the same way, and preferred, if they are added by a build with a Brotli encoder.
+ */
+public final class PrecompressAssets {
+
+    /** The extensions of the files worth compressing; images are compressed already */
+    private static final List<String> EXTENSIONS = Arrays.asList(".css", ".js", ".html", ".svg",
+                                                                 ".json", ".txt");
+
+    /** Files smaller than this fit in a packet or two either way */
+    private static final long MIN_SIZE = 1024;
+
+    private PrecompressAssets() {
+    }
+
+    /**
+     * @param args The directories holding the static assets
+     * @throws IOException if a file cannot be read or written
+     */
+    public static void main(String[] args) throws IOException {
+        for (String directory : args) {
+            Path root = Paths.get(directory);
+            if (!Files.isDirectory(root)) {
+                continue;
+            }
+
+            List<Path> files;
+            try (Stream<Path> walk = Files.walk(root)) {
+                files = walk.filter(PrecompressAssets::isCompressible).collect(Collectors.toList());
+            }
+
+            for (Path file : files) {
+                compress(file);
+            }
+        }
+    }
+
+    private static boolean isCompressible(Path file) {
+        String name = file.getFileName().toString().toLowerCase(Locale.ROOT);
+        try {
+            return Files.isRegularFile(file) && Files.size(file) >= MIN_SIZE
+                   && EXTENSIONS.stream().anyMatch(name::endsWith);
+        } catch (IOException e) {
+            return false;
+        }
+    }
+
+    private static void compress(Path file) throws IOException {
+        Path gzipped = file.resolveSibling(file.getFileName() + ".gz");
+        if (Files.exists(gzipped) && Files.getLastModifiedTime(gzipped).compareTo(
+                Files.getLastModifiedTime(file)) >= 0) {
+            return;
+        }
+
+        try (OutputStream out = new BestGZIPOutputStream(Files.newOutputStream(gzipped))) {
+            Files.copy(file, out);
+        }
+
+        if (Files.size(gzipped) >= Files.size(file)) {
+            Files.delete(gzipped);
+        }
+    }
+
+    private static final class BestGZIPOutputStream extends GZIPOutputStream {
+
+        BestGZIPOutputStream(OutputStream out) throws IOException {
+            super(out, 64 * 1024);
+            def.setLevel(Deflater.BEST_COMPRESSION);
+        }
+
+    }
+
+}
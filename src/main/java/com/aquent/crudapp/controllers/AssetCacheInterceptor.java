@@ -0,0 +1,44 @@
+package com.aquent.crudapp.controllers;
+
+import org.springframework.http.CacheControl;
+import org.springframework.http.HttpHeaders;
+import org.springframework.web.servlet.HandlerInterceptor;
+import org.springframework.web.servlet.resource.ResourceHttpRequestHandler;
+
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import java.util.concurrent.TimeUnit;
+import java.util.regex.Pattern;
+
+/**
+ * Sets the caching of static assets by whether the URL carries a content hash.
+ *
+ * The resource chain serves each file under static/ at a URL with the MD5 of its content, e.g.
+ * /bootstrap/css/bootstrap-&lt;md5&gt;.css, which Thymeleaf's @{...} links are rewritten to. A
+ * hashed URL never serves different content, so it may be cached for a year without being
+ * revalidated. The plain URL is still served for links which were not rewritten, but has to be
+ * revalidated on every use.
+ */
+class AssetCacheInterceptor implements HandlerInterceptor {
+
+    /** The end of a URL carrying the content hash of the file */
+    private static final Pattern HASHED_FILE_NAME = Pattern.compile("-[0-9a-f]{32}(\\.[^/.]+)?$");
+
+    private static final String HASHED = CacheControl.maxAge(365, TimeUnit.DAYS)
+                                                     .cachePublic()
+                                                     .getHeaderValue() + ", immutable";
+
+    private static final String PLAIN = CacheControl.noCache().cachePublic().getHeaderValue();
+
+    @Override
+    public boolean preHandle(HttpServletRequest request, HttpServletResponse response,
+                             Object handler) {
+        if (handler instanceof ResourceHttpRequestHandler) {
+            boolean hashed = HASHED_FILE_NAME.matcher(request.getRequestURI()).find();
+            response.setHeader(HttpHeaders.CACHE_CONTROL, hashed ? HASHED : PLAIN);
+        }
+
+        return true;
+    }
+
+}
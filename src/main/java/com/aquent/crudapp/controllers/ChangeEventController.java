@@ -0,0 +1,55 @@
+package com.aquent.crudapp.controllers;
+
+import com.aquent.crudapp.events.ChangeEventPublisher;
+import org.springframework.http.CacheControl;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RequestHeader;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.servlet.mvc.method.annotation.ResponseBodyEmitter;
+
+/**
+ * Server-Sent Events feed of the changes made to clients, persons and their associations, for
+ * other services to follow instead of polling the lists.
+ *
+ * Each event's data is a JSON change event and its id the event ID; see
+ * {@link ChangeEventPublisher}.
+ */
+@RestController
+@RequestMapping("api/events")
+public class ChangeEventController {
+
+    private final ChangeEventPublisher publisher;
+
+    /**
+     * Instantiates a ChangeEventController
+     *
+     * @param publisher The publisher of the feed
+     */
+    public ChangeEventController(ChangeEventPublisher publisher) {
+        this.publisher = publisher;
+    }
+
+    /**
+     * Streams the changes made from now on, or after a given event.
+     *
+     * @param lastEventId The ID of the last event received, sent by an EventSource which
+     *                    reconnects, to resume after
+     * @param after The same, for subscribers which cannot set headers
+     * @return The stream of events
+     */
+    @GetMapping(produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    public ResponseEntity<ResponseBodyEmitter> events(
+            @RequestHeader(value = "Last-Event-ID", required = false) Long lastEventId,
+            @RequestParam(required = false) Long after) {
+        return ResponseEntity.ok()
+                             .contentType(MediaType.TEXT_EVENT_STREAM)
+                             .cacheControl(CacheControl.noStore())
+                             .header("X-Accel-Buffering", "no")
+                             .body(publisher.subscribe(lastEventId != null ? lastEventId : after));
+    }
+
+}
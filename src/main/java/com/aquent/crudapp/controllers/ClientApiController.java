@@ -0,0 +1,27 @@
+package com.aquent.crudapp.controllers;
+
+import com.aquent.crudapp.interfaces.EntityService;
+import com.aquent.crudapp.model.Client;
+import com.aquent.crudapp.model.Person;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RestController;
+
+/**
+ * JSON API for client management operations; a client's associations are its contacts.
+ */
+@RestController
+@RequestMapping("api/clients")
+public class ClientApiController extends EntityApiController<Client, Person> {
+
+    /**
+     * Instantiates a ClientApiController
+     *
+     * @param entityService The EntityService<Client> for this controller
+     */
+    public ClientApiController(@Qualifier("clientService")
+                               EntityService<Client, Person> entityService) {
+        super(entityService);
+    }
+
+}
@@ -1,19 +1,37 @@
 package com.aquent.crudapp.controllers;
 
+import com.aquent.crudapp.export.EntityExports;
+import com.aquent.crudapp.export.ExportColumn;
+import com.aquent.crudapp.export.ExportFormat;
+import com.aquent.crudapp.importing.EntityImporter;
+import com.aquent.crudapp.importing.ImportReport;
 import com.aquent.crudapp.model.Client;
+import com.aquent.crudapp.model.ClientSummary;
+import com.aquent.crudapp.model.EntityWithAssociations;
+import com.aquent.crudapp.model.PageCursor;
 import com.aquent.crudapp.interfaces.EntityService;
+import com.aquent.crudapp.interfaces.EntitySummaryService;
 import com.aquent.crudapp.model.Person;
+import com.aquent.crudapp.model.PersonSummary;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.OptimisticLockingFailureException;
+import org.springframework.http.HttpStatus;
 import org.springframework.stereotype.Controller;
 import org.springframework.web.bind.annotation.GetMapping;
 import org.springframework.web.bind.annotation.PathVariable;
 import org.springframework.web.bind.annotation.PostMapping;
 import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.multipart.MultipartFile;
+import org.springframework.web.server.ResponseStatusException;
 import org.springframework.web.servlet.ModelAndView;
 
+import javax.servlet.http.HttpServletResponse;
+import java.io.IOException;
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.List;
 
 /**
@@ -45,17 +63,44 @@ public class ClientController {
 
     public static final String VIEW_REFERRER = "view";
 
+    /** The error shown when somebody else updated a client while it was being edited */
+    public static final String CONFLICT_MESSAGE = "Somebody else changed this client while you " +
+                                                  "were editing. Their changes are shown below " +
+                                                  "and yours were not saved; please make your " +
+                                                  "changes again.";
+
+    /** The number of clients on a page of the client listing */
+    public static final int PAGE_SIZE = 50;
+
+    /** The number of rows on a page of the listing and of the available associations */
+    @Value("${crudapp.render.page-size:" + PAGE_SIZE + "}")
+    private int pageSize;
+
+    /** The number of rows read by each query while a page is rendered */
+    @Value("${crudapp.render.chunk-size:" + PAGE_SIZE + "}")
+    private int chunkSize;
+
     @Autowired
     @Qualifier("clientService")
     private final EntityService<Client, Person> entityService;
 
+    private final EntitySummaryService<ClientSummary, PersonSummary> summaryService;
+
+    private final EntityImporter<Client> entityImporter;
+
     /**
      * Instantiates a ClientController
      *
      * @param entityService The EntityService<Client> for this controller
+     * @param summaryService The EntitySummaryService<ClientSummary> for the list and pickers
+     * @param entityImporter The importer for bulk CSV uploads of clients
      */
-    public ClientController(EntityService<Client, Person> entityService) {
+    public ClientController(EntityService<Client, Person> entityService,
+                            EntitySummaryService<ClientSummary, PersonSummary> summaryService,
+                            EntityImporter<Client> entityImporter) {
         this.entityService = entityService;
+        this.summaryService = summaryService;
+        this.entityImporter = entityImporter;
     }
 
     /**
@@ -96,14 +141,79 @@ public class ClientController {
     }
 
     /**
-     * Renders the client listing page.
+     * Renders a page of the client listing, reading the clients in chunks as it is rendered.
      *
-     * @return list view populated with the current list of clients
+     * @param cursor The token of the page cursor to seek from, absent for the first page
+     * @return list view populated with a page of clients
      */
     @GetMapping(value = "list")
-    public ModelAndView list() {
+    public ModelAndView list(@RequestParam(required = false) String cursor) {
+        StreamedPage<ClientSummary> page = new StreamedPage<>(PageCursors.fromParameter(cursor),
+                                                          pageSize, chunkSize,
+                                                          summaryService::listSummaries);
         ModelAndView modelAndView = new ModelAndView("client/list");
-        modelAndView.addObject("clients", entityService.listEntities());
+        modelAndView.addObject("clients", page);
+        modelAndView.addObject("page", page);
+        return modelAndView;
+    }
+
+    /**
+     * Streams every client record as an attachment, without loading the records into memory.
+     *
+     * @param format "ndjson" for newline delimited JSON, or "csv"
+     * @param gzip true to gzip the response body
+     * @param response the response to stream the client records into
+     * @throws IOException if the response cannot be written
+     */
+    @GetMapping(value = "export")
+    public void export(@RequestParam(defaultValue = "ndjson") String format,
+                       @RequestParam(defaultValue = "false") boolean gzip,
+                       HttpServletResponse response) throws IOException {
+        ExportFormat exportFormat;
+
+        try {
+            exportFormat = ExportFormat.fromExtension(format);
+        } catch (IllegalArgumentException e) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, e.getMessage(), e);
+        }
+
+        EntityExports.stream(response, "clients", exportFormat, gzip, ExportColumn.CLIENT_COLUMNS,
+                             entityService::forEachEntity);
+    }
+
+    /**
+     * Renders the bulk import upload form.
+     *
+     * @return the import view
+     */
+    @GetMapping(value = "import")
+    public ModelAndView importForm() {
+        ModelAndView modelAndView = new ModelAndView("client/import");
+        modelAndView.addObject("errors", new ArrayList<String>());
+        return modelAndView;
+    }
+
+    /**
+     * Imports clients from an uploaded CSV file, which starts with a header row naming the client
+     * property of each column, and renders a report of the rows imported and rejected.
+     *
+     * @param file the uploaded CSV file
+     * @return the import view with the report, or with an error if the file cannot be imported
+     * @throws IOException if the upload cannot be read
+     */
+    @PostMapping(value = "import")
+    public ModelAndView importCsv(@RequestParam MultipartFile file) throws IOException {
+        ModelAndView modelAndView = new ModelAndView("client/import");
+        List<String> errors = new ArrayList<>();
+
+        try {
+            ImportReport report = entityImporter.importCsv(file.getInputStream());
+            modelAndView.addObject("report", report);
+        } catch (IllegalArgumentException e) {
+            errors.add(e.getMessage());
+        }
+
+        modelAndView.addObject("errors", errors);
         return modelAndView;
     }
 
@@ -115,9 +225,11 @@ public class ClientController {
      */
     @GetMapping(value = "client-view/{entityId}")
     public ModelAndView viewClient(@PathVariable Integer entityId) {
+        EntityWithAssociations<Client, Person> client =
+                entityService.readEntityWithAssociations(entityId);
         ModelAndView modelAndView = new ModelAndView("client/client-view");
-        modelAndView.addObject("client", entityService.readEntity(entityId));
-        modelAndView.addObject("contacts", entityService.getAssociations(entityId));
+        modelAndView.addObject("client", client.getEntity());
+        modelAndView.addObject("contacts", client.getAssociations());
         return modelAndView;
     }
 
@@ -129,10 +241,8 @@ public class ClientController {
      */
     @GetMapping(value = "edit/{entityId}")
     public ModelAndView edit(@PathVariable Integer entityId) {
-        ModelAndView modelAndView = new ModelAndView("client/edit");
-        modelAndView.addObject("client", entityService.readEntity(entityId));
-        modelAndView.addObject("errors", new ArrayList<String>());
-        return modelAndView;
+        return editView(entityService.readEntityWithAssociations(entityId),
+                        new ArrayList<String>());
     }
 
     /**
@@ -149,10 +259,24 @@ public class ClientController {
         } else if (REMOVE_CONTACT.equals(command)) {
             entityService.removeAssociation(entityId, associatedEntityId);
         }
-        ModelAndView mav = new ModelAndView("client/edit");
-        mav.addObject("client", entityService.readEntity(entityId));
-        mav.addObject("errors", new ArrayList<String>());
-        return mav;
+        return editView(entityService.readEntityWithAssociations(entityId),
+                        new ArrayList<String>());
+    }
+
+    /**
+     * Saves the contacts chosen in the edit page's multi-select with one request, then redirects
+     * back to editing the client.
+     *
+     * @param entityId The ID of the client
+     * @param contactIds The IDs of every person who should be a contact, absent if none
+     * @return A redirect
+     */
+    @PostMapping(value = "contacts")
+    public String saveContacts(@RequestParam Integer entityId,
+                               @RequestParam(required = false) List<Integer> contactIds) {
+        entityService.syncAssociations(entityId, contactIds == null ?
+                                                 Collections.<Integer>emptyList() : contactIds);
+        return "redirect:/client/edit/" + entityId;
     }
 
     /**
@@ -162,7 +286,9 @@ public class ClientController {
      *      the available contacts view, the current contacts view, or the client listing page
      * depending on the value of the parameter "command" In any case any changed data is saved.
      *
-     * On failure, the form is redisplayed with the validation errors.
+     * On failure, the form is redisplayed with the validation errors. If somebody else has
+     * updated the client since the form was rendered, nothing is saved and the form is
+     * redisplayed with their values, alongside the values submitted.
      *
      * @param client populated form bean for the client
      * @param command "Add Contact" to render available contact view, "See/Remove Contacts" to
@@ -176,27 +302,26 @@ public class ClientController {
         ModelAndView modelAndView;
 
         if (errors.isEmpty()) {
-            entityService.updateEntity(client);
+            try {
+                entityService.updateEntity(client);
+            } catch (OptimisticLockingFailureException e) {
+                return conflictView(client);
+            }
+
             if (ADD_CONTACT.equalsIgnoreCase(command)) {
-                modelAndView = new ModelAndView("client/available-contacts");
-                modelAndView.addObject("client", entityService.readEntity(client.getEntityId()));
-                modelAndView.addObject("contacts",
-                                       entityService.getAvailableAssociations(
-                                               client.getEntityId()));
-                modelAndView.addObject("referrer", EDIT_REFERRER);
+                modelAndView = availableView(client.getEntityId(), null, EDIT_REFERRER);
             } else if (SEE_REMOVE.equalsIgnoreCase(command)) {
+                EntityWithAssociations<Client, Person> read =
+                        entityService.readEntityWithAssociations(client.getEntityId());
                 modelAndView = new ModelAndView("client/current-contacts-editing");
-                modelAndView.addObject("client", entityService.readEntity(client.getEntityId()));
-                modelAndView.addObject("contacts",
-                                       entityService.getAssociations(client.getEntityId()));
+                modelAndView.addObject("client", read.getEntity());
+                modelAndView.addObject("contacts", read.getAssociations());
                 modelAndView.addObject("referrer", EDIT_REFERRER);
             } else {
                 modelAndView = new ModelAndView("redirect:/client/list");
             }
         } else {
-            modelAndView = new ModelAndView("client/edit");
-            modelAndView.addObject("client", client);
-            modelAndView.addObject("errors", errors);
+            modelAndView = editView(client, errors);
         }
 
         return modelAndView;
@@ -265,19 +390,18 @@ public class ClientController {
     }
 
     /**
-     * Render the view for all available Person's a Client is not associated with.
+     * Render the view for a page of the available Person's a Client is not associated with.
      *
-     * @param entityId The ID of the Client to view available contacts for
+     * @param entityId The ID of the Client to view available Person contacts for
+     * @param cursor The token of the page cursor to seek from, absent for the first page
+     * @param referrer The page to return to, "view" or "edit"
      * @return The view of available Person contacts
      */
     @GetMapping(value = "available-contacts/{entityId}")
-    public ModelAndView seeAvailable(@PathVariable Integer entityId) {
-        ModelAndView modelAndView = new ModelAndView("client/available-contacts");
-        modelAndView.addObject("client", entityService.readEntity(entityId));
-        modelAndView.addObject("contacts",
-                               entityService.getAvailableAssociations(entityId));
-        modelAndView.addObject("referrer", VIEW_REFERRER);
-        return modelAndView;
+    public ModelAndView seeAvailable(@PathVariable Integer entityId,
+                                     @RequestParam(required = false) String cursor,
+                                     @RequestParam(defaultValue = VIEW_REFERRER) String referrer) {
+        return availableView(entityId, PageCursors.fromParameter(cursor), referrer);
     }
 
     /**
@@ -307,4 +431,77 @@ public class ClientController {
         return "redirect:/client/client-view/" + entityId;
     }
 
+    /**
+     * Build the view of a page of the Person contacts available to a client, ordered by first and
+     * last name. The contacts are read in chunks as the page is rendered.
+     *
+     * @param entityId The ID of the client
+     * @param cursor The cursor to seek from, or null for the first page
+     * @param referrer The page to return to, "view" or "edit"
+     * @return The view of available Person contacts
+     */
+    private ModelAndView availableView(Integer entityId, PageCursor cursor, String referrer) {
+        StreamedPage<PersonSummary> contacts = new StreamedPage<>(
+                cursor, pageSize, chunkSize,
+                (from, limit) -> summaryService.getAvailableAssociationSummaries(entityId, from,
+                                                                                 limit));
+        ModelAndView modelAndView = new ModelAndView("client/available-contacts");
+        modelAndView.addObject("client", entityService.readEntity(entityId));
+        modelAndView.addObject("referrer", referrer);
+        modelAndView.addObject("contacts", contacts);
+        return modelAndView;
+    }
+
+    /**
+     * Renders the edit page for a client which somebody else updated after the form was
+     * rendered, showing their values, with the submitted values beside any that differ.
+     *
+     * @param submitted The values submitted, with the version which was read
+     * @return The edit view
+     */
+    private ModelAndView conflictView(Client submitted) {
+        ModelAndView modelAndView = editView(
+                entityService.readEntityWithAssociations(submitted.getEntityId()),
+                Collections.singletonList(CONFLICT_MESSAGE));
+        modelAndView.addObject("submitted", submitted);
+        return modelAndView;
+    }
+
+    /**
+     * Build the edit view for a client, reading the contacts of the client.
+     */
+    private ModelAndView editView(Client client, List<String> errors) {
+        return editView(client, entityService.getAssociations(client.getEntityId()), errors);
+    }
+
+    /**
+     * Build the edit view for a client read together with the contacts of the client.
+     */
+    private ModelAndView editView(EntityWithAssociations<Client, Person> client,
+                                  List<String> errors) {
+        return editView(client.getEntity(), client.getAssociations(), errors);
+    }
+
+    /**
+     * Build the edit view for a client, with the current and available contacts offered by the
+     * contacts multi-select. Every available person is offered, so that any number of contacts
+     * can be saved at once; they are read in chunks as the multi-select is rendered.
+     *
+     * @param client The client to edit
+     * @param contacts The contacts of the client
+     * @param errors Validation errors to display
+     * @return The edit view
+     */
+    private ModelAndView editView(Client client, List<Person> contacts, List<String> errors) {
+        ModelAndView modelAndView = new ModelAndView("client/edit");
+        modelAndView.addObject("client", client);
+        modelAndView.addObject("errors", errors);
+        modelAndView.addObject("contacts", contacts);
+        modelAndView.addObject("availableContacts", new StreamedPage<>(
+                null, Integer.MAX_VALUE, chunkSize,
+                (from, limit) -> summaryService.getAvailableAssociationSummaries(
+                        client.getEntityId(), from, limit)));
+        return modelAndView;
+    }
+
 }
@@ -0,0 +1,352 @@
+package com.aquent.crudapp.controllers;
+
+import com.aquent.crudapp.interfaces.EntityService;
+import com.aquent.crudapp.model.AbstractEntityWithAddress;
+import com.aquent.crudapp.model.Page;
+import com.aquent.crudapp.model.PageCursor;
+import org.springframework.dao.EmptyResultDataAccessException;
+import org.springframework.dao.OptimisticLockingFailureException;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.util.DigestUtils;
+import org.springframework.web.bind.annotation.DeleteMapping;
+import org.springframework.web.bind.annotation.ExceptionHandler;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.PutMapping;
+import org.springframework.web.bind.annotation.RequestBody;
+import org.springframework.web.bind.annotation.RequestHeader;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.ResponseStatus;
+import org.springframework.web.context.request.WebRequest;
+import org.springframework.web.server.ResponseStatusException;
+import org.springframework.web.servlet.support.ServletUriComponentsBuilder;
+
+import java.net.URI;
+import java.nio.charset.StandardCharsets;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * JSON endpoints over the operations of an {@link EntityService}, shared by the client and person
+ * APIs.
+ *
+ * Reads answer with a strong ETag derived from the ID and version of every entity in the
+ * response, which changes whenever one of them is updated, created or deleted, and answer
+ * 304 Not Modified when the request's If-None-Match matches it, so polling costs one query and no
+ * serialization. Updates are compare-and-set against the version in If-Match, or in the body if
+ * there is no If-Match.
+ *
+ * @param <E> The type of entity served
+ * @param <T> The type of entity it is associated with
+ */
+public abstract class EntityApiController<E extends AbstractEntityWithAddress,
+                                          T extends AbstractEntityWithAddress> {
+
+    /** The number of entities on a page when the request does not ask for a size */
+    public static final int DEFAULT_PAGE_SIZE = 50;
+
+    /** The largest number of entities served on one page */
+    public static final int MAX_PAGE_SIZE = 500;
+
+    private final EntityService<E, T> entityService;
+
+    /**
+     * @param entityService The service whose operations are exposed
+     */
+    protected EntityApiController(EntityService<E, T> entityService) {
+        this.entityService = entityService;
+    }
+
+    /**
+     * A page of entities, with the cursor tokens of the pages either side.
+     *
+     * @param <E> The type of entity
+     */
+    public static class EntityPage<E> {
+
+        private final List<E> items;
+
+        private final String previousCursor;
+
+        private final String nextCursor;
+
+        EntityPage(Page<E> page) {
+            this.items = page.getItems();
+            this.previousCursor = page.hasPrevious() ? page.getPreviousCursor().getToken() : null;
+            this.nextCursor = page.hasNext() ? page.getNextCursor().getToken() : null;
+        }
+
+        public List<E> getItems() {
+            return items;
+        }
+
+        public String getPreviousCursor() {
+            return previousCursor;
+        }
+
+        public String getNextCursor() {
+            return nextCursor;
+        }
+
+    }
+
+    /**
+     * Lists a page of entities, in the listing order of the HTML pages.
+     *
+     * @param cursor The token of the page cursor to seek from, absent for the first page
+     * @param size The number of entities on the page, at most {@link #MAX_PAGE_SIZE}
+     * @param request The request, checked for If-None-Match
+     * @return The page, or null if the client's copy is not modified
+     */
+    @GetMapping
+    public EntityPage<E> list(@RequestParam(required = false) String cursor,
+                              @RequestParam(defaultValue = "" + DEFAULT_PAGE_SIZE) int size,
+                              WebRequest request) {
+        PageCursor pageCursor = PageCursors.fromParameter(cursor);
+        Page<E> page = entityService.listEntities(pageCursor, pageSize(size));
+        EntityPage<E> entityPage = new EntityPage<>(page);
+
+        String etag = etag(page.getItems(), entityPage.getPreviousCursor(),
+                           entityPage.getNextCursor());
+        return request.checkNotModified(etag) ? null : entityPage;
+    }
+
+    /**
+     * Reads one entity.
+     *
+     * @param entityId The ID of the entity
+     * @param request The request, checked for If-None-Match
+     * @return The entity, or null if the client's copy is not modified
+     */
+    @GetMapping("{entityId}")
+    public E read(@PathVariable Integer entityId, WebRequest request) {
+        E entity = entityService.readEntity(entityId);
+        return request.checkNotModified(etag(entity)) ? null : entity;
+    }
+
+    /**
+     * Validates and creates an entity.
+     *
+     * @param entity The values to save; any ID or version is ignored
+     * @return 201 Created with the entity as saved, or 400 Bad Request with the validation errors
+     */
+    @PostMapping
+    public ResponseEntity<?> create(@RequestBody E entity) {
+        entity.setEntityId(null);
+        entity.setVersion(null);
+
+        List<String> errors = entityService.validateEntity(entity);
+        if (!errors.isEmpty()) {
+            return badRequest(errors);
+        }
+
+        E created = entityService.readEntity(entityService.createEntity(entity));
+        URI location = ServletUriComponentsBuilder.fromCurrentRequest()
+                                                  .path("/{entityId}")
+                                                  .buildAndExpand(created.getEntityId())
+                                                  .toUri();
+        return ResponseEntity.created(location).eTag(etag(created)).body(created);
+    }
+
+    /**
+     * Validates and updates an entity, provided it is still at the version the client read.
+     *
+     * @param entityId The ID of the entity
+     * @param ifMatch The ETag of the entity as the client read it, absent to use the version in
+     *                the body instead
+     * @param entity The new values to save
+     * @return The entity as saved; 400 Bad Request with the validation errors; 412 Precondition
+     *         Failed, or 409 Conflict without If-Match, if the entity has been updated since it
+     *         was read; or 428 Precondition Required if no version was given
+     */
+    @PutMapping("{entityId}")
+    public ResponseEntity<?> update(@PathVariable Integer entityId,
+                                    @RequestHeader(value = HttpHeaders.IF_MATCH, required = false)
+                                    String ifMatch,
+                                    @RequestBody E entity) {
+        entity.setEntityId(entityId);
+        if (ifMatch != null) {
+            entity.setVersion(versionOf(entityId, ifMatch));
+        }
+
+        if (entity.getVersion() == null) {
+            throw new ResponseStatusException(HttpStatus.PRECONDITION_REQUIRED,
+                                              "Updates need If-Match or a version");
+        }
+
+        List<String> errors = entityService.validateEntity(entity);
+        if (!errors.isEmpty()) {
+            return badRequest(errors);
+        }
+
+        try {
+            entityService.updateEntity(entity);
+        } catch (OptimisticLockingFailureException e) {
+            throw new ResponseStatusException(ifMatch != null ? HttpStatus.PRECONDITION_FAILED :
+                                              HttpStatus.CONFLICT, e.getMessage(), e);
+        }
+
+        return ResponseEntity.ok().eTag(etag(entity)).body(entity);
+    }
+
+    /**
+     * Deletes an entity.
+     *
+     * @param entityId The ID of the entity
+     */
+    @DeleteMapping("{entityId}")
+    @ResponseStatus(HttpStatus.NO_CONTENT)
+    public void delete(@PathVariable Integer entityId) {
+        entityService.deleteEntity(entityId);
+    }
+
+    /**
+     * Lists the entities associated with an entity.
+     *
+     * @param entityId The ID of the entity
+     * @param request The request, checked for If-None-Match
+     * @return The associated entities, or null if the client's copy is not modified
+     */
+    @GetMapping("{entityId}/associations")
+    public List<T> associations(@PathVariable Integer entityId, WebRequest request) {
+        List<T> associations = entityService.getAssociations(entityId);
+        return request.checkNotModified(etag(associations)) ? null : associations;
+    }
+
+    /**
+     * Lists a page of the entities not associated with an entity, in their listing order.
+     *
+     * @param entityId The ID of the entity
+     * @param cursor The token of the page cursor to seek from, absent for the first page
+     * @param size The number of entities on the page, at most {@link #MAX_PAGE_SIZE}
+     * @param request The request, checked for If-None-Match
+     * @return The page, or null if the client's copy is not modified
+     */
+    @GetMapping("{entityId}/available-associations")
+    public EntityPage<T> availableAssociations(@PathVariable Integer entityId,
+                                               @RequestParam(required = false) String cursor,
+                                               @RequestParam(defaultValue = "" +
+                                                                            DEFAULT_PAGE_SIZE)
+                                               int size,
+                                               WebRequest request) {
+        Page<T> page = entityService.getAvailableAssociations(
+                entityId, PageCursors.fromParameter(cursor), pageSize(size));
+        EntityPage<T> entityPage = new EntityPage<>(page);
+
+        String etag = etag(page.getItems(), entityPage.getPreviousCursor(),
+                           entityPage.getNextCursor());
+        return request.checkNotModified(etag) ? null : entityPage;
+    }
+
+    /**
+     * Makes an entity associated with exactly a given set of entities.
+     *
+     * @param entityId The ID of the entity
+     * @param associatedEntityIds The IDs of all the entities which should be associated
+     */
+    @PutMapping("{entityId}/associations")
+    @ResponseStatus(HttpStatus.NO_CONTENT)
+    public void syncAssociations(@PathVariable Integer entityId,
+                                 @RequestBody List<Integer> associatedEntityIds) {
+        entityService.syncAssociations(entityId, associatedEntityIds);
+    }
+
+    /**
+     * Associates an entity with another.
+     *
+     * @param entityId The ID of the entity
+     * @param associatedEntityId The ID of the entity to associate
+     */
+    @PutMapping("{entityId}/associations/{associatedEntityId}")
+    @ResponseStatus(HttpStatus.NO_CONTENT)
+    public void addAssociation(@PathVariable Integer entityId,
+                               @PathVariable Integer associatedEntityId) {
+        entityService.addAssociation(entityId, associatedEntityId);
+    }
+
+    /**
+     * Removes the association of an entity with another.
+     *
+     * @param entityId The ID of the entity
+     * @param associatedEntityId The ID of the associated entity
+     */
+    @DeleteMapping("{entityId}/associations/{associatedEntityId}")
+    @ResponseStatus(HttpStatus.NO_CONTENT)
+    public void removeAssociation(@PathVariable Integer entityId,
+                                  @PathVariable Integer associatedEntityId) {
+        entityService.removeAssociation(entityId, associatedEntityId);
+    }
+
+    /**
+     * Answers 404 Not Found for an entity which does not exist.
+     */
+    @ExceptionHandler(EmptyResultDataAccessException.class)
+    @ResponseStatus(HttpStatus.NOT_FOUND)
+    public void notFound() {
+    }
+
+    /**
+     * The ETag of one entity: its ID and version, which is incremented by every update.
+     */
+    static String etag(AbstractEntityWithAddress entity) {
+        return "\"" + entity.getEntityId() + "." + entity.getVersion() + "\"";
+    }
+
+    /**
+     * The ETag of a list of entities: a digest of the ID and version of each entity, in order,
+     * and of any further parts of the response, such as cursor tokens.
+     */
+    static String etag(Collection<? extends AbstractEntityWithAddress> entities,
+                       String... parts) {
+        StringBuilder state = new StringBuilder(entities.size() * 12);
+        for (AbstractEntityWithAddress entity : entities) {
+            state.append(entity.getEntityId()).append('.').append(entity.getVersion()).append(',');
+        }
+        for (String part : parts) {
+            state.append(';').append(part);
+        }
+
+        return "\"" + DigestUtils.md5DigestAsHex(state.toString()
+                                                      .getBytes(StandardCharsets.UTF_8)) + "\"";
+    }
+
+    /**
+     * Reads the version out of an If-Match ETag of an entity.
+     *
+     * @throws ResponseStatusException with status 412 if the ETag is not one of the entity's
+     */
+    private static Integer versionOf(Integer entityId, String ifMatch) {
+        String prefix = "\"" + entityId + ".";
+        String etag = ifMatch.trim();
+
+        if (etag.startsWith(prefix) && etag.endsWith("\"") && etag.length() > prefix.length() + 1) {
+            try {
+                return Integer.valueOf(etag.substring(prefix.length(), etag.length() - 1));
+            } catch (NumberFormatException e) {
+                // fall through to the precondition failure
+            }
+        }
+
+        throw new ResponseStatusException(HttpStatus.PRECONDITION_FAILED,
+                                          "If-Match is not an ETag of entity " + entityId);
+    }
+
+    private static int pageSize(int size) {
+        if (size < 1 || size > MAX_PAGE_SIZE) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST,
+                                              "size must be between 1 and " + MAX_PAGE_SIZE);
+        }
+
+        return size;
+    }
+
+    private static ResponseEntity<Map<String, List<String>>> badRequest(List<String> errors) {
+        return ResponseEntity.badRequest().body(Collections.singletonMap("errors", errors));
+    }
+
+}
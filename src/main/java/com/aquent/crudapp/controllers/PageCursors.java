@@ -0,0 +1,34 @@
+package com.aquent.crudapp.controllers;
+
+import com.aquent.crudapp.model.PageCursor;
+import org.springframework.http.HttpStatus;
+import org.springframework.web.server.ResponseStatusException;
+
+/**
+ * Conversion of page cursor request parameters for the listing controllers.
+ */
+final class PageCursors {
+
+    private PageCursors() {
+    }
+
+    /**
+     * Decode a page cursor token from a request parameter.
+     *
+     * @param token The cursor token, may be null
+     * @return The cursor, or null for the first page
+     * @throws ResponseStatusException with status 400 if the token is not a valid cursor
+     */
+    static PageCursor fromParameter(String token) {
+        if (token == null || token.isEmpty()) {
+            return null;
+        }
+
+        try {
+            return PageCursor.decode(token);
+        } catch (IllegalArgumentException e) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "Invalid page cursor", e);
+        }
+    }
+
+}
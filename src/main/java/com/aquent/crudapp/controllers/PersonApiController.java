@@ -0,0 +1,28 @@
+package com.aquent.crudapp.controllers;
+
+import com.aquent.crudapp.interfaces.EntityService;
+import com.aquent.crudapp.model.Client;
+import com.aquent.crudapp.model.Person;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RestController;
+
+/**
+ * JSON API for person management operations; a person's associations are the clients they are a
+ * contact of.
+ */
+@RestController
+@RequestMapping("api/people")
+public class PersonApiController extends EntityApiController<Person, Client> {
+
+    /**
+     * Instantiates a PersonApiController
+     *
+     * @param entityService The EntityService<Person> for this controller
+     */
+    public PersonApiController(@Qualifier("personService")
+                               EntityService<Person, Client> entityService) {
+        super(entityService);
+    }
+
+}
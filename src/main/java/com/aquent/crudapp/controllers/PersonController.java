@@ -1,19 +1,37 @@
 package com.aquent.crudapp.controllers;
 
+import java.io.IOException;
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.List;
+import javax.servlet.http.HttpServletResponse;
 
+import com.aquent.crudapp.export.EntityExports;
+import com.aquent.crudapp.export.ExportColumn;
+import com.aquent.crudapp.export.ExportFormat;
+import com.aquent.crudapp.importing.EntityImporter;
+import com.aquent.crudapp.importing.ImportReport;
 import com.aquent.crudapp.model.Client;
+import com.aquent.crudapp.model.ClientSummary;
+import com.aquent.crudapp.model.EntityWithAssociations;
+import com.aquent.crudapp.model.PageCursor;
 import com.aquent.crudapp.interfaces.EntityService;
+import com.aquent.crudapp.interfaces.EntitySummaryService;
 import com.aquent.crudapp.model.Person;
+import com.aquent.crudapp.model.PersonSummary;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.OptimisticLockingFailureException;
+import org.springframework.http.HttpStatus;
 import org.springframework.stereotype.Controller;
 import org.springframework.web.bind.annotation.GetMapping;
 import org.springframework.web.bind.annotation.PathVariable;
 import org.springframework.web.bind.annotation.PostMapping;
 import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.multipart.MultipartFile;
+import org.springframework.web.server.ResponseStatusException;
 import org.springframework.web.servlet.ModelAndView;
 
 /**
@@ -45,31 +63,123 @@ public class PersonController {
 
     public static final String VIEW_REFERRER = "view";
 
+    /** The error shown when somebody else updated a person while it was being edited */
+    public static final String CONFLICT_MESSAGE = "Somebody else changed this person while you " +
+                                                  "were editing. Their changes are shown below " +
+                                                  "and yours were not saved; please make your " +
+                                                  "changes again.";
+
+    /** The number of people on a page of the person listing */
+    public static final int PAGE_SIZE = 50;
+
+    /** The number of rows on a page of the listing and of the available associations */
+    @Value("${crudapp.render.page-size:" + PAGE_SIZE + "}")
+    private int pageSize;
+
+    /** The number of rows read by each query while a page is rendered */
+    @Value("${crudapp.render.chunk-size:" + PAGE_SIZE + "}")
+    private int chunkSize;
+
     @Autowired
     @Qualifier("personService")
     private final EntityService<Person, Client> entityService;
 
-    public PersonController(EntityService<Person, Client> entityService) {
+    private final EntitySummaryService<PersonSummary, ClientSummary> summaryService;
+
+    private final EntityImporter<Person> entityImporter;
+
+    public PersonController(EntityService<Person, Client> entityService,
+                            EntitySummaryService<PersonSummary, ClientSummary> summaryService,
+                            EntityImporter<Person> entityImporter) {
         this.entityService = entityService;
+        this.summaryService = summaryService;
+        this.entityImporter = entityImporter;
     }
 
     /**
-     * Renders the person listing page.
+     * Renders a page of the person listing, reading the people in chunks as it is rendered.
      *
-     * @return list view populated with the current list of people
+     * @param cursor The token of the page cursor to seek from, absent for the first page
+     * @return list view populated with a page of people
      */
     @GetMapping(value = "list")
-    public ModelAndView list() {
+    public ModelAndView list(@RequestParam(required = false) String cursor) {
+        StreamedPage<PersonSummary> page = new StreamedPage<>(PageCursors.fromParameter(cursor),
+                                                          pageSize, chunkSize,
+                                                          summaryService::listSummaries);
         ModelAndView mav = new ModelAndView("person/list");
-        mav.addObject("persons", entityService.listEntities());
+        mav.addObject("persons", page);
+        mav.addObject("page", page);
         return mav;
     }
 
+    /**
+     * Streams every person record as an attachment, without loading the records into memory.
+     *
+     * @param format "ndjson" for newline delimited JSON, or "csv"
+     * @param gzip true to gzip the response body
+     * @param response the response to stream the person records into
+     * @throws IOException if the response cannot be written
+     */
+    @GetMapping(value = "export")
+    public void export(@RequestParam(defaultValue = "ndjson") String format,
+                       @RequestParam(defaultValue = "false") boolean gzip,
+                       HttpServletResponse response) throws IOException {
+        ExportFormat exportFormat;
+
+        try {
+            exportFormat = ExportFormat.fromExtension(format);
+        } catch (IllegalArgumentException e) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, e.getMessage(), e);
+        }
+
+        EntityExports.stream(response, "people", exportFormat, gzip, ExportColumn.PERSON_COLUMNS,
+                             entityService::forEachEntity);
+    }
+
+    /**
+     * Renders the bulk import upload form.
+     *
+     * @return the import view
+     */
+    @GetMapping(value = "import")
+    public ModelAndView importForm() {
+        ModelAndView modelAndView = new ModelAndView("person/import");
+        modelAndView.addObject("errors", new ArrayList<String>());
+        return modelAndView;
+    }
+
+    /**
+     * Imports people from an uploaded CSV file, which starts with a header row naming the person
+     * property of each column, and renders a report of the rows imported and rejected.
+     *
+     * @param file the uploaded CSV file
+     * @return the import view with the report, or with an error if the file cannot be imported
+     * @throws IOException if the upload cannot be read
+     */
+    @PostMapping(value = "import")
+    public ModelAndView importCsv(@RequestParam MultipartFile file) throws IOException {
+        ModelAndView modelAndView = new ModelAndView("person/import");
+        List<String> errors = new ArrayList<>();
+
+        try {
+            ImportReport report = entityImporter.importCsv(file.getInputStream());
+            modelAndView.addObject("report", report);
+        } catch (IllegalArgumentException e) {
+            errors.add(e.getMessage());
+        }
+
+        modelAndView.addObject("errors", errors);
+        return modelAndView;
+    }
+
     @GetMapping(value = "person-view/{entityId}")
     public ModelAndView viewPerson(@PathVariable Integer entityId) {
+        EntityWithAssociations<Person, Client> person =
+                entityService.readEntityWithAssociations(entityId);
         ModelAndView modelAndView = new ModelAndView("person/person-view");
-        modelAndView.addObject("person", entityService.readEntity(entityId));
-        modelAndView.addObject("clients", entityService.getAssociations(entityId));
+        modelAndView.addObject("person", person.getEntity());
+        modelAndView.addObject("clients", person.getAssociations());
         return modelAndView;
     }
 
@@ -116,10 +226,8 @@ public class PersonController {
      */
     @GetMapping(value = "edit/{entityId}")
     public ModelAndView edit(@PathVariable Integer entityId) {
-        ModelAndView mav = new ModelAndView("person/edit");
-        mav.addObject("person", entityService.readEntity(entityId));
-        mav.addObject("errors", new ArrayList<String>());
-        return mav;
+        return editView(entityService.readEntityWithAssociations(entityId),
+                        new ArrayList<String>());
     }
 
     /**
@@ -136,10 +244,25 @@ public class PersonController {
         } else if (REMOVE_CLIENT.equals(command)) {
             entityService.removeAssociation(entityId, associatedEntityId);
         }
-        ModelAndView mav = new ModelAndView("person/edit");
-        mav.addObject("person", entityService.readEntity(entityId));
-        mav.addObject("errors", new ArrayList<String>());
-        return mav;
+        return editView(entityService.readEntityWithAssociations(entityId),
+                        new ArrayList<String>());
+    }
+
+    /**
+     * Saves the clients chosen in the edit page's multi-select with one request, then redirects
+     * back to editing the person.
+     *
+     * @param entityId The ID of the person
+     * @param clientIds The IDs of every client the person should be associated with, absent if
+     *                  none
+     * @return A redirect
+     */
+    @PostMapping(value = "clients")
+    public String saveClients(@RequestParam Integer entityId,
+                              @RequestParam(required = false) List<Integer> clientIds) {
+        entityService.syncAssociations(entityId, clientIds == null ?
+                                                 Collections.<Integer>emptyList() : clientIds);
+        return "redirect:/person/edit/" + entityId;
     }
 
     /**
@@ -150,7 +273,9 @@ public class PersonController {
      *      page depending on the value of the parameter "command" In any case any changed data is
      *      saved.
      *
-     * On failure, the form is redisplayed with the validation errors.
+     * On failure, the form is redisplayed with the validation errors. If somebody else has
+     * updated the person since the form was rendered, nothing is saved and the form is
+     * redisplayed with their values, alongside the values submitted.
      *
      * @param person populated form bean for the client
      * @param command "Add Client" to render available contact view, "See/Remove Clients" to
@@ -162,31 +287,27 @@ public class PersonController {
     public ModelAndView edit(Person person, @RequestParam String command) {
         List<String> errors = entityService.validateEntity(person);
         if (errors.isEmpty()) {
-            entityService.updateEntity(person);
+            try {
+                entityService.updateEntity(person);
+            } catch (OptimisticLockingFailureException e) {
+                return conflictView(person);
+            }
+
             if (ADD_CLIENT.equals(command)) {
-                ModelAndView modelAndView = new ModelAndView("person/available-clients");
-                modelAndView.addObject("person", entityService.readEntity(person.getEntityId()));
-                modelAndView.addObject("clients",
-                                       entityService.getAvailableAssociations(
-                                               person.getEntityId()));
-                modelAndView.addObject("referrer", EDIT_REFERRER);
-                return modelAndView;
+                return availableView(person.getEntityId(), null, EDIT_REFERRER);
             } else if (SEE_REMOVE.equals(command)) {
+                EntityWithAssociations<Person, Client> read =
+                        entityService.readEntityWithAssociations(person.getEntityId());
                 ModelAndView modelAndView = new ModelAndView("person/current-clients-editing");
-                modelAndView.addObject("person", entityService.readEntity(person.getEntityId()));
-                modelAndView.addObject("clients",
-                                       entityService.getAssociations(
-                                               person.getEntityId()));
+                modelAndView.addObject("person", read.getEntity());
+                modelAndView.addObject("clients", read.getAssociations());
                 modelAndView.addObject("referrer", EDIT_REFERRER);
                 return modelAndView;
             } else {
                 return new ModelAndView("redirect:/person/list");
             }
         } else {
-            ModelAndView mav = new ModelAndView("person/edit");
-            mav.addObject("person", person);
-            mav.addObject("errors", errors);
-            return mav;
+            return editView(person, errors);
         }
     }
 
@@ -252,19 +373,18 @@ public class PersonController {
     }
 
     /**
-     * Render the view for all available client's a person is not associated with.
+     * Render the view for a page of the available client's a person is not associated with.
      *
-     * @param entityId The ID of the Person to view available contacts for
-     * @return The view of available Person contacts
+     * @param entityId The ID of the Person to view available clients for
+     * @param cursor The token of the page cursor to seek from, absent for the first page
+     * @param referrer The page to return to, "view" or "edit"
+     * @return The view of available clients
      */
     @GetMapping(value = "available-clients/{entityId}")
-    public ModelAndView seeAvailable(@PathVariable Integer entityId) {
-        ModelAndView modelAndView = new ModelAndView("person/available-clients");
-        modelAndView.addObject("person", entityService.readEntity(entityId));
-        modelAndView.addObject("clients",
-                               entityService.getAvailableAssociations(entityId));
-        modelAndView.addObject("referrer", VIEW_REFERRER);
-        return modelAndView;
+    public ModelAndView seeAvailable(@PathVariable Integer entityId,
+                                     @RequestParam(required = false) String cursor,
+                                     @RequestParam(defaultValue = VIEW_REFERRER) String referrer) {
+        return availableView(entityId, PageCursors.fromParameter(cursor), referrer);
     }
 
     /**
@@ -294,4 +414,77 @@ public class PersonController {
         return "redirect:/person/person-view/" + entityId;
     }
 
+    /**
+     * Build the view of a page of the clients available to a person, ordered by company name and
+     * website. The clients are read in chunks as the page is rendered.
+     *
+     * @param entityId The ID of the person
+     * @param cursor The cursor to seek from, or null for the first page
+     * @param referrer The page to return to, "view" or "edit"
+     * @return The view of available clients
+     */
+    private ModelAndView availableView(Integer entityId, PageCursor cursor, String referrer) {
+        StreamedPage<ClientSummary> clients = new StreamedPage<>(
+                cursor, pageSize, chunkSize,
+                (from, limit) -> summaryService.getAvailableAssociationSummaries(entityId, from,
+                                                                                 limit));
+        ModelAndView modelAndView = new ModelAndView("person/available-clients");
+        modelAndView.addObject("person", entityService.readEntity(entityId));
+        modelAndView.addObject("referrer", referrer);
+        modelAndView.addObject("clients", clients);
+        return modelAndView;
+    }
+
+    /**
+     * Renders the edit page for a person whom somebody else updated after the form was rendered,
+     * showing their values, with the submitted values beside any that differ.
+     *
+     * @param submitted The values submitted, with the version which was read
+     * @return The edit view
+     */
+    private ModelAndView conflictView(Person submitted) {
+        ModelAndView mav = editView(
+                entityService.readEntityWithAssociations(submitted.getEntityId()),
+                Collections.singletonList(CONFLICT_MESSAGE));
+        mav.addObject("submitted", submitted);
+        return mav;
+    }
+
+    /**
+     * Build the edit view for a person, reading the clients the person is a contact of.
+     */
+    private ModelAndView editView(Person person, List<String> errors) {
+        return editView(person, entityService.getAssociations(person.getEntityId()), errors);
+    }
+
+    /**
+     * Build the edit view for a person read together with the clients the person is a contact of.
+     */
+    private ModelAndView editView(EntityWithAssociations<Person, Client> person,
+                                  List<String> errors) {
+        return editView(person.getEntity(), person.getAssociations(), errors);
+    }
+
+    /**
+     * Build the edit view for a person, with the current and available clients offered by the
+     * clients multi-select. Every available client is offered, so that any number of clients can
+     * be saved at once; they are read in chunks as the multi-select is rendered.
+     *
+     * @param person The person to edit
+     * @param clients The clients the person is a contact of
+     * @param errors Validation errors to display
+     * @return The edit view
+     */
+    private ModelAndView editView(Person person, List<Client> clients, List<String> errors) {
+        ModelAndView mav = new ModelAndView("person/edit");
+        mav.addObject("person", person);
+        mav.addObject("errors", errors);
+        mav.addObject("clients", clients);
+        mav.addObject("availableClients", new StreamedPage<>(
+                null, Integer.MAX_VALUE, chunkSize,
+                (from, limit) -> summaryService.getAvailableAssociationSummaries(
+                        person.getEntityId(), from, limit)));
+        return mav;
+    }
+
 }
@@ -0,0 +1,112 @@
+package com.aquent.crudapp.controllers;
+
+import com.aquent.crudapp.interfaces.EntityService;
+import com.aquent.crudapp.model.Client;
+import com.aquent.crudapp.model.Person;
+import com.aquent.crudapp.search.SearchHit;
+import com.aquent.crudapp.search.SearchIndex;
+import com.aquent.crudapp.search.SearchResult;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.dao.EmptyResultDataAccessException;
+import org.springframework.stereotype.Controller;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.ResponseBody;
+import org.springframework.web.servlet.ModelAndView;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Controller for searching clients and people by name, email address, website and location.
+ */
+@Controller
+@RequestMapping("search")
+public class SearchController {
+
+    /** The number of results on the search page */
+    public static final int RESULT_LIMIT = 50;
+
+    /** The number of suggestions offered while typing */
+    public static final int AUTOCOMPLETE_LIMIT = 10;
+
+    private final SearchIndex searchIndex;
+
+    private final EntityService<Client, Person> clientService;
+
+    private final EntityService<Person, Client> personService;
+
+    public SearchController(SearchIndex searchIndex,
+                            @Qualifier("clientService") EntityService<Client, Person> clientService,
+                            @Qualifier("personService")
+                            EntityService<Person, Client> personService) {
+        this.searchIndex = searchIndex;
+        this.clientService = clientService;
+        this.personService = personService;
+    }
+
+    /**
+     * Renders the best matches for a query.
+     *
+     * @param q The query; its last word may be the start of a word
+     * @param type CLIENT or PERSON to find only that type, absent for both
+     * @return search view populated with the results
+     */
+    @GetMapping
+    public ModelAndView search(@RequestParam(defaultValue = "") String q,
+                               @RequestParam(required = false) SearchIndex.DocumentType type) {
+        ModelAndView mav = new ModelAndView("search/search");
+        mav.addObject("query", q);
+        mav.addObject("type", type);
+        mav.addObject("results", results(q, type, RESULT_LIMIT));
+        mav.addObject("loading", !searchIndex.isLoaded());
+        return mav;
+    }
+
+    /**
+     * Suggests the best matches for a query as it is typed.
+     *
+     * @param q The query typed so far
+     * @return The suggestions as JSON
+     */
+    @GetMapping("autocomplete")
+    @ResponseBody
+    public List<SearchResult> autocomplete(@RequestParam(defaultValue = "") String q) {
+        return results(q, null, AUTOCOMPLETE_LIMIT);
+    }
+
+    /**
+     * Search the index and read the entities of the hits. Hits whose entity has been deleted
+     * since they were found are skipped.
+     */
+    private List<SearchResult> results(String query, SearchIndex.DocumentType type, int limit) {
+        List<SearchHit> hits = searchIndex.search(query, type, limit);
+        List<SearchResult> results = new ArrayList<>(hits.size());
+
+        for (SearchHit hit : hits) {
+            try {
+                results.add(result(hit));
+            } catch (EmptyResultDataAccessException e) {
+                continue;
+            }
+        }
+
+        return results;
+    }
+
+    private SearchResult result(SearchHit hit) {
+        if (hit.getType() == SearchIndex.DocumentType.CLIENT) {
+            Client client = clientService.readEntity(hit.getEntityId());
+            return new SearchResult(hit, client.getCompanyName(),
+                                    client.getWebsite() + " - " + client.getCity(),
+                                    "/client/client-view/" + hit.getEntityId());
+        }
+
+        Person person = personService.readEntity(hit.getEntityId());
+        return new SearchResult(hit, person.getFirstName() + " " + person.getLastName(),
+                                person.getEmailAddress() + " - " + person.getCity(),
+                                "/person/person-view/" + hit.getEntityId());
+    }
+
+}
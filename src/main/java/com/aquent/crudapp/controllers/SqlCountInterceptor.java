@@ -0,0 +1,43 @@
+package com.aquent.crudapp.controllers;
+
+import com.aquent.crudapp.data_access.SqlCountingDataSource;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.web.servlet.HandlerInterceptor;
+import org.springframework.web.servlet.ModelAndView;
+
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+
+/**
+ * Reports the number of SQL statements each request ran.
+ *
+ * The count of statements run by the handler is sent in the X-SQL-Count response header, unless
+ * the handler already committed the response, e.g. a streamed export. The count for the whole
+ * request, including the rendering of the view, is logged at DEBUG once it completes.
+ */
+class SqlCountInterceptor implements HandlerInterceptor {
+
+    /** The response header which carries the count */
+    static final String HEADER = "X-SQL-Count";
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(SqlCountInterceptor.class);
+
+    @Override
+    public void postHandle(HttpServletRequest request, HttpServletResponse response,
+                           Object handler, ModelAndView modelAndView) {
+        if (!response.isCommitted()) {
+            response.setIntHeader(HEADER, SqlCountingDataSource.statementsThisRequest());
+        }
+    }
+
+    @Override
+    public void afterCompletion(HttpServletRequest request, HttpServletResponse response,
+                                Object handler, Exception ex) {
+        if (LOGGER.isDebugEnabled()) {
+            LOGGER.debug("{} {} ran {} SQL statements", request.getMethod(),
+                         request.getRequestURI(), SqlCountingDataSource.statementsThisRequest());
+        }
+    }
+
+}
@@ -0,0 +1,170 @@
+package com.aquent.crudapp.controllers;
+
+import com.aquent.crudapp.model.Page;
+import com.aquent.crudapp.model.PageCursor;
+import com.aquent.crudapp.model.PageCursor.Direction;
+
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+
+/**
+ * A page of entities for a view, read in chunks of keyset queries as the template iterates over
+ * it, rather than all at once before the view is rendered.
+ *
+ * Thymeleaf writes to the response as it renders, so each chunk's rows go out while the next
+ * chunk is being read, and only one chunk is held in memory at a time. Each chunk is a query of
+ * its own, so no connection is held open while rendering. A page read BEFORE a cursor has to be
+ * reversed into listing order, and so is read in one query.
+ *
+ * The page is iterated once. Whether there is a next page is known once it has been iterated,
+ * which is why the templates render the pager below the rows.
+ *
+ * @param <E> The type of entity on the page
+ */
+public final class StreamedPage<E> implements Iterable<E> {
+
+    /**
+     * Reads a chunk of a page: up to a limit of entities following a cursor.
+     *
+     * @param <E> The type of entity read
+     */
+    @FunctionalInterface
+    interface ChunkReader<E> {
+
+        /**
+         * @param cursor The cursor to seek from, or null for the start of the listing
+         * @param limit The maximum number of entities to read
+         * @return The entities, with the cursor for those following if there are any
+         */
+        Page<E> read(PageCursor cursor, int limit);
+
+    }
+
+    private final PageCursor cursor;
+
+    private final boolean backward;
+
+    private final int pageSize;
+
+    private final int chunkSize;
+
+    private final ChunkReader<E> reader;
+
+    private Page<E> firstChunk;
+
+    private Page<E> lastChunk;
+
+    private int remaining;
+
+    private boolean iterated;
+
+    /**
+     * Instantiates a StreamedPage
+     *
+     * @param cursor The cursor to seek from, or null for the first page
+     * @param pageSize The maximum number of entities on the page
+     * @param chunkSize The maximum number of entities read by one query
+     * @param reader Reads each chunk
+     */
+    StreamedPage(PageCursor cursor, int pageSize, int chunkSize, ChunkReader<E> reader) {
+        this.cursor = cursor;
+        this.backward = cursor != null && cursor.getDirection() == Direction.BEFORE;
+        this.pageSize = pageSize;
+        this.chunkSize = backward ? pageSize : Math.max(1, Math.min(chunkSize, pageSize));
+        this.reader = reader;
+    }
+
+    @Override
+    public Iterator<E> iterator() {
+        if (iterated) {
+            throw new IllegalStateException("A streamed page can only be iterated once");
+        }
+        iterated = true;
+
+        return new Iterator<E>() {
+
+            private Iterator<E> chunk = firstChunk().getItems().iterator();
+
+            @Override
+            public boolean hasNext() {
+                while (!chunk.hasNext()) {
+                    if (backward || remaining == 0 || !lastChunk.hasNext()) {
+                        return false;
+                    }
+                    chunk = readChunk(lastChunk.getNextCursor()).getItems().iterator();
+                }
+                return true;
+            }
+
+            @Override
+            public E next() {
+                if (!hasNext()) {
+                    throw new NoSuchElementException();
+                }
+                return chunk.next();
+            }
+
+        };
+    }
+
+    /**
+     * @return true if there are no entities on the page
+     */
+    public boolean isEmpty() {
+        return firstChunk().getItems().isEmpty();
+    }
+
+    /**
+     * @return true if there is a page before this one
+     */
+    public boolean hasPrevious() {
+        return firstChunk().hasPrevious();
+    }
+
+    /**
+     * @return The cursor for the preceding page, or null if this is the first page
+     */
+    public PageCursor getPreviousCursor() {
+        return firstChunk().getPreviousCursor();
+    }
+
+    /**
+     * @return true if there is a page after this one; reads the rest of the page if it has not
+     *         been iterated
+     */
+    public boolean hasNext() {
+        return getNextCursor() != null;
+    }
+
+    /**
+     * @return The cursor for the following page, or null if this is the last page; reads the
+     *         rest of the page if it has not been iterated
+     */
+    public PageCursor getNextCursor() {
+        if (!iterated) {
+            iterator().forEachRemaining(entity -> { });
+        }
+
+        if (backward) {
+            return firstChunk().getNextCursor();
+        }
+
+        return remaining == 0 ? lastChunk.getNextCursor() : null;
+    }
+
+    private Page<E> firstChunk() {
+        if (firstChunk == null) {
+            remaining = pageSize;
+            firstChunk = readChunk(cursor);
+        }
+        return firstChunk;
+    }
+
+    private Page<E> readChunk(PageCursor from) {
+        Page<E> chunk = reader.read(from, Math.min(chunkSize, remaining));
+        remaining -= chunk.getItems().size();
+        lastChunk = chunk;
+        return chunk;
+    }
+
+}
@@ -0,0 +1,174 @@
+package com.aquent.crudapp.data_access;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.jdbc.core.namedparam.MapSqlParameterSource;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import javax.annotation.PreDestroy;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Rebuilds the person.client_count and client.contact_count columns from the
+ * client_person_associations table, correcting any drift from the counts the DAOs maintain, such
+ * as after rows are loaded by scripts or changed by hand. Associations with people and clients
+ * marked deleted are not counted.
+ *
+ * The tables are walked in ranges of IDs, each corrected with one UPDATE in a transaction of its
+ * own, so no lock is held for long and rows whose count is right are not written. The counts are
+ * reconciled once the application is ready, then every crudapp.counts.reconcile-interval-minutes
+ * on a thread of its own. A count changed while its range is being corrected may be left off
+ * until the next run.
+ */
+@Component
+public class AssociationCountReconciler {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(AssociationCountReconciler.class);
+
+    /** SQL for correcting the client counts of a range of people */
+    private static final String RECONCILE_PEOPLE = "UPDATE person p " +
+                                                   "SET client_count = (" +
+                                                       "SELECT COUNT(*) " +
+                                                       "FROM client_person_associations a " +
+                                                       "JOIN client c " +
+                                                       "ON c.client_id = a.client_id " +
+                                                       "WHERE a.person_id = p.person_id " +
+                                                       "AND c.deleted_at IS NULL" +
+                                                   ") " +
+                                                   "WHERE person_id > :fromId " +
+                                                   "AND person_id <= :toId " +
+                                                   "AND client_count <> (" +
+                                                       "SELECT COUNT(*) " +
+                                                       "FROM client_person_associations a " +
+                                                       "JOIN client c " +
+                                                       "ON c.client_id = a.client_id " +
+                                                       "WHERE a.person_id = p.person_id " +
+                                                       "AND c.deleted_at IS NULL" +
+                                                   ")";
+
+    /** SQL for correcting the contact counts of a range of clients */
+    private static final String RECONCILE_CLIENTS = "UPDATE client c " +
+                                                    "SET contact_count = (" +
+                                                        "SELECT COUNT(*) " +
+                                                        "FROM client_person_associations a " +
+                                                        "JOIN person p " +
+                                                        "ON p.person_id = a.person_id " +
+                                                        "WHERE a.client_id = c.client_id " +
+                                                        "AND p.deleted_at IS NULL" +
+                                                    ") " +
+                                                    "WHERE client_id > :fromId " +
+                                                    "AND client_id <= :toId " +
+                                                    "AND contact_count <> (" +
+                                                        "SELECT COUNT(*) " +
+                                                        "FROM client_person_associations a " +
+                                                        "JOIN person p " +
+                                                        "ON p.person_id = a.person_id " +
+                                                        "WHERE a.client_id = c.client_id " +
+                                                        "AND p.deleted_at IS NULL" +
+                                                    ")";
+
+    private static final String MAX_PERSON_ID = "SELECT COALESCE(MAX(person_id), 0) FROM person";
+
+    private static final String MAX_CLIENT_ID = "SELECT COALESCE(MAX(client_id), 0) FROM client";
+
+    private final NamedParameterJdbcTemplate namedParameterJdbcTemplate;
+
+    private final TransactionTemplate transactionTemplate;
+
+    /** The number of IDs corrected per transaction */
+    private final int batchSize;
+
+    /** The minutes between runs, or 0 to reconcile only at startup */
+    private final long intervalMinutes;
+
+    private final ScheduledExecutorService executor = Executors.newSingleThreadScheduledExecutor(
+            runnable -> {
+                Thread thread = new Thread(runnable, "association-count-reconciler");
+                thread.setDaemon(true);
+                return thread;
+            });
+
+    public AssociationCountReconciler(
+            NamedParameterJdbcTemplate namedParameterJdbcTemplate,
+            PlatformTransactionManager transactionManager,
+            @Value("${crudapp.counts.reconcile-batch-size:1000}") int batchSize,
+            @Value("${crudapp.counts.reconcile-interval-minutes:60}") long intervalMinutes) {
+        this.namedParameterJdbcTemplate = namedParameterJdbcTemplate;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.batchSize = batchSize;
+        this.intervalMinutes = intervalMinutes;
+    }
+
+    /**
+     * Starts reconciling once the application is ready to serve requests.
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public void start() {
+        if (intervalMinutes > 0) {
+            executor.scheduleWithFixedDelay(this::reconcileQuietly, 0, intervalMinutes,
+                                            TimeUnit.MINUTES);
+        } else {
+            executor.execute(this::reconcileQuietly);
+        }
+    }
+
+    @PreDestroy
+    public void stop() {
+        executor.shutdownNow();
+    }
+
+    /**
+     * Correct every client and contact count which does not match the associations.
+     *
+     * @return The number of people and clients whose count was corrected
+     */
+    public int reconcile() {
+        long start = System.nanoTime();
+        int corrected = reconcile(RECONCILE_PEOPLE, MAX_PERSON_ID) +
+                        reconcile(RECONCILE_CLIENTS, MAX_CLIENT_ID);
+
+        if (corrected > 0) {
+            LOGGER.info("Corrected {} association counts in {} ms", corrected,
+                        TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start));
+        } else {
+            LOGGER.debug("Association counts checked in {} ms",
+                         TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start));
+        }
+
+        return corrected;
+    }
+
+    private int reconcile(String sql, String maxIdSql) {
+        Integer maxId = namedParameterJdbcTemplate.getJdbcOperations().queryForObject(
+                maxIdSql, Integer.class);
+        int corrected = 0;
+
+        for (long fromId = 0; fromId < maxId; fromId += batchSize) {
+            MapSqlParameterSource range = new MapSqlParameterSource()
+                    .addValue("fromId", fromId)
+                    .addValue("toId", Math.min(fromId + batchSize, maxId));
+            Integer updated = transactionTemplate.execute(
+                    status -> namedParameterJdbcTemplate.update(sql, range));
+            corrected += updated == null ? 0 : updated;
+        }
+
+        return corrected;
+    }
+
+    private void reconcileQuietly() {
+        try {
+            reconcile();
+        } catch (RuntimeException e) {
+            LOGGER.warn("Could not reconcile the association counts", e);
+        }
+    }
+
+}
@@ -0,0 +1,161 @@
+package com.aquent.crudapp.data_access;
+
+import org.springframework.jdbc.core.namedparam.MapSqlParameterSource;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+import org.springframework.jdbc.core.namedparam.SqlParameterSource;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Helpers shared by the DAOs for keeping the person.client_count and client.contact_count
+ * columns, the numbers of associations of each person and client, in step with the
+ * client_person_associations table.
+ *
+ * The counts are adjusted by the statements which add and remove associations, in the same
+ * transaction, and only for the rows those statements actually changed, so adding an existing
+ * association or removing a missing one leaves them as they are. The DAO methods which change
+ * associations are therefore @Transactional, joining the caller's transaction or starting their
+ * own, rather than SUPPORTS like the rest. The {@link AssociationCountReconciler} corrects any
+ * drift.
+ */
+final class AssociationCounts {
+
+    /** SQL for adjusting the number of clients of a person */
+    private static final String ADJUST_PERSON = "UPDATE person " +
+                                                "SET client_count = client_count + :delta " +
+                                                "WHERE person_id = :personId";
+
+    /** SQL for adjusting the number of contacts of a client */
+    private static final String ADJUST_CLIENT = "UPDATE client " +
+                                                "SET contact_count = contact_count + :delta " +
+                                                "WHERE client_id = :clientId";
+
+    /** SQL for decrementing the contact counts of the clients of a person marked deleted */
+    private static final String PERSON_DELETED = "UPDATE client " +
+                                                 "SET contact_count = contact_count - 1 " +
+                                                 "WHERE client_id IN (" +
+                                                     "SELECT client_id " +
+                                                     "FROM client_person_associations " +
+                                                     "WHERE person_id = :personId" +
+                                                 ")";
+
+    /** SQL for decrementing the client counts of the contacts of a client marked deleted */
+    private static final String CLIENT_DELETED = "UPDATE person " +
+                                                 "SET client_count = client_count - 1 " +
+                                                 "WHERE person_id IN (" +
+                                                     "SELECT person_id " +
+                                                     "FROM client_person_associations " +
+                                                     "WHERE client_id = :clientId" +
+                                                 ")";
+
+    private AssociationCounts() {
+    }
+
+    /**
+     * Adjust the counts of a person and a client after their association was added or removed.
+     *
+     * @param namedParameterJdbcTemplate The template to update with
+     * @param personId The ID of the person
+     * @param clientId The ID of the client
+     * @param delta 1 if the association was added, -1 if it was removed
+     */
+    static void adjust(NamedParameterJdbcTemplate namedParameterJdbcTemplate, Integer personId,
+                       Integer clientId, int delta) {
+        namedParameterJdbcTemplate.update(ADJUST_PERSON, new MapSqlParameterSource()
+                .addValue("delta", delta).addValue("personId", personId));
+        namedParameterJdbcTemplate.update(ADJUST_CLIENT, new MapSqlParameterSource()
+                .addValue("delta", delta).addValue("clientId", clientId));
+    }
+
+    /**
+     * Adjust the counts after a batch of associations was added or removed. The deltas of each
+     * person and client are summed, so each count is updated once, in ID order so that
+     * concurrent batches lock the rows in the same order.
+     *
+     * @param namedParameterJdbcTemplate The template to update with
+     * @param batch The batch, each with personId and clientId parameters
+     * @param updateCounts The number of rows each statement of the batch changed
+     * @param delta 1 if the associations were added, -1 if they were removed
+     */
+    static void adjust(NamedParameterJdbcTemplate namedParameterJdbcTemplate,
+                       SqlParameterSource[] batch, int[] updateCounts, int delta) {
+        Map<Integer, Integer> personDeltas = new TreeMap<>();
+        Map<Integer, Integer> clientDeltas = new TreeMap<>();
+
+        for (int i = 0; i < batch.length; i++) {
+            if (updateCounts[i] > 0) {
+                personDeltas.merge((Integer) batch[i].getValue("personId"), delta, Integer::sum);
+                clientDeltas.merge((Integer) batch[i].getValue("clientId"), delta, Integer::sum);
+            }
+        }
+
+        update(namedParameterJdbcTemplate, ADJUST_PERSON, "personId", personDeltas);
+        update(namedParameterJdbcTemplate, ADJUST_CLIENT, "clientId", clientDeltas);
+    }
+
+    /**
+     * Decrement the contact counts of the clients of a person once the person is marked deleted,
+     * as its associations no longer count while they wait for the {@link SoftDeletePurger}.
+     *
+     * @param namedParameterJdbcTemplate The template to update with
+     * @param personId The ID of the person
+     */
+    static void personDeleted(NamedParameterJdbcTemplate namedParameterJdbcTemplate,
+                              Integer personId) {
+        namedParameterJdbcTemplate.update(PERSON_DELETED,
+                                          Collections.singletonMap("personId", personId));
+    }
+
+    /**
+     * Decrement the client counts of the contacts of a client once the client is marked deleted,
+     * as its associations no longer count while they wait for the {@link SoftDeletePurger}.
+     *
+     * @param namedParameterJdbcTemplate The template to update with
+     * @param clientId The ID of the client
+     */
+    static void clientDeleted(NamedParameterJdbcTemplate namedParameterJdbcTemplate,
+                              Integer clientId) {
+        namedParameterJdbcTemplate.update(CLIENT_DELETED,
+                                          Collections.singletonMap("clientId", clientId));
+    }
+
+    /**
+     * @param batch The batch, each with personId and clientId parameters
+     * @param updateCounts The number of rows each statement of the batch changed
+     * @param idName The name of the parameter to collect
+     * @return The values of the parameter in the statements of the batch which changed a row
+     */
+    static List<Integer> changed(SqlParameterSource[] batch, int[] updateCounts, String idName) {
+        List<Integer> ids = new ArrayList<>(batch.length);
+
+        for (int i = 0; i < batch.length; i++) {
+            if (updateCounts[i] > 0) {
+                ids.add((Integer) batch[i].getValue(idName));
+            }
+        }
+
+        return ids;
+    }
+
+    private static void update(NamedParameterJdbcTemplate namedParameterJdbcTemplate, String sql,
+                               String idName, Map<Integer, Integer> deltas) {
+        if (deltas.isEmpty()) {
+            return;
+        }
+
+        SqlParameterSource[] batch = new SqlParameterSource[deltas.size()];
+        int i = 0;
+
+        for (Map.Entry<Integer, Integer> delta : deltas.entrySet()) {
+            batch[i++] = new MapSqlParameterSource().addValue("delta", delta.getValue())
+                                                    .addValue(idName, delta.getKey());
+        }
+
+        namedParameterJdbcTemplate.batchUpdate(sql, batch);
+    }
+
+}
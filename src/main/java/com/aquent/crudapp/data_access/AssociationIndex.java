@@ -0,0 +1,364 @@
+package com.aquent.crudapp.data_access;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import javax.annotation.PostConstruct;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Collections;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * An in-memory, bidirectional index of the client_person_associations table.
+ *
+ * Each side is keyed by int entity ID: the associated IDs of an entity are held as a sorted int
+ * array in an array indexed by entity ID, so no boxed Integer collections are built. Rows are
+ * copied on write and never modified once published, so readers can use them without copying.
+ * The associated IDs of an entity are answered from memory, and the DAOs only read the rows of
+ * the entities actually shown.
+ *
+ * The index is loaded when the application starts and kept current by the DAOs. Changes made
+ * within a transaction are applied once it commits.
+ */
+@Component
+public class AssociationIndex {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(AssociationIndex.class);
+
+    private static final int[] NONE = new int[0];
+
+    private final NamedParameterJdbcTemplate namedParameterJdbcTemplate;
+
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+
+    private final Side clients = new Side();
+
+    private final Side people = new Side();
+
+    private final View clientView = new View(clients, people);
+
+    private final View personView = new View(people, clients);
+
+    public AssociationIndex(NamedParameterJdbcTemplate namedParameterJdbcTemplate) {
+        this.namedParameterJdbcTemplate = namedParameterJdbcTemplate;
+    }
+
+    /**
+     * @return The index as seen from clients: own IDs are client IDs, associated IDs person IDs
+     */
+    public View clientView() {
+        return clientView;
+    }
+
+    /**
+     * @return The index as seen from people: own IDs are person IDs, associated IDs client IDs
+     */
+    public View personView() {
+        return personView;
+    }
+
+    /**
+     * Load the index from the database, replacing its contents.
+     */
+    @PostConstruct
+    public void load() {
+        long start = System.nanoTime();
+        BitSet clientIds = new BitSet();
+        BitSet personIds = new BitSet();
+
+        namedParameterJdbcTemplate.getJdbcOperations().query(
+                "SELECT client_id FROM client WHERE deleted_at IS NULL", rs -> {
+                    clientIds.set(rs.getInt(1));
+                });
+        namedParameterJdbcTemplate.getJdbcOperations().query(
+                "SELECT person_id FROM person WHERE deleted_at IS NULL", rs -> {
+                    personIds.set(rs.getInt(1));
+                });
+
+        IntPairs pairs = new IntPairs();
+        namedParameterJdbcTemplate.getJdbcOperations().query(
+                "SELECT client_id, person_id FROM client_person_associations", rs -> {
+                    // associations of deleted entities await the purger
+                    if (clientIds.get(rs.getInt(1)) && personIds.get(rs.getInt(2))) {
+                        pairs.add(rs.getInt(1), rs.getInt(2));
+                    }
+                });
+
+        lock.writeLock().lock();
+        try {
+            clients.reset(pairs.group(pairs.left, pairs.right, clientIds.length()));
+            people.reset(pairs.group(pairs.right, pairs.left, personIds.length()));
+        } finally {
+            lock.writeLock().unlock();
+        }
+
+        LOGGER.info("Loaded {} associations between {} clients and {} people in {} ms",
+                    pairs.size, clientIds.cardinality(), personIds.cardinality(),
+                    (System.nanoTime() - start) / 1_000_000);
+    }
+
+    /**
+     * Run a change to the index once the current transaction commits, or now if there is none.
+     */
+    private void afterCommit(Runnable change) {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(
+                    new TransactionSynchronization() {
+                        @Override
+                        public void afterCommit() {
+                            change.run();
+                        }
+                    });
+        } else {
+            change.run();
+        }
+    }
+
+    /**
+     * The index seen from one side of the association, so the client and person DAOs can share
+     * the same code.
+     */
+    public final class View {
+
+        private final Side own;
+
+        private final Side other;
+
+        private View(Side own, Side other) {
+            this.own = own;
+            this.other = other;
+        }
+
+        /**
+         * Get the IDs associated with an entity.
+         *
+         * @param ownId The entity ID
+         * @return The associated IDs in ascending order; the array must not be modified
+         */
+        public int[] associated(int ownId) {
+            lock.readLock().lock();
+            try {
+                return own.row(ownId);
+            } finally {
+                lock.readLock().unlock();
+            }
+        }
+
+        /**
+         * Test whether two entities are associated.
+         *
+         * @param ownId The entity ID
+         * @param otherId The ID of the possibly associated entity
+         * @return true if they are associated
+         */
+        public boolean isAssociated(int ownId, int otherId) {
+            return Arrays.binarySearch(associated(ownId), otherId) >= 0;
+        }
+
+        /**
+         * Record associations once the current transaction commits.
+         *
+         * @param ownId The entity ID
+         * @param otherIds The IDs of the newly associated entities
+         */
+        public void associate(int ownId, Iterable<Integer> otherIds) {
+            afterCommit(() -> {
+                lock.writeLock().lock();
+                try {
+                    for (int otherId : otherIds) {
+                        own.insert(ownId, otherId);
+                        other.insert(otherId, ownId);
+                    }
+                } finally {
+                    lock.writeLock().unlock();
+                }
+            });
+        }
+
+        /**
+         * Record that associations were removed once the current transaction commits.
+         *
+         * @param ownId The entity ID
+         * @param otherIds The IDs of the entities no longer associated
+         */
+        public void dissociate(int ownId, Iterable<Integer> otherIds) {
+            afterCommit(() -> {
+                lock.writeLock().lock();
+                try {
+                    for (int otherId : otherIds) {
+                        own.delete(ownId, otherId);
+                        other.delete(otherId, ownId);
+                    }
+                } finally {
+                    lock.writeLock().unlock();
+                }
+            });
+        }
+
+        /**
+         * Record that an entity, and so all of its associations, was deleted once the current
+         * transaction commits.
+         *
+         * @param ownId The ID of the deleted entity
+         */
+        public void deleted(int ownId) {
+            afterCommit(() -> {
+                lock.writeLock().lock();
+                try {
+                    for (int otherId : own.row(ownId)) {
+                        other.delete(otherId, ownId);
+                    }
+
+                    own.clear(ownId);
+                } finally {
+                    lock.writeLock().unlock();
+                }
+            });
+        }
+
+        /**
+         * Convenience for a single association, see {@link #associate(int, Iterable)}.
+         */
+        public void associate(int ownId, int otherId) {
+            associate(ownId, Collections.singletonList(otherId));
+        }
+
+        /**
+         * Convenience for a single association, see {@link #dissociate(int, Iterable)}.
+         */
+        public void dissociate(int ownId, int otherId) {
+            dissociate(ownId, Collections.singletonList(otherId));
+        }
+
+    }
+
+    /**
+     * One side of the index: the sorted associated IDs of each entity. Guarded by the index
+     * lock.
+     */
+    private static final class Side {
+
+        private int[][] rows = new int[0][];
+
+        void reset(int[][] rows) {
+            this.rows = rows;
+        }
+
+        int[] row(int id) {
+            int[] row = id >= 0 && id < rows.length ? rows[id] : null;
+            return row == null ? NONE : row;
+        }
+
+        void insert(int id, int otherId) {
+            int[] row = row(id);
+            int at = Arrays.binarySearch(row, otherId);
+
+            if (at < 0) {
+                at = -at - 1;
+                int[] grown = new int[row.length + 1];
+                System.arraycopy(row, 0, grown, 0, at);
+                grown[at] = otherId;
+                System.arraycopy(row, at, grown, at + 1, row.length - at);
+                set(id, grown);
+            }
+        }
+
+        void delete(int id, int otherId) {
+            int[] row = row(id);
+            int at = Arrays.binarySearch(row, otherId);
+
+            if (at >= 0) {
+                int[] shrunk = new int[row.length - 1];
+                System.arraycopy(row, 0, shrunk, 0, at);
+                System.arraycopy(row, at + 1, shrunk, at, row.length - at - 1);
+                set(id, shrunk.length == 0 ? null : shrunk);
+            }
+        }
+
+        void clear(int id) {
+            set(id, null);
+        }
+
+        private void set(int id, int[] row) {
+            if (id >= rows.length) {
+                if (row == null) {
+                    return;
+                }
+
+                rows = Arrays.copyOf(rows, Math.max(id + 1, rows.length * 3 / 2 + 16));
+            }
+
+            rows[id] = row;
+        }
+
+    }
+
+    /**
+     * A growable list of (client ID, person ID) pairs held in two int arrays, used while loading.
+     */
+    private static final class IntPairs {
+
+        private int[] left = new int[1024];
+
+        private int[] right = new int[1024];
+
+        private int size;
+
+        void add(int l, int r) {
+            if (size == left.length) {
+                left = Arrays.copyOf(left, size * 2);
+                right = Arrays.copyOf(right, size * 2);
+            }
+
+            left[size] = l;
+            right[size] = r;
+            size++;
+        }
+
+        /**
+         * Group the pairs into sorted rows of values indexed by key.
+         */
+        int[][] group(int[] keys, int[] values, int keyBound) {
+            int bound = keyBound;
+
+            for (int i = 0; i < size; i++) {
+                bound = Math.max(bound, keys[i] + 1);
+            }
+
+            int[] degree = new int[bound];
+
+            for (int i = 0; i < size; i++) {
+                degree[keys[i]]++;
+            }
+
+            int[][] rows = new int[bound][];
+
+            for (int key = 0; key < bound; key++) {
+                if (degree[key] > 0) {
+                    rows[key] = new int[degree[key]];
+                    degree[key] = 0;
+                }
+            }
+
+            for (int i = 0; i < size; i++) {
+                rows[keys[i]][degree[keys[i]]++] = values[i];
+            }
+
+            for (int[] row : rows) {
+                if (row != null) {
+                    Arrays.sort(row);
+                }
+            }
+
+            return rows;
+        }
+
+    }
+
+}
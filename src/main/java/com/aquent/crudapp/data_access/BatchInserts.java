@@ -0,0 +1,154 @@
+package com.aquent.crudapp.data_access;
+
+import com.aquent.crudapp.interfaces.Entity;
+import org.springframework.dao.DataRetrievalFailureException;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.jdbc.core.ConnectionCallback;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.SqlTypeValue;
+import org.springframework.jdbc.core.StatementCreatorUtils;
+import org.springframework.jdbc.core.namedparam.BeanPropertySqlParameterSource;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+import org.springframework.jdbc.core.namedparam.NamedParameterUtils;
+import org.springframework.jdbc.core.namedparam.ParsedSql;
+import org.springframework.jdbc.core.namedparam.SqlParameterSource;
+
+import java.sql.BatchUpdateException;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.List;
+
+/**
+ * Helpers shared by the DAOs for inserting rows with one JDBC batch.
+ */
+final class BatchInserts {
+
+    private BatchInserts() {
+    }
+
+    /**
+     * Insert entities with one JDBC batch and set the generated ID of each on the entity.
+     * NamedParameterJdbcTemplate#batchUpdate cannot return generated keys, so the named SQL is
+     * expanded here and the batch run on a plain PreparedStatement.
+     *
+     * @param namedParameterJdbcTemplate The template whose connection is used
+     * @param sql The INSERT statement, with named parameters matching the entity properties
+     * @param entities The entities to insert, which are given their new IDs
+     * @param <E> The type of entity
+     * @return The new IDs, in the order of the entities
+     * @throws DataRetrievalFailureException if the driver does not return a key for each entity,
+     *         which rolls back the surrounding transaction
+     */
+    static <E extends Entity> List<Integer> insert(
+            NamedParameterJdbcTemplate namedParameterJdbcTemplate, String sql,
+            Collection<E> entities) {
+        ParsedSql parsedSql = NamedParameterUtils.parseSqlStatement(sql);
+        String jdbcSql = NamedParameterUtils.substituteNamedParameters(parsedSql, null);
+
+        return namedParameterJdbcTemplate.getJdbcOperations().execute(
+                (ConnectionCallback<List<Integer>>) connection -> {
+                    try (PreparedStatement statement = connection.prepareStatement(
+                            jdbcSql, Statement.RETURN_GENERATED_KEYS)) {
+                        for (E entity : entities) {
+                            Object[] values = NamedParameterUtils.buildValueArray(
+                                    parsedSql, new BeanPropertySqlParameterSource(entity), null);
+
+                            for (int i = 0; i < values.length; i++) {
+                                StatementCreatorUtils.setParameterValue(
+                                        statement, i + 1, SqlTypeValue.TYPE_UNKNOWN, values[i]);
+                            }
+
+                            statement.addBatch();
+                        }
+
+                        statement.executeBatch();
+
+                        List<Integer> ids = new ArrayList<>(entities.size());
+                        Iterator<E> entity = entities.iterator();
+                        try (ResultSet keys = statement.getGeneratedKeys()) {
+                            while (keys.next() && entity.hasNext()) {
+                                int id = keys.getInt(1);
+                                entity.next().setEntityId(id);
+                                ids.add(id);
+                            }
+                        }
+
+                        // the rows are inserted, but the entities cannot be told their IDs
+                        if (ids.size() != entities.size()) {
+                            throw new DataRetrievalFailureException(
+                                    "Expected " + entities.size() + " generated keys but got " +
+                                    ids.size());
+                        }
+
+                        return ids;
+                    }
+                });
+    }
+
+    /**
+     * Run a batch of inserts of rows which a concurrent transaction may insert first, as the
+     * single inserts do when they catch DuplicateKeyException. The statements which fail on a
+     * duplicate key count as having inserted nothing, so the update counts tell the caller
+     * exactly which rows this batch inserted. The batch is run on a plain PreparedStatement, as
+     * NamedParameterJdbcTemplate#batchUpdate does not say which of its statements failed.
+     *
+     * @param namedParameterJdbcTemplate The template whose connection is used
+     * @param sql The INSERT statement, with named parameters
+     * @param batch The parameters of each statement
+     * @return The number of rows each statement of the batch inserted
+     */
+    static int[] insertIgnoringDuplicates(NamedParameterJdbcTemplate namedParameterJdbcTemplate,
+                                          String sql, SqlParameterSource[] batch) {
+        ParsedSql parsedSql = NamedParameterUtils.parseSqlStatement(sql);
+        String jdbcSql = NamedParameterUtils.substituteNamedParameters(parsedSql, null);
+        JdbcTemplate jdbcTemplate = namedParameterJdbcTemplate.getJdbcTemplate();
+        int[] updateCounts = new int[batch.length];
+        int from = 0;
+
+        // drivers either run the whole batch, marking the statements which failed, or stop at
+        // the first which failed, in which case the rest of the batch is run again
+        while (from < batch.length) {
+            int start = from;
+            from = jdbcTemplate.execute((ConnectionCallback<Integer>) connection -> {
+                try (PreparedStatement statement = connection.prepareStatement(jdbcSql)) {
+                    for (int i = start; i < batch.length; i++) {
+                        Object[] values = NamedParameterUtils.buildValueArray(parsedSql, batch[i],
+                                                                              null);
+                        for (int j = 0; j < values.length; j++) {
+                            StatementCreatorUtils.setParameterValue(
+                                    statement, j + 1, SqlTypeValue.TYPE_UNKNOWN, values[j]);
+                        }
+                        statement.addBatch();
+                    }
+
+                    int[] executed;
+                    try {
+                        executed = statement.executeBatch();
+                    } catch (BatchUpdateException e) {
+                        if (!(jdbcTemplate.getExceptionTranslator().translate(
+                                "insertIgnoringDuplicates", jdbcSql, e)
+                                instanceof DuplicateKeyException)) {
+                            throw e;
+                        }
+                        executed = e.getUpdateCounts();
+                    }
+
+                    for (int i = 0; i < executed.length; i++) {
+                        updateCounts[start + i] =
+                                executed[i] == Statement.EXECUTE_FAILED ? 0 : executed[i];
+                    }
+
+                    return executed.length == batch.length - start ?
+                           batch.length : start + executed.length + 1;
+                }
+            });
+        }
+
+        return updateCounts;
+    }
+
+}
@@ -0,0 +1,120 @@
+package com.aquent.crudapp.data_access;
+
+import com.aquent.crudapp.model.ChangeEvent;
+import org.springframework.jdbc.core.namedparam.MapSqlParameterSource;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+import org.springframework.jdbc.core.namedparam.SqlParameterSource;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Helpers shared by the DAOs for recording their changes in the change_event outbox table, with
+ * the statements making them and so in the same transaction; {@link JdbcChangeEventDAO} reads
+ * them back.
+ *
+ * Like the association counts, events are only recorded for the rows a statement actually
+ * changed, so adding an existing association or deleting a deleted entity records nothing.
+ */
+final class ChangeEvents {
+
+    /** SQL for recording a change */
+    private static final String RECORD_EVENT = "INSERT INTO change_event ( " +
+                                                   "entity_type, " +
+                                                   "entity_id, " +
+                                                   "associated_id, " +
+                                                   "change_type" +
+                                               ") VALUES ( " +
+                                                   ":entityType, " +
+                                                   ":entityId, " +
+                                                   ":associatedId, " +
+                                                   ":changeType" +
+                                               ")";
+
+    private ChangeEvents() {
+    }
+
+    /**
+     * Record a change to an entity.
+     *
+     * @param namedParameterJdbcTemplate The template to insert with
+     * @param entityType {@link ChangeEvent#CLIENT} or {@link ChangeEvent#PERSON}
+     * @param entityId The ID of the entity changed
+     * @param type The kind of change
+     */
+    static void record(NamedParameterJdbcTemplate namedParameterJdbcTemplate, String entityType,
+                       Integer entityId, ChangeEvent.Type type) {
+        namedParameterJdbcTemplate.update(RECORD_EVENT, event(entityType, entityId, null, type));
+    }
+
+    /**
+     * Record the same change to a set of entities in one batch.
+     *
+     * @param namedParameterJdbcTemplate The template to insert with
+     * @param entityType {@link ChangeEvent#CLIENT} or {@link ChangeEvent#PERSON}
+     * @param entityIds The IDs of the entities changed
+     * @param type The kind of change
+     */
+    static void recordAll(NamedParameterJdbcTemplate namedParameterJdbcTemplate,
+                          String entityType, List<Integer> entityIds, ChangeEvent.Type type) {
+        if (entityIds.isEmpty()) {
+            return;
+        }
+
+        SqlParameterSource[] batch = new SqlParameterSource[entityIds.size()];
+        for (int i = 0; i < batch.length; i++) {
+            batch[i] = event(entityType, entityIds.get(i), null, type);
+        }
+
+        namedParameterJdbcTemplate.batchUpdate(RECORD_EVENT, batch);
+    }
+
+    /**
+     * Record that a person and a client were associated or dissociated.
+     *
+     * @param namedParameterJdbcTemplate The template to insert with
+     * @param personId The ID of the person
+     * @param clientId The ID of the client
+     * @param type {@link ChangeEvent.Type#ASSOCIATED} or {@link ChangeEvent.Type#DISSOCIATED}
+     */
+    static void recordAssociation(NamedParameterJdbcTemplate namedParameterJdbcTemplate,
+                                  Integer personId, Integer clientId, ChangeEvent.Type type) {
+        namedParameterJdbcTemplate.update(RECORD_EVENT,
+                                          event(ChangeEvent.CLIENT, clientId, personId, type));
+    }
+
+    /**
+     * Record a batch of associations or dissociations in one batch.
+     *
+     * @param namedParameterJdbcTemplate The template to insert with
+     * @param batch The batch, each with personId and clientId parameters
+     * @param updateCounts The number of rows each statement of the batch changed
+     * @param type {@link ChangeEvent.Type#ASSOCIATED} or {@link ChangeEvent.Type#DISSOCIATED}
+     */
+    static void recordAssociations(NamedParameterJdbcTemplate namedParameterJdbcTemplate,
+                                   SqlParameterSource[] batch, int[] updateCounts,
+                                   ChangeEvent.Type type) {
+        List<SqlParameterSource> events = new ArrayList<>(batch.length);
+
+        for (int i = 0; i < batch.length; i++) {
+            if (updateCounts[i] > 0) {
+                events.add(event(ChangeEvent.CLIENT, (Integer) batch[i].getValue("clientId"),
+                                 (Integer) batch[i].getValue("personId"), type));
+            }
+        }
+
+        if (!events.isEmpty()) {
+            namedParameterJdbcTemplate.batchUpdate(RECORD_EVENT,
+                                                   events.toArray(new SqlParameterSource[0]));
+        }
+    }
+
+    private static SqlParameterSource event(String entityType, Integer entityId,
+                                            Integer associatedId, ChangeEvent.Type type) {
+        return new MapSqlParameterSource().addValue("entityType", entityType)
+                                          .addValue("entityId", entityId)
+                                          .addValue("associatedId", associatedId)
+                                          .addValue("changeType", type.name());
+    }
+
+}
@@ -1,7 +1,6 @@
 package com.aquent.crudapp.data_access;
 
 import com.aquent.crudapp.model.Client;
-import org.springframework.jdbc.core.RowMapper;
 
 import java.sql.ResultSet;
 import java.sql.SQLException;
@@ -10,19 +9,35 @@ import java.sql.SQLException;
  * A RowMapper for a Client object
  * {@See} https://docs.oracle.com/javase/8/docs/api/javax/swing/tree/RowMapper.html
  */
-public class ClientRowMapper implements RowMapper<Client> {
+public class ClientRowMapper extends ColumnIndexRowMapper<Client> {
+
+    private static final String[] COLUMNS = {"client_id", "company_name", "website", "phone",
+                                             "street_address", "city", "state", "zip_code",
+                                             "version"};
+
+    public ClientRowMapper() {
+        super(COLUMNS);
+    }
+
+    /**
+     * @param prefix The prefix of the column labels, for a client read alongside another entity
+     */
+    public ClientRowMapper(String prefix) {
+        super(prefix, COLUMNS);
+    }
 
     @Override
-    public Client mapRow(ResultSet rs, int rowNum) throws SQLException {
+    protected Client mapRow(ResultSet rs, int[] column) throws SQLException {
         Client client = new Client();
-        client.setEntityId(rs.getInt("client_id"));
-        client.setCompanyName(rs.getString("company_name"));
-        client.setWebsite(rs.getString("website"));
-        client.setPhone(rs.getString("phone"));
-        client.setStreetAddress(rs.getString("street_address"));
-        client.setCity(rs.getString("city"));
-        client.setState(rs.getString("state"));
-        client.setZipCode(rs.getString("zip_code"));
+        client.setEntityId(rs.getInt(column[0]));
+        client.setCompanyName(rs.getString(column[1]));
+        client.setWebsite(rs.getString(column[2]));
+        client.setPhone(rs.getString(column[3]));
+        client.setStreetAddress(rs.getString(column[4]));
+        client.setCity(rs.getString(column[5]));
+        client.setState(rs.getString(column[6]));
+        client.setZipCode(rs.getString(column[7]));
+        client.setVersion(rs.getInt(column[8]));
         return client;
     }
 
@@ -0,0 +1,28 @@
+package com.aquent.crudapp.data_access;
+
+import com.aquent.crudapp.model.ClientSummary;
+
+import java.sql.ResultSet;
+import java.sql.SQLException;
+
+/**
+ * A RowMapper for a ClientSummary object
+ */
+public class ClientSummaryRowMapper extends ColumnIndexRowMapper<ClientSummary> {
+
+    public ClientSummaryRowMapper() {
+        super("client_id", "company_name", "website", "phone", "contact_count");
+    }
+
+    @Override
+    protected ClientSummary mapRow(ResultSet rs, int[] column) throws SQLException {
+        ClientSummary client = new ClientSummary();
+        client.setEntityId(rs.getInt(column[0]));
+        client.setCompanyName(rs.getString(column[1]));
+        client.setWebsite(rs.getString(column[2]));
+        client.setPhone(rs.getString(column[3]));
+        client.setContactCount(rs.getInt(column[4]));
+        return client;
+    }
+
+}
@@ -0,0 +1,73 @@
+package com.aquent.crudapp.data_access;
+
+import org.springframework.jdbc.core.RowMapper;
+
+import java.sql.ResultSet;
+import java.sql.SQLException;
+
+/**
+ * A RowMapper which looks up the index of each of its columns by name once per ResultSet, rather
+ * than for every column of every row, and reads the rows by index.
+ *
+ * The indexes of the last ResultSet mapped are kept, so an instance is used by one thread at a
+ * time; the DAOs create one per query.
+ *
+ * @param <T> The type of object each row is mapped to
+ */
+abstract class ColumnIndexRowMapper<T> implements RowMapper<T> {
+
+    private final String[] columns;
+
+    private final int[] indexes;
+
+    private ResultSet resultSet;
+
+    /**
+     * @param columns The names of the columns read, in the order of the indexes passed to
+     *                {@link #mapRow(ResultSet, int[])}
+     */
+    ColumnIndexRowMapper(String... columns) {
+        this.columns = columns;
+        this.indexes = new int[columns.length];
+    }
+
+    /**
+     * @param prefix The prefix of the column labels, as when the columns are aliased to tell
+     *               them apart from another table's in a join
+     * @param columns The names of the columns read, in the order of the indexes passed to
+     *                {@link #mapRow(ResultSet, int[])}
+     */
+    ColumnIndexRowMapper(String prefix, String[] columns) {
+        this(prefixed(prefix, columns));
+    }
+
+    @Override
+    public final T mapRow(ResultSet rs, int rowNum) throws SQLException {
+        if (rs != resultSet) {
+            for (int i = 0; i < columns.length; i++) {
+                indexes[i] = rs.findColumn(columns[i]);
+            }
+            resultSet = rs;
+        }
+        return mapRow(rs, indexes);
+    }
+
+    /**
+     * Map the current row.
+     *
+     * @param rs The ResultSet, positioned at the row
+     * @param column The index in the ResultSet of each column, in the order the columns were
+     *               named
+     * @return The object for the row
+     */
+    protected abstract T mapRow(ResultSet rs, int[] column) throws SQLException;
+
+    private static String[] prefixed(String prefix, String[] columns) {
+        String[] labels = new String[columns.length];
+        for (int i = 0; i < columns.length; i++) {
+            labels[i] = prefix + columns[i];
+        }
+        return labels;
+    }
+
+}
@@ -0,0 +1,30 @@
+package com.aquent.crudapp.data_access;
+
+import org.springframework.beans.factory.config.BeanPostProcessor;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import javax.sql.DataSource;
+
+/**
+ * Configuration of the DataSource used by the DAOs.
+ */
+@Configuration
+public class DataAccessConfiguration {
+
+    /**
+     * @return A post processor which wraps the application DataSource in a
+     *         {@link SqlCountingDataSource}, so the SQL statements run per request are counted
+     */
+    @Bean
+    public static BeanPostProcessor sqlCountingDataSourcePostProcessor() {
+        return new BeanPostProcessor() {
+            @Override
+            public Object postProcessAfterInitialization(Object bean, String beanName) {
+                return bean instanceof DataSource && !(bean instanceof SqlCountingDataSource) ?
+                       new SqlCountingDataSource((DataSource) bean) : bean;
+            }
+        };
+    }
+
+}
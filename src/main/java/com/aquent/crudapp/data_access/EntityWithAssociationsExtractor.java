@@ -0,0 +1,73 @@
+package com.aquent.crudapp.data_access;
+
+import com.aquent.crudapp.model.EntityWithAssociations;
+import org.springframework.dao.EmptyResultDataAccessException;
+import org.springframework.jdbc.core.ResultSetExtractor;
+import org.springframework.jdbc.core.RowMapper;
+
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * A ResultSetExtractor for an entity LEFT JOINed with its associated entities, one row per
+ * association, or a single row of nulls for the associated columns if there are none. The entity
+ * is mapped from the first row and an associated entity from each row which has one.
+ *
+ * @param <E> The type of the entity
+ * @param <T> The type of the associated entities
+ */
+final class EntityWithAssociationsExtractor<E, T>
+        implements ResultSetExtractor<EntityWithAssociations<E, T>> {
+
+    private final RowMapper<E> entityMapper;
+
+    private final RowMapper<T> associatedMapper;
+
+    private final String associatedIdColumn;
+
+    /**
+     * @param entityMapper Maps the entity's columns
+     * @param associatedMapper Maps the associated entity's columns
+     * @param associatedIdColumn The name of the associated entity's ID column, which is null in
+     *                           the row of an entity without associations
+     */
+    EntityWithAssociationsExtractor(RowMapper<E> entityMapper, RowMapper<T> associatedMapper,
+                                    String associatedIdColumn) {
+        this.entityMapper = entityMapper;
+        this.associatedMapper = associatedMapper;
+        this.associatedIdColumn = associatedIdColumn;
+    }
+
+    /**
+     * @throws EmptyResultDataAccessException if there is no row, as the entity does not exist
+     */
+    @Override
+    public EntityWithAssociations<E, T> extractData(ResultSet rs) throws SQLException {
+        E entity = null;
+        List<T> associations = new ArrayList<>();
+        int idColumn = 0;
+        int rowNum = 0;
+
+        while (rs.next()) {
+            if (entity == null) {
+                entity = entityMapper.mapRow(rs, rowNum);
+                idColumn = rs.findColumn(associatedIdColumn);
+            }
+
+            rs.getInt(idColumn);
+            if (!rs.wasNull()) {
+                associations.add(associatedMapper.mapRow(rs, rowNum));
+            }
+            rowNum++;
+        }
+
+        if (entity == null) {
+            throw new EmptyResultDataAccessException(1);
+        }
+
+        return new EntityWithAssociations<>(entity, associations);
+    }
+
+}
@@ -0,0 +1,94 @@
+package com.aquent.crudapp.data_access;
+
+import com.aquent.crudapp.model.ChangeEvent;
+import org.springframework.jdbc.core.RowMapper;
+import org.springframework.jdbc.core.namedparam.MapSqlParameterSource;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+import org.springframework.stereotype.Repository;
+
+import java.sql.Timestamp;
+import java.time.Instant;
+import java.util.List;
+
+/**
+ * Reads the change_event outbox table the DAOs record their changes in.
+ */
+@Repository
+public class JdbcChangeEventDAO {
+
+    /** SQL for the ID of the latest event */
+    private static final String LAST_EVENT_ID = "SELECT COALESCE(MAX(event_id), 0) " +
+                                                "FROM change_event";
+
+    /** SQL for retrieving the events within a range of IDs, in ID order */
+    private static final String READ_EVENTS = "SELECT  event_id, " +
+                                                      "entity_type, " +
+                                                      "entity_id, " +
+                                                      "associated_id, " +
+                                                      "change_type, " +
+                                                      "created_at " +
+                                              "FROM change_event " +
+                                              "WHERE event_id > :afterId " +
+                                              "AND event_id <= :upToId " +
+                                              "ORDER BY event_id " +
+                                              "LIMIT :limit";
+
+    /** SQL for deleting a batch of the events recorded before a given time */
+    private static final String DELETE_EVENTS = "DELETE FROM change_event " +
+                                                "WHERE event_id IN (" +
+                                                    "SELECT event_id " +
+                                                    "FROM change_event " +
+                                                    "WHERE created_at < :before " +
+                                                    "ORDER BY event_id " +
+                                                    "LIMIT :limit" +
+                                                ")";
+
+    private static final RowMapper<ChangeEvent> EVENT_MAPPER = (rs, rowNum) ->
+            new ChangeEvent(rs.getLong(1), rs.getString(2), rs.getInt(3),
+                            rs.getObject(4, Integer.class),
+                            ChangeEvent.Type.valueOf(rs.getString(5)),
+                            rs.getTimestamp(6).toInstant());
+
+    private final NamedParameterJdbcTemplate namedParameterJdbcTemplate;
+
+    public JdbcChangeEventDAO(NamedParameterJdbcTemplate namedParameterJdbcTemplate) {
+        this.namedParameterJdbcTemplate = namedParameterJdbcTemplate;
+    }
+
+    /**
+     * @return The ID of the latest event recorded, or 0 if there are none
+     */
+    public long lastEventId() {
+        return namedParameterJdbcTemplate.getJdbcOperations().queryForObject(LAST_EVENT_ID,
+                                                                             Long.class);
+    }
+
+    /**
+     * Read the events within a range of IDs.
+     *
+     * @param afterId Only events with a greater ID are read
+     * @param upToId Only events with this ID or less are read
+     * @param limit The maximum number of events to read
+     * @return The events, in ID order
+     */
+    public List<ChangeEvent> readEvents(long afterId, long upToId, int limit) {
+        return namedParameterJdbcTemplate.query(READ_EVENTS, new MapSqlParameterSource()
+                .addValue("afterId", afterId)
+                .addValue("upToId", upToId)
+                .addValue("limit", limit), EVENT_MAPPER);
+    }
+
+    /**
+     * Delete up to a number of the oldest events recorded before a given time.
+     *
+     * @param before The time before which events are deleted
+     * @param limit The maximum number of events to delete
+     * @return The number of events deleted
+     */
+    public int deleteEvents(Instant before, int limit) {
+        return namedParameterJdbcTemplate.update(DELETE_EVENTS, new MapSqlParameterSource()
+                .addValue("before", Timestamp.from(before))
+                .addValue("limit", limit));
+    }
+
+}
@@ -1,15 +1,34 @@
 package com.aquent.crudapp.data_access;
 
+import java.util.ArrayList;
+import java.util.Collection;
 import java.util.Collections;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Set;
+import java.util.function.BiFunction;
+import java.util.function.Consumer;
 
+import com.aquent.crudapp.model.ChangeEvent;
 import com.aquent.crudapp.model.Client;
 import com.aquent.crudapp.interfaces.EntityDao;
+import com.aquent.crudapp.interfaces.EntitySummaryDao;
+import com.aquent.crudapp.model.ClientSummary;
+import com.aquent.crudapp.model.EntityWithAssociations;
+import com.aquent.crudapp.model.Page;
+import com.aquent.crudapp.model.PageCursor;
+import com.aquent.crudapp.model.PageCursor.Direction;
 import com.aquent.crudapp.model.Person;
+import com.aquent.crudapp.model.PersonSummary;
 import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.dao.OptimisticLockingFailureException;
+import org.springframework.jdbc.core.RowMapper;
 import org.springframework.jdbc.core.namedparam.BeanPropertySqlParameterSource;
 import org.springframework.jdbc.core.namedparam.MapSqlParameterSource;
 import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+import org.springframework.jdbc.core.namedparam.SqlParameterSource;
 import org.springframework.jdbc.support.GeneratedKeyHolder;
 import org.springframework.jdbc.support.KeyHolder;
 import org.springframework.stereotype.Repository;
@@ -21,78 +40,248 @@ import org.springframework.transaction.annotation.Transactional;
  */
 @Repository
 @Qualifier("personDAO")
-public class JdbcPersonDAO implements EntityDao<Person, Client> {
+public class JdbcPersonDAO implements EntityDao<Person, Client>,
+                                      EntitySummaryDao<PersonSummary, ClientSummary> {
+
+    /** The start of a query selecting whole person tuples */
+    private static final String SQL_SELECT_PEOPLE = "SELECT person_id, first_name, last_name, " +
+                                                    "email_address, street_address, city, " +
+                                                    "state, zip_code, version FROM person ";
+
+    /** The start of a query selecting the columns of person summaries */
+    private static final String SQL_SELECT_SUMMARIES = "SELECT person_id, first_name, " +
+                                                       "last_name, email_address, " +
+                                                       "client_count FROM person ";
+
+    /** The WHERE, ORDER BY and LIMIT of the first page of the listing */
+    private static final String SQL_FIRST_PAGE = "WHERE deleted_at IS NULL " +
+                                                 "ORDER BY first_name, last_name, person_id " +
+                                                 "LIMIT :limit";
+
+    /** The WHERE, ORDER BY and LIMIT of a page of the listing which sorts after a cursor */
+    private static final String SQL_PAGE_AFTER = "WHERE deleted_at IS NULL " +
+                                                 "AND first_name >= :firstName " +
+                                                 "AND (first_name > :firstName " +
+                                                      "OR last_name > :lastName " +
+                                                      "OR (last_name = :lastName " +
+                                                          "AND person_id > :personId)) " +
+                                                 "ORDER BY first_name, last_name, person_id " +
+                                                 "LIMIT :limit";
+
+    /**
+     * The WHERE, ORDER BY and LIMIT of a page of the listing which sorts before a cursor, in
+     * reverse order
+     */
+    private static final String SQL_PAGE_BEFORE = "WHERE deleted_at IS NULL " +
+                                                  "AND first_name <= :firstName " +
+                                                  "AND (first_name < :firstName " +
+                                                       "OR last_name < :lastName " +
+                                                       "OR (last_name = :lastName " +
+                                                           "AND person_id < :personId)) " +
+                                                  "ORDER BY first_name DESC, last_name DESC, " +
+                                                           "person_id DESC " +
+                                                  "LIMIT :limit";
 
     /** SQL for retrieving all person tuples */
-    private static final String SQL_LIST_PEOPLE = "SELECT * FROM person ORDER BY first_name, " +
-                                                  "last_name, person_id";
-
-    /** SQL for retrieving all client tuples which are not contacts of a given person via person ID */
-    private static final String LIST_AVAILABLE_CLIENTS = "SELECT  client_id, " +
-                                                                 "company_name, " +
-                                                                 "website, " +
-                                                                 "phone, " +
-                                                                 "street_address, " +
-                                                                 "city, " +
-                                                                 "state, " +
-                                                                 "zip_code " +
-                                                         "FROM client " +
-                                                         "WHERE client_id NOT IN ( " +
-                                                            "SELECT client_id " +
-                                                            "FROM client_person_associations " +
-                                                            "WHERE person_id = :personId " +
-                                                         ") " +
-                                                         "ORDER BY company_name, website";
+    private static final String SQL_LIST_PEOPLE = SQL_SELECT_PEOPLE +
+                                                  "WHERE deleted_at IS NULL " +
+                                                  "ORDER BY first_name, last_name, person_id";
 
     /** SQL for retrieving a given person tuple via person ID */
-    private static final String SQL_READ_PERSON = "SELECT * FROM person WHERE person_id = :personId";
+    private static final String SQL_READ_PERSON = SQL_SELECT_PEOPLE +
+                                                  "WHERE person_id = :personId " +
+                                                  "AND deleted_at IS NULL";
+
+    /**
+     * SQL for retrieving a given person tuple via person ID with the client tuples the person is
+     * a contact of, one row per client; the client columns are prefixed with client_
+     */
+    private static final String SQL_READ_PERSON_WITH_CLIENTS =
+            "SELECT  p.person_id, " +
+                    "p.first_name, " +
+                    "p.last_name, " +
+                    "p.email_address, " +
+                    "p.street_address, " +
+                    "p.city, " +
+                    "p.state, " +
+                    "p.zip_code, " +
+                    "p.version, " +
+                    "c.client_id AS client_client_id, " +
+                    "c.company_name AS client_company_name, " +
+                    "c.website AS client_website, " +
+                    "c.phone AS client_phone, " +
+                    "c.street_address AS client_street_address, " +
+                    "c.city AS client_city, " +
+                    "c.state AS client_state, " +
+                    "c.zip_code AS client_zip_code, " +
+                    "c.version AS client_version " +
+            "FROM person p " +
+            "LEFT JOIN client_person_associations a ON a.person_id = p.person_id " +
+            "LEFT JOIN client c ON c.client_id = a.client_id AND c.deleted_at IS NULL " +
+            "WHERE p.person_id = :personId " +
+            "AND p.deleted_at IS NULL " +
+            "ORDER BY c.company_name, c.website, c.client_id";
 
     /** SQL for retrieving a given client tuple via client ID */
-    private static final String READ_CLIENT = "SELECT * FROM client WHERE client_id = :clientId";
+    private static final String READ_CLIENT = "SELECT  client_id, " +
+                                                      "company_name, " +
+                                                      "website, " +
+                                                      "phone, " +
+                                                      "street_address, " +
+                                                      "city, " +
+                                                      "state, " +
+                                                      "zip_code, " +
+                                                      "version " +
+                                              "FROM client " +
+                                              "WHERE client_id = :clientId " +
+                                              "AND deleted_at IS NULL";
 
-    /** SQL for deleting a given person tuple via person ID */
-    private static final String SQL_DELETE_PERSON = "DELETE FROM person WHERE person_id = :personId";
+    /**
+     * SQL for marking a given person tuple deleted via person ID; the {@link SoftDeletePurger}
+     * removes it later
+     */
+    private static final String SQL_DELETE_PERSON = "UPDATE person"
+                                                  + " SET deleted_at = CURRENT_TIMESTAMP"
+                                                  + " WHERE person_id = :personId AND deleted_at IS NULL";
 
-    /** SQL for removing a new client/person association via person ID and client ID */
+    /**
+     * SQL for removing a client/person association via person ID and client ID, unless either is
+     * deleted
+     */
     private static final String REMOVE_ASSOCIATION = "DELETE FROM client_person_associations " +
                                                      "WHERE person_id = :personId " +
-                                                     "AND client_id = :clientId";
+                                                     "AND client_id = :clientId " +
+                                                     "AND EXISTS (" +
+                                                         "SELECT 1 FROM person " +
+                                                         "WHERE person_id = :personId " +
+                                                         "AND deleted_at IS NULL" +
+                                                     ") " +
+                                                     "AND EXISTS (" +
+                                                         "SELECT 1 FROM client " +
+                                                         "WHERE client_id = :clientId " +
+                                                         "AND deleted_at IS NULL" +
+                                                     ")";
 
-    /** SQL for inserting a new client/person association via person ID and client ID */
+    /**
+     * SQL for inserting a new client/person association via person ID and client ID, unless the
+     * association already exists or either is deleted
+     */
     private static final String ADD_ASSOCIATION = "INSERT INTO client_person_associations ( " +
                                                       "client_id, " +
                                                       "person_id " +
-                                                  ") VALUES ( " +
-                                                      ":clientId, " +
-                                                      ":personId " +
+                                                  ") SELECT :clientId, :personId FROM DUAL " +
+                                                  "WHERE NOT EXISTS ( " +
+                                                      "SELECT 1 " +
+                                                      "FROM client_person_associations " +
+                                                      "WHERE person_id = :personId " +
+                                                      "AND client_id = :clientId" +
+                                                  ") " +
+                                                  "AND EXISTS (" +
+                                                      "SELECT 1 FROM person " +
+                                                      "WHERE person_id = :personId " +
+                                                      "AND deleted_at IS NULL" +
+                                                  ") " +
+                                                  "AND EXISTS (" +
+                                                      "SELECT 1 FROM client " +
+                                                      "WHERE client_id = :clientId " +
+                                                      "AND deleted_at IS NULL" +
                                                   ")";
-    /** SQL for updating a given person tuple via person ID */
-    private static final String SQL_UPDATE_PERSON = "UPDATE person SET (first_name, last_name, email_address, street_address, city, state, zip_code)"
-                                                  + " = (:firstName, :lastName, :emailAddress, :streetAddress, :city, :state, :zipCode)"
-                                                  + " WHERE person_id = :entityId";
+    /** SQL for updating a given person tuple via person ID, if it is still at the version read */
+    private static final String SQL_UPDATE_PERSON = "UPDATE person SET (first_name, last_name, email_address, street_address, city, state, zip_code, version)"
+                                                  + " = (:firstName, :lastName, :emailAddress, :streetAddress, :city, :state, :zipCode, :version + 1)"
+                                                  + " WHERE person_id = :entityId AND version = :version AND deleted_at IS NULL";
     /** SQL for creating a person tuple */
     private static final String SQL_CREATE_PERSON = "INSERT INTO person (first_name, last_name, email_address, street_address, city, state, zip_code)"
                                                   + " VALUES (:firstName, :lastName, :emailAddress, :streetAddress, :city, :state, :zipCode)";
 
-    /** SQL for getting all associated client tuples via person ID */
-    private static final String GET_CLIENTS = "SELECT  c.client_id, " +
-                                                      "company_name, " +
-                                                      "website, " +
-                                                      "phone, " +
-                                                      "c.street_address, " +
-                                                      "c.city, " +
-                                                      "c.state, " +
-                                                      "c.zip_code " +
-                                               "FROM person p JOIN client_person_associations cpa" +
-                                               " ON p.person_id = cpa.person_id " +
-                                               "JOIN client c " +
-                                               "ON cpa.client_id = c.client_id " +
-                                               "WHERE cpa.person_id = :personId";
+    /** The start of a query selecting whole client tuples */
+    private static final String SQL_SELECT_CLIENTS = "SELECT client_id, company_name, website, " +
+                                                     "phone, street_address, city, state, " +
+                                                     "zip_code, version FROM client ";
+
+    /** The start of a query selecting the columns of client summaries */
+    private static final String SQL_SELECT_CLIENT_SUMMARIES = "SELECT client_id, company_name, " +
+                                                              "website, phone, " +
+                                                              "contact_count FROM client ";
+
+    /** SQL for retrieving the client tuples with any of a set of client IDs, in listing order */
+    private static final String READ_CLIENTS = SQL_SELECT_CLIENTS +
+                                               "WHERE client_id IN (:clientIds) " +
+                                               "AND deleted_at IS NULL " +
+                                               "ORDER BY company_name, website, client_id";
+
+    /**
+     * The WHERE of the client tuples not associated with a person.
+     *
+     * The subquery is answered from the (person_id, client_id) index alone and evaluated once into
+     * a hash set, which H2 probes per client row under the keyset predicate. client_id is NOT NULL so
+     * NOT IN has the same meaning as NOT EXISTS here, and AssociationQueryBenchmark measures it
+     * faster than a correlated NOT EXISTS, for whole listings and for pages alike.
+     */
+    private static final String SQL_WHERE_AVAILABLE = "WHERE deleted_at IS NULL " +
+                                                      "AND client_id NOT IN (" +
+                                                          "SELECT a.client_id " +
+                                                          "FROM client_person_associations a " +
+                                                          "WHERE a.person_id = :personId" +
+                                                      ") ";
+
+    /** The WHERE, ORDER BY and LIMIT of the first page of the clients available to a person */
+    private static final String SQL_AVAILABLE_FIRST_PAGE = SQL_WHERE_AVAILABLE +
+                                                           "ORDER BY company_name, website, " +
+                                                                    "client_id " +
+                                                           "LIMIT :limit";
+
+    /**
+     * The WHERE, ORDER BY and LIMIT of a page of the clients available to a person which sorts
+     * after a cursor
+     */
+    private static final String SQL_AVAILABLE_AFTER = SQL_WHERE_AVAILABLE +
+                                                      "AND company_name >= :companyName " +
+                                                      "AND (company_name > :companyName " +
+                                                           "OR website > :website " +
+                                                           "OR (website = :website " +
+                                                               "AND client_id > :clientId)) " +
+                                                      "ORDER BY company_name, website, " +
+                                                               "client_id " +
+                                                      "LIMIT :limit";
+
+    /**
+     * The WHERE, ORDER BY and LIMIT of a page of the clients available to a person which sorts
+     * before a cursor, in reverse order
+     */
+    private static final String SQL_AVAILABLE_BEFORE = SQL_WHERE_AVAILABLE +
+                                                       "AND company_name <= :companyName " +
+                                                       "AND (company_name < :companyName " +
+                                                            "OR website < :website " +
+                                                            "OR (website = :website " +
+                                                                "AND client_id < :clientId)) " +
+                                                       "ORDER BY company_name DESC, " +
+                                                                "website DESC, " +
+                                                                "client_id DESC " +
+                                                       "LIMIT :limit";
+
+    /** SQL for getting the IDs of all associated client tuples via person ID */
+    private static final String GET_ASSOCIATION_IDS = "SELECT a.client_id " +
+                                                      "FROM client_person_associations a " +
+                                                      "JOIN client c " +
+                                                      "ON c.client_id = a.client_id " +
+                                                      "WHERE a.person_id = :personId " +
+                                                      "AND c.deleted_at IS NULL";
 
     private final NamedParameterJdbcTemplate namedParameterJdbcTemplate;
 
-    public JdbcPersonDAO(NamedParameterJdbcTemplate namedParameterJdbcTemplate) {
+    /** The JDBC fetch size used when streaming every person tuple */
+    private final int exportFetchSize;
+
+    /** The in-memory association index, seen from people */
+    private final AssociationIndex.View associationIndex;
+
+    public JdbcPersonDAO(NamedParameterJdbcTemplate namedParameterJdbcTemplate,
+                         @Value("${crudapp.export.fetch-size:500}") int exportFetchSize,
+                         AssociationIndex associationIndex) {
         this.namedParameterJdbcTemplate = namedParameterJdbcTemplate;
+        this.exportFetchSize = exportFetchSize;
+        this.associationIndex = associationIndex.personView();
     }
 
     /**
@@ -107,47 +296,211 @@ public class JdbcPersonDAO implements EntityDao<Person, Client> {
     }
 
     /**
-     * Get a list of all entities associated with the entity via entity ID
+     * Streams every person record, in listing order, to an action as the rows are fetched.
+     *
+     * @param action Receives each person record
+     */
+    @Override
+    @Transactional(propagation = Propagation.SUPPORTS, readOnly = true)
+    public void forEachEntity(Consumer<? super Person> action) {
+        RowStreams.forEach(namedParameterJdbcTemplate.getJdbcOperations(), SQL_LIST_PEOPLE,
+                           exportFetchSize, new PersonRowMapper(), action);
+    }
+
+    /**
+     * Retrieves one page of person records, ordered by first and last name, seeking from a cursor
+     * on (first_name, last_name, person_id).
+     *
+     * @param cursor The cursor to seek from, or null for the first page
+     * @param pageSize The maximum number of person records on the page
+     * @return The page of person records
+     */
+    @Override
+    @Transactional(propagation = Propagation.SUPPORTS, readOnly = true)
+    public Page<Person> listEntities(PageCursor cursor, int pageSize) {
+        return listPage(cursor, pageSize, SQL_SELECT_PEOPLE, new PersonRowMapper(),
+                        (person, direction) -> new PageCursor(person.getFirstName(),
+                                                              person.getLastName(),
+                                                              person.getEntityId(), direction));
+    }
+
+    /**
+     * Retrieves one page of person summaries, in the order of {@link #listEntities(PageCursor,
+     * int)}, selecting only the columns the listing shows.
+     *
+     * @param cursor The cursor to seek from, or null for the first page
+     * @param pageSize The maximum number of person summaries on the page
+     * @return The page of person summaries
+     */
+    @Override
+    @Transactional(propagation = Propagation.SUPPORTS, readOnly = true)
+    public Page<PersonSummary> listSummaries(PageCursor cursor, int pageSize) {
+        return listPage(cursor, pageSize, SQL_SELECT_SUMMARIES, new PersonSummaryRowMapper(),
+                        (person, direction) -> new PageCursor(person.getFirstName(),
+                                                              person.getLastName(),
+                                                              person.getEntityId(), direction));
+    }
+
+    /**
+     * Get a list of all entities associated with the entity via entity ID. The client IDs are
+     * taken from the association index and only those client tuples are read.
      *
      * @param personId The entity ID field of the entity
-     * @return A list of all entities associated with the entity
+     * @return A list of all entities associated with the entity, ordered by company name and
+     *         website
      */
     @Override
     @Transactional(propagation = Propagation.SUPPORTS, readOnly = true)
     public List<Client> getAssociations(Integer personId) {
-        MapSqlParameterSource paramMapper = new MapSqlParameterSource();
-        paramMapper.addValue("personId", personId);
-        return namedParameterJdbcTemplate.query(GET_CLIENTS, paramMapper, new ClientRowMapper());
+        return readClients(associationIndex.associated(personId));
     }
 
     /**
-     * Get a list of all entities not associated with the entity.
+     * Retrieves one page of the entities not associated with the entity, ordered by company name
+     * and website, seeking from a cursor on (company_name, website, client_id).
      *
      * @param personId The entity ID field of the entity
-     * @return A list of all entities not associated with the entity
+     * @param cursor The cursor to seek from, or null for the first page
+     * @param pageSize The maximum number of entities on the page
+     * @return The page of the entities not associated with the entity
      */
     @Override
     @Transactional(propagation = Propagation.SUPPORTS, readOnly = true)
-    public List<Client> getAvailableAssociations(Integer personId) {
-        MapSqlParameterSource paramMapper = new MapSqlParameterSource();
-        paramMapper.addValue("personId", personId);
-        return namedParameterJdbcTemplate.query(LIST_AVAILABLE_CLIENTS, paramMapper,
-                                                new ClientRowMapper());
+    public Page<Client> getAvailableAssociations(Integer personId, PageCursor cursor,
+                                                 int pageSize) {
+        return availablePage(personId, cursor, pageSize, SQL_SELECT_CLIENTS,
+                             new ClientRowMapper(),
+                             (client, direction) -> new PageCursor(client.getCompanyName(),
+                                                                   client.getWebsite(),
+                                                                   client.getEntityId(),
+                                                                   direction));
     }
 
     /**
-     * Add an association with a given entity.
+     * Retrieves one page of summaries of the entities not associated with the entity, in the
+     * order of {@link #getAvailableAssociations(Integer, PageCursor, int)}, selecting only the
+     * columns the picker shows.
+     *
+     * @param personId The entity ID field of the entity
+     * @param cursor The cursor to seek from, or null for the first page
+     * @param pageSize The maximum number of summaries on the page
+     * @return The page of summaries of the entities not associated with the entity
+     */
+    @Override
+    @Transactional(propagation = Propagation.SUPPORTS, readOnly = true)
+    public Page<ClientSummary> getAvailableAssociationSummaries(Integer personId,
+                                                                PageCursor cursor,
+                                                                int pageSize) {
+        return availablePage(personId, cursor, pageSize, SQL_SELECT_CLIENT_SUMMARIES,
+                             new ClientSummaryRowMapper(),
+                             (client, direction) -> new PageCursor(client.getCompanyName(),
+                                                                   client.getWebsite(),
+                                                                   client.getEntityId(),
+                                                                   direction));
+    }
+
+    /**
+     * Add an association with a given entity. Adding an existing association has no effect.
      *
      * @param personId The ID of the entity which should be associated
      * @param clientId The ID of the entity
      */
     @Override
-    @Transactional(propagation = Propagation.SUPPORTS)
+    @Transactional
     public void addAssociation(Integer personId, Integer clientId) {
         MapSqlParameterSource mapSqlParameterSource = new MapSqlParameterSource();
         mapSqlParameterSource.addValue("personId", personId);
         mapSqlParameterSource.addValue("clientId", clientId);
-        namedParameterJdbcTemplate.update(ADD_ASSOCIATION, mapSqlParameterSource);
+
+        // nothing is inserted if the association exists, which the index already holds, or
+        // if either entity is deleted
+        try {
+            if (namedParameterJdbcTemplate.update(ADD_ASSOCIATION, mapSqlParameterSource) > 0) {
+                AssociationCounts.adjust(namedParameterJdbcTemplate, personId, clientId, 1);
+                ChangeEvents.recordAssociation(namedParameterJdbcTemplate, personId, clientId,
+                                               ChangeEvent.Type.ASSOCIATED);
+                associationIndex.associate(personId, clientId);
+            }
+        } catch (DuplicateKeyException e) {
+            // a concurrent request added the same association first
+        }
+    }
+
+    /**
+     * Add associations with a set of entities in one batch. Existing associations, including
+     * any a concurrent request adds first, are left as they are.
+     *
+     * @param personId The ID of the entity
+     * @param clientIds The IDs of the entities which should be associated
+     */
+    @Override
+    @Transactional
+    public void addAssociations(Integer personId, Collection<Integer> clientIds) {
+        if (!clientIds.isEmpty()) {
+            SqlParameterSource[] batch = associationBatch(personId, clientIds);
+            int[] updateCounts = BatchInserts.insertIgnoringDuplicates(namedParameterJdbcTemplate,
+                                                                       ADD_ASSOCIATION, batch);
+            AssociationCounts.adjust(namedParameterJdbcTemplate, batch, updateCounts, 1);
+            ChangeEvents.recordAssociations(namedParameterJdbcTemplate, batch, updateCounts,
+                                            ChangeEvent.Type.ASSOCIATED);
+            associationIndex.associate(personId,
+                                       AssociationCounts.changed(batch, updateCounts, "clientId"));
+        }
+    }
+
+    /**
+     * Remove associations with a set of entities in one batch.
+     *
+     * @param personId The ID of the entity
+     * @param clientIds The IDs of the associated entities, the associations with which are
+     *                  to be removed
+     */
+    @Override
+    @Transactional
+    public void removeAssociations(Integer personId, Collection<Integer> clientIds) {
+        if (!clientIds.isEmpty()) {
+            SqlParameterSource[] batch = associationBatch(personId, clientIds);
+            int[] updateCounts = namedParameterJdbcTemplate.batchUpdate(REMOVE_ASSOCIATION,
+                                                                        batch);
+            AssociationCounts.adjust(namedParameterJdbcTemplate, batch, updateCounts, -1);
+            ChangeEvents.recordAssociations(namedParameterJdbcTemplate, batch, updateCounts,
+                                            ChangeEvent.Type.DISSOCIATED);
+            associationIndex.dissociate(personId, clientIds);
+        }
+    }
+
+    /**
+     * Make the entity associated with exactly a given set of entities. The current associations
+     * are read in one query and only the difference is written, as one batch of inserts and one
+     * of deletes, in one transaction.
+     *
+     * @param personId The ID of the entity
+     * @param desiredIds The IDs of all the entities which should be associated once done
+     */
+    @Override
+    @Transactional
+    public void syncAssociations(Integer personId, Collection<Integer> desiredIds) {
+        Set<Integer> current = new HashSet<>(namedParameterJdbcTemplate.queryForList(
+                GET_ASSOCIATION_IDS, Collections.singletonMap("personId", personId),
+                Integer.class));
+        Set<Integer> desired = new HashSet<>(desiredIds);
+
+        List<Integer> toRemove = new ArrayList<>();
+        for (Integer clientId : current) {
+            if (!desired.contains(clientId)) {
+                toRemove.add(clientId);
+            }
+        }
+
+        List<Integer> toAdd = new ArrayList<>();
+        for (Integer clientId : desired) {
+            if (!current.contains(clientId)) {
+                toAdd.add(clientId);
+            }
+        }
+
+        removeAssociations(personId, toRemove);
+        addAssociations(personId, toAdd);
     }
 
     /**
@@ -163,6 +516,23 @@ public class JdbcPersonDAO implements EntityDao<Person, Client> {
         return namedParameterJdbcTemplate.queryForObject(SQL_READ_PERSON, Collections.singletonMap("personId", personId), new PersonRowMapper());
     }
 
+    /**
+     * Retrieves a person record by ID together with the clients the person is a contact of, with
+     * one query.
+     *
+     * @param personId the person ID
+     * @return the person record and its clients, ordered by company name and website
+     */
+    @Override
+    @Transactional(propagation = Propagation.SUPPORTS, readOnly = true)
+    public EntityWithAssociations<Person, Client> readEntityWithAssociations(Integer personId) {
+        return namedParameterJdbcTemplate.query(
+                SQL_READ_PERSON_WITH_CLIENTS, Collections.singletonMap("personId", personId),
+                new EntityWithAssociationsExtractor<>(new PersonRowMapper(),
+                                                      new ClientRowMapper("client_"),
+                                                      "client_client_id"));
+    }
+
     /**
      * Retrieve an associated entity via ID
      *
@@ -184,34 +554,56 @@ public class JdbcPersonDAO implements EntityDao<Person, Client> {
      * @param clientId The ID of the entity
      */
     @Override
-    @Transactional(propagation = Propagation.SUPPORTS)
+    @Transactional
     public void removeAssociation(Integer personId, Integer clientId) {
         MapSqlParameterSource mapSqlParameterSource = new MapSqlParameterSource();
         mapSqlParameterSource.addValue("personId", personId);
         mapSqlParameterSource.addValue("clientId", clientId);
-        namedParameterJdbcTemplate.update(REMOVE_ASSOCIATION, mapSqlParameterSource);
+        if (namedParameterJdbcTemplate.update(REMOVE_ASSOCIATION, mapSqlParameterSource) > 0) {
+            AssociationCounts.adjust(namedParameterJdbcTemplate, personId, clientId, -1);
+            ChangeEvents.recordAssociation(namedParameterJdbcTemplate, personId, clientId,
+                                           ChangeEvent.Type.DISSOCIATED);
+        }
+        associationIndex.dissociate(personId, clientId);
     }
 
     /**
-     * Deletes a person record by ID.
+     * Marks a person record deleted by ID, and takes the person off the contact counts of their
+     * clients in the same transaction. The {@link SoftDeletePurger} removes the row later.
      *
-     * @param personId the client ID
+     * @param personId the person ID
      */
     @Override
-    @Transactional(propagation = Propagation.SUPPORTS, readOnly = false)
+    @Transactional
     public void deleteEntity(Integer personId) {
-        namedParameterJdbcTemplate.update(SQL_DELETE_PERSON, Collections.singletonMap("personId", personId));
+        if (namedParameterJdbcTemplate.update(SQL_DELETE_PERSON,
+                                              Collections.singletonMap("personId", personId)) > 0) {
+            AssociationCounts.personDeleted(namedParameterJdbcTemplate, personId);
+            ChangeEvents.record(namedParameterJdbcTemplate, ChangeEvent.PERSON, personId,
+                                ChangeEvent.Type.DELETED);
+            associationIndex.deleted(personId);
+        }
     }
 
     /**
-     * Updates an existing person record.
+     * Updates an existing person record, provided nobody has updated it since it was read, and
+     * moves the person to the next version.
      *
-     * @param person the new values to save
+     * @param person the new values to save, with the version which was read
+     * @throws OptimisticLockingFailureException if the person record has been updated or deleted
+     *                                           since it was read
      */
     @Override
     @Transactional(propagation = Propagation.SUPPORTS, readOnly = false)
     public void updateEntity(Person person) {
-        namedParameterJdbcTemplate.update(SQL_UPDATE_PERSON, new BeanPropertySqlParameterSource(person));
+        if (namedParameterJdbcTemplate.update(SQL_UPDATE_PERSON, new BeanPropertySqlParameterSource(person)) == 0) {
+            throw new OptimisticLockingFailureException("Person " + person.getEntityId() + " is no longer at version "
+                                                        + person.getVersion());
+        }
+
+        person.setVersion(person.getVersion() + 1);
+        ChangeEvents.record(namedParameterJdbcTemplate, ChangeEvent.PERSON, person.getEntityId(),
+                            ChangeEvent.Type.UPDATED);
     }
 
     /**
@@ -226,7 +618,127 @@ public class JdbcPersonDAO implements EntityDao<Person, Client> {
     public Integer createEntity(Person person) {
         KeyHolder keyHolder = new GeneratedKeyHolder();
         namedParameterJdbcTemplate.update(SQL_CREATE_PERSON, new BeanPropertySqlParameterSource(person), keyHolder);
-        return keyHolder.getKey().intValue();
+        int personId = keyHolder.getKey().intValue();
+        ChangeEvents.record(namedParameterJdbcTemplate, ChangeEvent.PERSON, personId,
+                            ChangeEvent.Type.CREATED);
+        return personId;
+    }
+
+    /**
+     * Creates new person records with one JDBC batch, setting the new person ID on each.
+     *
+     * @param persons the values to save
+     *
+     * @return the number of person records created
+     */
+    @Override
+    @Transactional(propagation = Propagation.SUPPORTS)
+    public int createEntities(Collection<Person> persons) {
+        if (persons.isEmpty()) {
+            return 0;
+        }
+
+        List<Integer> personIds = BatchInserts.insert(namedParameterJdbcTemplate, SQL_CREATE_PERSON,
+                                                      persons);
+        ChangeEvents.recordAll(namedParameterJdbcTemplate, ChangeEvent.PERSON, personIds,
+                               ChangeEvent.Type.CREATED);
+        return persons.size();
+    }
+
+    /**
+     * Read one page of the listing with a keyset query.
+     *
+     * @param cursor The cursor to seek from, or null for the first page
+     * @param pageSize The maximum number of rows on the page
+     * @param select The start of the query, selecting the columns mapped
+     * @param rowMapper Maps each row
+     * @param cursorFactory Builds a cursor for a given row and seek direction
+     * @param <R> The type each row is mapped to
+     * @return The page
+     */
+    private <R> Page<R> listPage(PageCursor cursor, int pageSize, String select,
+                                 RowMapper<R> rowMapper,
+                                 BiFunction<R, Direction, PageCursor> cursorFactory) {
+        MapSqlParameterSource paramMapper = new MapSqlParameterSource();
+        paramMapper.addValue("limit", pageSize + 1);
+        String sql = select + SQL_FIRST_PAGE;
+
+        if (cursor != null) {
+            paramMapper.addValue("firstName", cursor.getPrimaryKey());
+            paramMapper.addValue("lastName", cursor.getSecondaryKey());
+            paramMapper.addValue("personId", cursor.getEntityId());
+            sql = select + (cursor.getDirection() == Direction.BEFORE ? SQL_PAGE_BEFORE :
+                            SQL_PAGE_AFTER);
+        }
+
+        List<R> rows = namedParameterJdbcTemplate.query(sql, paramMapper, rowMapper);
+        return KeysetPages.toPage(rows, cursor, pageSize, cursorFactory);
+    }
+
+    /**
+     * Read one page of the client tuples not associated with a person with a keyset query.
+     *
+     * @param personId The ID of the person
+     * @param cursor The cursor to seek from, or null for the first page
+     * @param pageSize The maximum number of rows on the page
+     * @param select The start of the query, selecting the columns mapped
+     * @param rowMapper Maps each row
+     * @param cursorFactory Builds a cursor for a given row and seek direction
+     * @param <R> The type each row is mapped to
+     * @return The page
+     */
+    private <R> Page<R> availablePage(Integer personId, PageCursor cursor, int pageSize,
+                                      String select, RowMapper<R> rowMapper,
+                                      BiFunction<R, Direction, PageCursor> cursorFactory) {
+        MapSqlParameterSource paramMapper = new MapSqlParameterSource();
+        paramMapper.addValue("personId", personId);
+        paramMapper.addValue("limit", pageSize + 1);
+        String sql = select + SQL_AVAILABLE_FIRST_PAGE;
+
+        if (cursor != null) {
+            paramMapper.addValue("companyName", cursor.getPrimaryKey());
+            paramMapper.addValue("website", cursor.getSecondaryKey());
+            paramMapper.addValue("clientId", cursor.getEntityId());
+            sql = select + (cursor.getDirection() == Direction.BEFORE ? SQL_AVAILABLE_BEFORE :
+                            SQL_AVAILABLE_AFTER);
+        }
+
+        List<R> rows = namedParameterJdbcTemplate.query(sql, paramMapper, rowMapper);
+        return KeysetPages.toPage(rows, cursor, pageSize, cursorFactory);
+    }
+
+    /**
+     * Read the client tuples with the given IDs in one query.
+     */
+    private List<Client> readClients(int[] clientIds) {
+        if (clientIds.length == 0) {
+            return new ArrayList<>();
+        }
+
+        List<Integer> ids = new ArrayList<>(clientIds.length);
+        for (int clientId : clientIds) {
+            ids.add(clientId);
+        }
+
+        return namedParameterJdbcTemplate.query(READ_CLIENTS,
+                                                Collections.singletonMap("clientIds", ids),
+                                                new ClientRowMapper());
+    }
+
+    /**
+     * Build batch parameters pairing a person ID with each of a set of client IDs.
+     */
+    private static SqlParameterSource[] associationBatch(Integer personId,
+                                                         Collection<Integer> clientIds) {
+        SqlParameterSource[] batch = new SqlParameterSource[clientIds.size()];
+        int i = 0;
+
+        for (Integer clientId : clientIds) {
+            batch[i++] = new MapSqlParameterSource().addValue("personId", personId)
+                                                    .addValue("clientId", clientId);
+        }
+
+        return batch;
     }
 
 }
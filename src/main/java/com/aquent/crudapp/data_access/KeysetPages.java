@@ -0,0 +1,56 @@
+package com.aquent.crudapp.data_access;
+
+import com.aquent.crudapp.model.Page;
+import com.aquent.crudapp.model.PageCursor;
+import com.aquent.crudapp.model.PageCursor.Direction;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.function.BiFunction;
+
+/**
+ * Helpers shared by the DAOs for building keyset pages.
+ *
+ * Page queries select one row more than the page size so that the presence of a further page can
+ * be detected without a COUNT. Pages read BEFORE a cursor are selected in descending order and
+ * reversed here into listing order.
+ */
+final class KeysetPages {
+
+    private KeysetPages() {
+    }
+
+    /**
+     * Build a page from rows read with a cursor.
+     *
+     * @param rows The rows selected, up to pageSize + 1, in the order the query returned them
+     * @param cursor The cursor the rows were read with, or null for the first page
+     * @param pageSize The number of rows on a page
+     * @param cursorFactory Builds a cursor for a given row and seek direction
+     * @param <E> The type of entity on the page
+     * @return The page
+     */
+    static <E> Page<E> toPage(List<E> rows, PageCursor cursor, int pageSize,
+                              BiFunction<E, Direction, PageCursor> cursorFactory) {
+        boolean backward = cursor != null && cursor.getDirection() == Direction.BEFORE;
+        boolean hasMore = rows.size() > pageSize;
+        List<E> items = hasMore ? rows.subList(0, pageSize) : rows;
+
+        if (backward) {
+            Collections.reverse(items);
+        }
+
+        if (items.isEmpty()) {
+            return new Page<>(items, null, null);
+        }
+
+        boolean hasPrevious = backward ? hasMore : cursor != null;
+        boolean hasNext = backward || hasMore;
+
+        return new Page<>(items,
+                          hasPrevious ? cursorFactory.apply(items.get(0), Direction.BEFORE) : null,
+                          hasNext ? cursorFactory.apply(items.get(items.size() - 1),
+                                                        Direction.AFTER) : null);
+    }
+
+}
@@ -1,7 +1,6 @@
 package com.aquent.crudapp.data_access;
 
 import com.aquent.crudapp.model.Person;
-import org.springframework.jdbc.core.RowMapper;
 
 import java.sql.ResultSet;
 import java.sql.SQLException;
@@ -10,19 +9,35 @@ import java.sql.SQLException;
  * A RowMapper for a Person object
  * {@See} https://docs.oracle.com/javase/8/docs/api/javax/swing/tree/RowMapper.html
  */
-public class PersonRowMapper implements RowMapper<Person> {
+public class PersonRowMapper extends ColumnIndexRowMapper<Person> {
+
+    private static final String[] COLUMNS = {"person_id", "first_name", "last_name",
+                                             "email_address", "street_address", "city", "state",
+                                             "zip_code", "version"};
+
+    public PersonRowMapper() {
+        super(COLUMNS);
+    }
+
+    /**
+     * @param prefix The prefix of the column labels, for a person read alongside another entity
+     */
+    public PersonRowMapper(String prefix) {
+        super(prefix, COLUMNS);
+    }
 
     @Override
-    public Person mapRow(ResultSet rs, int rowNum) throws SQLException {
+    protected Person mapRow(ResultSet rs, int[] column) throws SQLException {
         Person person = new Person();
-        person.setEntityId(rs.getInt("person_id"));
-        person.setFirstName(rs.getString("first_name"));
-        person.setLastName(rs.getString("last_name"));
-        person.setEmailAddress(rs.getString("email_address"));
-        person.setStreetAddress(rs.getString("street_address"));
-        person.setCity(rs.getString("city"));
-        person.setState(rs.getString("state"));
-        person.setZipCode(rs.getString("zip_code"));
+        person.setEntityId(rs.getInt(column[0]));
+        person.setFirstName(rs.getString(column[1]));
+        person.setLastName(rs.getString(column[2]));
+        person.setEmailAddress(rs.getString(column[3]));
+        person.setStreetAddress(rs.getString(column[4]));
+        person.setCity(rs.getString(column[5]));
+        person.setState(rs.getString(column[6]));
+        person.setZipCode(rs.getString(column[7]));
+        person.setVersion(rs.getInt(column[8]));
         return person;
     }
 }
@@ -0,0 +1,28 @@
+package com.aquent.crudapp.data_access;
+
+import com.aquent.crudapp.model.PersonSummary;
+
+import java.sql.ResultSet;
+import java.sql.SQLException;
+
+/**
+ * A RowMapper for a PersonSummary object
+ */
+public class PersonSummaryRowMapper extends ColumnIndexRowMapper<PersonSummary> {
+
+    public PersonSummaryRowMapper() {
+        super("person_id", "first_name", "last_name", "email_address", "client_count");
+    }
+
+    @Override
+    protected PersonSummary mapRow(ResultSet rs, int[] column) throws SQLException {
+        PersonSummary person = new PersonSummary();
+        person.setEntityId(rs.getInt(column[0]));
+        person.setFirstName(rs.getString(column[1]));
+        person.setLastName(rs.getString(column[2]));
+        person.setEmailAddress(rs.getString(column[3]));
+        person.setClientCount(rs.getInt(column[4]));
+        return person;
+    }
+
+}
@@ -0,0 +1,156 @@
+package com.aquent.crudapp.data_access;
+
+import com.zaxxer.hikari.HikariDataSource;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnExpression;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.autoconfigure.jdbc.DataSourceProperties;
+import org.springframework.boot.context.properties.bind.Bindable;
+import org.springframework.boot.context.properties.bind.Binder;
+import org.springframework.boot.sql.init.dependency.DependsOnDatabaseInitialization;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Lazy;
+import org.springframework.core.env.Environment;
+import org.springframework.core.io.ClassPathResource;
+import org.springframework.jdbc.datasource.LazyConnectionDataSourceProxy;
+
+import javax.sql.DataSource;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Configuration of read replicas, enabled by listing their URLs in
+ * crudapp.datasource.replica-urls: the application DataSource becomes a
+ * {@link ReadWriteRoutingDataSource} over a connection pool for the primary, configured by the
+ * spring.datasource properties as usual, and a pool for each replica, with the same credentials
+ * and spring.datasource.hikari settings.
+ *
+ * The pools are not beans of their own, so the routing DataSource is the only DataSource the
+ * application sees; their metrics are tagged with the pool names primary, replica-1 and so on.
+ */
+@Configuration
+@ConditionalOnExpression("!'${crudapp.datasource.replica-urls:}'.isEmpty()")
+public class ReadReplicaConfiguration {
+
+    @Value("${crudapp.datasource.replica-urls}")
+    private List<String> replicaUrls;
+
+    @Value("${crudapp.datasource.read-primary-seconds:5}")
+    private int readPrimarySeconds;
+
+    @Value("${crudapp.datasource.stand-in-replicator:false}")
+    private boolean standInReplicator;
+
+    @Value("${crudapp.datasource.replication-interval-ms:1000}")
+    private long replicationIntervalMillis;
+
+    /**
+     * The connection pools of the primary and the replicas, closed on shutdown.
+     */
+    public static final class Pools implements AutoCloseable {
+
+        private final HikariDataSource primary;
+
+        private final Map<String, DataSource> replicas;
+
+        private final ReadWriteRoutingDataSource routing;
+
+        Pools(HikariDataSource primary, Map<String, DataSource> replicas,
+              int readPrimarySeconds) {
+            this.primary = primary;
+            this.replicas = Collections.unmodifiableMap(replicas);
+            this.routing = new ReadWriteRoutingDataSource(primary, replicas, readPrimarySeconds);
+        }
+
+        @Override
+        public void close() {
+            for (DataSource replica : replicas.values()) {
+                ((HikariDataSource) replica).close();
+            }
+            primary.close();
+        }
+
+    }
+
+    /**
+     * @param properties The spring.datasource properties
+     * @param environment Binds the spring.datasource.hikari properties to each pool
+     * @return The connection pools
+     */
+    @Bean(destroyMethod = "close")
+    public Pools readReplicaPools(DataSourceProperties properties, Environment environment) {
+        Binder binder = Binder.get(environment);
+
+        HikariDataSource primary = pool(properties, properties.determineUrl(),
+                                        ReadWriteRoutingDataSource.PRIMARY, binder);
+        Map<String, DataSource> replicas = new LinkedHashMap<>();
+        for (String url : replicaUrls) {
+            String name = "replica-" + (replicas.size() + 1);
+            replicas.put(name, pool(properties, url.trim(), name, binder));
+        }
+
+        return new Pools(primary, replicas, readPrimarySeconds);
+    }
+
+    /**
+     * @param pools The connection pools
+     * @return The application DataSource, routing each transaction to the primary or a replica
+     */
+    @Bean
+    public DataSource dataSource(Pools pools) {
+        pools.routing.setReplicasAvailable(!standInReplicator);
+        return new LazyConnectionDataSourceProxy(pools.routing);
+    }
+
+    /**
+     * @param pools The connection pools
+     * @return The binder of the hikaricp.connections metrics of each pool
+     */
+    @Bean
+    public MeterBinder readReplicaPoolMetrics(Pools pools) {
+        return registry -> {
+            pools.primary.setMetricRegistry(registry);
+            for (DataSource replica : pools.replicas.values()) {
+                ((HikariDataSource) replica).setMetricRegistry(registry);
+            }
+        };
+    }
+
+    /**
+     * The replicator keeping replicas which are embedded databases in step with the primary. The
+     * replicas are read once the schema and data scripts have run and the first copy is made.
+     *
+     * @param pools The connection pools
+     * @return The replicator, stopped on shutdown
+     */
+    @Bean(destroyMethod = "close")
+    @Lazy(false)
+    @DependsOnDatabaseInitialization
+    @ConditionalOnProperty("crudapp.datasource.stand-in-replicator")
+    public StandInReplicator standInReplicator(Pools pools) {
+        StandInReplicator replicator = new StandInReplicator(
+                pools.primary, new ArrayList<>(pools.replicas.values()),
+                new ClassPathResource("schema.sql"));
+        pools.routing.setWriteListener(replicator::changed);
+        replicator.start(replicationIntervalMillis);
+        pools.routing.setReplicasAvailable(true);
+        return replicator;
+    }
+
+    private static HikariDataSource pool(DataSourceProperties properties, String url,
+                                         String name, Binder binder) {
+        HikariDataSource pool = properties.initializeDataSourceBuilder()
+                                          .type(HikariDataSource.class)
+                                          .url(url)
+                                          .build();
+        binder.bind("spring.datasource.hikari", Bindable.ofInstance(pool));
+        pool.setPoolName(name);
+        return pool;
+    }
+
+}
@@ -0,0 +1,245 @@
+package com.aquent.crudapp.data_access;
+
+import org.springframework.jdbc.datasource.lookup.AbstractRoutingDataSource;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.web.context.request.RequestAttributes;
+import org.springframework.web.context.request.RequestContextHolder;
+import org.springframework.web.context.request.ServletRequestAttributes;
+import org.springframework.web.util.WebUtils;
+
+import javax.servlet.http.Cookie;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import javax.sql.DataSource;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+
+/**
+ * A DataSource which sends the statements of read-only transactions, those of methods annotated
+ * {@code @Transactional(readOnly = true)}, to a replica chosen round robin, and everything else to
+ * the primary.
+ *
+ * Replicas lag behind the primary, so once a request has written, the rest of it reads from the
+ * primary, and so does every request carrying the cookie set by that write until it expires, which
+ * covers the page redirected to after a form is saved. Reads outside of a transaction also go to
+ * the primary, as do those made by {@link #readFromPrimary}, such as the reads which fill the
+ * entity caches: a stale row cached from a replica would be served to every client, whatever
+ * their cookie. Until the replicas are marked available, everything goes to the primary.
+ *
+ * The key is looked up when a connection is obtained, so this is wrapped in a
+ * {@link org.springframework.jdbc.datasource.LazyConnectionDataSourceProxy}, which obtains the
+ * connection at the first statement, once the transaction's read-only flag is set.
+ *
+ * The write listener is run when a connection which may have written is closed, which is once its
+ * transaction, if any, has committed or rolled back, so a copy to the replicas which it prompts
+ * sees the write.
+ */
+public class ReadWriteRoutingDataSource extends AbstractRoutingDataSource {
+
+    /** The lookup key of the primary */
+    public static final String PRIMARY = "primary";
+
+    /** The cookie by which a client which has written keeps reading from the primary */
+    public static final String READ_PRIMARY_COOKIE = "crudapp-read-primary";
+
+    /** The attribute marking a request which has written */
+    private static final String WROTE_ATTRIBUTE =
+            ReadWriteRoutingDataSource.class.getName() + ".WROTE";
+
+    /** Set on a thread while its reads have to go to the primary */
+    private static final ThreadLocal<Boolean> READ_PRIMARY = new ThreadLocal<>();
+
+    private final List<String> replicaKeys;
+
+    private final int readPrimarySeconds;
+
+    private final AtomicInteger nextReplica = new AtomicInteger();
+
+    private volatile boolean replicasAvailable;
+
+    private volatile Runnable writeListener = () -> { };
+
+    /**
+     * Instantiates a ReadWriteRoutingDataSource
+     *
+     * @param primary The DataSource which is written to
+     * @param replicas The DataSources of the replicas, by lookup key
+     * @param readPrimarySeconds How long a client which has written keeps reading from the
+     *                           primary after the request which wrote; 0 for only that request
+     */
+    public ReadWriteRoutingDataSource(DataSource primary, Map<String, DataSource> replicas,
+                                      int readPrimarySeconds) {
+        Map<Object, Object> targets = new HashMap<>(replicas);
+        targets.put(PRIMARY, primary);
+
+        this.replicaKeys = new ArrayList<>(replicas.keySet());
+        this.readPrimarySeconds = readPrimarySeconds;
+        setTargetDataSources(targets);
+        setDefaultTargetDataSource(primary);
+        setLenientFallback(false);
+        afterPropertiesSet();
+    }
+
+    /**
+     * Run a read which has to see the primary's latest values, e.g. as it is cached.
+     *
+     * The connection is chosen by the first statement of a transaction, so this only routes the
+     * read if it starts its transaction or is the first to use it; a read joining a transaction
+     * which has already read from a replica keeps reading from that replica.
+     *
+     * @param reader Reads, in a read-only transaction
+     * @param <T> The type of the result
+     * @return The result of the read
+     */
+    public static <T> T readFromPrimary(Supplier<T> reader) {
+        Boolean readPrimary = READ_PRIMARY.get();
+        READ_PRIMARY.set(Boolean.TRUE);
+        try {
+            return reader.get();
+        } finally {
+            if (readPrimary == null) {
+                READ_PRIMARY.remove();
+            }
+        }
+    }
+
+    /**
+     * @param replicasAvailable Whether reads can be sent to the replicas, false to send all
+     *                          statements to the primary
+     */
+    public void setReplicasAvailable(boolean replicasAvailable) {
+        this.replicasAvailable = replicasAvailable;
+    }
+
+    /**
+     * @param writeListener Run whenever a connection which may have written, in a transaction
+     *                      or not, is closed
+     */
+    public void setWriteListener(Runnable writeListener) {
+        this.writeListener = writeListener;
+    }
+
+    @Override
+    public Connection getConnection() throws SQLException {
+        return reportingWrites(super.getConnection());
+    }
+
+    @Override
+    public Connection getConnection(String username, String password) throws SQLException {
+        return reportingWrites(super.getConnection(username, password));
+    }
+
+    @Override
+    protected Object determineCurrentLookupKey() {
+        if (TransactionSynchronizationManager.isCurrentTransactionReadOnly()) {
+            return replicasAvailable && !replicaKeys.isEmpty() && !readsPrimary() ?
+                   replicaKeys.get(Math.floorMod(nextReplica.getAndIncrement(),
+                                                 replicaKeys.size())) :
+                   PRIMARY;
+        }
+
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            wrote();
+        }
+        return PRIMARY;
+    }
+
+    /**
+     * Wrap a connection which may write so that the write listener is run once it is closed. A
+     * connection is closed after its transaction completes, so a write is only reported once it
+     * can be seen.
+     */
+    private Connection reportingWrites(Connection connection) {
+        if (TransactionSynchronizationManager.isCurrentTransactionReadOnly()) {
+            return connection;
+        }
+
+        return (Connection) Proxy.newProxyInstance(
+                ReadWriteRoutingDataSource.class.getClassLoader(),
+                new Class<?>[] {Connection.class},
+                (proxy, method, args) -> {
+                    switch (method.getName()) {
+                        case "equals":
+                            return proxy == args[0];
+                        case "hashCode":
+                            return System.identityHashCode(proxy);
+                        default:
+                            break;
+                    }
+
+                    try {
+                        return method.invoke(connection, args);
+                    } catch (InvocationTargetException e) {
+                        throw e.getTargetException();
+                    } finally {
+                        if (method.getName().equals("close")) {
+                            writeListener.run();
+                        }
+                    }
+                });
+    }
+
+    /**
+     * @return true if the current read has to see the primary, or the current request has
+     *         written, or its client did recently
+     */
+    private static boolean readsPrimary() {
+        if (READ_PRIMARY.get() != null) {
+            return true;
+        }
+
+        RequestAttributes attributes = RequestContextHolder.getRequestAttributes();
+
+        if (attributes == null) {
+            return false;
+        }
+
+        if (attributes.getAttribute(WROTE_ATTRIBUTE, RequestAttributes.SCOPE_REQUEST) != null) {
+            return true;
+        }
+
+        if (attributes instanceof ServletRequestAttributes) {
+            HttpServletRequest request = ((ServletRequestAttributes) attributes).getRequest();
+            return WebUtils.getCookie(request, READ_PRIMARY_COOKIE) != null;
+        }
+
+        return false;
+    }
+
+    /**
+     * Marks the current request, if there is one, as having written, and sets the cookie which
+     * keeps its client reading from the primary.
+     */
+    private void wrote() {
+        RequestAttributes attributes = RequestContextHolder.getRequestAttributes();
+
+        if (attributes == null ||
+            attributes.getAttribute(WROTE_ATTRIBUTE, RequestAttributes.SCOPE_REQUEST) != null) {
+            return;
+        }
+        attributes.setAttribute(WROTE_ATTRIBUTE, Boolean.TRUE, RequestAttributes.SCOPE_REQUEST);
+
+        if (readPrimarySeconds > 0 && attributes instanceof ServletRequestAttributes) {
+            ServletRequestAttributes servletAttributes = (ServletRequestAttributes) attributes;
+            HttpServletResponse response = servletAttributes.getResponse();
+
+            if (response != null && !response.isCommitted()) {
+                String contextPath = servletAttributes.getRequest().getContextPath();
+                Cookie cookie = new Cookie(READ_PRIMARY_COOKIE, "1");
+                cookie.setPath(contextPath.isEmpty() ? "/" : contextPath);
+                cookie.setMaxAge(readPrimarySeconds);
+                cookie.setHttpOnly(true);
+                response.addCookie(cookie);
+            }
+        }
+    }
+
+}
@@ -0,0 +1,49 @@
+package com.aquent.crudapp.data_access;
+
+import org.springframework.jdbc.core.JdbcOperations;
+import org.springframework.jdbc.core.RowCallbackHandler;
+import org.springframework.jdbc.core.RowMapper;
+
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.function.Consumer;
+
+/**
+ * Helpers shared by the DAOs for streaming query results row by row.
+ */
+final class RowStreams {
+
+    private RowStreams() {
+    }
+
+    /**
+     * Run a query and hand each mapped row to an action as it is read from the ResultSet, without
+     * collecting the rows into a list.
+     *
+     * @param jdbcOperations The JDBC operations to query with
+     * @param sql The query, which takes no parameters
+     * @param fetchSize The number of rows the driver should fetch per round trip
+     * @param rowMapper Maps each row to an entity
+     * @param action Receives each entity in ResultSet order
+     * @param <E> The type of entity
+     */
+    static <E> void forEach(JdbcOperations jdbcOperations, String sql, int fetchSize,
+                            RowMapper<E> rowMapper, Consumer<? super E> action) {
+        jdbcOperations.query(connection -> {
+            PreparedStatement statement = connection.prepareStatement(sql,
+                                                                      ResultSet.TYPE_FORWARD_ONLY,
+                                                                      ResultSet.CONCUR_READ_ONLY);
+            statement.setFetchSize(fetchSize);
+            return statement;
+        }, new RowCallbackHandler() {
+            private int rowNum = 0;
+
+            @Override
+            public void processRow(ResultSet rs) throws SQLException {
+                action.accept(rowMapper.mapRow(rs, rowNum++));
+            }
+        });
+    }
+
+}
@@ -0,0 +1,262 @@
+package com.aquent.crudapp.data_access;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.jdbc.core.namedparam.MapSqlParameterSource;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import javax.annotation.PreDestroy;
+import java.sql.Timestamp;
+import java.util.Collections;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Removes the people and clients the DAOs have marked deleted, together with their associations.
+ *
+ * Deleting marks a row with deleted_at and every query leaves it out from then on, so a delete
+ * changes one row however many associations it has. The rows are removed here later, oldest
+ * first, every crudapp.purge.interval-seconds on a thread of its own: the associations of each
+ * are deleted crudapp.purge.batch-size at a time, each batch in a transaction of its own
+ * followed by a pause of crudapp.purge.pause-ms, so neither locks nor the replicas' write
+ * traffic build up, and the row itself last.
+ *
+ * The crudapp.purge.lag gauge is the age in seconds of the oldest row still waiting to be
+ * purged, as of the last run, and crudapp.purge.pending the number of them; crudapp.purge.rows
+ * counts the rows removed.
+ */
+@Component
+public class SoftDeletePurger implements MeterBinder {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(SoftDeletePurger.class);
+
+    /** The number of deleted rows of a table read per run, oldest first */
+    private static final int ROWS_PER_RUN = 100;
+
+    /** The people and clients waiting to be purged */
+    private static final Table[] TABLES = {
+        new Table("person", "person_id"),
+        new Table("client", "client_id")
+    };
+
+    private final NamedParameterJdbcTemplate namedParameterJdbcTemplate;
+
+    private final TransactionTemplate transactionTemplate;
+
+    /** The seconds between runs, or 0 not to purge */
+    private final long intervalSeconds;
+
+    /** The number of associations deleted per transaction */
+    private final int batchSize;
+
+    /** The milliseconds to pause between transactions */
+    private final long pauseMillis;
+
+    /** When the oldest row waiting to be purged was deleted, in epoch millis, or 0 if none */
+    private final AtomicLong oldestPending = new AtomicLong();
+
+    /** The number of rows waiting to be purged */
+    private final AtomicLong pending = new AtomicLong();
+
+    private volatile Counter purged;
+
+    private final ScheduledExecutorService executor = Executors.newSingleThreadScheduledExecutor(
+            runnable -> {
+                Thread thread = new Thread(runnable, "soft-delete-purger");
+                thread.setDaemon(true);
+                return thread;
+            });
+
+    public SoftDeletePurger(
+            NamedParameterJdbcTemplate namedParameterJdbcTemplate,
+            PlatformTransactionManager transactionManager,
+            @Value("${crudapp.purge.interval-seconds:60}") long intervalSeconds,
+            @Value("${crudapp.purge.batch-size:500}") int batchSize,
+            @Value("${crudapp.purge.pause-ms:50}") long pauseMillis) {
+        this.namedParameterJdbcTemplate = namedParameterJdbcTemplate;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.intervalSeconds = intervalSeconds;
+        this.batchSize = batchSize;
+        this.pauseMillis = pauseMillis;
+    }
+
+    @Override
+    public void bindTo(MeterRegistry registry) {
+        Gauge.builder("crudapp.purge.lag", this, SoftDeletePurger::lagSeconds)
+             .description("Age of the oldest deleted row not yet purged, as of the last purge")
+             .baseUnit("seconds")
+             .register(registry);
+        Gauge.builder("crudapp.purge.pending", pending, AtomicLong::get)
+             .description("Deleted rows not yet purged, as of the last purge")
+             .register(registry);
+        purged = Counter.builder("crudapp.purge.rows")
+                        .description("Deleted people and clients purged")
+                        .register(registry);
+    }
+
+    /**
+     * Starts purging once the application is ready to serve requests.
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public void start() {
+        if (intervalSeconds > 0) {
+            executor.scheduleWithFixedDelay(this::purgeQuietly, 0, intervalSeconds,
+                                            TimeUnit.SECONDS);
+        }
+    }
+
+    @PreDestroy
+    public void stop() {
+        executor.shutdownNow();
+    }
+
+    /**
+     * Purge up to {@value #ROWS_PER_RUN} of the oldest deleted people and as many clients, then
+     * record how far behind the purge is.
+     *
+     * @return The number of people and clients purged
+     * @throws InterruptedException if interrupted while pausing between transactions
+     */
+    public int purge() throws InterruptedException {
+        long start = System.nanoTime();
+        int removed = 0;
+
+        for (Table table : TABLES) {
+            for (Integer id : namedParameterJdbcTemplate.queryForList(
+                    table.pendingSql, Collections.singletonMap("limit", ROWS_PER_RUN),
+                    Integer.class)) {
+                removed += purge(table, id);
+            }
+        }
+
+        measureLag();
+
+        if (removed > 0) {
+            LOGGER.info("Purged {} deleted rows in {} ms, {} pending", removed,
+                        TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start), pending.get());
+        }
+
+        return removed;
+    }
+
+    private int purge(Table table, Integer id) throws InterruptedException {
+        MapSqlParameterSource parameters = new MapSqlParameterSource()
+                .addValue("id", id)
+                .addValue("limit", batchSize);
+        Integer deleted;
+
+        do {
+            deleted = transactionTemplate.execute(
+                    status -> namedParameterJdbcTemplate.update(table.purgeAssociationsSql,
+                                                                parameters));
+            pause();
+        } while (deleted != null && deleted >= batchSize);
+
+        Integer removed = transactionTemplate.execute(
+                status -> namedParameterJdbcTemplate.update(table.purgeSql, parameters));
+        pause();
+
+        if (removed == null || removed == 0) {
+            return 0;
+        }
+        Counter counter = purged;
+        if (counter != null) {
+            counter.increment(removed);
+        }
+        return removed;
+    }
+
+    private void measureLag() {
+        long oldest = 0;
+        long count = 0;
+
+        for (Table table : TABLES) {
+            Timestamp deletedAt = namedParameterJdbcTemplate.getJdbcOperations().queryForObject(
+                    table.lagSql, Timestamp.class);
+            count += namedParameterJdbcTemplate.getJdbcOperations().queryForObject(
+                    table.countSql, Long.class);
+            if (deletedAt != null && (oldest == 0 || deletedAt.getTime() < oldest)) {
+                oldest = deletedAt.getTime();
+            }
+        }
+
+        oldestPending.set(oldest);
+        pending.set(count);
+    }
+
+    private double lagSeconds() {
+        long oldest = oldestPending.get();
+        return oldest == 0 ? 0 : Math.max(0, System.currentTimeMillis() - oldest) / 1000.0;
+    }
+
+    private void pause() throws InterruptedException {
+        if (pauseMillis > 0) {
+            Thread.sleep(pauseMillis);
+        }
+    }
+
+    private void purgeQuietly() {
+        try {
+            purge();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (RuntimeException e) {
+            LOGGER.warn("Could not purge the deleted rows", e);
+        }
+    }
+
+    /**
+     * The statements purging one table.
+     */
+    private static final class Table {
+
+        /** SQL for the IDs of the oldest deleted rows */
+        private final String pendingSql;
+
+        /** SQL for deleting a batch of the associations of a deleted row */
+        private final String purgeAssociationsSql;
+
+        /** SQL for deleting a deleted row, once its associations are gone */
+        private final String purgeSql;
+
+        /** SQL for when the oldest deleted row was deleted */
+        private final String lagSql;
+
+        /** SQL for the number of deleted rows */
+        private final String countSql;
+
+        Table(String table, String idColumn) {
+            pendingSql = "SELECT " + idColumn + " " +
+                         "FROM " + table + " " +
+                         "WHERE deleted_at IS NOT NULL " +
+                         "ORDER BY deleted_at " +
+                         "LIMIT :limit";
+            purgeAssociationsSql = "DELETE FROM client_person_associations " +
+                                   "WHERE association_id IN (" +
+                                       "SELECT association_id " +
+                                       "FROM client_person_associations " +
+                                       "WHERE " + idColumn + " = :id " +
+                                       "LIMIT :limit" +
+                                   ")";
+            purgeSql = "DELETE FROM " + table + " " +
+                       "WHERE " + idColumn + " = :id " +
+                       "AND deleted_at IS NOT NULL";
+            lagSql = "SELECT MIN(deleted_at) FROM " + table;
+            countSql = "SELECT COUNT(*) FROM " + table + " WHERE deleted_at IS NOT NULL";
+        }
+
+    }
+
+}
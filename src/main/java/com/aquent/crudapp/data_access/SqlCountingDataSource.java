@@ -0,0 +1,106 @@
+package com.aquent.crudapp.data_access;
+
+import org.springframework.jdbc.datasource.DelegatingDataSource;
+import org.springframework.web.context.request.RequestAttributes;
+import org.springframework.web.context.request.RequestContextHolder;
+
+import javax.sql.DataSource;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * A DataSource which counts the SQL statements prepared during the current HTTP request.
+ *
+ * Every call to prepareStatement, prepareCall or createStatement on a connection counts as one
+ * statement, so a JDBC batch counts once however many rows it writes. The count is kept in an
+ * attribute of the current request; statements run outside of a request are not counted.
+ */
+public class SqlCountingDataSource extends DelegatingDataSource {
+
+    /** The request attribute which holds the count */
+    private static final String ATTRIBUTE = SqlCountingDataSource.class.getName();
+
+    public SqlCountingDataSource(DataSource targetDataSource) {
+        super(targetDataSource);
+    }
+
+    /**
+     * Get the number of SQL statements prepared so far in the current request.
+     *
+     * @return The number of statements, or 0 outside of a request
+     */
+    public static int statementsThisRequest() {
+        AtomicInteger count = count(false);
+        return count == null ? 0 : count.get();
+    }
+
+    @Override
+    public Connection getConnection() throws SQLException {
+        return counting(super.getConnection());
+    }
+
+    @Override
+    public Connection getConnection(String username, String password) throws SQLException {
+        return counting(super.getConnection(username, password));
+    }
+
+    /**
+     * Wrap a connection so that the statements it prepares are counted.
+     */
+    private static Connection counting(Connection connection) {
+        return (Connection) Proxy.newProxyInstance(
+                SqlCountingDataSource.class.getClassLoader(), new Class<?>[] {Connection.class},
+                (proxy, method, args) -> {
+                    switch (method.getName()) {
+                        case "equals":
+                            return proxy == args[0];
+                        case "hashCode":
+                            return System.identityHashCode(proxy);
+                        case "prepareStatement":
+                        case "prepareCall":
+                        case "createStatement":
+                            AtomicInteger count = count(true);
+                            if (count != null) {
+                                count.incrementAndGet();
+                            }
+                            break;
+                        default:
+                            break;
+                    }
+
+                    try {
+                        return method.invoke(connection, args);
+                    } catch (InvocationTargetException e) {
+                        throw e.getTargetException();
+                    }
+                });
+    }
+
+    /**
+     * Get the count of the current request.
+     *
+     * @param create Whether to create the count if the request has none yet
+     * @return The count, or null if there is no current request or no count and create is false
+     */
+    private static AtomicInteger count(boolean create) {
+        RequestAttributes request = RequestContextHolder.getRequestAttributes();
+
+        if (request == null) {
+            return null;
+        }
+
+        AtomicInteger count = (AtomicInteger) request.getAttribute(ATTRIBUTE,
+                                                                   RequestAttributes.SCOPE_REQUEST);
+
+        if (count == null && create) {
+            count = new AtomicInteger();
+            request.setAttribute(ATTRIBUTE, count, RequestAttributes.SCOPE_REQUEST);
+        }
+
+        return count;
+    }
+
+}
@@ -0,0 +1,196 @@
+package com.aquent.crudapp.data_access;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.core.io.Resource;
+import org.springframework.jdbc.datasource.init.DatabasePopulatorUtils;
+import org.springframework.jdbc.datasource.init.ResourceDatabasePopulator;
+
+import javax.sql.DataSource;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.ResultSetMetaData;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.StringJoiner;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Stands in for database replication between embedded H2 databases, so read replicas can be run
+ * locally: periodically copies every table of the primary to each replica, if anything may have
+ * been written since the last copy.
+ *
+ * Each copy reads a snapshot of the primary and replaces the replica's rows in one transaction, so
+ * a replica is always consistent, if behind by up to the interval between copies. The replicas'
+ * foreign keys are not checked, since the copy deletes and inserts tables in no particular order.
+ * A copy takes time in proportion to the whole database, which is fine for development data.
+ */
+public final class StandInReplicator implements AutoCloseable {
+
+    /** The rows inserted per batch */
+    private static final int BATCH_SIZE = 1000;
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(StandInReplicator.class);
+
+    private final DataSource primary;
+
+    private final List<DataSource> replicas;
+
+    private final AtomicBoolean changed = new AtomicBoolean(true);
+
+    private final ScheduledExecutorService executor = Executors.newSingleThreadScheduledExecutor(
+            runnable -> {
+                Thread thread = new Thread(runnable, "stand-in-replicator");
+                thread.setDaemon(true);
+                return thread;
+            });
+
+    /**
+     * Instantiates a StandInReplicator, creating the replicas' schema.
+     *
+     * @param primary The DataSource copied from
+     * @param replicas The DataSources copied to, each an empty database
+     * @param schema The scripts creating the schema
+     */
+    public StandInReplicator(DataSource primary, List<DataSource> replicas, Resource... schema) {
+        this.primary = primary;
+        this.replicas = replicas;
+
+        for (DataSource replica : replicas) {
+            DatabasePopulatorUtils.execute(new ResourceDatabasePopulator(schema), replica);
+            try (Connection connection = replica.getConnection();
+                 Statement statement = connection.createStatement()) {
+                for (String table : tables(connection)) {
+                    statement.execute("ALTER TABLE " + table + " SET REFERENTIAL_INTEGRITY FALSE");
+                }
+            } catch (SQLException e) {
+                throw new IllegalStateException("Could not prepare a replica", e);
+            }
+        }
+    }
+
+    /**
+     * Copies the primary to the replicas, then copies again every interval if anything may have
+     * been written.
+     *
+     * @param intervalMillis The interval between copies, in milliseconds
+     */
+    public void start(long intervalMillis) {
+        copyIfChanged();
+        executor.scheduleWithFixedDelay(this::copyIfChanged, intervalMillis, intervalMillis,
+                                        TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Notes that a write to the primary has completed, so it is copied at the next interval. A
+     * copy running meanwhile may have read the primary before the write committed.
+     */
+    public void changed() {
+        changed.set(true);
+    }
+
+    @Override
+    public void close() {
+        executor.shutdownNow();
+    }
+
+    private void copyIfChanged() {
+        if (!changed.getAndSet(false)) {
+            return;
+        }
+
+        long start = System.nanoTime();
+        try {
+            for (DataSource replica : replicas) {
+                copy(replica);
+            }
+            LOGGER.debug("Copied the primary to {} replicas in {} ms", replicas.size(),
+                         TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start));
+        } catch (SQLException | RuntimeException e) {
+            changed.set(true);
+            LOGGER.warn("Could not copy the primary to the replicas", e);
+        }
+    }
+
+    private void copy(DataSource replica) throws SQLException {
+        try (Connection source = primary.getConnection();
+             Connection target = replica.getConnection()) {
+            source.setAutoCommit(false);
+            source.setTransactionIsolation(Connection.TRANSACTION_REPEATABLE_READ);
+            target.setAutoCommit(false);
+
+            try {
+                for (String table : tables(source)) {
+                    copy(source, target, table);
+                }
+                target.commit();
+            } catch (SQLException | RuntimeException e) {
+                target.rollback();
+                throw e;
+            } finally {
+                source.rollback();
+                source.setTransactionIsolation(Connection.TRANSACTION_READ_COMMITTED);
+                source.setAutoCommit(true);
+                target.setAutoCommit(true);
+            }
+        }
+    }
+
+    private static void copy(Connection source, Connection target, String table)
+            throws SQLException {
+        try (Statement delete = target.createStatement()) {
+            delete.executeUpdate("DELETE FROM " + table);
+        }
+
+        try (Statement select = source.createStatement();
+             ResultSet rows = select.executeQuery("SELECT * FROM " + table)) {
+            ResultSetMetaData metaData = rows.getMetaData();
+            int columns = metaData.getColumnCount();
+            StringJoiner names = new StringJoiner(", ", "(", ")");
+            StringJoiner values = new StringJoiner(", ", "(", ")");
+            for (int column = 1; column <= columns; column++) {
+                names.add(metaData.getColumnName(column));
+                values.add("?");
+            }
+
+            try (PreparedStatement insert = target.prepareStatement(
+                    "INSERT INTO " + table + " " + names + " VALUES " + values)) {
+                int batched = 0;
+                while (rows.next()) {
+                    for (int column = 1; column <= columns; column++) {
+                        insert.setObject(column, rows.getObject(column));
+                    }
+                    insert.addBatch();
+                    if (++batched == BATCH_SIZE) {
+                        insert.executeBatch();
+                        batched = 0;
+                    }
+                }
+                if (batched > 0) {
+                    insert.executeBatch();
+                }
+            }
+        }
+    }
+
+    private static List<String> tables(Connection connection) throws SQLException {
+        List<String> tables = new ArrayList<>();
+        try (Statement statement = connection.createStatement();
+             ResultSet rows = statement.executeQuery(
+                     "SELECT table_name FROM information_schema.tables " +
+                     "WHERE table_schema = 'PUBLIC' AND table_type = 'BASE TABLE'")) {
+            while (rows.next()) {
+                tables.add(rows.getString(1));
+            }
+        }
+        return Collections.unmodifiableList(tables);
+    }
+
+}
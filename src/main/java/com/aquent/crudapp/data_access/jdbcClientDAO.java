@@ -1,24 +1,44 @@
 package com.aquent.crudapp.data_access;
 
+import com.aquent.crudapp.model.ChangeEvent;
 import com.aquent.crudapp.model.Client;
 import com.aquent.crudapp.interfaces.EntityDao;
+import com.aquent.crudapp.interfaces.EntitySummaryDao;
+import com.aquent.crudapp.model.ClientSummary;
+import com.aquent.crudapp.model.EntityWithAssociations;
+import com.aquent.crudapp.model.Page;
+import com.aquent.crudapp.model.PageCursor;
+import com.aquent.crudapp.model.PageCursor.Direction;
 import com.aquent.crudapp.model.Person;
+import com.aquent.crudapp.model.PersonSummary;
 import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.dao.OptimisticLockingFailureException;
+import org.springframework.jdbc.core.RowMapper;
 import org.springframework.jdbc.core.namedparam.BeanPropertySqlParameterSource;
 import org.springframework.jdbc.core.namedparam.MapSqlParameterSource;
 import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+import org.springframework.jdbc.core.namedparam.SqlParameterSource;
 import org.springframework.jdbc.support.GeneratedKeyHolder;
 import org.springframework.jdbc.support.KeyHolder;
 import org.springframework.stereotype.Repository;
 import org.springframework.transaction.annotation.Propagation;
 import org.springframework.transaction.annotation.Transactional;
 
+import java.util.ArrayList;
+import java.util.Collection;
 import java.util.Collections;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Set;
+import java.util.function.BiFunction;
+import java.util.function.Consumer;
 
 @Repository
 @Qualifier("clientDAO")
-public class jdbcClientDAO implements EntityDao<Client, Person> {
+public class jdbcClientDAO implements EntityDao<Client, Person>,
+                                      EntitySummaryDao<ClientSummary, PersonSummary> {
 
     /** SQL for retrieving all client tuples */
     private static final String LIST_CLIENTS = "SELECT  client_id, " +
@@ -28,26 +48,119 @@ public class jdbcClientDAO implements EntityDao<Client, Person> {
                                                        "street_address, " +
                                                        "city, " +
                                                        "state, " +
-                                                       "zip_code " +
+                                                       "zip_code, " +
+                                                       "version " +
                                                "FROM client " +
-                                               "ORDER BY company_name, website";
+                                               "WHERE deleted_at IS NULL " +
+                                               "ORDER BY company_name, website, client_id";
 
-    /** SQL for retrieving all person tuples which are not contacts of a given client via client ID */
-    private static final String LIST_AVAILABLE_CONTACTS = "SELECT  person_id, " +
-                                                                  "first_name, " +
-                                                                  "last_name, " +
-                                                                  "email_address, " +
+    /** SQL for retrieving the first page of client tuples */
+    private static final String LIST_CLIENTS_FIRST_PAGE = "SELECT  client_id, " +
+                                                                  "company_name, " +
+                                                                  "website, " +
+                                                                  "phone, " +
                                                                   "street_address, " +
                                                                   "city, " +
                                                                   "state, " +
-                                                                  "zip_code " +
-                                                         "FROM person " +
-                                                         "WHERE person_id NOT IN ( " +
-                                                         "SELECT person_id " +
-                                                         "FROM client_person_associations " +
-                                                         "WHERE client_id = :clientId " +
-                                                         ") " +
-                                                         "ORDER BY first_name, last_name, person_id";
+                                                                  "zip_code, " +
+                                                                  "version " +
+                                                          "FROM client " +
+                                                          "WHERE deleted_at IS NULL " +
+                                                          "ORDER BY company_name, website, " +
+                                                                   "client_id " +
+                                                          "LIMIT :limit";
+
+    /** SQL for retrieving a page of client tuples which sort after a cursor */
+    private static final String LIST_CLIENTS_AFTER = "SELECT  client_id, " +
+                                                             "company_name, " +
+                                                             "website, " +
+                                                             "phone, " +
+                                                             "street_address, " +
+                                                             "city, " +
+                                                             "state, " +
+                                                             "zip_code, " +
+                                                             "version " +
+                                                     "FROM client " +
+                                                     "WHERE deleted_at IS NULL " +
+                                                     "AND company_name >= :companyName " +
+                                                     "AND (company_name > :companyName " +
+                                                          "OR website > :website " +
+                                                          "OR (website = :website " +
+                                                              "AND client_id > :clientId)) " +
+                                                     "ORDER BY company_name, website, " +
+                                                              "client_id " +
+                                                     "LIMIT :limit";
+
+    /** SQL for retrieving a page of client tuples which sort before a cursor, in reverse order */
+    private static final String LIST_CLIENTS_BEFORE = "SELECT  client_id, " +
+                                                              "company_name, " +
+                                                              "website, " +
+                                                              "phone, " +
+                                                              "street_address, " +
+                                                              "city, " +
+                                                              "state, " +
+                                                              "zip_code, " +
+                                                              "version " +
+                                                      "FROM client " +
+                                                      "WHERE deleted_at IS NULL " +
+                                                      "AND company_name <= :companyName " +
+                                                      "AND (company_name < :companyName " +
+                                                           "OR website < :website " +
+                                                           "OR (website = :website " +
+                                                               "AND client_id < :clientId)) " +
+                                                      "ORDER BY company_name DESC, " +
+                                                               "website DESC, " +
+                                                               "client_id DESC " +
+                                                      "LIMIT :limit";
+
+    /** SQL for retrieving the first page of client summaries */
+    private static final String LIST_SUMMARIES_FIRST_PAGE = "SELECT  client_id, " +
+                                                                    "company_name, " +
+                                                                    "website, " +
+                                                                    "phone, " +
+                                                                    "contact_count " +
+                                                            "FROM client " +
+                                                            "WHERE deleted_at IS NULL " +
+                                                            "ORDER BY company_name, website, " +
+                                                                     "client_id " +
+                                                            "LIMIT :limit";
+
+    /** SQL for retrieving a page of client summaries which sort after a cursor */
+    private static final String LIST_SUMMARIES_AFTER = "SELECT  client_id, " +
+                                                               "company_name, " +
+                                                               "website, " +
+                                                               "phone, " +
+                                                               "contact_count " +
+                                                       "FROM client " +
+                                                       "WHERE deleted_at IS NULL " +
+                                                       "AND company_name >= :companyName " +
+                                                       "AND (company_name > :companyName " +
+                                                            "OR website > :website " +
+                                                            "OR (website = :website " +
+                                                                "AND client_id > :clientId)) " +
+                                                       "ORDER BY company_name, website, " +
+                                                                "client_id " +
+                                                       "LIMIT :limit";
+
+    /**
+     * SQL for retrieving a page of client summaries which sort before a cursor, in reverse order
+     */
+    private static final String LIST_SUMMARIES_BEFORE = "SELECT  client_id, " +
+                                                                "company_name, " +
+                                                                "website, " +
+                                                                "phone, " +
+                                                                "contact_count " +
+                                                        "FROM client " +
+                                                        "WHERE deleted_at IS NULL " +
+                                                        "AND company_name <= :companyName " +
+                                                        "AND (company_name < :companyName " +
+                                                             "OR website < :website " +
+                                                             "OR (website = :website " +
+                                                                 "AND client_id < :clientId)) " +
+                                                        "ORDER BY company_name DESC, " +
+                                                                 "website DESC, " +
+                                                                 "client_id DESC " +
+                                                        "LIMIT :limit";
 
     /** SQL for creating a client tuple */
     private static final String CREATE_CLIENT = "INSERT INTO client ( " +
@@ -76,11 +189,46 @@ public class jdbcClientDAO implements EntityDao<Client, Person> {
                                                       "street_address, " +
                                                       "city, " +
                                                       "state, " +
-                                                      "zip_code " +
+                                                      "zip_code, " +
+                                                      "version " +
                                               "FROM client " +
-                                              "WHERE client_id = :clientId";
+                                              "WHERE client_id = :clientId " +
+                                              "AND deleted_at IS NULL";
 
-    /** SQL for updating a given client tuple via client ID */
+    /**
+     * SQL for retrieving a given client tuple via client ID with the person tuples of its contacts,
+     * one row per contact; the person columns are prefixed with contact_
+     */
+    private static final String READ_CLIENT_WITH_CONTACTS =
+            "SELECT  c.client_id, " +
+                    "c.company_name, " +
+                    "c.website, " +
+                    "c.phone, " +
+                    "c.street_address, " +
+                    "c.city, " +
+                    "c.state, " +
+                    "c.zip_code, " +
+                    "c.version, " +
+                    "p.person_id AS contact_person_id, " +
+                    "p.first_name AS contact_first_name, " +
+                    "p.last_name AS contact_last_name, " +
+                    "p.email_address AS contact_email_address, " +
+                    "p.street_address AS contact_street_address, " +
+                    "p.city AS contact_city, " +
+                    "p.state AS contact_state, " +
+                    "p.zip_code AS contact_zip_code, " +
+                    "p.version AS contact_version " +
+            "FROM client c " +
+            "LEFT JOIN client_person_associations a ON a.client_id = c.client_id " +
+            "LEFT JOIN person p ON p.person_id = a.person_id AND p.deleted_at IS NULL " +
+            "WHERE c.client_id = :clientId " +
+            "AND c.deleted_at IS NULL " +
+            "ORDER BY p.first_name, p.last_name, p.person_id";
+
+    /**
+     * SQL for updating a given client tuple via client ID, provided it is still at the version
+     * which was read
+     */
     private static final String UPDATE_CLIENT = "UPDATE client " +
                                                 "SET ( " +
                                                     "company_name, " +
@@ -89,7 +237,8 @@ public class jdbcClientDAO implements EntityDao<Client, Person> {
                                                     "street_address," +
                                                     "city," +
                                                     "state," +
-                                                    "zip_code" +
+                                                    "zip_code," +
+                                                    "version" +
                                                 ") = ( " +
                                                     ":companyName, " +
                                                     ":website, " +
@@ -97,49 +246,175 @@ public class jdbcClientDAO implements EntityDao<Client, Person> {
                                                     ":streetAddress, " +
                                                     ":city, " +
                                                     ":state, " +
-                                                    ":zipCode" +
+                                                    ":zipCode, " +
+                                                    ":version + 1" +
                                                 ") " +
-                                                "WHERE client_id = :entityId";
+                                                "WHERE client_id = :entityId " +
+                                                "AND version = :version " +
+                                                "AND deleted_at IS NULL";
 
     /** SQL for retrieving a given person tuple via person ID */
-    private static final String READ_PERSON = "SELECT * FROM person WHERE person_id = :personId";
+    private static final String READ_PERSON = "SELECT  person_id, " +
+                                                      "first_name, " +
+                                                      "last_name, " +
+                                                      "email_address, " +
+                                                      "street_address, " +
+                                                      "city, " +
+                                                      "state, " +
+                                                      "zip_code, " +
+                                                      "version " +
+                                              "FROM person " +
+                                              "WHERE person_id = :personId " +
+                                              "AND deleted_at IS NULL";
 
-    /** SQL for deleting a given client tuple via client ID */
-    private static final String DELETE_CLIENT = "DELETE FROM client WHERE client_id = :clientId";
+    /**
+     * SQL for marking a given client tuple deleted via client ID; the {@link SoftDeletePurger}
+     * removes it later
+     */
+    private static final String DELETE_CLIENT = "UPDATE client " +
+                                                "SET deleted_at = CURRENT_TIMESTAMP " +
+                                                "WHERE client_id = :clientId " +
+                                                "AND deleted_at IS NULL";
 
-    /** SQL for removing a new client/person association via person ID and client ID */
+    /**
+     * SQL for removing a client/person association via person ID and client ID, unless either is
+     * deleted
+     */
     private static final String REMOVE_ASSOCIATION = "DELETE FROM client_person_associations " +
                                                      "WHERE client_id = :clientId " +
-                                                     "AND person_id = :personId";
+                                                     "AND person_id = :personId " +
+                                                     "AND EXISTS (" +
+                                                         "SELECT 1 FROM client " +
+                                                         "WHERE client_id = :clientId " +
+                                                         "AND deleted_at IS NULL" +
+                                                     ") " +
+                                                     "AND EXISTS (" +
+                                                         "SELECT 1 FROM person " +
+                                                         "WHERE person_id = :personId " +
+                                                         "AND deleted_at IS NULL" +
+                                                     ")";
 
-    /** SQL for inserting a new client/person association via person ID and client ID */
+    /**
+     * SQL for inserting a new client/person association via person ID and client ID, unless the
+     * association already exists or either is deleted
+     */
     private static final String ADD_ASSOCIATION = "INSERT INTO client_person_associations ( " +
                                                       "client_id, " +
                                                       "person_id " +
-                                                  ") VALUES ( " +
-                                                      ":clientId, " +
-                                                      ":personId " +
+                                                  ") SELECT :clientId, :personId FROM DUAL " +
+                                                  "WHERE NOT EXISTS ( " +
+                                                      "SELECT 1 " +
+                                                      "FROM client_person_associations " +
+                                                      "WHERE client_id = :clientId " +
+                                                      "AND person_id = :personId" +
+                                                  ") " +
+                                                  "AND EXISTS (" +
+                                                      "SELECT 1 FROM client " +
+                                                      "WHERE client_id = :clientId " +
+                                                      "AND deleted_at IS NULL" +
+                                                  ") " +
+                                                  "AND EXISTS (" +
+                                                      "SELECT 1 FROM person " +
+                                                      "WHERE person_id = :personId " +
+                                                      "AND deleted_at IS NULL" +
                                                   ")";
 
-    /** SQL for getting all associated person tuples via client ID */
-    private static final String GET_CONTACTS = "SELECT  p.person_id, " +
-                                                       "first_name, " +
-                                                       "last_name, " +
-                                                       "email_address, " +
-                                                       "p.street_address, " +
-                                                       "p.city, " +
-                                                       "p.state, " +
-                                                       "p.zip_code " +
-                                               "FROM client c JOIN client_person_associations cpa" +
-                                               " ON c.client_id = cpa.client_id " +
-                                               "JOIN person p " +
-                                               "ON cpa.person_id = p.person_id " +
-                                               "WHERE cpa.client_id = :clientId";
+    /** The start of a query selecting person tuples */
+    private static final String SELECT_PEOPLE = "SELECT  person_id, " +
+                                                        "first_name, " +
+                                                        "last_name, " +
+                                                        "email_address, " +
+                                                        "street_address, " +
+                                                        "city, " +
+                                                        "state, " +
+                                                        "zip_code, " +
+                                                        "version " +
+                                                "FROM person ";
+
+    /** The start of a query selecting person summaries */
+    private static final String SELECT_PERSON_SUMMARIES = "SELECT  person_id, " +
+                                                                  "first_name, " +
+                                                                  "last_name, " +
+                                                                  "email_address, " +
+                                                                  "client_count " +
+                                                          "FROM person ";
+
+    /** SQL for retrieving the person tuples with any of a set of person IDs, in listing order */
+    private static final String READ_PEOPLE = SELECT_PEOPLE +
+                                              "WHERE person_id IN (:personIds) " +
+                                              "AND deleted_at IS NULL " +
+                                              "ORDER BY first_name, last_name, person_id";
+
+    /**
+     * The WHERE of the person tuples not associated with a client.
+     *
+     * The subquery is answered from the (client_id, person_id) index alone and evaluated once into
+     * a hash set, which H2 probes per person row under the keyset predicate. person_id is NOT NULL so
+     * NOT IN has the same meaning as NOT EXISTS here, and AssociationQueryBenchmark measures it
+     * faster than a correlated NOT EXISTS, for whole listings and for pages alike.
+     */
+    private static final String WHERE_AVAILABLE = "WHERE deleted_at IS NULL " +
+                                                  "AND person_id NOT IN (" +
+                                                      "SELECT a.person_id " +
+                                                      "FROM client_person_associations a " +
+                                                      "WHERE a.client_id = :clientId" +
+                                                  ") ";
+
+    /** The rest of a query for the first page of the person tuples not associated with a client */
+    private static final String AVAILABLE_FIRST_PAGE = WHERE_AVAILABLE +
+                                                       "ORDER BY first_name, last_name, " +
+                                                                "person_id " +
+                                                       "LIMIT :limit";
+
+    /**
+     * The rest of a query for a page of the person tuples not associated with a client which sort
+     * after a cursor
+     */
+    private static final String AVAILABLE_AFTER = WHERE_AVAILABLE +
+                                                  "AND first_name >= :firstName " +
+                                                  "AND (first_name > :firstName " +
+                                                       "OR last_name > :lastName " +
+                                                       "OR (last_name = :lastName " +
+                                                           "AND person_id > :personId)) " +
+                                                  "ORDER BY first_name, last_name, person_id " +
+                                                  "LIMIT :limit";
+
+    /**
+     * The rest of a query for a page of the person tuples not associated with a client which sort
+     * before a cursor, in reverse order
+     */
+    private static final String AVAILABLE_BEFORE = WHERE_AVAILABLE +
+                                                   "AND first_name <= :firstName " +
+                                                   "AND (first_name < :firstName " +
+                                                        "OR last_name < :lastName " +
+                                                        "OR (last_name = :lastName " +
+                                                            "AND person_id < :personId)) " +
+                                                   "ORDER BY first_name DESC, last_name DESC, " +
+                                                            "person_id DESC " +
+                                                   "LIMIT :limit";
+
+    /** SQL for getting the IDs of all associated person tuples via client ID */
+    private static final String GET_ASSOCIATION_IDS = "SELECT a.person_id " +
+                                                      "FROM client_person_associations a " +
+                                                      "JOIN person p " +
+                                                      "ON p.person_id = a.person_id " +
+                                                      "WHERE a.client_id = :clientId " +
+                                                      "AND p.deleted_at IS NULL";
 
     private final NamedParameterJdbcTemplate namedParameterJdbcTemplate;
 
-    public jdbcClientDAO(NamedParameterJdbcTemplate namedParameterJdbcTemplate) {
+    /** The JDBC fetch size used when streaming every client tuple */
+    private final int exportFetchSize;
+
+    /** The in-memory association index, seen from clients */
+    private final AssociationIndex.View associationIndex;
+
+    public jdbcClientDAO(NamedParameterJdbcTemplate namedParameterJdbcTemplate,
+                         @Value("${crudapp.export.fetch-size:500}") int exportFetchSize,
+                         AssociationIndex associationIndex) {
         this.namedParameterJdbcTemplate = namedParameterJdbcTemplate;
+        this.exportFetchSize = exportFetchSize;
+        this.associationIndex = associationIndex.clientView();
     }
 
     /**
@@ -155,47 +430,212 @@ public class jdbcClientDAO implements EntityDao<Client, Person> {
     }
 
     /**
-     * Get a list of all entities associated with the entity via entity ID
+     * Streams every client record, in listing order, to an action as the rows are fetched.
+     *
+     * @param action Receives each client record
+     */
+    @Override
+    @Transactional(propagation = Propagation.SUPPORTS, readOnly = true)
+    public void forEachEntity(Consumer<? super Client> action) {
+        RowStreams.forEach(namedParameterJdbcTemplate.getJdbcOperations(), LIST_CLIENTS,
+                           exportFetchSize, new ClientRowMapper(), action);
+    }
+
+    /**
+     * Retrieves one page of client records, ordered by company name and website, seeking from a
+     * cursor on (company_name, website, client_id).
+     *
+     * @param cursor The cursor to seek from, or null for the first page
+     * @param pageSize The maximum number of client records on the page
+     * @return The page of client records
+     */
+    @Override
+    @Transactional(propagation = Propagation.SUPPORTS, readOnly = true)
+    public Page<Client> listEntities(PageCursor cursor, int pageSize) {
+        return listPage(cursor, pageSize, LIST_CLIENTS_FIRST_PAGE, LIST_CLIENTS_AFTER,
+                        LIST_CLIENTS_BEFORE, new ClientRowMapper(),
+                        (client, direction) -> new PageCursor(client.getCompanyName(),
+                                                              client.getWebsite(),
+                                                              client.getEntityId(), direction));
+    }
+
+    /**
+     * Retrieves one page of client summaries, in the order of {@link #listEntities(PageCursor,
+     * int)}, selecting only the columns the listing shows.
+     *
+     * @param cursor The cursor to seek from, or null for the first page
+     * @param pageSize The maximum number of client summaries on the page
+     * @return The page of client summaries
+     */
+    @Override
+    @Transactional(propagation = Propagation.SUPPORTS, readOnly = true)
+    public Page<ClientSummary> listSummaries(PageCursor cursor, int pageSize) {
+        return listPage(cursor, pageSize, LIST_SUMMARIES_FIRST_PAGE,
+                        LIST_SUMMARIES_AFTER, LIST_SUMMARIES_BEFORE,
+                        new ClientSummaryRowMapper(),
+                        (client, direction) -> new PageCursor(client.getCompanyName(),
+                                                              client.getWebsite(),
+                                                              client.getEntityId(), direction));
+    }
+
+    /**
+     * Get a list of all entities associated with the entity via entity ID. The person IDs are
+     * taken from the association index and only those person tuples are read.
      *
      * @param clientId The entity ID field of the entity
-     * @return A list of all entities associated with the entity
+     * @return A list of all entities associated with the entity, ordered by first and last name
      */
     @Override
     @Transactional(propagation = Propagation.SUPPORTS, readOnly = true)
     public List<Person> getAssociations(Integer clientId) {
-        MapSqlParameterSource paramMapper = new MapSqlParameterSource();
-        paramMapper.addValue("clientId", clientId);
-        return namedParameterJdbcTemplate.query(GET_CONTACTS, paramMapper, new PersonRowMapper());
+        return readPeople(associationIndex.associated(clientId));
     }
 
     /**
-     * Get a list of all entities not associated with the entity.
+     * Retrieves one page of the entities not associated with the entity, ordered by first and last
+     * name, seeking from a cursor on (first_name, last_name, person_id).
      *
      * @param clientId The entity ID field of the entity
-     * @return A list of all entities not associated with the entity
+     * @param cursor The cursor to seek from, or null for the first page
+     * @param pageSize The maximum number of entities on the page
+     * @return The page of the entities not associated with the entity
      */
     @Override
     @Transactional(propagation = Propagation.SUPPORTS, readOnly = true)
-    public List<Person> getAvailableAssociations(Integer clientId) {
-        MapSqlParameterSource paramMapper = new MapSqlParameterSource();
-        paramMapper.addValue("clientId", clientId);
-        return namedParameterJdbcTemplate.query(LIST_AVAILABLE_CONTACTS, paramMapper,
-                                                new PersonRowMapper());
+    public Page<Person> getAvailableAssociations(Integer clientId, PageCursor cursor,
+                                                 int pageSize) {
+        return availablePage(clientId, cursor, pageSize, SELECT_PEOPLE, new PersonRowMapper(),
+                             (person, direction) -> new PageCursor(person.getFirstName(),
+                                                                   person.getLastName(),
+                                                                   person.getEntityId(),
+                                                                   direction));
     }
 
     /**
-     * Add an association with a given entity.
+     * Retrieves one page of summaries of the entities not associated with the entity, in the
+     * order of {@link #getAvailableAssociations(Integer, PageCursor, int)}, selecting only the
+     * columns the picker shows.
+     *
+     * @param clientId The entity ID field of the entity
+     * @param cursor The cursor to seek from, or null for the first page
+     * @param pageSize The maximum number of summaries on the page
+     * @return The page of summaries of the entities not associated with the entity
+     */
+    @Override
+    @Transactional(propagation = Propagation.SUPPORTS, readOnly = true)
+    public Page<PersonSummary> getAvailableAssociationSummaries(Integer clientId,
+                                                                PageCursor cursor,
+                                                                int pageSize) {
+        return availablePage(clientId, cursor, pageSize, SELECT_PERSON_SUMMARIES,
+                             new PersonSummaryRowMapper(),
+                             (person, direction) -> new PageCursor(person.getFirstName(),
+                                                                   person.getLastName(),
+                                                                   person.getEntityId(),
+                                                                   direction));
+    }
+
+    /**
+     * Add an association with a given entity. Adding an existing association has no effect.
      *
      * @param clientId The ID of the entity
      * @param personId The ID of the entity which should be associated
      */
     @Override
-    @Transactional(propagation = Propagation.SUPPORTS)
+    @Transactional
     public void addAssociation(Integer clientId, Integer personId) {
         MapSqlParameterSource mapSqlParameterSource = new MapSqlParameterSource();
         mapSqlParameterSource.addValue("personId", personId);
         mapSqlParameterSource.addValue("clientId", clientId);
-        namedParameterJdbcTemplate.update(ADD_ASSOCIATION, mapSqlParameterSource);
+
+        // nothing is inserted if the association exists, which the index already holds, or
+        // if either entity is deleted
+        try {
+            if (namedParameterJdbcTemplate.update(ADD_ASSOCIATION, mapSqlParameterSource) > 0) {
+                AssociationCounts.adjust(namedParameterJdbcTemplate, personId, clientId, 1);
+                ChangeEvents.recordAssociation(namedParameterJdbcTemplate, personId, clientId,
+                                               ChangeEvent.Type.ASSOCIATED);
+                associationIndex.associate(clientId, personId);
+            }
+        } catch (DuplicateKeyException e) {
+            // a concurrent request added the same association first
+        }
+    }
+
+    /**
+     * Add associations with a set of entities in one batch. Existing associations, including
+     * any a concurrent request adds first, are left as they are.
+     *
+     * @param clientId The ID of the entity
+     * @param personIds The IDs of the entities which should be associated
+     */
+    @Override
+    @Transactional
+    public void addAssociations(Integer clientId, Collection<Integer> personIds) {
+        if (!personIds.isEmpty()) {
+            SqlParameterSource[] batch = associationBatch(clientId, personIds);
+            int[] updateCounts = BatchInserts.insertIgnoringDuplicates(namedParameterJdbcTemplate,
+                                                                       ADD_ASSOCIATION, batch);
+            AssociationCounts.adjust(namedParameterJdbcTemplate, batch, updateCounts, 1);
+            ChangeEvents.recordAssociations(namedParameterJdbcTemplate, batch, updateCounts,
+                                            ChangeEvent.Type.ASSOCIATED);
+            associationIndex.associate(clientId,
+                                       AssociationCounts.changed(batch, updateCounts, "personId"));
+        }
+    }
+
+    /**
+     * Remove associations with a set of entities in one batch.
+     *
+     * @param clientId The ID of the entity
+     * @param personIds The IDs of the associated entities, the associations with which are
+     *                  to be removed
+     */
+    @Override
+    @Transactional
+    public void removeAssociations(Integer clientId, Collection<Integer> personIds) {
+        if (!personIds.isEmpty()) {
+            SqlParameterSource[] batch = associationBatch(clientId, personIds);
+            int[] updateCounts = namedParameterJdbcTemplate.batchUpdate(REMOVE_ASSOCIATION,
+                                                                        batch);
+            AssociationCounts.adjust(namedParameterJdbcTemplate, batch, updateCounts, -1);
+            ChangeEvents.recordAssociations(namedParameterJdbcTemplate, batch, updateCounts,
+                                            ChangeEvent.Type.DISSOCIATED);
+            associationIndex.dissociate(clientId, personIds);
+        }
+    }
+
+    /**
+     * Make the entity associated with exactly a given set of entities. The current associations
+     * are read in one query and only the difference is written, as one batch of inserts and one
+     * of deletes, in one transaction.
+     *
+     * @param clientId The ID of the entity
+     * @param desiredIds The IDs of all the entities which should be associated once done
+     */
+    @Override
+    @Transactional
+    public void syncAssociations(Integer clientId, Collection<Integer> desiredIds) {
+        Set<Integer> current = new HashSet<>(namedParameterJdbcTemplate.queryForList(
+                GET_ASSOCIATION_IDS, Collections.singletonMap("clientId", clientId),
+                Integer.class));
+        Set<Integer> desired = new HashSet<>(desiredIds);
+
+        List<Integer> toRemove = new ArrayList<>();
+        for (Integer personId : current) {
+            if (!desired.contains(personId)) {
+                toRemove.add(personId);
+            }
+        }
+
+        List<Integer> toAdd = new ArrayList<>();
+        for (Integer personId : desired) {
+            if (!current.contains(personId)) {
+                toAdd.add(personId);
+            }
+        }
+
+        removeAssociations(clientId, toRemove);
+        addAssociations(clientId, toAdd);
     }
 
     /**
@@ -211,7 +651,31 @@ public class jdbcClientDAO implements EntityDao<Client, Person> {
         KeyHolder keyHolder = new GeneratedKeyHolder();
         namedParameterJdbcTemplate.update(CREATE_CLIENT,
                                           new BeanPropertySqlParameterSource(client), keyHolder);
-        return keyHolder.getKey().intValue();
+        int clientId = keyHolder.getKey().intValue();
+        ChangeEvents.record(namedParameterJdbcTemplate, ChangeEvent.CLIENT, clientId,
+                            ChangeEvent.Type.CREATED);
+        return clientId;
+    }
+
+    /**
+     * Creates new client records with one JDBC batch, setting the new client ID on each.
+     *
+     * @param clients the values to save
+     *
+     * @return the number of client records created
+     */
+    @Override
+    @Transactional(propagation = Propagation.SUPPORTS)
+    public int createEntities(Collection<Client> clients) {
+        if (clients.isEmpty()) {
+            return 0;
+        }
+
+        List<Integer> clientIds = BatchInserts.insert(namedParameterJdbcTemplate, CREATE_CLIENT,
+                                                      clients);
+        ChangeEvents.recordAll(namedParameterJdbcTemplate, ChangeEvent.CLIENT, clientIds,
+                               ChangeEvent.Type.CREATED);
+        return clients.size();
     }
 
     /**
@@ -228,6 +692,22 @@ public class jdbcClientDAO implements EntityDao<Client, Person> {
                 "clientId", clientId), new ClientRowMapper());
     }
 
+    /**
+     * Retrieves a client record by ID together with its contacts, with one query.
+     *
+     * @param clientId the client ID
+     * @return the client record and its contacts, ordered by first and last name
+     */
+    @Override
+    @Transactional(propagation = Propagation.SUPPORTS, readOnly = true)
+    public EntityWithAssociations<Client, Person> readEntityWithAssociations(Integer clientId) {
+        return namedParameterJdbcTemplate.query(
+                READ_CLIENT_WITH_CONTACTS, Collections.singletonMap("clientId", clientId),
+                new EntityWithAssociationsExtractor<>(new ClientRowMapper(),
+                                                      new PersonRowMapper("contact_"),
+                                                      "contact_person_id"));
+    }
+
     /**
      * Retrieve an associated entity via ID
      *
@@ -249,36 +729,155 @@ public class jdbcClientDAO implements EntityDao<Client, Person> {
      *                      removed
      */
     @Override
-    @Transactional(propagation = Propagation.SUPPORTS)
+    @Transactional
     public void removeAssociation(Integer clientId, Integer personId) {
         MapSqlParameterSource mapSqlParameterSource = new MapSqlParameterSource();
         mapSqlParameterSource.addValue("clientId", clientId);
         mapSqlParameterSource.addValue("personId", personId);
-        namedParameterJdbcTemplate.update(REMOVE_ASSOCIATION, mapSqlParameterSource);
+        if (namedParameterJdbcTemplate.update(REMOVE_ASSOCIATION, mapSqlParameterSource) > 0) {
+            AssociationCounts.adjust(namedParameterJdbcTemplate, personId, clientId, -1);
+            ChangeEvents.recordAssociation(namedParameterJdbcTemplate, personId, clientId,
+                                           ChangeEvent.Type.DISSOCIATED);
+        }
+        associationIndex.dissociate(clientId, personId);
     }
 
     /**
-     * Updates an existing client record.
+     * Updates an existing client record, provided nobody has updated it since it was read, and
+     * moves the client to the next version.
      *
-     * @param client the new values to save
+     * @param client the new values to save, with the version which was read
+     * @throws OptimisticLockingFailureException if the client record has been updated or deleted
+     *                                           since it was read
      */
     @Override
     @Transactional(propagation = Propagation.SUPPORTS)
     public void updateEntity(Client client) {
-        namedParameterJdbcTemplate.update(UPDATE_CLIENT,
-                                          new BeanPropertySqlParameterSource(client));
+        if (namedParameterJdbcTemplate.update(UPDATE_CLIENT,
+                                              new BeanPropertySqlParameterSource(client)) == 0) {
+            throw new OptimisticLockingFailureException("Client " + client.getEntityId() +
+                                                        " is no longer at version " +
+                                                        client.getVersion());
+        }
+
+        client.setVersion(client.getVersion() + 1);
+        ChangeEvents.record(namedParameterJdbcTemplate, ChangeEvent.CLIENT, client.getEntityId(),
+                            ChangeEvent.Type.UPDATED);
     }
 
     /**
-     * Deletes a client record by ID.
+     * Marks a client record deleted by ID, and takes the client off the client counts of its
+     * contacts in the same transaction. The {@link SoftDeletePurger} removes the row later.
      *
      * @param clientId the client ID
      */
     @Override
-    @Transactional(propagation = Propagation.SUPPORTS)
+    @Transactional
     public void deleteEntity(Integer clientId) {
-        namedParameterJdbcTemplate.update(DELETE_CLIENT, Collections.singletonMap("clientId",
-                                                                                  clientId));
+        if (namedParameterJdbcTemplate.update(DELETE_CLIENT,
+                                              Collections.singletonMap("clientId", clientId)) > 0) {
+            AssociationCounts.clientDeleted(namedParameterJdbcTemplate, clientId);
+            ChangeEvents.record(namedParameterJdbcTemplate, ChangeEvent.CLIENT, clientId,
+                                ChangeEvent.Type.DELETED);
+            associationIndex.deleted(clientId);
+        }
+    }
+
+    /**
+     * Read one page of client tuples with a keyset query.
+     *
+     * @param cursor The cursor to seek from, or null for the first page
+     * @param pageSize The maximum number of rows on the page
+     * @param firstPageSql The query of the first page
+     * @param afterSql The query of the page after a cursor
+     * @param beforeSql The query of the page before a cursor, in reverse order
+     * @param rowMapper Maps each row
+     * @param cursorFactory Builds a cursor for a given row and seek direction
+     * @param <R> The type each row is mapped to
+     * @return The page
+     */
+    private <R> Page<R> listPage(PageCursor cursor, int pageSize, String firstPageSql,
+                                 String afterSql, String beforeSql, RowMapper<R> rowMapper,
+                                 BiFunction<R, Direction, PageCursor> cursorFactory) {
+        MapSqlParameterSource paramMapper = new MapSqlParameterSource();
+        paramMapper.addValue("limit", pageSize + 1);
+        String sql = firstPageSql;
+
+        if (cursor != null) {
+            paramMapper.addValue("companyName", cursor.getPrimaryKey());
+            paramMapper.addValue("website", cursor.getSecondaryKey());
+            paramMapper.addValue("clientId", cursor.getEntityId());
+            sql = cursor.getDirection() == Direction.BEFORE ? beforeSql : afterSql;
+        }
+
+        List<R> rows = namedParameterJdbcTemplate.query(sql, paramMapper, rowMapper);
+        return KeysetPages.toPage(rows, cursor, pageSize, cursorFactory);
+    }
+
+    /**
+     * Read one page of the person tuples not associated with a client with a keyset query.
+     *
+     * @param clientId The ID of the client
+     * @param cursor The cursor to seek from, or null for the first page
+     * @param pageSize The maximum number of rows on the page
+     * @param select The start of the query, selecting the columns mapped
+     * @param rowMapper Maps each row
+     * @param cursorFactory Builds a cursor for a given row and seek direction
+     * @param <R> The type each row is mapped to
+     * @return The page
+     */
+    private <R> Page<R> availablePage(Integer clientId, PageCursor cursor, int pageSize,
+                                      String select, RowMapper<R> rowMapper,
+                                      BiFunction<R, Direction, PageCursor> cursorFactory) {
+        MapSqlParameterSource paramMapper = new MapSqlParameterSource();
+        paramMapper.addValue("clientId", clientId);
+        paramMapper.addValue("limit", pageSize + 1);
+        String sql = select + AVAILABLE_FIRST_PAGE;
+
+        if (cursor != null) {
+            paramMapper.addValue("firstName", cursor.getPrimaryKey());
+            paramMapper.addValue("lastName", cursor.getSecondaryKey());
+            paramMapper.addValue("personId", cursor.getEntityId());
+            sql = select + (cursor.getDirection() == Direction.BEFORE ? AVAILABLE_BEFORE :
+                            AVAILABLE_AFTER);
+        }
+
+        List<R> rows = namedParameterJdbcTemplate.query(sql, paramMapper, rowMapper);
+        return KeysetPages.toPage(rows, cursor, pageSize, cursorFactory);
+    }
+
+    /**
+     * Read the person tuples with the given IDs in one query.
+     */
+    private List<Person> readPeople(int[] personIds) {
+        if (personIds.length == 0) {
+            return new ArrayList<>();
+        }
+
+        List<Integer> ids = new ArrayList<>(personIds.length);
+        for (int personId : personIds) {
+            ids.add(personId);
+        }
+
+        return namedParameterJdbcTemplate.query(READ_PEOPLE,
+                                                Collections.singletonMap("personIds", ids),
+                                                new PersonRowMapper());
+    }
+
+    /**
+     * Build batch parameters pairing a client ID with each of a set of person IDs.
+     */
+    private static SqlParameterSource[] associationBatch(Integer clientId,
+                                                         Collection<Integer> personIds) {
+        SqlParameterSource[] batch = new SqlParameterSource[personIds.size()];
+        int i = 0;
+
+        for (Integer personId : personIds) {
+            batch[i++] = new MapSqlParameterSource().addValue("clientId", clientId)
+                                                    .addValue("personId", personId);
+        }
+
+        return batch;
     }
 
 }
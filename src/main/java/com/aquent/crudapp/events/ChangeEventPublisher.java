@@ -0,0 +1,449 @@
+package com.aquent.crudapp.events;
+
+import com.aquent.crudapp.data_access.JdbcChangeEventDAO;
+import com.aquent.crudapp.model.ChangeEvent;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.http.MediaType;
+import org.springframework.stereotype.Component;
+import org.springframework.web.servlet.mvc.method.annotation.ResponseBodyEmitter;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Publishes the change_event outbox as a feed of Server-Sent Events, each event's id field its
+ * event ID, so a subscriber which reconnects with a Last-Event-ID header resumes after the last
+ * event it received.
+ *
+ * The outbox is polled every crudapp.events.poll-ms on a thread of its own, and the new events
+ * are handed to the subscribers which are keeping up, into a buffer of
+ * crudapp.events.buffer-size events each. A pool of crudapp.events.sender-threads threads writes
+ * each subscriber's buffered events, up to crudapp.events.batch-size at a time, with one write
+ * and flush. Subscribers which are behind, either on subscribing or because their buffer
+ * overflowed, read the outbox themselves until they catch up (see
+ * {@link ChangeEventSubscriber}), so slow subscribers hold no more than their buffer in memory.
+ * Idle streams carry a comment every crudapp.events.heartbeat-seconds, and are ended after
+ * crudapp.events.timeout-seconds, for the subscriber to reconnect.
+ *
+ * Writes to a stream block while its client is not reading. A subscriber whose write has been
+ * blocked for crudapp.events.send-timeout-ms is dropped, and its sending thread is replaced in
+ * the pool until the write fails, which it does once the connection times out, so clients which
+ * stop reading cannot hold up the others.
+ *
+ * Event IDs are allocated when events are inserted but become visible when their transaction
+ * commits, so a transaction committing late can leave a gap before events already visible. The
+ * feed stops at such a gap until it fills, or for at most crudapp.events.gap-timeout-ms, after
+ * which the missing IDs are taken to have been rolled back. An event whose transaction commits
+ * later still is never published; the IDs skipped are logged at WARN.
+ *
+ * Events older than crudapp.events.retention-hours are deleted hourly.
+ */
+@Component
+public class ChangeEventPublisher {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(ChangeEventPublisher.class);
+
+    private static final MediaType EVENT_STREAM =
+            new MediaType(MediaType.TEXT_EVENT_STREAM, StandardCharsets.UTF_8);
+
+    private static final String HEARTBEAT = ":\n\n";
+
+    private final JdbcChangeEventDAO changeEventDao;
+
+    private final ObjectMapper objectMapper;
+
+    private final long pollMillis;
+
+    /** The most events read, or written to a subscriber, at a time */
+    private final int batchSize;
+
+    private final int bufferSize;
+
+    private final long heartbeatNanos;
+
+    private final long timeoutMillis;
+
+    private final long gapTimeoutNanos;
+
+    private final long sendTimeoutNanos;
+
+    private final Duration retention;
+
+    private final Set<ChangeEventSubscriber> subscribers = ConcurrentHashMap.newKeySet();
+
+    /** Guards the published position and which subscribers are live */
+    private final Object lock = new Object();
+
+    /** The ID of the latest event published; guarded by the lock */
+    private long published;
+
+    /** The ID after which the feed is waiting for a gap to fill, or -1 if it is not */
+    private long gapAfterId = -1;
+
+    /** When the feed started waiting for the gap to fill */
+    private long gapSinceNanos;
+
+    private final ScheduledExecutorService poller = Executors.newSingleThreadScheduledExecutor(
+            runnable -> {
+                Thread thread = new Thread(runnable, "change-event-poller");
+                thread.setDaemon(true);
+                return thread;
+            });
+
+    private final ThreadPoolExecutor senders;
+
+    public ChangeEventPublisher(
+            JdbcChangeEventDAO changeEventDao,
+            ObjectMapper objectMapper,
+            @Value("${crudapp.events.poll-ms:200}") long pollMillis,
+            @Value("${crudapp.events.batch-size:500}") int batchSize,
+            @Value("${crudapp.events.buffer-size:1000}") int bufferSize,
+            @Value("${crudapp.events.sender-threads:4}") int senderThreads,
+            @Value("${crudapp.events.heartbeat-seconds:15}") long heartbeatSeconds,
+            @Value("${crudapp.events.timeout-seconds:300}") long timeoutSeconds,
+            @Value("${crudapp.events.gap-timeout-ms:5000}") long gapTimeoutMillis,
+            @Value("${crudapp.events.send-timeout-ms:10000}") long sendTimeoutMillis,
+            @Value("${crudapp.events.retention-hours:24}") long retentionHours) {
+        this.changeEventDao = changeEventDao;
+        this.objectMapper = objectMapper;
+        this.pollMillis = pollMillis;
+        this.batchSize = batchSize;
+        this.bufferSize = bufferSize;
+        this.heartbeatNanos = TimeUnit.SECONDS.toNanos(heartbeatSeconds);
+        this.timeoutMillis = TimeUnit.SECONDS.toMillis(timeoutSeconds);
+        this.gapTimeoutNanos = TimeUnit.MILLISECONDS.toNanos(gapTimeoutMillis);
+        this.sendTimeoutNanos = TimeUnit.MILLISECONDS.toNanos(sendTimeoutMillis);
+        this.retention = Duration.ofHours(retentionHours);
+
+        AtomicInteger threadNumber = new AtomicInteger();
+        this.senders = new ThreadPoolExecutor(senderThreads, senderThreads, 0,
+                                              TimeUnit.MILLISECONDS, new LinkedBlockingQueue<>(),
+                                              runnable -> {
+            Thread thread = new Thread(runnable,
+                                       "change-event-sender-" + threadNumber.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    /**
+     * Publishes only the events recorded from now on.
+     */
+    @PostConstruct
+    public void init() {
+        published = changeEventDao.lastEventId();
+    }
+
+    /**
+     * Starts polling the outbox once the application is ready to serve requests.
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public void start() {
+        poller.scheduleWithFixedDelay(this::pollQuietly, pollMillis, pollMillis,
+                                      TimeUnit.MILLISECONDS);
+        poller.scheduleWithFixedDelay(this::pruneQuietly, 1, 60, TimeUnit.MINUTES);
+    }
+
+    @PreDestroy
+    public void stop() {
+        poller.shutdownNow();
+        senders.shutdownNow();
+        for (ChangeEventSubscriber subscriber : subscribers) {
+            close(subscriber);
+        }
+    }
+
+    /**
+     * Subscribe to the feed.
+     *
+     * @param lastEventId The ID of the last event the subscriber received, to resume after, or
+     *                    null to receive only the events published from now on
+     * @return The stream of events
+     */
+    public ResponseBodyEmitter subscribe(Long lastEventId) {
+        ResponseBodyEmitter emitter = new ResponseBodyEmitter(timeoutMillis);
+        ChangeEventSubscriber subscriber;
+
+        try {
+            // the response is only committed, opening the stream, by the first write
+            emitter.send(HEARTBEAT, EVENT_STREAM);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+
+        synchronized (lock) {
+            // an ID beyond the latest, such as from before the outbox was reset, resumes now
+            long position = lastEventId == null ? published : Math.min(lastEventId, published);
+            subscriber = new ChangeEventSubscriber(emitter, bufferSize, position);
+            subscriber.setLive(position == published);
+            subscribers.add(subscriber);
+        }
+
+        emitter.onCompletion(() -> remove(subscriber));
+        emitter.onTimeout(() -> close(subscriber));
+        emitter.onError(e -> remove(subscriber));
+        send(subscriber);
+        return emitter;
+    }
+
+    /**
+     * @return The ID of the latest event published
+     */
+    long getPublished() {
+        synchronized (lock) {
+            return published;
+        }
+    }
+
+    /**
+     * Publish the events recorded since the last poll, up to the first gap still expected to
+     * fill, and send heartbeats to the subscribers which are due one.
+     */
+    void poll() {
+        long from;
+        synchronized (lock) {
+            from = published;
+        }
+
+        List<ChangeEvent> events = changeEventDao.readEvents(from, Long.MAX_VALUE, batchSize);
+        List<ChangeEvent> publishable = events.subList(0, publishable(from, events));
+
+        if (!publishable.isEmpty()) {
+            synchronized (lock) {
+                published = publishable.get(publishable.size() - 1).getEventId();
+                for (ChangeEventSubscriber subscriber : subscribers) {
+                    if (subscriber.isLive()) {
+                        for (ChangeEvent event : publishable) {
+                            if (!subscriber.offer(event)) {
+                                break;
+                            }
+                        }
+                    }
+                }
+            }
+        }
+
+        long now = System.nanoTime();
+        for (ChangeEventSubscriber subscriber : subscribers) {
+            if (subscriber.markStalled(now, sendTimeoutNanos)) {
+                LOGGER.info("Dropping a change event subscriber which has not read for {} ms",
+                            TimeUnit.NANOSECONDS.toMillis(sendTimeoutNanos));
+                // the emitter cannot be completed while the blocked write holds it
+                remove(subscriber);
+                resizeSenders(1);
+                continue;
+            }
+            if (!publishable.isEmpty() || !subscriber.isLive() ||
+                now - subscriber.getLastSentNanos() >= heartbeatNanos) {
+                send(subscriber);
+            }
+        }
+    }
+
+    /**
+     * @param from The ID of the latest event published
+     * @param events The events after it, in ID order
+     * @return The number of the events which can be published
+     */
+    private int publishable(long from, List<ChangeEvent> events) {
+        long expected = from + 1;
+        int count = 0;
+
+        for (ChangeEvent event : events) {
+            if (event.getEventId() != expected) {
+                if (gapAfterId != expected - 1) {
+                    gapAfterId = expected - 1;
+                    gapSinceNanos = System.nanoTime();
+                }
+                if (System.nanoTime() - gapSinceNanos < gapTimeoutNanos) {
+                    return count;
+                }
+                LOGGER.warn("Skipping change events {} to {}, not committed within {} ms; " +
+                            "they will not be published if they commit later", expected,
+                            event.getEventId() - 1,
+                            TimeUnit.NANOSECONDS.toMillis(gapTimeoutNanos));
+            }
+
+            gapAfterId = -1;
+            expected = event.getEventId() + 1;
+            count++;
+        }
+
+        return count;
+    }
+
+    /**
+     * Have a sending thread work through a subscriber's events, unless one already is.
+     */
+    private void send(ChangeEventSubscriber subscriber) {
+        if (!subscriber.isClosed() && subscriber.startSending()) {
+            try {
+                senders.execute(() -> sendEvents(subscriber));
+            } catch (RuntimeException e) {
+                subscriber.stopSending();
+                close(subscriber);
+            }
+        }
+    }
+
+    private void sendEvents(ChangeEventSubscriber subscriber) {
+        try {
+            while (!subscriber.isClosed()) {
+                List<ChangeEvent> events = subscriber.isLive() ? subscriber.take(batchSize) :
+                                           catchUp(subscriber);
+                if (events == null) {
+                    continue;
+                }
+                if (events.isEmpty()) {
+                    if (System.nanoTime() - subscriber.getLastSentNanos() >= heartbeatNanos) {
+                        write(subscriber, HEARTBEAT);
+                        subscriber.sent();
+                    }
+                    break;
+                }
+
+                write(subscriber, format(events));
+                subscriber.setPosition(events.get(events.size() - 1).getEventId());
+                subscriber.sent();
+            }
+        } catch (IOException | RuntimeException e) {
+            LOGGER.debug("Could not send change events", e);
+            close(subscriber);
+        } finally {
+            subscriber.stopSending();
+        }
+
+        if (subscriber.isStalled()) {
+            // the write has returned, so the stream can be ended, and the thread added in place
+            // of this one while it was blocked is no longer needed
+            subscriber.getEmitter().complete();
+            resizeSenders(-1);
+            return;
+        }
+        if (subscriber.hasBuffered() || (!subscriber.isClosed() && !subscriber.isLive())) {
+            send(subscriber);
+        }
+    }
+
+    private static void write(ChangeEventSubscriber subscriber, String text) throws IOException {
+        subscriber.writing();
+        try {
+            subscriber.getEmitter().send(text, EVENT_STREAM);
+        } finally {
+            subscriber.written();
+        }
+    }
+
+    /**
+     * Grow or shrink the pool of sending threads, by one for each thread blocked writing to a
+     * subscriber which was dropped.
+     */
+    private void resizeSenders(int delta) {
+        synchronized (senders) {
+            if (delta > 0) {
+                senders.setMaximumPoolSize(senders.getMaximumPoolSize() + delta);
+                senders.setCorePoolSize(senders.getCorePoolSize() + delta);
+            } else {
+                senders.setCorePoolSize(senders.getCorePoolSize() + delta);
+                senders.setMaximumPoolSize(senders.getMaximumPoolSize() + delta);
+            }
+        }
+    }
+
+    /**
+     * Read the next events a subscriber which is not live is missing from the outbox, or make it
+     * live if it has none left.
+     *
+     * @return The events, or null if there were none
+     */
+    private List<ChangeEvent> catchUp(ChangeEventSubscriber subscriber) {
+        long upTo;
+        synchronized (lock) {
+            upTo = published;
+            if (subscriber.getPosition() >= upTo) {
+                subscriber.setLive(true);
+                return null;
+            }
+        }
+
+        List<ChangeEvent> events = changeEventDao.readEvents(subscriber.getPosition(), upTo,
+                                                             batchSize);
+        if (events.isEmpty()) {
+            // only IDs skipped by a gap are left
+            subscriber.setPosition(upTo);
+            return null;
+        }
+        return events;
+    }
+
+    private String format(List<ChangeEvent> events) throws JsonProcessingException {
+        StringBuilder text = new StringBuilder(events.size() * 160);
+
+        for (ChangeEvent event : events) {
+            text.append("id:").append(event.getEventId()).append('\n')
+                .append("data:").append(objectMapper.writeValueAsString(event)).append("\n\n");
+        }
+
+        return text.toString();
+    }
+
+    /**
+     * Stop sending to a subscriber and end its stream.
+     */
+    private void close(ChangeEventSubscriber subscriber) {
+        if (remove(subscriber)) {
+            subscriber.getEmitter().complete();
+        }
+    }
+
+    /**
+     * Stop sending to a subscriber whose stream has ended.
+     *
+     * @return false if it was already removed
+     */
+    private boolean remove(ChangeEventSubscriber subscriber) {
+        subscriber.close();
+        return subscribers.remove(subscriber);
+    }
+
+    private void pollQuietly() {
+        try {
+            poll();
+        } catch (RuntimeException e) {
+            LOGGER.warn("Could not poll the change events", e);
+        }
+    }
+
+    private void pruneQuietly() {
+        try {
+            Instant before = Instant.now().minus(retention);
+            int deleted;
+            do {
+                deleted = changeEventDao.deleteEvents(before, batchSize);
+            } while (deleted >= batchSize);
+        } catch (RuntimeException e) {
+            LOGGER.warn("Could not delete the old change events", e);
+        }
+    }
+
+}
@@ -0,0 +1,176 @@
+package com.aquent.crudapp.events;
+
+import com.aquent.crudapp.model.ChangeEvent;
+import org.springframework.web.servlet.mvc.method.annotation.ResponseBodyEmitter;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * One subscriber to the change feed: its stream, the position it has reached and, while it keeps
+ * up, a bounded buffer of the events published since.
+ *
+ * A subscriber is live while the publisher hands it each event as it is published. A subscriber
+ * which is not live, because it has just subscribed from an earlier event or because its buffer
+ * overflowed, reads the events it is missing from the outbox instead, at its own pace, until it
+ * reaches the events published and is live again. The buffer therefore bounds the memory held
+ * for a slow subscriber without losing any of its events.
+ */
+final class ChangeEventSubscriber {
+
+    private final ResponseBodyEmitter emitter;
+
+    private final BlockingQueue<ChangeEvent> buffer;
+
+    /** The ID of the latest event sent, or skipped past; only changed by the sending thread */
+    private volatile long position;
+
+    /** Only set, by the publisher, while holding its lock */
+    private volatile boolean live;
+
+    /** Whether a sending thread is working through the subscriber's events */
+    private final AtomicBoolean sending = new AtomicBoolean();
+
+    private volatile boolean closed;
+
+    private volatile long lastSentNanos = System.nanoTime();
+
+    /** When the write in progress started, or 0 if none is */
+    private volatile long writingSinceNanos;
+
+    /** Whether the publisher gave up on the subscriber as its write stalled */
+    private final AtomicBoolean stalled = new AtomicBoolean();
+
+    /**
+     * Instantiates a ChangeEventSubscriber
+     *
+     * @param emitter The stream the subscriber reads
+     * @param bufferSize The number of events buffered while the subscriber is live
+     * @param position The ID of the latest event the subscriber has seen
+     */
+    ChangeEventSubscriber(ResponseBodyEmitter emitter, int bufferSize, long position) {
+        this.emitter = emitter;
+        this.buffer = new ArrayBlockingQueue<>(bufferSize);
+        this.position = position;
+    }
+
+    ResponseBodyEmitter getEmitter() {
+        return emitter;
+    }
+
+    long getPosition() {
+        return position;
+    }
+
+    /**
+     * @param position The ID of the latest event sent or skipped past
+     */
+    void setPosition(long position) {
+        this.position = position;
+    }
+
+    boolean isLive() {
+        return live;
+    }
+
+    void setLive(boolean live) {
+        this.live = live;
+    }
+
+    boolean isClosed() {
+        return closed;
+    }
+
+    void close() {
+        closed = true;
+        buffer.clear();
+    }
+
+    /**
+     * Buffer an event published while the subscriber is live. If the buffer is full it is
+     * emptied, and the subscriber is no longer live, so that it reads the events from the outbox.
+     *
+     * @param event The event
+     * @return false if the buffer overflowed
+     */
+    boolean offer(ChangeEvent event) {
+        if (buffer.offer(event)) {
+            return true;
+        }
+
+        live = false;
+        buffer.clear();
+        return false;
+    }
+
+    /**
+     * Take the buffered events not yet sent.
+     *
+     * @param limit The maximum number of events to take
+     * @return The events, in ID order
+     */
+    List<ChangeEvent> take(int limit) {
+        List<ChangeEvent> taken = new ArrayList<>(Math.min(limit, buffer.size()));
+        buffer.drainTo(taken, limit);
+        taken.removeIf(event -> event.getEventId() <= position);
+        return taken;
+    }
+
+    boolean hasBuffered() {
+        return !buffer.isEmpty();
+    }
+
+    /**
+     * @return true if this thread is now the one sending to the subscriber
+     */
+    boolean startSending() {
+        return sending.compareAndSet(false, true);
+    }
+
+    void stopSending() {
+        sending.set(false);
+    }
+
+    long getLastSentNanos() {
+        return lastSentNanos;
+    }
+
+    void sent() {
+        lastSentNanos = System.nanoTime();
+    }
+
+    /**
+     * Record that a write to the stream is starting.
+     */
+    void writing() {
+        writingSinceNanos = Math.max(1, System.nanoTime());
+    }
+
+    /**
+     * Record that the write in progress has returned, whether or not it succeeded.
+     */
+    void written() {
+        writingSinceNanos = 0;
+    }
+
+    /**
+     * Mark the subscriber stalled if a write to its stream has been blocked for too long, as
+     * its client is not reading. Only the first call to find it stalled returns true.
+     *
+     * @param now The System.nanoTime() now
+     * @param timeoutNanos How long a write may block
+     * @return true if the subscriber has just been found stalled
+     */
+    boolean markStalled(long now, long timeoutNanos) {
+        long since = writingSinceNanos;
+        return since != 0 && now - since >= timeoutNanos && stalled.compareAndSet(false, true);
+    }
+
+    boolean isStalled() {
+        return stalled.get();
+    }
+
+}
@@ -0,0 +1,73 @@
+package com.aquent.crudapp.export;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+
+/**
+ * Writes entity records as CSV with a header row of column names.
+ *
+ * @param <E> The type of entity
+ */
+class CsvExportWriter<E> implements EntityExportWriter<E> {
+
+    private final Writer writer;
+
+    private final List<ExportColumn<E>> columns;
+
+    CsvExportWriter(OutputStream out, List<ExportColumn<E>> columns) throws IOException {
+        this.writer = new BufferedWriter(new OutputStreamWriter(out, StandardCharsets.UTF_8));
+        this.columns = columns;
+
+        for (int i = 0; i < columns.size(); i++) {
+            writeField(i, columns.get(i).getName());
+        }
+
+        writer.write("\r\n");
+    }
+
+    @Override
+    public void write(E entity) throws IOException {
+        for (int i = 0; i < columns.size(); i++) {
+            Object value = columns.get(i).valueOf(entity);
+            writeField(i, value == null ? "" : value.toString());
+        }
+
+        writer.write("\r\n");
+    }
+
+    @Override
+    public void close() throws IOException {
+        writer.flush();
+    }
+
+    /**
+     * Write one field, preceded by a separator unless it is the first on the line, quoting it
+     * only if it contains a separator, quote or line break.
+     */
+    private void writeField(int index, String value) throws IOException {
+        if (index > 0) {
+            writer.write(',');
+        }
+
+        boolean quote = false;
+
+        for (int i = 0; i < value.length() && !quote; i++) {
+            char c = value.charAt(i);
+            quote = c == ',' || c == '"' || c == '\n' || c == '\r';
+        }
+
+        if (quote) {
+            writer.write('"');
+            writer.write(value.replace("\"", "\"\""));
+            writer.write('"');
+        } else {
+            writer.write(value);
+        }
+    }
+
+}
@@ -0,0 +1,30 @@
+package com.aquent.crudapp.export;
+
+import java.io.Closeable;
+import java.io.IOException;
+
+/**
+ * Writes entity records to an export, one at a time.
+ *
+ * @param <E> The type of entity
+ */
+public interface EntityExportWriter<E> extends Closeable {
+
+    /**
+     * Write one entity record.
+     *
+     * @param entity The entity record
+     * @throws IOException if the record cannot be written
+     */
+    void write(E entity) throws IOException;
+
+    /**
+     * Flush any buffered records and finish the export. The underlying stream is flushed but
+     * not closed.
+     *
+     * @throws IOException if the export cannot be finished
+     */
+    @Override
+    void close() throws IOException;
+
+}
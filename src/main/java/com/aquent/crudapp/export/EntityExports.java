@@ -0,0 +1,74 @@
+package com.aquent.crudapp.export;
+
+import org.springframework.http.HttpHeaders;
+
+import javax.servlet.http.HttpServletResponse;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.util.List;
+import java.util.function.Consumer;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Streams entity records into an HTTP response.
+ *
+ * Each record is written to the servlet output stream as soon as it is read from the database, so
+ * memory use does not grow with the number of records and the first bytes are sent once the
+ * response buffer first fills.
+ */
+public final class EntityExports {
+
+    private EntityExports() {
+    }
+
+    /**
+     * Stream entity records into a response as an attachment.
+     *
+     * @param response The response to write to
+     * @param baseName The attachment file name, without extension
+     * @param format The export format
+     * @param gzip true to gzip the response body
+     * @param columns The columns to write for each entity record
+     * @param source Passes every entity record to the given action, e.g.
+     *               {@code entityService::forEachEntity}
+     * @param <E> The type of entity
+     * @throws IOException if the response cannot be written
+     */
+    public static <E> void stream(HttpServletResponse response, String baseName,
+                                  ExportFormat format, boolean gzip,
+                                  List<ExportColumn<E>> columns,
+                                  Consumer<Consumer<E>> source) throws IOException {
+        response.setContentType(format.getContentType());
+        response.setCharacterEncoding("UTF-8");
+        response.setHeader(HttpHeaders.CONTENT_DISPOSITION,
+                           "attachment; filename=\"" + baseName + "." + format.getExtension() +
+                           "\"");
+
+        OutputStream out = response.getOutputStream();
+
+        if (gzip) {
+            response.setHeader(HttpHeaders.CONTENT_ENCODING, "gzip");
+            out = new GZIPOutputStream(out, 8192);
+        }
+
+        try (EntityExportWriter<E> writer = format.open(out, columns)) {
+            source.accept(entity -> {
+                try {
+                    writer.write(entity);
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            });
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+
+        if (out instanceof GZIPOutputStream) {
+            ((GZIPOutputStream) out).finish();
+        }
+
+        out.flush();
+    }
+
+}
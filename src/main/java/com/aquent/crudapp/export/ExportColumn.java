@@ -0,0 +1,72 @@
+package com.aquent.crudapp.export;
+
+import com.aquent.crudapp.model.Client;
+import com.aquent.crudapp.model.Person;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.function.Function;
+
+/**
+ * A named column of an export, read from an entity record.
+ *
+ * Column names are the entity property names so that exported files can be read back by binding
+ * the header row onto the entity.
+ *
+ * @param <E> The type of entity
+ */
+public class ExportColumn<E> {
+
+    /** The columns exported for a client */
+    public static final List<ExportColumn<Client>> CLIENT_COLUMNS = Collections.unmodifiableList(
+            Arrays.asList(new ExportColumn<>("entityId", Client::getEntityId),
+                          new ExportColumn<>("companyName", Client::getCompanyName),
+                          new ExportColumn<>("website", Client::getWebsite),
+                          new ExportColumn<>("phone", Client::getPhone),
+                          new ExportColumn<>("streetAddress", Client::getStreetAddress),
+                          new ExportColumn<>("city", Client::getCity),
+                          new ExportColumn<>("state", Client::getState),
+                          new ExportColumn<>("zipCode", Client::getZipCode)));
+
+    /** The columns exported for a person */
+    public static final List<ExportColumn<Person>> PERSON_COLUMNS = Collections.unmodifiableList(
+            Arrays.asList(new ExportColumn<>("entityId", Person::getEntityId),
+                          new ExportColumn<>("firstName", Person::getFirstName),
+                          new ExportColumn<>("lastName", Person::getLastName),
+                          new ExportColumn<>("emailAddress", Person::getEmailAddress),
+                          new ExportColumn<>("streetAddress", Person::getStreetAddress),
+                          new ExportColumn<>("city", Person::getCity),
+                          new ExportColumn<>("state", Person::getState),
+                          new ExportColumn<>("zipCode", Person::getZipCode)));
+
+    private final String name;
+
+    private final Function<? super E, ?> accessor;
+
+    /**
+     * Instantiates an ExportColumn
+     *
+     * @param name The column name
+     * @param accessor Reads the column value from an entity record
+     */
+    public ExportColumn(String name, Function<? super E, ?> accessor) {
+        this.name = name;
+        this.accessor = accessor;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    /**
+     * Read this column's value from an entity record.
+     *
+     * @param entity The entity record
+     * @return The value, may be null
+     */
+    public Object valueOf(E entity) {
+        return accessor.apply(entity);
+    }
+
+}
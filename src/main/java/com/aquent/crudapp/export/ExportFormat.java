@@ -0,0 +1,67 @@
+package com.aquent.crudapp.export;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.List;
+
+/**
+ * The formats in which entity records can be exported.
+ */
+public enum ExportFormat {
+
+    /** Newline delimited JSON, one object per entity record */
+    NDJSON("application/x-ndjson", "ndjson"),
+
+    /** Comma separated values with a header row, quoted per RFC 4180 */
+    CSV("text/csv", "csv");
+
+    private final String contentType;
+
+    private final String extension;
+
+    ExportFormat(String contentType, String extension) {
+        this.contentType = contentType;
+        this.extension = extension;
+    }
+
+    /**
+     * Look up a format by its file extension, ignoring case.
+     *
+     * @param extension The extension, e.g. "csv"
+     * @return The format
+     * @throws IllegalArgumentException if no format has the extension
+     */
+    public static ExportFormat fromExtension(String extension) {
+        for (ExportFormat format : values()) {
+            if (format.extension.equalsIgnoreCase(extension)) {
+                return format;
+            }
+        }
+
+        throw new IllegalArgumentException("Unsupported export format: " + extension);
+    }
+
+    /**
+     * Open a writer for this format.
+     *
+     * @param out The stream to write to
+     * @param columns The columns to write for each entity record
+     * @param <E> The type of entity
+     * @return The writer
+     * @throws IOException if the header cannot be written
+     */
+    public <E> EntityExportWriter<E> open(OutputStream out, List<ExportColumn<E>> columns)
+            throws IOException {
+        return this == CSV ? new CsvExportWriter<>(out, columns) :
+               new NdjsonExportWriter<>(out, columns);
+    }
+
+    public String getContentType() {
+        return contentType;
+    }
+
+    public String getExtension() {
+        return extension;
+    }
+
+}
@@ -0,0 +1,60 @@
+package com.aquent.crudapp.export;
+
+import com.fasterxml.jackson.core.JsonEncoding;
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonGenerator;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.List;
+
+/**
+ * Writes entity records as newline delimited JSON.
+ *
+ * Fields are written directly with a streaming generator rather than by data binding, so no
+ * intermediate objects are built per record.
+ *
+ * @param <E> The type of entity
+ */
+class NdjsonExportWriter<E> implements EntityExportWriter<E> {
+
+    private static final JsonFactory JSON_FACTORY = new JsonFactory();
+
+    private final JsonGenerator generator;
+
+    private final List<ExportColumn<E>> columns;
+
+    NdjsonExportWriter(OutputStream out, List<ExportColumn<E>> columns) throws IOException {
+        this.generator = JSON_FACTORY.createGenerator(out, JsonEncoding.UTF8)
+                                     .disable(JsonGenerator.Feature.AUTO_CLOSE_TARGET)
+                                     .setRootValueSeparator(null);
+        this.columns = columns;
+    }
+
+    @Override
+    public void write(E entity) throws IOException {
+        generator.writeStartObject();
+
+        for (ExportColumn<E> column : columns) {
+            Object value = column.valueOf(entity);
+            generator.writeFieldName(column.getName());
+
+            if (value == null) {
+                generator.writeNull();
+            } else if (value instanceof Number) {
+                generator.writeNumber(((Number) value).longValue());
+            } else {
+                generator.writeString(value.toString());
+            }
+        }
+
+        generator.writeEndObject();
+        generator.writeRaw('\n');
+    }
+
+    @Override
+    public void close() throws IOException {
+        generator.close();
+    }
+
+}
@@ -0,0 +1,117 @@
+package com.aquent.crudapp.importing;
+
+import java.io.BufferedReader;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.Reader;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Reads CSV records one at a time from a character stream.
+ *
+ * Fields are separated by commas and may be quoted with double quotes, in which case they may
+ * contain commas, line breaks and doubled quotes, as per RFC 4180. Records are separated by LF or
+ * CRLF. Only the record being read is held in memory.
+ */
+class CsvRecordReader implements Closeable {
+
+    /** Marks that no character has been read ahead */
+    private static final int NONE = -2;
+
+    private final Reader reader;
+
+    private int lookahead = NONE;
+
+    CsvRecordReader(Reader reader) {
+        this.reader = reader instanceof BufferedReader ? reader : new BufferedReader(reader);
+    }
+
+    /**
+     * Read the next non blank record.
+     *
+     * @return The fields of the record, or null at the end of the stream
+     * @throws IOException if the stream cannot be read
+     */
+    List<String> readRecord() throws IOException {
+        List<String> record;
+
+        do {
+            record = readLine();
+        } while (record != null && record.size() == 1 && record.get(0).isEmpty());
+
+        return record;
+    }
+
+    @Override
+    public void close() throws IOException {
+        reader.close();
+    }
+
+    private List<String> readLine() throws IOException {
+        int c = read();
+
+        if (c == -1) {
+            return null;
+        }
+
+        List<String> fields = new ArrayList<>();
+        StringBuilder field = new StringBuilder();
+        boolean quoted = false;
+
+        while (true) {
+            if (c == -1) {
+                break;
+            }
+
+            if (quoted) {
+                if (c == '"') {
+                    int next = read();
+
+                    if (next == '"') {
+                        field.append('"');
+                    } else {
+                        quoted = false;
+                        c = next;
+                        continue;
+                    }
+                } else {
+                    field.append((char) c);
+                }
+            } else if (c == '"' && field.length() == 0) {
+                quoted = true;
+            } else if (c == ',') {
+                fields.add(field.toString());
+                field.setLength(0);
+            } else if (c == '\n') {
+                break;
+            } else if (c == '\r') {
+                int next = read();
+
+                if (next != '\n') {
+                    lookahead = next;
+                }
+
+                break;
+            } else {
+                field.append((char) c);
+            }
+
+            c = read();
+        }
+
+        fields.add(field.toString());
+        return fields;
+    }
+
+    private int read() throws IOException {
+        if (lookahead != NONE) {
+            int c = lookahead;
+            lookahead = NONE;
+            return c;
+        }
+
+        return reader.read();
+    }
+
+}
@@ -0,0 +1,216 @@
+package com.aquent.crudapp.importing;
+
+import com.aquent.crudapp.interfaces.EntityService;
+import org.springframework.beans.BeanUtils;
+
+import java.beans.PropertyDescriptor;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.lang.reflect.Method;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.function.Supplier;
+
+/**
+ * Imports entity records from a CSV stream.
+ *
+ * The stream is read one chunk of rows at a time. Each chunk is validated in parallel with
+ * {@link EntityService#validateEntity}, and its valid rows are inserted with one batched
+ * {@link EntityService#createEntities} call, in one transaction per chunk. Only one chunk is held
+ * in memory, and a rejected row does not stop the rows around it from being imported.
+ *
+ * The header row names the entity property of each column, e.g. "firstName", as written by the
+ * CSV export. snake_case names such as "first_name" are also accepted. Columns for properties
+ * which are not strings, such as "entityId", are ignored as those are assigned on insert.
+ *
+ * @param <E> The type of entity to import
+ */
+public class EntityImporter<E> {
+
+    private final EntityService<E, ?> entityService;
+
+    private final Class<E> entityType;
+
+    private final Supplier<E> entityFactory;
+
+    private final ExecutorService validationExecutor;
+
+    private final int parallelism;
+
+    private final int chunkSize;
+
+    private final int maxReportedErrors;
+
+    /**
+     * Instantiates an EntityImporter
+     *
+     * @param entityService The service to validate and create entities with
+     * @param entityType The type of entity
+     * @param entityFactory Creates an empty entity to bind a row onto
+     * @param validationExecutor Runs the validation of chunk slices
+     * @param parallelism The number of slices each chunk is split into for validation
+     * @param chunkSize The number of rows validated and inserted together
+     * @param maxReportedErrors The number of row errors kept in a report
+     */
+    public EntityImporter(EntityService<E, ?> entityService, Class<E> entityType,
+                          Supplier<E> entityFactory, ExecutorService validationExecutor,
+                          int parallelism, int chunkSize, int maxReportedErrors) {
+        this.entityService = entityService;
+        this.entityType = entityType;
+        this.entityFactory = entityFactory;
+        this.validationExecutor = validationExecutor;
+        this.parallelism = parallelism;
+        this.chunkSize = chunkSize;
+        this.maxReportedErrors = maxReportedErrors;
+    }
+
+    /**
+     * Import the rows of a UTF-8 CSV stream.
+     *
+     * @param csv The CSV stream, starting with a header row
+     * @return A report of the rows imported and rejected
+     * @throws IOException if the stream cannot be read
+     * @throws IllegalArgumentException if the header names a column which is not a property of
+     *                                  the entity
+     */
+    public ImportReport importCsv(InputStream csv) throws IOException {
+        long start = System.nanoTime();
+        ImportReport report = new ImportReport(maxReportedErrors);
+
+        try (CsvRecordReader reader = new CsvRecordReader(
+                new InputStreamReader(csv, StandardCharsets.UTF_8))) {
+            List<String> header = reader.readRecord();
+
+            if (header == null) {
+                return report;
+            }
+
+            Method[] setters = resolveSetters(header);
+            List<E> chunk = new ArrayList<>(chunkSize);
+            long firstRowOfChunk = 1;
+            List<String> record;
+
+            while ((record = reader.readRecord()) != null) {
+                chunk.add(bind(record, setters));
+
+                if (chunk.size() == chunkSize) {
+                    importChunk(chunk, firstRowOfChunk, report);
+                    firstRowOfChunk += chunk.size();
+                    chunk.clear();
+                }
+            }
+
+            if (!chunk.isEmpty()) {
+                importChunk(chunk, firstRowOfChunk, report);
+            }
+        }
+
+        report.setElapsedMillis((System.nanoTime() - start) / 1_000_000);
+        return report;
+    }
+
+    /**
+     * Validate a chunk in parallel slices, then insert its valid rows in one batch.
+     */
+    private void importChunk(List<E> chunk, long firstRow, ImportReport report) {
+        int sliceSize = Math.max(1, (chunk.size() + parallelism - 1) / parallelism);
+        List<CompletableFuture<List<List<String>>>> slices = new ArrayList<>();
+
+        for (int from = 0; from < chunk.size(); from += sliceSize) {
+            List<E> slice = chunk.subList(from, Math.min(from + sliceSize, chunk.size()));
+            slices.add(CompletableFuture.supplyAsync(() -> validate(slice), validationExecutor));
+        }
+
+        List<E> valid = new ArrayList<>(chunk.size());
+        int index = 0;
+
+        for (CompletableFuture<List<List<String>>> slice : slices) {
+            for (List<String> errors : slice.join()) {
+                if (errors.isEmpty()) {
+                    valid.add(chunk.get(index));
+                } else {
+                    report.rejected(firstRow + index, errors);
+                }
+
+                index++;
+            }
+        }
+
+        if (!valid.isEmpty()) {
+            entityService.createEntities(valid);
+        }
+
+        report.rowsRead(chunk.size());
+        report.rowsImported(valid.size());
+    }
+
+    private List<List<String>> validate(List<E> slice) {
+        List<List<String>> errors = new ArrayList<>(slice.size());
+
+        for (E entity : slice) {
+            errors.add(entityService.validateEntity(entity));
+        }
+
+        return errors;
+    }
+
+    private E bind(List<String> record, Method[] setters) {
+        E entity = entityFactory.get();
+
+        for (int i = 0; i < setters.length && i < record.size(); i++) {
+            if (setters[i] != null) {
+                try {
+                    setters[i].invoke(entity, record.get(i));
+                } catch (ReflectiveOperationException e) {
+                    throw new IllegalStateException("Cannot set " + setters[i].getName(), e);
+                }
+            }
+        }
+
+        return entity;
+    }
+
+    /**
+     * Resolve the String setter for each header column once, rather than per row. Columns for
+     * properties which are not strings resolve to null and are skipped.
+     */
+    private Method[] resolveSetters(List<String> header) {
+        Method[] setters = new Method[header.size()];
+
+        for (int i = 0; i < setters.length; i++) {
+            String property = toPropertyName(header.get(i).replace("\uFEFF", "").trim());
+            PropertyDescriptor descriptor = BeanUtils.getPropertyDescriptor(entityType, property);
+
+            if (descriptor == null || descriptor.getWriteMethod() == null) {
+                throw new IllegalArgumentException("Unknown column: " + header.get(i));
+            }
+
+            if (descriptor.getPropertyType() == String.class) {
+                setters[i] = descriptor.getWriteMethod();
+            }
+        }
+
+        return setters;
+    }
+
+    private static String toPropertyName(String column) {
+        StringBuilder property = new StringBuilder(column.length());
+        boolean upper = false;
+
+        for (char c : column.toCharArray()) {
+            if (c == '_') {
+                upper = true;
+            } else {
+                property.append(upper ? Character.toUpperCase(c) : c);
+                upper = false;
+            }
+        }
+
+        return property.toString();
+    }
+
+}
@@ -0,0 +1,62 @@
+package com.aquent.crudapp.importing;
+
+import com.aquent.crudapp.interfaces.EntityService;
+import com.aquent.crudapp.model.Client;
+import com.aquent.crudapp.model.Person;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Beans for the bulk CSV import of clients and people.
+ */
+@Configuration
+public class ImportConfiguration {
+
+    @Value("${crudapp.import.chunk-size:1000}")
+    private int chunkSize;
+
+    @Value("${crudapp.import.max-reported-errors:1000}")
+    private int maxReportedErrors;
+
+    @Value("${crudapp.import.validation-threads:0}")
+    private int validationThreads;
+
+    /**
+     * @return The pool which validates slices of import chunks, sized to the available
+     *         processors unless crudapp.import.validation-threads is set
+     */
+    @Bean
+    public ExecutorService importValidationExecutor() {
+        CustomizableThreadFactory threadFactory = new CustomizableThreadFactory("import-validation-");
+        threadFactory.setDaemon(true);
+        return Executors.newFixedThreadPool(parallelism(), threadFactory);
+    }
+
+    @Bean
+    public EntityImporter<Client> clientImporter(
+            @Qualifier("clientService") EntityService<Client, Person> clientService,
+            @Qualifier("importValidationExecutor") ExecutorService executor) {
+        return new EntityImporter<>(clientService, Client.class, Client::new, executor,
+                                    parallelism(), chunkSize, maxReportedErrors);
+    }
+
+    @Bean
+    public EntityImporter<Person> personImporter(
+            @Qualifier("personService") EntityService<Person, Client> personService,
+            @Qualifier("importValidationExecutor") ExecutorService executor) {
+        return new EntityImporter<>(personService, Person.class, Person::new, executor,
+                                    parallelism(), chunkSize, maxReportedErrors);
+    }
+
+    private int parallelism() {
+        return validationThreads > 0 ? validationThreads :
+               Runtime.getRuntime().availableProcessors();
+    }
+
+}
@@ -0,0 +1,117 @@
+package com.aquent.crudapp.importing;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * The outcome of a bulk import: counts of the rows read, imported and rejected, and the
+ * validation errors for each rejected row.
+ */
+public class ImportReport {
+
+    /** The validation errors for one rejected row */
+    public static class RowError {
+
+        private final long row;
+
+        private final List<String> messages;
+
+        RowError(long row, List<String> messages) {
+            this.row = row;
+            this.messages = messages;
+        }
+
+        /**
+         * @return The 1 based number of the rejected record, not counting the header
+         */
+        public long getRow() {
+            return row;
+        }
+
+        public List<String> getMessages() {
+            return messages;
+        }
+
+    }
+
+    private final int maxReportedErrors;
+
+    private final List<RowError> errors = new ArrayList<>();
+
+    private long rowsRead;
+
+    private long rowsImported;
+
+    private long rowsRejected;
+
+    private long elapsedMillis;
+
+    /**
+     * Instantiates an ImportReport
+     *
+     * @param maxReportedErrors The number of row errors to keep; further rejected rows are only
+     *                          counted, so that a bad file cannot exhaust memory
+     */
+    ImportReport(int maxReportedErrors) {
+        this.maxReportedErrors = maxReportedErrors;
+    }
+
+    void rowsRead(int count) {
+        rowsRead += count;
+    }
+
+    void rowsImported(int count) {
+        rowsImported += count;
+    }
+
+    void rejected(long row, List<String> messages) {
+        rowsRejected++;
+
+        if (errors.size() < maxReportedErrors) {
+            errors.add(new RowError(row, messages));
+        }
+    }
+
+    void setElapsedMillis(long elapsedMillis) {
+        this.elapsedMillis = elapsedMillis;
+    }
+
+    public long getRowsRead() {
+        return rowsRead;
+    }
+
+    public long getRowsImported() {
+        return rowsImported;
+    }
+
+    public long getRowsRejected() {
+        return rowsRejected;
+    }
+
+    public long getElapsedMillis() {
+        return elapsedMillis;
+    }
+
+    /**
+     * @return The errors of the first rejected rows, in row order
+     */
+    public List<RowError> getErrors() {
+        return Collections.unmodifiableList(errors);
+    }
+
+    /**
+     * @return true if more rows were rejected than there are errors in {@link #getErrors()}
+     */
+    public boolean isErrorsTruncated() {
+        return rowsRejected > errors.size();
+    }
+
+    /**
+     * @return The rows imported per second
+     */
+    public long getRowsPerSecond() {
+        return elapsedMillis == 0 ? rowsImported : rowsImported * 1000 / elapsedMillis;
+    }
+
+}
@@ -1,7 +1,12 @@
 package com.aquent.crudapp.interfaces;
 
+import java.util.Collection;
 import java.util.List;
+import java.util.function.Consumer;
 
+import com.aquent.crudapp.model.EntityWithAssociations;
+import com.aquent.crudapp.model.Page;
+import com.aquent.crudapp.model.PageCursor;
 import org.springframework.stereotype.Service;
 
 /**
@@ -17,6 +22,23 @@ public interface EntityService<E, T> {
      */
     List<E> listEntities();
 
+    /**
+     * Retrieves one page of entity records, in listing order, seeking from a cursor.
+     *
+     * @param cursor The cursor to seek from, or null for the first page
+     * @param pageSize The maximum number of entity records on the page
+     * @return The page of entity records
+     */
+    Page<E> listEntities(PageCursor cursor, int pageSize);
+
+    /**
+     * Passes every entity record, in listing order, to an action as it is read, without
+     * collecting the records into a list.
+     *
+     * @param action Receives each entity record
+     */
+    void forEachEntity(Consumer<? super E> action);
+
     /**
      * Creates a new entity record.
      *
@@ -25,6 +47,14 @@ public interface EntityService<E, T> {
      */
     Integer createEntity(E entity);
 
+    /**
+     * Creates new entity records with one batched insert.
+     *
+     * @param entities the values to save
+     * @return the number of records created
+     */
+    int createEntities(Collection<E> entities);
+
     /**
      * Retrieves a entity record by ID.
      *
@@ -33,6 +63,15 @@ public interface EntityService<E, T> {
      */
     E readEntity(Integer id);
 
+    /**
+     * Retrieves an entity record by ID together with the entities associated with it, with one
+     * query.
+     *
+     * @param id the entity ID
+     * @return the entity record and the entities associated with it, in their listing order
+     */
+    EntityWithAssociations<E, T> readEntityWithAssociations(Integer id);
+
     /**
      * Retrieve an associated entity via ID
      *
@@ -51,9 +90,12 @@ public interface EntityService<E, T> {
     void removeAssociation(Integer entityId, Integer associationId);
 
     /**
-     * Updates an existing entity record.
+     * Updates an existing entity record, provided nobody has updated it since it was read, and
+     * moves the entity to the next version.
      *
-     * @param entity the new values to save
+     * @param entity the new values to save, with the version which was read
+     * @throws org.springframework.dao.OptimisticLockingFailureException if the entity record has
+     *         been updated or deleted since it was read
      */
     void updateEntity(E entity);
 
@@ -82,12 +124,15 @@ public interface EntityService<E, T> {
     List<T> getAssociations(Integer entityId);
 
     /**
-     * Get a list of all entities not associated with this entity.
+     * Retrieves one page of the entities not associated with this entity, in their listing order,
+     * seeking from a cursor.
      *
      * @param entityId The entity ID field of this entity
-     * @return A list of all entities not associated with this entity
+     * @param cursor The cursor to seek from, or null for the first page
+     * @param pageSize The maximum number of entities on the page
+     * @return The page of the entities not associated with this entity
      */
-    List<T> getAvailableAssociations(Integer entityId);
+    Page<T> getAvailableAssociations(Integer entityId, PageCursor cursor, int pageSize);
 
     /**
      * Add an association with a given entity.
@@ -96,4 +141,30 @@ public interface EntityService<E, T> {
      * @param associationId The ID of the entity which should be associated
      */
     void addAssociation(Integer entityId, Integer associationId);
+
+    /**
+     * Add associations with a set of entities in one batch. Existing associations are unchanged.
+     *
+     * @param entityId The ID of this entity
+     * @param associationIds The IDs of the entities which should be associated
+     */
+    void addAssociations(Integer entityId, Collection<Integer> associationIds);
+
+    /**
+     * Remove associations with a set of entities in one batch.
+     *
+     * @param entityId The ID of this entity
+     * @param associationIds The IDs of the associated entities, the associations with which are
+     *                       to be removed
+     */
+    void removeAssociations(Integer entityId, Collection<Integer> associationIds);
+
+    /**
+     * Make this entity associated with exactly a given set of entities, adding and removing only
+     * the associations which differ from the current ones.
+     *
+     * @param entityId The ID of this entity
+     * @param desiredIds The IDs of all the entities which should be associated once done
+     */
+    void syncAssociations(Integer entityId, Collection<Integer> desiredIds);
 }
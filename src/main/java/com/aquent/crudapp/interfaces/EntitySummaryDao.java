@@ -0,0 +1,34 @@
+package com.aquent.crudapp.interfaces;
+
+import com.aquent.crudapp.model.Page;
+import com.aquent.crudapp.model.PageCursor;
+
+/**
+ * Reads of entity summaries: only the columns the list and picker pages show.
+ *
+ * @param <S> The summary of the entity
+ * @param <U> The summary of the entity it is associated with
+ */
+public interface EntitySummaryDao<S, U> {
+
+    /**
+     * Retrieves one page of entity summaries, in listing order, seeking from a cursor.
+     *
+     * @param cursor The cursor to seek from, or null for the first page
+     * @param pageSize The maximum number of summaries on the page
+     * @return The page of summaries
+     */
+    Page<S> listSummaries(PageCursor cursor, int pageSize);
+
+    /**
+     * Retrieves one page of summaries of the entities not associated with this entity, in their
+     * listing order, seeking from a cursor.
+     *
+     * @param entityId The entity ID field of this entity
+     * @param cursor The cursor to seek from, or null for the first page
+     * @param pageSize The maximum number of summaries on the page
+     * @return The page of summaries of the entities not associated with this entity
+     */
+    Page<U> getAvailableAssociationSummaries(Integer entityId, PageCursor cursor, int pageSize);
+
+}
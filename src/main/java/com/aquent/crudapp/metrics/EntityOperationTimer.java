@@ -0,0 +1,117 @@
+package com.aquent.crudapp.metrics;
+
+import com.aquent.crudapp.interfaces.EntityDao;
+import com.aquent.crudapp.interfaces.EntityService;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.aopalliance.intercept.MethodInterceptor;
+import org.aopalliance.intercept.MethodInvocation;
+import org.springframework.aop.support.AopUtils;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.core.ResolvableType;
+
+import java.lang.reflect.Method;
+import java.time.Duration;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Times each call of an {@link EntityService} or {@link EntityDao} method.
+ *
+ * Calls are recorded by the crudapp.entity.operation timer, tagged with the layer ("service" or
+ * "dao"), the entity type ("client" or "person"), the method name as the operation, and the
+ * outcome and exception class. The timer count gives the throughput and, for outcome "error",
+ * the error count. The timers publish p50, p95 and p99, and a histogram so percentiles can also
+ * be aggregated across instances.
+ *
+ * Timers are looked up once per target class and method and then kept, so a timed call costs two
+ * map reads, two clock reads and the histogram update.
+ */
+class EntityOperationTimer implements MethodInterceptor {
+
+    /** The name of the timer */
+    static final String METRIC = "crudapp.entity.operation";
+
+    /** The tag value of the exception tag for calls which returned normally */
+    private static final String NONE = "none";
+
+    private final ObjectProvider<MeterRegistry> meterRegistry;
+
+    private final Map<Class<?>, Map<Method, Operation>> operations = new ConcurrentHashMap<>();
+
+    EntityOperationTimer(ObjectProvider<MeterRegistry> meterRegistry) {
+        this.meterRegistry = meterRegistry;
+    }
+
+    @Override
+    public Object invoke(MethodInvocation invocation) throws Throwable {
+        Class<?> targetClass = AopUtils.getTargetClass(invocation.getThis());
+        Operation operation = operations
+                .computeIfAbsent(targetClass, type -> new ConcurrentHashMap<>())
+                .computeIfAbsent(invocation.getMethod(),
+                                 method -> new Operation(targetClass, method));
+        long start = System.nanoTime();
+
+        try {
+            Object result = invocation.proceed();
+            operation.success.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+            return result;
+        } catch (Throwable e) {
+            operation.error(e.getClass()).record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+            throw e;
+        }
+    }
+
+    /**
+     * The timers of one method of one target class.
+     */
+    private final class Operation {
+
+        private final String layer;
+
+        private final String entity;
+
+        private final String name;
+
+        private final Timer success;
+
+        private final Map<Class<?>, Timer> errors = new ConcurrentHashMap<>();
+
+        Operation(Class<?> targetClass, Method method) {
+            Class<?> contract = EntityService.class.isAssignableFrom(targetClass) ?
+                                EntityService.class : EntityDao.class;
+            Class<?> entityType = ResolvableType.forClass(targetClass).as(contract)
+                                                .resolveGeneric(0);
+
+            this.layer = contract == EntityService.class ? "service" : "dao";
+            this.entity = entityType == null ? "unknown" :
+                          entityType.getSimpleName().toLowerCase(Locale.ROOT);
+            this.name = method.getName();
+            this.success = timer("success", NONE);
+        }
+
+        Timer error(Class<?> exceptionType) {
+            return errors.computeIfAbsent(exceptionType,
+                                          type -> timer("error", type.getSimpleName()));
+        }
+
+        private Timer timer(String outcome, String exception) {
+            return Timer.builder(METRIC)
+                        .description("Latency of EntityService and EntityDao operations")
+                        .tag("layer", layer)
+                        .tag("entity", entity)
+                        .tag("operation", name)
+                        .tag("outcome", outcome)
+                        .tag("exception", exception)
+                        .publishPercentiles(0.5, 0.95, 0.99)
+                        .publishPercentileHistogram()
+                        .minimumExpectedValue(Duration.ofNanos(10_000))
+                        .maximumExpectedValue(Duration.ofSeconds(30))
+                        .register(meterRegistry.getObject());
+        }
+
+    }
+
+}
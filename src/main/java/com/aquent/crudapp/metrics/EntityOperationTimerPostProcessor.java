@@ -0,0 +1,32 @@
+package com.aquent.crudapp.metrics;
+
+import com.aquent.crudapp.interfaces.EntityDao;
+import com.aquent.crudapp.interfaces.EntityService;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.aop.framework.autoproxy.AbstractBeanFactoryAwareAdvisingPostProcessor;
+import org.springframework.aop.support.ComposablePointcut;
+import org.springframework.aop.support.DefaultPointcutAdvisor;
+import org.springframework.aop.support.RootClassFilter;
+import org.springframework.beans.factory.ObjectProvider;
+
+/**
+ * Adds an {@link EntityOperationTimer} to every {@link EntityService} and {@link EntityDao} bean.
+ *
+ * The timer is added ahead of the transaction and cache advice already on the beans, so a
+ * service timing includes transaction handling, and a cache hit is timed as a fast call.
+ */
+class EntityOperationTimerPostProcessor extends AbstractBeanFactoryAwareAdvisingPostProcessor {
+
+    private static final long serialVersionUID = 1L;
+
+    EntityOperationTimerPostProcessor(ObjectProvider<MeterRegistry> meterRegistry) {
+        ComposablePointcut pointcut = new ComposablePointcut(
+                new RootClassFilter(EntityService.class)).union(
+                new RootClassFilter(EntityDao.class));
+
+        this.advisor = new DefaultPointcutAdvisor(pointcut,
+                                                  new EntityOperationTimer(meterRegistry));
+        setBeforeExistingAdvisors(true);
+    }
+
+}
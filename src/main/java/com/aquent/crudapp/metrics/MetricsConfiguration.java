@@ -0,0 +1,24 @@
+package com.aquent.crudapp.metrics;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+/**
+ * Configuration of the application's own metrics.
+ */
+@Configuration
+public class MetricsConfiguration {
+
+    /**
+     * @param meterRegistry The registry, looked up when the first call is timed
+     * @return The post processor which times every EntityService and EntityDao method
+     */
+    @Bean
+    static EntityOperationTimerPostProcessor entityOperationTimerPostProcessor(
+            ObjectProvider<MeterRegistry> meterRegistry) {
+        return new EntityOperationTimerPostProcessor(meterRegistry);
+    }
+
+}
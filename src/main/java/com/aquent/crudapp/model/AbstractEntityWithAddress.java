@@ -9,6 +9,9 @@ public class AbstractEntityWithAddress implements Entity {
 
     private Integer entityId;
 
+    /** The number of times the record has been updated, checked on update to detect conflicts */
+    private Integer version;
+
     @NotNull
     @Size(min = 1, max = 50, message = "Street address is required with maximum length of 50")
     private String streetAddress;
@@ -33,6 +36,14 @@ public class AbstractEntityWithAddress implements Entity {
         return entityId;
     }
 
+    public Integer getVersion() {
+        return version;
+    }
+
+    public void setVersion(Integer version) {
+        this.version = version;
+    }
+
     public String getStreetAddress() {
         return streetAddress;
     }
@@ -65,4 +76,18 @@ public class AbstractEntityWithAddress implements Entity {
         this.zipCode = zipCode;
     }
 
+    /**
+     * Copy the ID, version and address of this entity onto a copy of it.
+     *
+     * @param copy The copy
+     */
+    protected void copyTo(AbstractEntityWithAddress copy) {
+        copy.entityId = entityId;
+        copy.version = version;
+        copy.streetAddress = streetAddress;
+        copy.city = city;
+        copy.state = state;
+        copy.zipCode = zipCode;
+    }
+
 }
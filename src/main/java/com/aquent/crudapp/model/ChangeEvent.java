@@ -0,0 +1,84 @@
+package com.aquent.crudapp.model;
+
+import java.time.Instant;
+
+/**
+ * A change to a client, a person or an association between them, as recorded in the
+ * change_event outbox table in the transaction which made it.
+ *
+ * Associations are recorded from the client's side: the entity is the client and the associated
+ * ID is the person's. Deleting an entity also ends its associations, which are not recorded
+ * separately.
+ */
+public class ChangeEvent {
+
+    /**
+     * The kinds of change recorded.
+     */
+    public enum Type {
+        CREATED, UPDATED, DELETED, ASSOCIATED, DISSOCIATED
+    }
+
+    /** The entity type of clients and of associations */
+    public static final String CLIENT = "client";
+
+    /** The entity type of persons */
+    public static final String PERSON = "person";
+
+    private final long eventId;
+
+    private final String entityType;
+
+    private final int entityId;
+
+    private final Integer associatedId;
+
+    private final Type type;
+
+    private final Instant createdAt;
+
+    /**
+     * Instantiates a ChangeEvent
+     *
+     * @param eventId The ID of the event, increasing in the order events were recorded
+     * @param entityType {@link #CLIENT} or {@link #PERSON}
+     * @param entityId The ID of the entity changed
+     * @param associatedId The ID of the person associated or dissociated, or null
+     * @param type The kind of change
+     * @param createdAt When the change was made
+     */
+    public ChangeEvent(long eventId, String entityType, int entityId, Integer associatedId,
+                       Type type, Instant createdAt) {
+        this.eventId = eventId;
+        this.entityType = entityType;
+        this.entityId = entityId;
+        this.associatedId = associatedId;
+        this.type = type;
+        this.createdAt = createdAt;
+    }
+
+    public long getEventId() {
+        return eventId;
+    }
+
+    public String getEntityType() {
+        return entityType;
+    }
+
+    public int getEntityId() {
+        return entityId;
+    }
+
+    public Integer getAssociatedId() {
+        return associatedId;
+    }
+
+    public Type getType() {
+        return type;
+    }
+
+    public Instant getCreatedAt() {
+        return createdAt;
+    }
+
+}
@@ -82,4 +82,19 @@ public class Client extends AbstractEntityWithAddress {
         this.phone = phone;
     }
 
+    /**
+     * Copy this client, for the entity caches to keep apart from the instances their callers
+     * change.
+     *
+     * @return A new client with the same values
+     */
+    public Client copy() {
+        Client copy = new Client();
+        copyTo(copy);
+        copy.companyName = companyName;
+        copy.website = website;
+        copy.phone = phone;
+        return copy;
+    }
+
 }
@@ -0,0 +1,64 @@
+package com.aquent.crudapp.model;
+
+import com.aquent.crudapp.interfaces.Entity;
+
+/**
+ * The columns of a client shown by the client listing and the available clients picker, read
+ * without the address and version a full {@link Client} carries, and the client's number of
+ * contacts.
+ */
+public class ClientSummary implements Entity {
+
+    private Integer entityId;
+
+    private String companyName;
+
+    private String website;
+
+    private String phone;
+
+    private int contactCount;
+
+    @Override
+    public Integer getEntityId() {
+        return entityId;
+    }
+
+    @Override
+    public void setEntityId(Integer entityId) {
+        this.entityId = entityId;
+    }
+
+    public String getCompanyName() {
+        return companyName;
+    }
+
+    public void setCompanyName(String companyName) {
+        this.companyName = companyName;
+    }
+
+    public String getWebsite() {
+        return website;
+    }
+
+    public void setWebsite(String website) {
+        this.website = website;
+    }
+
+    public String getPhone() {
+        return phone;
+    }
+
+    public void setPhone(String phone) {
+        this.phone = phone;
+    }
+
+    public int getContactCount() {
+        return contactCount;
+    }
+
+    public void setContactCount(int contactCount) {
+        this.contactCount = contactCount;
+    }
+
+}
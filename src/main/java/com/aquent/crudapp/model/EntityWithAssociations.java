@@ -0,0 +1,36 @@
+package com.aquent.crudapp.model;
+
+import java.util.List;
+
+/**
+ * An entity read together with the entities associated with it.
+ *
+ * @param <E> The type of the entity
+ * @param <T> The type of the associated entities
+ */
+public class EntityWithAssociations<E, T> {
+
+    private final E entity;
+
+    private final List<T> associations;
+
+    /**
+     * Instantiates an EntityWithAssociations
+     *
+     * @param entity The entity
+     * @param associations The entities associated with it, in their listing order
+     */
+    public EntityWithAssociations(E entity, List<T> associations) {
+        this.entity = entity;
+        this.associations = associations;
+    }
+
+    public E getEntity() {
+        return entity;
+    }
+
+    public List<T> getAssociations() {
+        return associations;
+    }
+
+}
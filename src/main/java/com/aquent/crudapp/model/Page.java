@@ -0,0 +1,57 @@
+package com.aquent.crudapp.model;
+
+import java.util.List;
+
+/**
+ * A single page of entities read with a {@link PageCursor}.
+ *
+ * @param <E> The type of entity on the page
+ */
+public class Page<E> {
+
+    private final List<E> items;
+
+    private final PageCursor previousCursor;
+
+    private final PageCursor nextCursor;
+
+    /**
+     * Instantiates a Page
+     *
+     * @param items The entities on this page, in listing order
+     * @param previousCursor The cursor for the preceding page, or null if this is the first page
+     * @param nextCursor The cursor for the following page, or null if this is the last page
+     */
+    public Page(List<E> items, PageCursor previousCursor, PageCursor nextCursor) {
+        this.items = items;
+        this.previousCursor = previousCursor;
+        this.nextCursor = nextCursor;
+    }
+
+    public List<E> getItems() {
+        return items;
+    }
+
+    public PageCursor getPreviousCursor() {
+        return previousCursor;
+    }
+
+    public PageCursor getNextCursor() {
+        return nextCursor;
+    }
+
+    /**
+     * @return true if there is a page before this one
+     */
+    public boolean hasPrevious() {
+        return previousCursor != null;
+    }
+
+    /**
+     * @return true if there is a page after this one
+     */
+    public boolean hasNext() {
+        return nextCursor != null;
+    }
+
+}
@@ -0,0 +1,98 @@
+package com.aquent.crudapp.model;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+
+/**
+ * A keyset (seek) pagination cursor.
+ *
+ * Entities are listed ordered by two sort keys with the entity ID as a tie breaker, e.g.
+ * (company_name, website, client_id) for clients. A cursor records those values for the row at
+ * the edge of a page, along with the direction in which to seek from it, so the next page can be
+ * read with a range predicate on an index rather than an OFFSET.
+ */
+public class PageCursor {
+
+    /** The direction to seek from the cursor row */
+    public enum Direction {
+        /** Rows which sort after the cursor row */
+        AFTER,
+        /** Rows which sort before the cursor row */
+        BEFORE
+    }
+
+    /** Separates the fields of an encoded cursor, as it cannot appear in a varchar sort key */
+    private static final char SEPARATOR = '\u0000';
+
+    private final String primaryKey;
+
+    private final String secondaryKey;
+
+    private final Integer entityId;
+
+    private final Direction direction;
+
+    /**
+     * Instantiates a PageCursor
+     *
+     * @param primaryKey The value of the first sort column for the cursor row
+     * @param secondaryKey The value of the second sort column for the cursor row
+     * @param entityId The ID of the cursor row
+     * @param direction The direction to seek from the cursor row
+     */
+    public PageCursor(String primaryKey, String secondaryKey, Integer entityId,
+                      Direction direction) {
+        this.primaryKey = primaryKey;
+        this.secondaryKey = secondaryKey;
+        this.entityId = entityId;
+        this.direction = direction;
+    }
+
+    /**
+     * Decode a cursor from the token produced by {@link #getToken()}.
+     *
+     * @param token The URL safe token
+     * @return The decoded cursor
+     * @throws IllegalArgumentException if the token is not a valid cursor
+     */
+    public static PageCursor decode(String token) {
+        String decoded = new String(Base64.getUrlDecoder().decode(token), StandardCharsets.UTF_8);
+        String[] fields = decoded.split(String.valueOf(SEPARATOR), -1);
+
+        if (fields.length != 4) {
+            throw new IllegalArgumentException("Malformed page cursor: " + token);
+        }
+
+        return new PageCursor(fields[1], fields[2], Integer.valueOf(fields[3]),
+                              fields[0].equals("b") ? Direction.BEFORE : Direction.AFTER);
+    }
+
+    /**
+     * Get an opaque, URL safe token for this cursor.
+     *
+     * @return The encoded cursor
+     */
+    public String getToken() {
+        String raw = (direction == Direction.BEFORE ? "b" : "a") + SEPARATOR + primaryKey +
+                     SEPARATOR + secondaryKey + SEPARATOR + entityId;
+        return Base64.getUrlEncoder().withoutPadding()
+                     .encodeToString(raw.getBytes(StandardCharsets.UTF_8));
+    }
+
+    public String getPrimaryKey() {
+        return primaryKey;
+    }
+
+    public String getSecondaryKey() {
+        return secondaryKey;
+    }
+
+    public Integer getEntityId() {
+        return entityId;
+    }
+
+    public Direction getDirection() {
+        return direction;
+    }
+
+}
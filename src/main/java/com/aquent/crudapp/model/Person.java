@@ -49,4 +49,19 @@ public class Person extends AbstractEntityWithAddress {
         this.emailAddress = emailAddress;
     }
 
+    /**
+     * Copy this person, for the entity caches to keep apart from the instances their callers
+     * change.
+     *
+     * @return A new person with the same values
+     */
+    public Person copy() {
+        Person copy = new Person();
+        copyTo(copy);
+        copy.firstName = firstName;
+        copy.lastName = lastName;
+        copy.emailAddress = emailAddress;
+        return copy;
+    }
+
 }
@@ -0,0 +1,64 @@
+package com.aquent.crudapp.model;
+
+import com.aquent.crudapp.interfaces.Entity;
+
+/**
+ * The columns of a person shown by the person listing and the available contacts picker, read
+ * without the address and version a full {@link Person} carries, and the number of clients the
+ * person is a contact of.
+ */
+public class PersonSummary implements Entity {
+
+    private Integer entityId;
+
+    private String firstName;
+
+    private String lastName;
+
+    private String emailAddress;
+
+    private int clientCount;
+
+    @Override
+    public Integer getEntityId() {
+        return entityId;
+    }
+
+    @Override
+    public void setEntityId(Integer entityId) {
+        this.entityId = entityId;
+    }
+
+    public String getFirstName() {
+        return firstName;
+    }
+
+    public void setFirstName(String firstName) {
+        this.firstName = firstName;
+    }
+
+    public String getLastName() {
+        return lastName;
+    }
+
+    public void setLastName(String lastName) {
+        this.lastName = lastName;
+    }
+
+    public String getEmailAddress() {
+        return emailAddress;
+    }
+
+    public void setEmailAddress(String emailAddress) {
+        this.emailAddress = emailAddress;
+    }
+
+    public int getClientCount() {
+        return clientCount;
+    }
+
+    public void setClientCount(int clientCount) {
+        this.clientCount = clientCount;
+    }
+
+}
@@ -0,0 +1,119 @@
+package com.aquent.crudapp.search;
+
+import com.aquent.crudapp.interfaces.Entity;
+import com.aquent.crudapp.interfaces.EntityDao;
+import com.aquent.crudapp.model.Client;
+import com.aquent.crudapp.model.Person;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.ApplicationListener;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Consumer;
+
+/**
+ * Configuration of the search index, which is loaded from the database at startup, or in the
+ * background once the application is ready if crudapp.search.deferred-load is set.
+ */
+@Configuration
+public class SearchConfiguration {
+
+    /** The number of entities indexed together while loading */
+    private static final int LOAD_BATCH_SIZE = 10_000;
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(SearchConfiguration.class);
+
+    @Value("${crudapp.search.deferred-load:false}")
+    private boolean deferredLoad;
+
+    /**
+     * @param clientDao Reads the clients to index
+     * @param personDao Reads the people to index
+     * @return The search index, holding every client and person unless its loading is deferred
+     */
+    @Bean
+    public SearchIndex searchIndex(@Qualifier("clientDAO") EntityDao<Client, Person> clientDao,
+                                   @Qualifier("personDAO") EntityDao<Person, Client> personDao) {
+        SearchIndex searchIndex = new SearchIndex();
+
+        if (!deferredLoad) {
+            load(searchIndex, clientDao, personDao);
+        }
+
+        return searchIndex;
+    }
+
+    /**
+     * Loads the search index on a thread of its own once the application is ready to serve
+     * requests, so that startup does not wait for it. Until it is done, searches find only the
+     * clients and people which have been loaded or changed so far.
+     *
+     * @param searchIndex The search index to load
+     * @param clientDao Reads the clients to index
+     * @param personDao Reads the people to index
+     * @return The listener which starts the loading
+     */
+    @Bean
+    @ConditionalOnProperty("crudapp.search.deferred-load")
+    public ApplicationListener<ApplicationReadyEvent> deferredSearchIndexLoader(
+            ObjectProvider<SearchIndex> searchIndex,
+            @Qualifier("clientDAO") ObjectProvider<EntityDao<Client, Person>> clientDao,
+            @Qualifier("personDAO") ObjectProvider<EntityDao<Person, Client>> personDao) {
+        return event -> {
+            Thread loader = new Thread(() -> {
+                try {
+                    load(searchIndex.getObject(), clientDao.getObject(), personDao.getObject());
+                } catch (RuntimeException e) {
+                    LOGGER.error("Loading the search index failed", e);
+                }
+            }, "search-index-loader");
+            loader.setDaemon(true);
+            loader.start();
+        };
+    }
+
+    private static void load(SearchIndex searchIndex, EntityDao<Client, Person> clientDao,
+                             EntityDao<Person, Client> personDao) {
+        long start = System.nanoTime();
+
+        Consumer<Client> clients = batches(searchIndex::loadClients);
+        clientDao.forEachEntity(clients);
+        clients.accept(null);
+
+        Consumer<Person> persons = batches(searchIndex::loadPeople);
+        personDao.forEachEntity(persons);
+        persons.accept(null);
+
+        searchIndex.loaded();
+        LOGGER.info("Indexed {} documents for search in {} ms", searchIndex.size(),
+                    (System.nanoTime() - start) / 1_000_000);
+    }
+
+    /**
+     * Collect entities into batches for the index. The returned consumer passes on the last
+     * partial batch when given null.
+     */
+    private static <E extends Entity> Consumer<E> batches(Consumer<List<E>> index) {
+        List<E> batch = new ArrayList<>(LOAD_BATCH_SIZE);
+
+        return entity -> {
+            if (entity != null) {
+                batch.add(entity);
+            }
+
+            if (batch.size() >= LOAD_BATCH_SIZE || (entity == null && !batch.isEmpty())) {
+                index.accept(new ArrayList<>(batch));
+                batch.clear();
+            }
+        };
+    }
+
+}
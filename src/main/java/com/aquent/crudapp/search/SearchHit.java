@@ -0,0 +1,32 @@
+package com.aquent.crudapp.search;
+
+/**
+ * A document matching a search, with its score.
+ */
+public class SearchHit {
+
+    private final SearchIndex.DocumentType type;
+
+    private final int entityId;
+
+    private final double score;
+
+    public SearchHit(SearchIndex.DocumentType type, int entityId, double score) {
+        this.type = type;
+        this.entityId = entityId;
+        this.score = score;
+    }
+
+    public SearchIndex.DocumentType getType() {
+        return type;
+    }
+
+    public int getEntityId() {
+        return entityId;
+    }
+
+    public double getScore() {
+        return score;
+    }
+
+}
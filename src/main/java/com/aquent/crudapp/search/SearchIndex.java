@@ -0,0 +1,902 @@
+package com.aquent.crudapp.search;
+
+import com.aquent.crudapp.model.Client;
+import com.aquent.crudapp.model.Person;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.PriorityQueue;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * An in-memory inverted index of clients and people for full text and prefix search.
+ *
+ * Names, email addresses, company names, websites, cities and zip codes are split into lower
+ * case terms of letters and digits. Each term maps to a sorted int array of postings of the
+ * documents which contain it, each an entity ID, document type and field weight packed into an
+ * int, so that a query is scored from the postings alone; entity IDs must therefore be below
+ * 2^28. Each term also records the greatest weight it has had, which bounds the score it can
+ * add to a document. The terms are held both hashed, for looking up a whole term, and sorted, so
+ * that the terms with a given prefix are a contiguous range. Each document also keeps its own
+ * sorted terms, with the weight of the field each came from, for replacing or removing it again.
+ *
+ * A query matches documents containing every term of the query, the last of which may be a
+ * prefix of a document term, so a query can be run as it is typed. Matches are ranked by the sum,
+ * over the query terms, of the inverse document frequency of the matching term times the weight
+ * of its field, with prefix matches scaled by how much of the term the prefix covers.
+ *
+ * A query walks the shortest postings among its whole terms and its prefix, searching the others
+ * for each document, so a query containing one rare term costs little however common its other
+ * terms are. It stops as soon as no remaining document could score higher than the top hits
+ * found so far, so a query whose matches score alike stops after the first few.
+ *
+ * The index is updated incrementally by the services. Changes made within a transaction are
+ * applied once it commits.
+ */
+public class SearchIndex {
+
+    /** The types of documents in the index */
+    public enum DocumentType {
+        CLIENT,
+        PERSON
+    }
+
+    /** The weight of a name term: first or last name, or company name */
+    static final int NAME_WEIGHT = 3;
+
+    /** The weight of a contact term: email address or website */
+    static final int CONTACT_WEIGHT = 2;
+
+    /** The weight of a location term: city or zip code */
+    static final int LOCATION_WEIGHT = 1;
+
+    /** The number of low bits of a posting which hold the weight of the term in the document */
+    private static final int WEIGHT_BITS = 2;
+
+    private static final int WEIGHT_MASK = (1 << WEIGHT_BITS) - 1;
+
+    /** The greatest number of terms a prefix is expanded to, taken in sorted order */
+    static final int MAX_PREFIX_TERMS = 4_096;
+
+    /**
+     * The greatest number of prefix terms whose postings are searched for each document matching
+     * the whole terms of a query. Beyond it, the document's own terms are checked instead.
+     */
+    static final int MAX_PROBED_PREFIX_TERMS = 8;
+
+    /**
+     * The greatest number of documents scored for a query which is a single prefix, in case
+     * many of the documents of its terms score alike.
+     */
+    static final int MAX_PREFIX_CANDIDATES = 10_000;
+
+    /** Terms too common in websites to be worth indexing */
+    private static final Set<String> STOP_WORDS = new HashSet<>(Arrays.asList("http", "https",
+                                                                              "www"));
+
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+
+    /** The postings of each term */
+    private final Map<String, Postings> postings = new HashMap<>();
+
+    /** The same postings, in term order */
+    private final NavigableMap<String, Postings> sortedPostings = new TreeMap<>();
+
+    /** The indexed documents of each type by entity ID */
+    private final Document[][] documents = new Document[DocumentType.values().length][0];
+
+    private int documentCount;
+
+    /** Whether {@link #loaded()} has been called */
+    private boolean loaded;
+
+    /** The keys of the documents removed while the index was being loaded */
+    private final Set<Integer> removedWhileLoading = new HashSet<>();
+
+    /**
+     * Index a client, replacing any earlier version, once the current transaction commits.
+     *
+     * @param clientId The client ID
+     * @param client The client
+     */
+    public void index(int clientId, Client client) {
+        afterCommit(() -> put(DocumentType.CLIENT, Collections.singletonMap(clientId,
+                                                                            document(client))));
+    }
+
+    /**
+     * Index a person, replacing any earlier version, once the current transaction commits.
+     *
+     * @param personId The person ID
+     * @param person The person
+     */
+    public void index(int personId, Person person) {
+        afterCommit(() -> put(DocumentType.PERSON, Collections.singletonMap(personId,
+                                                                            document(person))));
+    }
+
+    /**
+     * Index clients once the current transaction commits, merging each term's new documents in
+     * one pass.
+     *
+     * @param clients The clients, with their IDs set
+     */
+    public void indexClients(Collection<Client> clients) {
+        Map<Integer, Document> batch = new HashMap<>();
+        for (Client client : clients) {
+            batch.put(client.getEntityId(), document(client));
+        }
+
+        afterCommit(() -> put(DocumentType.CLIENT, batch));
+    }
+
+    /**
+     * Index people once the current transaction commits, merging each term's new documents in
+     * one pass.
+     *
+     * @param persons The people, with their IDs set
+     */
+    public void indexPeople(Collection<Person> persons) {
+        Map<Integer, Document> batch = new HashMap<>();
+        for (Person person : persons) {
+            batch.put(person.getEntityId(), document(person));
+        }
+
+        afterCommit(() -> put(DocumentType.PERSON, batch));
+    }
+
+    /**
+     * Load clients read from the database into the index, now. A client which has been indexed
+     * or removed since the index was created is left as it is, because the change is newer than
+     * the row which was read, so the index can be loaded while the application is serving.
+     *
+     * @param clients The clients, with their IDs set
+     */
+    public void loadClients(Collection<Client> clients) {
+        Map<Integer, Document> batch = new HashMap<>();
+        for (Client client : clients) {
+            batch.put(client.getEntityId(), document(client));
+        }
+
+        load(DocumentType.CLIENT, batch);
+    }
+
+    /**
+     * Load people read from the database into the index, now. A person who has been indexed or
+     * removed since the index was created is left as they are.
+     *
+     * @param persons The people, with their IDs set
+     */
+    public void loadPeople(Collection<Person> persons) {
+        Map<Integer, Document> batch = new HashMap<>();
+        for (Person person : persons) {
+            batch.put(person.getEntityId(), document(person));
+        }
+
+        load(DocumentType.PERSON, batch);
+    }
+
+    /**
+     * Mark the index as loaded; it no longer needs to remember what was removed while loading.
+     */
+    public void loaded() {
+        lock.writeLock().lock();
+        try {
+            loaded = true;
+            removedWhileLoading.clear();
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * @return true once every client and person has been loaded, false while search results may
+     *         still be incomplete
+     */
+    public boolean isLoaded() {
+        lock.readLock().lock();
+        try {
+            return loaded;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Remove a document once the current transaction commits.
+     *
+     * @param type The type of the document
+     * @param id The entity ID
+     */
+    public void remove(DocumentType type, int id) {
+        afterCommit(() -> {
+            lock.writeLock().lock();
+            try {
+                Document old = document(type, id);
+                int key = key(type, id);
+
+                if (!loaded) {
+                    removedWhileLoading.add(key);
+                }
+
+                if (old != null) {
+                    for (String term : old.terms) {
+                        removePosting(term, key);
+                    }
+
+                    documents[type.ordinal()][id] = null;
+                    documentCount--;
+                }
+            } finally {
+                lock.writeLock().unlock();
+            }
+        });
+    }
+
+    /**
+     * Find the best matching documents for a query.
+     *
+     * @param query The query text; its last term may be a prefix
+     * @param type The type of document to find, or null for any
+     * @param limit The greatest number of hits to return
+     * @return The hits, best first
+     */
+    public List<SearchHit> search(String query, DocumentType type, int limit) {
+        List<String> terms = new ArrayList<>(tokenize(query, 0).keySet());
+
+        if (terms.isEmpty() || limit <= 0) {
+            return new ArrayList<>();
+        }
+
+        String prefix = terms.remove(terms.size() - 1);
+        Hits hits = new Hits(limit);
+
+        lock.readLock().lock();
+        try {
+            List<PrefixTerm> prefixTerms = expand(prefix);
+
+            if (terms.isEmpty()) {
+                searchPrefix(prefixTerms, type, hits);
+            } else {
+                searchTerms(terms, prefix, prefixTerms, type, hits);
+            }
+        } finally {
+            lock.readLock().unlock();
+        }
+
+        return hits.best();
+    }
+
+    /**
+     * @return The number of documents in the index
+     */
+    public int size() {
+        lock.readLock().lock();
+        try {
+            return documentCount;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Find the terms starting with a prefix, with the score of a document's match of each.
+     */
+    private List<PrefixTerm> expand(String prefix) {
+        List<PrefixTerm> prefixTerms = new ArrayList<>();
+
+        for (Map.Entry<String, Postings> entry :
+                sortedPostings.subMap(prefix, true, prefix + Character.MAX_VALUE, false)
+                              .entrySet()) {
+            if (prefixTerms.size() == MAX_PREFIX_TERMS) {
+                break;
+            }
+
+            prefixTerms.add(new PrefixTerm(entry.getValue(),
+                                           idf(entry.getValue()) * prefix.length() /
+                                           entry.getKey().length()));
+        }
+
+        return prefixTerms;
+    }
+
+    /**
+     * Score the documents matching a single prefix, taking the best scoring terms first.
+     */
+    private void searchPrefix(List<PrefixTerm> prefixTerms, DocumentType type, Hits hits) {
+        prefixTerms.sort((a, b) -> Double.compare(b.bound(), a.bound()));
+        int scored = 0;
+
+        for (PrefixTerm prefixTerm : prefixTerms) {
+            for (int posting : prefixTerm.postings.entries) {
+                if (hits.isFull() && hits.minScore() >= prefixTerm.bound()) {
+                    break;
+                }
+
+                int key = posting >>> WEIGHT_BITS;
+                if (matches(key, type)) {
+                    hits.offer(key, prefixTerm.score * (posting & WEIGHT_MASK));
+
+                    if (++scored == MAX_PREFIX_CANDIDATES) {
+                        return;
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * Score the documents containing every whole term and a term starting with the prefix.
+     */
+    private void searchTerms(List<String> terms, String prefix, List<PrefixTerm> prefixTerms,
+                             DocumentType type, Hits hits) {
+        Cursor[] cursors = new Cursor[terms.size()];
+        double bound = 0;
+
+        for (int i = 0; i < cursors.length; i++) {
+            Postings list = postings.get(terms.get(i));
+            if (list == null) {
+                return;
+            }
+
+            cursors[i] = new Cursor(list, idf(list));
+        }
+
+        Arrays.sort(cursors, (a, b) -> a.postings.entries.length - b.postings.entries.length);
+        for (Cursor cursor : cursors) {
+            bound += cursor.score * cursor.postings.maxWeight;
+        }
+
+        boolean expandedFully = prefixTerms.size() < MAX_PREFIX_TERMS;
+        long prefixDocuments = 0;
+        double prefixBound = expandedFully ? 0 : Math.log(1.0 + documentCount) * NAME_WEIGHT;
+
+        for (PrefixTerm prefixTerm : prefixTerms) {
+            prefixDocuments += prefixTerm.postings.entries.length;
+            prefixBound = Math.max(prefixBound, prefixTerm.bound());
+        }
+
+        bound += prefixBound;
+
+        if (expandedFully && prefixDocuments < cursors[0].postings.entries.length) {
+            searchFromPrefix(cursors, prefixTerms, (int) prefixDocuments, type, bound, hits);
+            return;
+        }
+
+        Cursor[] prefixCursors = null;
+        if (expandedFully && prefixTerms.size() <= MAX_PROBED_PREFIX_TERMS) {
+            prefixCursors = new Cursor[prefixTerms.size()];
+            for (int i = 0; i < prefixCursors.length; i++) {
+                prefixCursors[i] = new Cursor(prefixTerms.get(i).postings,
+                                              prefixTerms.get(i).score);
+            }
+        }
+
+        Cursor[] others = Arrays.copyOfRange(cursors, 1, cursors.length);
+        double idf = cursors[0].score;
+
+        for (int posting : cursors[0].postings.entries) {
+            if (hits.isFull() && hits.minScore() >= bound) {
+                break;
+            }
+
+            int key = posting >>> WEIGHT_BITS;
+            if (!matches(key, type)) {
+                continue;
+            }
+
+            double score = score(others, key, idf * (posting & WEIGHT_MASK));
+            if (score == 0) {
+                continue;
+            }
+
+            double prefixScore = prefixCursors != null ? bestScore(prefixCursors, key)
+                                                       : prefixScore(document(key), prefix);
+            if (prefixScore > 0) {
+                hits.offer(key, score + prefixScore);
+            }
+        }
+    }
+
+    /**
+     * Score the documents containing every whole term, walking the postings of the prefix's
+     * terms, which hold fewer documents than those of any whole term.
+     */
+    private void searchFromPrefix(Cursor[] cursors, List<PrefixTerm> prefixTerms,
+                                  int prefixDocuments, DocumentType type, double bound,
+                                  Hits hits) {
+        /* Merge the prefix terms' postings, keeping the best score of each document */
+        long[] merged = new long[prefixDocuments];
+        int n = 0;
+
+        for (PrefixTerm prefixTerm : prefixTerms) {
+            for (int posting : prefixTerm.postings.entries) {
+                float score = (float) (prefixTerm.score * (posting & WEIGHT_MASK));
+                merged[n++] = (long) (posting >>> WEIGHT_BITS) << 32 |
+                               Float.floatToIntBits(score);
+            }
+        }
+
+        Arrays.sort(merged);
+
+        for (int i = 0; i < merged.length; i++) {
+            if (hits.isFull() && hits.minScore() >= bound) {
+                break;
+            }
+
+            int key = (int) (merged[i] >>> 32);
+            if ((i + 1 < merged.length && (int) (merged[i + 1] >>> 32) == key) ||
+                !matches(key, type)) {
+                continue;
+            }
+
+            double score = score(cursors, key, Float.intBitsToFloat((int) merged[i]));
+            if (score > 0) {
+                hits.offer(key, score);
+            }
+        }
+    }
+
+    /**
+     * Add the scores of a document's whole terms to a score.
+     *
+     * @return The total score, or 0 if the document lacks any of the terms
+     */
+    private static double score(Cursor[] cursors, int key, double score) {
+        for (Cursor cursor : cursors) {
+            int weight = cursor.weight(key);
+            if (weight == 0) {
+                return 0;
+            }
+
+            score += cursor.score * weight;
+        }
+
+        return score;
+    }
+
+    /**
+     * @return The best score of a document among the prefix's terms, or 0 if it has none
+     */
+    private static double bestScore(Cursor[] cursors, int key) {
+        double best = 0;
+
+        for (Cursor cursor : cursors) {
+            best = Math.max(best, cursor.score * cursor.weight(key));
+        }
+
+        return best;
+    }
+
+    /**
+     * Score the best term of a document starting with a prefix, or 0 if there is none.
+     */
+    private double prefixScore(Document document, String prefix) {
+        double best = 0;
+        int i = Arrays.binarySearch(document.terms, prefix);
+
+        for (i = i < 0 ? -i - 1 : i;
+             i < document.terms.length && document.terms[i].startsWith(prefix); i++) {
+            String term = document.terms[i];
+            double score = idf(postings.get(term)) * document.weights[i] * prefix.length() /
+                           term.length();
+            best = Math.max(best, score);
+        }
+
+        return best;
+    }
+
+    private double idf(Postings list) {
+        return Math.log(1.0 + (double) documentCount / list.entries.length);
+    }
+
+    /**
+     * Add or replace documents of one type.
+     */
+    private void put(DocumentType type, Map<Integer, Document> batch) {
+        put(type, batch, true);
+    }
+
+    /**
+     * Add documents read while loading, skipping those changed since loading began.
+     */
+    private void load(DocumentType type, Map<Integer, Document> batch) {
+        put(type, batch, false);
+    }
+
+    private void put(DocumentType type, Map<Integer, Document> batch, boolean replace) {
+        Map<String, List<Integer>> added = new HashMap<>();
+
+        lock.writeLock().lock();
+        try {
+            for (Map.Entry<Integer, Document> entry : batch.entrySet()) {
+                int id = entry.getKey();
+                int key = key(type, id);
+                Document old = document(type, id);
+                Document document = entry.getValue();
+
+                if (!replace && (old != null || removedWhileLoading.contains(key))) {
+                    continue;
+                }
+
+                if (old == null) {
+                    documentCount++;
+                } else {
+                    for (int i = 0; i < old.terms.length; i++) {
+                        if (document.weight(old.terms[i]) != old.weights[i]) {
+                            removePosting(old.terms[i], key);
+                        }
+                    }
+                }
+
+                for (int i = 0; i < document.terms.length; i++) {
+                    if (old == null || old.weight(document.terms[i]) != document.weights[i]) {
+                        added.computeIfAbsent(document.terms[i], t -> new ArrayList<>())
+                             .add(key << WEIGHT_BITS | document.weights[i]);
+                    }
+                }
+
+                setDocument(type, id, document);
+            }
+
+            for (Map.Entry<String, List<Integer>> entry : added.entrySet()) {
+                int[] entries = new int[entry.getValue().size()];
+                int maxWeight = 0;
+                for (int i = 0; i < entries.length; i++) {
+                    entries[i] = entry.getValue().get(i);
+                    maxWeight = Math.max(maxWeight, entries[i] & WEIGHT_MASK);
+                }
+
+                Arrays.sort(entries);
+                Postings current = postings.get(entry.getKey());
+                setPostings(entry.getKey(), current == null
+                                            ? new Postings(entries, maxWeight)
+                                            : new Postings(union(current.entries, entries),
+                                                           Math.max(current.maxWeight,
+                                                                    maxWeight)));
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Remove a document from the postings of a term. The term keeps its greatest weight, which
+     * stays a bound on the weights of its remaining documents.
+     */
+    private void removePosting(String term, int key) {
+        Postings current = postings.get(term);
+        int at = current == null ? -1 : find(current.entries, 0, key);
+
+        if (at >= 0) {
+            int[] entries = current.entries;
+
+            if (entries.length == 1) {
+                postings.remove(term);
+                sortedPostings.remove(term);
+            } else {
+                int[] shrunk = new int[entries.length - 1];
+                System.arraycopy(entries, 0, shrunk, 0, at);
+                System.arraycopy(entries, at + 1, shrunk, at, entries.length - at - 1);
+                setPostings(term, new Postings(shrunk, current.maxWeight));
+            }
+        }
+    }
+
+    private void setPostings(String term, Postings list) {
+        postings.put(term, list);
+        sortedPostings.put(term, list);
+    }
+
+    private Document document(DocumentType type, int id) {
+        Document[] ofType = documents[type.ordinal()];
+        return id >= 0 && id < ofType.length ? ofType[id] : null;
+    }
+
+    private Document document(int key) {
+        return documents[key & 1][key >>> 1];
+    }
+
+    private void setDocument(DocumentType type, int id, Document document) {
+        Document[] ofType = documents[type.ordinal()];
+
+        if (id >= ofType.length) {
+            ofType = Arrays.copyOf(ofType, Math.max(id + 1, ofType.length * 3 / 2 + 16));
+            documents[type.ordinal()] = ofType;
+        }
+
+        ofType[id] = document;
+    }
+
+    private static int key(DocumentType type, int id) {
+        return id << 1 | type.ordinal();
+    }
+
+    private static boolean matches(int key, DocumentType type) {
+        return type == null || (key & 1) == type.ordinal();
+    }
+
+    /**
+     * Search sorted postings for a document key, whatever its weight, galloping forward from a
+     * position before which it is known not to be.
+     *
+     * @return The index of the key's posting, or (-(insertion point) - 1) if there is none
+     */
+    private static int find(int[] entries, int from, int key) {
+        int step = 1;
+        int to = from;
+
+        while (to < entries.length && entries[to] >>> WEIGHT_BITS < key) {
+            from = to + 1;
+            to += step;
+            step <<= 1;
+        }
+
+        /* No posting has weight 0, so this search always ends at an insertion point */
+        int at = -Arrays.binarySearch(entries, from, Math.min(to + 1, entries.length),
+                                      key << WEIGHT_BITS) - 1;
+        return at < entries.length && entries[at] >>> WEIGHT_BITS == key ? at : -at - 1;
+    }
+
+    /**
+     * @return The postings in either sorted array, without duplicates
+     */
+    private static int[] union(int[] a, int[] b) {
+        int[] either = new int[a.length + b.length];
+        int i = 0;
+        int j = 0;
+        int n = 0;
+
+        while (i < a.length || j < b.length) {
+            if (j == b.length || (i < a.length && a[i] < b[j])) {
+                either[n++] = a[i++];
+            } else if (i == a.length || b[j] < a[i]) {
+                either[n++] = b[j++];
+            } else {
+                either[n++] = a[i++];
+                j++;
+            }
+        }
+
+        return n == either.length ? either : Arrays.copyOf(either, n);
+    }
+
+    private static Document document(Client client) {
+        Map<String, Integer> terms = new TreeMap<>();
+        tokenize(client.getCompanyName(), NAME_WEIGHT, terms);
+        tokenize(client.getWebsite(), CONTACT_WEIGHT, terms);
+        tokenize(client.getCity(), LOCATION_WEIGHT, terms);
+        tokenize(client.getZipCode(), LOCATION_WEIGHT, terms);
+        return new Document(terms);
+    }
+
+    private static Document document(Person person) {
+        Map<String, Integer> terms = new TreeMap<>();
+        tokenize(person.getFirstName(), NAME_WEIGHT, terms);
+        tokenize(person.getLastName(), NAME_WEIGHT, terms);
+        tokenize(person.getEmailAddress(), CONTACT_WEIGHT, terms);
+        tokenize(person.getCity(), LOCATION_WEIGHT, terms);
+        tokenize(person.getZipCode(), LOCATION_WEIGHT, terms);
+        return new Document(terms);
+    }
+
+    /**
+     * Split text into lower case terms of letters and digits, in order of first appearance.
+     */
+    private static Map<String, Integer> tokenize(String text, int weight) {
+        Map<String, Integer> terms = new LinkedHashMap<>();
+        tokenize(text, weight, terms);
+        return terms;
+    }
+
+    /**
+     * Add the terms of text to a map of term to the greatest weight it was seen with.
+     */
+    private static void tokenize(String text, int weight, Map<String, Integer> terms) {
+        if (text == null) {
+            return;
+        }
+
+        String lower = text.toLowerCase(Locale.ROOT);
+        int start = -1;
+
+        for (int i = 0; i <= lower.length(); i++) {
+            boolean termChar = i < lower.length() && Character.isLetterOrDigit(lower.charAt(i));
+
+            if (termChar && start < 0) {
+                start = i;
+            } else if (!termChar && start >= 0) {
+                String term = lower.substring(start, i);
+                if (!STOP_WORDS.contains(term)) {
+                    terms.merge(term, weight, Math::max);
+                }
+                start = -1;
+            }
+        }
+    }
+
+    /**
+     * Run a change to the index once the current transaction commits, or now if there is none.
+     */
+    private static void afterCommit(Runnable change) {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(
+                    new TransactionSynchronization() {
+                        @Override
+                        public void afterCommit() {
+                            change.run();
+                        }
+                    });
+        } else {
+            change.run();
+        }
+    }
+
+    /**
+     * The sorted terms of one document, with the weight of the field each came from.
+     */
+    private static final class Document {
+
+        private final String[] terms;
+
+        private final byte[] weights;
+
+        Document(Map<String, Integer> sortedTerms) {
+            this.terms = sortedTerms.keySet().toArray(new String[0]);
+            this.weights = new byte[terms.length];
+
+            int i = 0;
+            for (int weight : sortedTerms.values()) {
+                weights[i++] = (byte) weight;
+            }
+        }
+
+        int weight(String term) {
+            int at = Arrays.binarySearch(terms, term);
+            return at < 0 ? 0 : weights[at];
+        }
+
+    }
+
+    /**
+     * The sorted postings of a term, each a document key shifted left by WEIGHT_BITS with the
+     * weight of the term in the document in the low bits, and the greatest weight among them.
+     */
+    private static final class Postings {
+
+        private final int[] entries;
+
+        private final int maxWeight;
+
+        Postings(int[] entries, int maxWeight) {
+            this.entries = entries;
+            this.maxWeight = maxWeight;
+        }
+
+    }
+
+    /**
+     * The postings of a term matching the prefix of a query, with the score of a match of
+     * weight 1.
+     */
+    private static final class PrefixTerm {
+
+        private final Postings postings;
+
+        private final double score;
+
+        PrefixTerm(Postings postings, double score) {
+            this.postings = postings;
+            this.score = score;
+        }
+
+        /**
+         * @return The greatest score a document can have for the term
+         */
+        double bound() {
+            return score * postings.maxWeight;
+        }
+
+    }
+
+    /**
+     * A position in the postings of a term, searched for documents in ascending key order, with
+     * the score of a match of weight 1.
+     */
+    private static final class Cursor {
+
+        private final Postings postings;
+
+        private final double score;
+
+        private int at;
+
+        Cursor(Postings postings, double score) {
+            this.postings = postings;
+            this.score = score;
+        }
+
+        /**
+         * @param key A document key greater than any searched for before
+         * @return The weight of the term in the document, or 0 if the document lacks it
+         */
+        int weight(int key) {
+            int found = find(postings.entries, at, key);
+            at = found >= 0 ? found + 1 : -found - 1;
+            return found >= 0 ? postings.entries[found] & WEIGHT_MASK : 0;
+        }
+
+    }
+
+    /**
+     * The best hits seen so far, kept in a bounded min heap. A document offered again keeps its
+     * better score.
+     */
+    private static final class Hits {
+
+        private final int limit;
+
+        private final PriorityQueue<SearchHit> heap;
+
+        private final Map<Integer, SearchHit> byKey = new HashMap<>();
+
+        Hits(int limit) {
+            this.limit = limit;
+            this.heap = new PriorityQueue<>(limit + 1,
+                                            (a, b) -> Double.compare(a.getScore(), b.getScore()));
+        }
+
+        boolean isFull() {
+            return heap.size() == limit;
+        }
+
+        double minScore() {
+            return heap.peek().getScore();
+        }
+
+        void offer(int key, double score) {
+            if (isFull() && score <= minScore()) {
+                return;
+            }
+
+            SearchHit previous = byKey.get(key);
+            if (previous != null) {
+                if (score <= previous.getScore()) {
+                    return;
+                }
+                heap.remove(previous);
+            }
+
+            SearchHit hit = new SearchHit(DocumentType.values()[key & 1], key >>> 1, score);
+            heap.add(hit);
+            byKey.put(key, hit);
+
+            if (heap.size() > limit) {
+                SearchHit dropped = heap.poll();
+                byKey.remove(dropped.getEntityId() << 1 | dropped.getType().ordinal());
+            }
+        }
+
+        List<SearchHit> best() {
+            List<SearchHit> best = new ArrayList<>(heap);
+            best.sort((a, b) -> Double.compare(b.getScore(), a.getScore()));
+            return best;
+        }
+
+    }
+
+}
@@ -0,0 +1,59 @@
+package com.aquent.crudapp.search;
+
+/**
+ * A search hit with the details of its entity, for display.
+ */
+public class SearchResult {
+
+    private final SearchIndex.DocumentType type;
+
+    private final int entityId;
+
+    private final String label;
+
+    private final String detail;
+
+    private final String url;
+
+    private final double score;
+
+    /**
+     * @param hit The hit
+     * @param label The name of the entity
+     * @param detail A line of further detail, such as an email address
+     * @param url The path of the page viewing the entity
+     */
+    public SearchResult(SearchHit hit, String label, String detail, String url) {
+        this.type = hit.getType();
+        this.entityId = hit.getEntityId();
+        this.label = label;
+        this.detail = detail;
+        this.url = url;
+        this.score = hit.getScore();
+    }
+
+    public SearchIndex.DocumentType getType() {
+        return type;
+    }
+
+    public int getEntityId() {
+        return entityId;
+    }
+
+    public String getLabel() {
+        return label;
+    }
+
+    public String getDetail() {
+        return detail;
+    }
+
+    public String getUrl() {
+        return url;
+    }
+
+    public double getScore() {
+        return score;
+    }
+
+}
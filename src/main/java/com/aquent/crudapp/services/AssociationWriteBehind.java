@@ -0,0 +1,500 @@
+package com.aquent.crudapp.services;
+
+import com.aquent.crudapp.data_access.AssociationIndex;
+import com.aquent.crudapp.interfaces.Entity;
+import com.aquent.crudapp.interfaces.EntityDao;
+import com.aquent.crudapp.model.Client;
+import com.aquent.crudapp.model.Page;
+import com.aquent.crudapp.model.PageCursor;
+import com.aquent.crudapp.model.PageCursor.Direction;
+import com.aquent.crudapp.model.Person;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.dao.EmptyResultDataAccessException;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import javax.annotation.PreDestroy;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.function.BiFunction;
+import java.util.function.Function;
+import java.util.function.Supplier;
+
+/**
+ * Optional write-behind of the single association changes the services make, for the bursts of
+ * Add and Remove clicks of someone editing contacts, enabled with
+ * crudapp.associations.write-behind=true.
+ *
+ * Each change is queued under its client and person instead of being written. A change which
+ * undoes the pending one, or which the association already reflects, cancels it, so a burst of
+ * toggles of the same association writes at most one statement. The queue is written every
+ * crudapp.associations.write-behind-interval-ms, or as soon as it holds
+ * crudapp.associations.write-behind-batch-size changes, in one transaction with one JDBC batch of
+ * removals and one of additions per client, and on shutdown before the database is closed. If
+ * that transaction fails, the changes of each client are written in a transaction of their own,
+ * so one client's failure does not hold back the others. Changes which still fail are queued
+ * again and retried with a growing delay, unless their client or person has been deleted, in which
+ * case they can never be written and are dropped. A failure to write at shutdown is thrown, as the
+ * changes still queued are then lost, as are those queued when the process dies.
+ *
+ * The services lay the queued changes over the associations they read, so a change is seen at
+ * once, and write the queue before changing a set of associations at once, so the changes are
+ * applied in the order they were made. Counts, pickers and the change feed reflect a change once
+ * it is written.
+ */
+@Component
+public class AssociationWriteBehind {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(AssociationWriteBehind.class);
+
+    /** The longest delay before writing a queue again once writing it has failed */
+    private static final long MAX_RETRY_DELAY_MILLIS = 60_000;
+
+    /** The listing order of people, as the DAOs read them */
+    private static final Comparator<Person> PERSON_ORDER =
+            Comparator.comparing(Person::getFirstName)
+                      .thenComparing(Person::getLastName)
+                      .thenComparing(Person::getEntityId);
+
+    /** The listing order of clients, as the DAOs read them */
+    private static final Comparator<Client> CLIENT_ORDER =
+            Comparator.comparing(Client::getCompanyName)
+                      .thenComparing(Client::getWebsite)
+                      .thenComparing(Client::getEntityId);
+
+    private final EntityDao<Client, Person> clientDao;
+
+    private final AssociationIndex.View clientIndex;
+
+    private final TransactionTemplate transactionTemplate;
+
+    private final boolean enabled;
+
+    private final long intervalMillis;
+
+    private final int batchSize;
+
+    /** The queued changes, true to associate, by {@link #key(int, int)}; guarded by this */
+    private Map<Long, Boolean> pending = new HashMap<>();
+
+    /** The changes being written, until they commit; guarded by this */
+    private Map<Long, Boolean> writing = new HashMap<>();
+
+    /** Held while writing the queue, so the queue is written by one thread at a time */
+    private final Object writeLock = new Object();
+
+    /** The number of scheduled writes of the queue which have failed in a row; executor only */
+    private int failures;
+
+    /** The System.nanoTime() before which a failed queue is not written again; executor only */
+    private long retryAt;
+
+    private final ScheduledExecutorService executor = Executors.newSingleThreadScheduledExecutor(
+            runnable -> {
+                Thread thread = new Thread(runnable, "association-write-behind");
+                thread.setDaemon(true);
+                return thread;
+            });
+
+    public AssociationWriteBehind(
+            @Qualifier("clientDAO") EntityDao<Client, Person> clientDao,
+            AssociationIndex associationIndex,
+            PlatformTransactionManager transactionManager,
+            @Value("${crudapp.associations.write-behind:false}") boolean enabled,
+            @Value("${crudapp.associations.write-behind-interval-ms:200}") long intervalMillis,
+            @Value("${crudapp.associations.write-behind-batch-size:500}") int batchSize) {
+        this.clientDao = clientDao;
+        this.clientIndex = associationIndex.clientView();
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.transactionTemplate.setPropagationBehavior(
+                TransactionDefinition.PROPAGATION_REQUIRES_NEW);
+        this.enabled = enabled;
+        this.intervalMillis = intervalMillis;
+        this.batchSize = batchSize;
+    }
+
+    /**
+     * @return true if association changes are queued rather than written
+     */
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * Starts writing the queue once the application is ready to serve requests.
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public void start() {
+        if (enabled) {
+            executor.scheduleWithFixedDelay(this::flushQuietly, intervalMillis, intervalMillis,
+                                            TimeUnit.MILLISECONDS);
+        }
+    }
+
+    /**
+     * Writes whatever is still queued.
+     *
+     * @throws RuntimeException if some of the queued changes could not be written, and so are lost
+     */
+    @PreDestroy
+    public void stop() {
+        executor.shutdown();
+        try {
+            executor.awaitTermination(30, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+
+        int written = flush();
+        if (written > 0) {
+            LOGGER.info("Wrote {} queued association changes at shutdown", written);
+        }
+    }
+
+    /**
+     * Queue associating or dissociating a client and a person.
+     *
+     * @param clientId The ID of the client
+     * @param personId The ID of the person
+     * @param associate true to associate them, false to dissociate them
+     */
+    public void enqueue(int clientId, int personId, boolean associate) {
+        int queued;
+
+        synchronized (this) {
+            long key = key(clientId, personId);
+            Boolean base = writing.get(key);
+            boolean associated = base != null ? base : clientIndex.isAssociated(clientId, personId);
+
+            if (associate == associated) {
+                pending.remove(key);
+            } else {
+                pending.put(key, associate);
+            }
+            queued = pending.size();
+        }
+
+        if (queued >= batchSize) {
+            try {
+                executor.execute(this::flushQuietly);
+            } catch (RejectedExecutionException e) {
+                // shutting down, which writes the queue
+            }
+        }
+    }
+
+    /**
+     * Write the queued changes, in a transaction of their own. If that fails, the changes of each
+     * client are written in a transaction of their own instead. The changes which still fail are
+     * queued again, unless their client or person has been deleted, and the failure is thrown.
+     *
+     * @return The number of changes written
+     */
+    public int flush() {
+        synchronized (writeLock) {
+            Map<Long, Boolean> changes;
+            synchronized (this) {
+                if (pending.isEmpty()) {
+                    return 0;
+                }
+                changes = pending;
+                writing = changes;
+                pending = new HashMap<>();
+            }
+
+            Map<Long, Boolean> failed = new HashMap<>();
+            try {
+                return write(changes, failed);
+            } finally {
+                synchronized (this) {
+                    // requeue what has not been changed again since
+                    failed.forEach(pending::putIfAbsent);
+                    writing = new HashMap<>();
+                }
+            }
+        }
+    }
+
+    /**
+     * Lay the queued changes of a client's contacts over its contacts as read.
+     *
+     * @param clientId The ID of the client
+     * @param contacts The contacts as read, in listing order
+     * @param reader Reads a person by ID
+     * @return The contacts once the queued changes are written, in listing order
+     */
+    public List<Person> overlayContacts(int clientId, List<Person> contacts,
+                                        Function<Integer, Person> reader) {
+        return enabled ? overlay(changes(clientId, true), contacts, reader, PERSON_ORDER) :
+               contacts;
+    }
+
+    /**
+     * Lay the queued changes of a person's clients over its clients as read.
+     *
+     * @param personId The ID of the person
+     * @param clients The clients as read, in listing order
+     * @param reader Reads a client by ID
+     * @return The clients once the queued changes are written, in listing order
+     */
+    public List<Client> overlayClients(int personId, List<Client> clients,
+                                       Function<Integer, Client> reader) {
+        return enabled ? overlay(changes(personId, false), clients, reader, CLIENT_ORDER) :
+               clients;
+    }
+
+    /**
+     * Reads a page of the entities available for association.
+     *
+     * @param <T> The type of the available entities
+     */
+    @FunctionalInterface
+    public interface PageReader<T> {
+
+        /**
+         * @param cursor The cursor to seek from, or null for the first page
+         * @param pageSize The maximum number of entities on the page
+         * @return The page
+         */
+        Page<T> read(PageCursor cursor, int pageSize);
+
+    }
+
+    /**
+     * Read a page of available entities, leaving out those a queued change associates.
+     *
+     * As many more rows are read as there are queued additions, so that a full page remains once
+     * they are left out, and the page is trimmed back to its size, with cursors on the entities
+     * kept.
+     *
+     * @param ownId The ID of the client, or of the person
+     * @param ofClient true if ownId is a client ID
+     * @param cursor The cursor to seek from, or null for the first page
+     * @param pageSize The maximum number of entities on the page
+     * @param reader Reads a page of the available entities, as the database holds them
+     * @param cursorFactory Builds a cursor for a given entity and seek direction
+     * @param <T> The type of the available entities
+     * @return The page without the entities about to be associated
+     */
+    public <T extends Entity> Page<T> availablePage(
+            int ownId, boolean ofClient, PageCursor cursor, int pageSize, PageReader<T> reader,
+            BiFunction<T, Direction, PageCursor> cursorFactory) {
+        if (!enabled) {
+            return reader.read(cursor, pageSize);
+        }
+
+        Map<Integer, Boolean> changes = changes(ownId, ofClient);
+        changes.values().removeIf(associate -> !associate);
+        if (changes.isEmpty()) {
+            return reader.read(cursor, pageSize);
+        }
+
+        Page<T> read = reader.read(cursor, pageSize + changes.size());
+        boolean backward = cursor != null && cursor.getDirection() == Direction.BEFORE;
+        // of the rows read and the one beyond them, at most changes.size() are left out, so any
+        // further rows hold at least one which is kept
+        boolean hasMore = backward ? read.hasPrevious() : read.hasNext();
+
+        List<T> items = new ArrayList<>(read.getItems());
+        items.removeIf(entity -> changes.containsKey(entity.getEntityId()));
+        if (items.size() > pageSize) {
+            items = backward ? items.subList(items.size() - pageSize, items.size()) :
+                    items.subList(0, pageSize);
+            hasMore = true;
+        }
+
+        if (items.isEmpty()) {
+            return new Page<>(items, null, null);
+        }
+
+        boolean hasPrevious = backward ? hasMore : cursor != null;
+        boolean hasNext = backward || hasMore;
+        return new Page<>(items,
+                          hasPrevious ? cursorFactory.apply(items.get(0), Direction.BEFORE) : null,
+                          hasNext ? cursorFactory.apply(items.get(items.size() - 1),
+                                                        Direction.AFTER) : null);
+    }
+
+    /**
+     * @return The queued and writing changes involving an entity, by the other entity's ID
+     */
+    private synchronized Map<Integer, Boolean> changes(int ownId, boolean ofClient) {
+        Map<Integer, Boolean> changes = new TreeMap<>();
+
+        for (Map<Long, Boolean> queue : List.of(writing, pending)) {
+            for (Map.Entry<Long, Boolean> change : queue.entrySet()) {
+                int clientId = (int) (change.getKey() >>> 32);
+                int personId = (int) (long) change.getKey();
+                if (ofClient ? clientId == ownId : personId == ownId) {
+                    changes.put(ofClient ? personId : clientId, change.getValue());
+                }
+            }
+        }
+
+        return changes;
+    }
+
+    private static <T extends Entity> List<T> overlay(Map<Integer, Boolean> changes,
+                                                      List<T> associations,
+                                                      Function<Integer, T> reader,
+                                                      Comparator<T> order) {
+        if (changes.isEmpty()) {
+            return associations;
+        }
+
+        List<T> overlaid = new ArrayList<>(associations.size() + changes.size());
+        for (T association : associations) {
+            if (!Boolean.FALSE.equals(changes.remove(association.getEntityId()))) {
+                overlaid.add(association);
+            }
+        }
+
+        changes.forEach((otherId, associate) -> {
+            if (associate) {
+                try {
+                    overlaid.add(reader.apply(otherId));
+                } catch (EmptyResultDataAccessException e) {
+                    // deleted, so the association will not be made
+                }
+            }
+        });
+
+        overlaid.sort(order);
+        return overlaid;
+    }
+
+    /**
+     * Write changes, putting those which fail but may yet be written into failed.
+     */
+    private int write(Map<Long, Boolean> changes, Map<Long, Boolean> failed) {
+        Map<Integer, Map<Integer, Boolean>> byClient = new TreeMap<>();
+        changes.forEach((key, associate) -> {
+            byClient.computeIfAbsent((int) (key >>> 32), clientId -> new TreeMap<>())
+                    .put((int) (long) key, associate);
+        });
+
+        try {
+            transactionTemplate.executeWithoutResult(status -> byClient.forEach(this::write));
+            return changes.size();
+        } catch (RuntimeException e) {
+            LOGGER.warn("Could not write {} queued association changes, writing them by client",
+                        changes.size(), e);
+        }
+
+        int written = 0;
+        RuntimeException failure = null;
+
+        for (Map.Entry<Integer, Map<Integer, Boolean>> client : byClient.entrySet()) {
+            try {
+                transactionTemplate.executeWithoutResult(
+                        status -> write(client.getKey(), client.getValue()));
+                written += client.getValue().size();
+            } catch (RuntimeException e) {
+                retryLater(client.getKey(), client.getValue(), failed);
+                if (failure == null) {
+                    failure = e;
+                } else {
+                    failure.addSuppressed(e);
+                }
+            }
+        }
+
+        if (failure != null) {
+            throw failure;
+        }
+        return written;
+    }
+
+    /**
+     * Write the changes of one client, as one batch of removals and one of additions.
+     */
+    private void write(int clientId, Map<Integer, Boolean> changes) {
+        List<Integer> additions = new ArrayList<>();
+        List<Integer> removals = new ArrayList<>();
+        changes.forEach((personId, associate) -> (associate ? additions : removals).add(personId));
+
+        clientDao.removeAssociations(clientId, removals);
+        clientDao.addAssociations(clientId, additions);
+    }
+
+    /**
+     * Put the changes of a client which could not be written into failed, to be written again,
+     * unless they never can be, as the client or the person has been deleted.
+     */
+    private void retryLater(int clientId, Map<Integer, Boolean> changes,
+                            Map<Long, Boolean> failed) {
+        if (isDeleted(() -> clientDao.readEntity(clientId))) {
+            LOGGER.warn("Dropped the queued association changes of client {}, which was deleted",
+                        clientId);
+            return;
+        }
+
+        changes.forEach((personId, associate) -> {
+            if (isDeleted(() -> clientDao.readAssociatedEntity(personId))) {
+                LOGGER.warn("Dropped the queued association change of client {} and person {}, " +
+                            "who was deleted", clientId, personId);
+            } else {
+                failed.put(key(clientId, personId), associate);
+            }
+        });
+    }
+
+    /**
+     * @return true if the entity read is known to be deleted; a read which fails otherwise may be
+     *         of an entity which exists
+     */
+    private static boolean isDeleted(Supplier<?> reader) {
+        try {
+            reader.get();
+            return false;
+        } catch (EmptyResultDataAccessException e) {
+            return true;
+        } catch (RuntimeException e) {
+            return false;
+        }
+    }
+
+    /**
+     * Write the queue on the executor, waiting longer after each failure before trying again.
+     */
+    private void flushQuietly() {
+        if (failures > 0 && System.nanoTime() - retryAt < 0) {
+            return;
+        }
+
+        try {
+            int written = flush();
+            failures = 0;
+            if (written > 0) {
+                LOGGER.debug("Wrote {} queued association changes", written);
+            }
+        } catch (RuntimeException e) {
+            failures++;
+            long delay = Math.min(MAX_RETRY_DELAY_MILLIS,
+                                  intervalMillis << Math.min(failures, 20));
+            retryAt = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(delay);
+            LOGGER.warn("Could not write the queued association changes, retrying in {} ms",
+                        delay, e);
+        }
+    }
+
+    private static long key(int clientId, int personId) {
+        return (long) clientId << 32 | personId & 0xFFFFFFFFL;
+    }
+
+}
@@ -0,0 +1,27 @@
+package com.aquent.crudapp.services;
+
+/**
+ * Names of the entity caches used by the services.
+ *
+ * Each cache holds entities of one type by entity ID, whichever service read them, so that
+ * updating or deleting an entity evicts the one copy that either service may return. The caches
+ * hold entity columns only, not associations, so association changes do not evict anything.
+ * They hold copies of the entities, which {@link EntityCache} copies again on every hit, as
+ * callers change the entities they are given.
+ *
+ * The caches are configured with spring.cache.* properties, and disabled with
+ * spring.cache.type=none. The same names key the per request {@link RequestIdentityMap}, which
+ * serves repeated reads within a request whether or not the caches are enabled.
+ */
+public final class CacheNames {
+
+    /** The cache of clients by client ID */
+    public static final String CLIENTS = "clients";
+
+    /** The cache of people by person ID */
+    public static final String PEOPLE = "people";
+
+    private CacheNames() {
+    }
+
+}
@@ -3,9 +3,20 @@ package com.aquent.crudapp.services;
 import com.aquent.crudapp.model.Client;
 import com.aquent.crudapp.interfaces.EntityDao;
 import com.aquent.crudapp.interfaces.EntityService;
+import com.aquent.crudapp.interfaces.EntitySummaryDao;
+import com.aquent.crudapp.interfaces.EntitySummaryService;
+import com.aquent.crudapp.model.EntityWithAssociations;
+import com.aquent.crudapp.model.Page;
+import com.aquent.crudapp.model.PageCursor;
 import com.aquent.crudapp.model.Person;
+import com.aquent.crudapp.model.ClientSummary;
+import com.aquent.crudapp.model.PersonSummary;
+import com.aquent.crudapp.search.SearchIndex;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.cache.CacheManager;
+import org.springframework.cache.annotation.CacheEvict;
+import org.springframework.cache.annotation.Caching;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Propagation;
 import org.springframework.transaction.annotation.Transactional;
@@ -13,23 +24,50 @@ import org.springframework.transaction.annotation.Transactional;
 import javax.validation.ConstraintViolation;
 import javax.validation.Validator;
 import java.util.ArrayList;
+import java.util.Collection;
 import java.util.Collections;
 import java.util.List;
 import java.util.Set;
+import java.util.function.Consumer;
 
 @Service
 @Qualifier("clientService")
-public class ClientService implements EntityService<Client, Person> {
+public class ClientService implements EntityService<Client, Person>,
+                                      EntitySummaryService<ClientSummary, PersonSummary> {
 
     @Autowired
     @Qualifier("clientDAO")
     private final EntityDao<Client, Person> entityDao;
 
+    private final EntitySummaryDao<ClientSummary, PersonSummary> summaryDao;
+
     private final Validator validator;
 
-    public ClientService(EntityDao<Client, Person> entityDao, Validator validator) {
+    private final RequestIdentityMap identityMap;
+
+    private final SearchIndex searchIndex;
+
+    private final AssociationWriteBehind writeBehind;
+
+    private final EntityCache<Client> clientCache;
+
+    private final EntityCache<Person> personCache;
+
+    public ClientService(EntityDao<Client, Person> entityDao,
+                         EntitySummaryDao<ClientSummary, PersonSummary> summaryDao,
+                         Validator validator,
+                         RequestIdentityMap identityMap,
+                         SearchIndex searchIndex,
+                         AssociationWriteBehind writeBehind,
+                         CacheManager cacheManager) {
         this.entityDao = entityDao;
+        this.summaryDao = summaryDao;
         this.validator = validator;
+        this.identityMap = identityMap;
+        this.searchIndex = searchIndex;
+        this.writeBehind = writeBehind;
+        this.clientCache = new EntityCache<>(cacheManager, CacheNames.CLIENTS, Client::copy);
+        this.personCache = new EntityCache<>(cacheManager, CacheNames.PEOPLE, Person::copy);
     }
 
     /**
@@ -43,6 +81,30 @@ public class ClientService implements EntityService<Client, Person> {
         return entityDao.listEntities();
     }
 
+    /**
+     * Passes every client record, in listing order, to an action as it is read.
+     *
+     * @param action Receives each client record
+     */
+    @Override
+    @Transactional(propagation = Propagation.SUPPORTS, readOnly = true)
+    public void forEachEntity(Consumer<? super Client> action) {
+        entityDao.forEachEntity(action);
+    }
+
+    /**
+     * Retrieves one page of client records, seeking from a cursor.
+     *
+     * @param cursor The cursor to seek from, or null for the first page
+     * @param pageSize The maximum number of client records on the page
+     * @return The page of client records
+     */
+    @Override
+    @Transactional(propagation = Propagation.SUPPORTS, readOnly = true)
+    public Page<Client> listEntities(PageCursor cursor, int pageSize) {
+        return entityDao.listEntities(cursor, pageSize);
+    }
+
     /**
      * Get a list of all entities associated with this entity via entity ID
      *
@@ -52,18 +114,60 @@ public class ClientService implements EntityService<Client, Person> {
     @Override
     @Transactional(propagation = Propagation.SUPPORTS, readOnly = true)
     public List<Person> getAssociations(Integer clientId) {
-        return entityDao.getAssociations(clientId);
+        return writeBehind.overlayContacts(clientId, entityDao.getAssociations(clientId),
+                                           entityDao::readAssociatedEntity);
+    }
+
+    /**
+     * Retrieves one page of the entities not associated with this entity, in their listing order,
+     * seeking from a cursor.
+     *
+     * @param clientId The entity ID field of this entity
+     * @param cursor The cursor to seek from, or null for the first page
+     * @param pageSize The maximum number of entities on the page
+     * @return The page of the entities not associated with this entity
+     */
+    @Override
+    @Transactional(propagation = Propagation.SUPPORTS, readOnly = true)
+    public Page<Person> getAvailableAssociations(Integer clientId, PageCursor cursor, int pageSize) {
+        return writeBehind.availablePage(
+                clientId, true, cursor, pageSize,
+                (from, limit) -> entityDao.getAvailableAssociations(clientId, from, limit),
+                (person, direction) -> new PageCursor(person.getFirstName(), person.getLastName(),
+                                                      person.getEntityId(), direction));
     }
 
     /**
-     * Get a list of all entities not associated with this entity.
+     * Retrieves one page of client summaries, seeking from a cursor.
+     *
+     * @param cursor The cursor to seek from, or null for the first page
+     * @param pageSize The maximum number of client summaries on the page
+     * @return The page of client summaries
+     */
+    @Override
+    @Transactional(propagation = Propagation.SUPPORTS, readOnly = true)
+    public Page<ClientSummary> listSummaries(PageCursor cursor, int pageSize) {
+        return summaryDao.listSummaries(cursor, pageSize);
+    }
+
+    /**
+     * Retrieves one page of summaries of the entities not associated with this entity, in their
+     * listing order, seeking from a cursor.
      *
      * @param clientId The entity ID field of this entity
-     * @return A list of all entities not associated with this entity
+     * @param cursor The cursor to seek from, or null for the first page
+     * @param pageSize The maximum number of summaries on the page
+     * @return The page of summaries of the entities not associated with this entity
      */
     @Override
-    public List<Person> getAvailableAssociations(Integer clientId) {
-        return entityDao.getAvailableAssociations(clientId);
+    @Transactional(propagation = Propagation.SUPPORTS, readOnly = true)
+    public Page<PersonSummary> getAvailableAssociationSummaries(Integer clientId, PageCursor cursor,
+                                                                int pageSize) {
+        return writeBehind.availablePage(
+                clientId, true, cursor, pageSize,
+                (from, limit) -> summaryDao.getAvailableAssociationSummaries(clientId, from, limit),
+                (person, direction) -> new PageCursor(person.getFirstName(), person.getLastName(),
+                                                      person.getEntityId(), direction));
     }
 
     /**
@@ -73,8 +177,53 @@ public class ClientService implements EntityService<Client, Person> {
      * @param personId The ID of the entity which should be associated
      */
     @Override
+    @Transactional
     public void addAssociation(Integer clientId, Integer personId) {
-        entityDao.addAssociation(clientId, personId);
+        if (writeBehind.isEnabled()) {
+            writeBehind.enqueue(clientId, personId, true);
+        } else {
+            entityDao.addAssociation(clientId, personId);
+        }
+    }
+
+    /**
+     * Add associations with a set of entities in one batch.
+     *
+     * @param clientId The ID of this entity
+     * @param personIds The IDs of the entities which should be associated
+     */
+    @Override
+    @Transactional
+    public void addAssociations(Integer clientId, Collection<Integer> personIds) {
+        writeBehind.flush();
+        entityDao.addAssociations(clientId, personIds);
+    }
+
+    /**
+     * Remove associations with a set of entities in one batch.
+     *
+     * @param clientId The ID of this entity
+     * @param personIds The IDs of the associated entities, the associations with which are
+     *                  to be removed
+     */
+    @Override
+    @Transactional
+    public void removeAssociations(Integer clientId, Collection<Integer> personIds) {
+        writeBehind.flush();
+        entityDao.removeAssociations(clientId, personIds);
+    }
+
+    /**
+     * Make this entity associated with exactly a given set of entities, in one transaction.
+     *
+     * @param clientId The ID of this entity
+     * @param desiredIds The IDs of all the entities which should be associated once done
+     */
+    @Override
+    @Transactional
+    public void syncAssociations(Integer clientId, Collection<Integer> desiredIds) {
+        writeBehind.flush();
+        entityDao.syncAssociations(clientId, desiredIds);
     }
 
     /**
@@ -86,7 +235,14 @@ public class ClientService implements EntityService<Client, Person> {
     @Override
     @Transactional(propagation = Propagation.SUPPORTS, readOnly = true)
     public Person readAssociatedEntity(Integer personId) {
-        return entityDao.readAssociatedEntity(personId);
+        Person person = identityMap.get(CacheNames.PEOPLE, personId);
+
+        if (person == null) {
+            person = personCache.get(personId, () -> entityDao.readAssociatedEntity(personId));
+            identityMap.put(CacheNames.PEOPLE, personId, person);
+        }
+
+        return person;
     }
 
     /**
@@ -97,9 +253,13 @@ public class ClientService implements EntityService<Client, Person> {
      *                      removed
      */
     @Override
-    @Transactional(propagation = Propagation.SUPPORTS)
+    @Transactional
     public void removeAssociation(Integer clientId, Integer personId) {
-        entityDao.removeAssociation(clientId, personId);
+        if (writeBehind.isEnabled()) {
+            writeBehind.enqueue(clientId, personId, false);
+        } else {
+            entityDao.removeAssociation(clientId, personId);
+        }
     }
 
     /**
@@ -110,9 +270,26 @@ public class ClientService implements EntityService<Client, Person> {
      * @return the new client ID
      */
     @Override
-    @Transactional(propagation = Propagation.SUPPORTS)
+    @Transactional
     public Integer createEntity(Client client) {
-        return entityDao.createEntity(client);
+        Integer clientId = entityDao.createEntity(client);
+        searchIndex.index(clientId, client);
+        return clientId;
+    }
+
+    /**
+     * Creates new client records with one batched insert, in one transaction.
+     *
+     * @param clients the values to save
+     *
+     * @return the number of client records created
+     */
+    @Override
+    @Transactional
+    public int createEntities(Collection<Client> clients) {
+        int created = entityDao.createEntities(clients);
+        searchIndex.indexClients(clients);
+        return created;
     }
 
     /**
@@ -125,18 +302,61 @@ public class ClientService implements EntityService<Client, Person> {
     @Override
     @Transactional(propagation = Propagation.SUPPORTS, readOnly = true)
     public Client readEntity(Integer clientId) {
-        return entityDao.readEntity(clientId);
+        Client client = identityMap.get(CacheNames.CLIENTS, clientId);
+
+        if (client == null) {
+            client = clientCache.get(clientId, () -> entityDao.readEntity(clientId));
+            identityMap.put(CacheNames.CLIENTS, clientId, client);
+        }
+
+        return client;
+    }
+
+    /**
+     * Retrieves a client record by ID together with its contacts, with one query. The result is
+     * not cached, as associations change without the client record changing, but the records read
+     * are remembered for the rest of the request.
+     *
+     * @param clientId the client ID
+     * @return the client record and its contacts, ordered by first and last name
+     */
+    @Override
+    @Transactional(propagation = Propagation.SUPPORTS, readOnly = true)
+    public EntityWithAssociations<Client, Person> readEntityWithAssociations(Integer clientId) {
+        EntityWithAssociations<Client, Person> read =
+                entityDao.readEntityWithAssociations(clientId);
+        if (writeBehind.isEnabled()) {
+            read = new EntityWithAssociations<>(read.getEntity(), writeBehind.overlayContacts(
+                    clientId, read.getAssociations(), entityDao::readAssociatedEntity));
+        }
+        identityMap.put(CacheNames.CLIENTS, clientId, read.getEntity());
+        for (Person associated : read.getAssociations()) {
+            identityMap.put(CacheNames.PEOPLE, associated.getEntityId(), associated);
+        }
+        return read;
     }
 
     /**
-     * Updates an existing client record.
+     * Updates an existing client record, provided nobody has updated it since it was read.
+     *
+     * The cached copy is evicted before the update as well as after it, so that a copy which is
+     * stale, as the update fails to find its version, is not served again.
      *
-     * @param client the new values to save
+     * @param client the new values to save, with the version which was read
+     * @throws org.springframework.dao.OptimisticLockingFailureException if the client record has
+     *         been updated or deleted since it was read
      */
     @Override
-    @Transactional(propagation = Propagation.SUPPORTS)
+    @Caching(evict = {
+            @CacheEvict(cacheNames = CacheNames.CLIENTS, key = "#client.entityId",
+                        beforeInvocation = true),
+            @CacheEvict(cacheNames = CacheNames.CLIENTS, key = "#client.entityId")
+    })
+    @Transactional
     public void updateEntity(Client client) {
         entityDao.updateEntity(client);
+        identityMap.put(CacheNames.CLIENTS, client.getEntityId(), client);
+        searchIndex.index(client.getEntityId(), client);
     }
 
     /**
@@ -145,9 +365,12 @@ public class ClientService implements EntityService<Client, Person> {
      * @param clientId the client ID
      */
     @Override
-    @Transactional(propagation = Propagation.SUPPORTS)
+    @CacheEvict(cacheNames = CacheNames.CLIENTS, key = "#clientId")
+    @Transactional
     public void deleteEntity(Integer clientId) {
         entityDao.deleteEntity(clientId);
+        identityMap.evict(CacheNames.CLIENTS, clientId);
+        searchIndex.remove(SearchIndex.DocumentType.CLIENT, clientId);
     }
 
     /**
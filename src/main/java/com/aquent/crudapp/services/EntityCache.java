@@ -0,0 +1,67 @@
+package com.aquent.crudapp.services;
+
+import com.aquent.crudapp.data_access.ReadWriteRoutingDataSource;
+import org.springframework.cache.Cache;
+import org.springframework.cache.CacheManager;
+
+import java.util.function.Supplier;
+import java.util.function.UnaryOperator;
+
+/**
+ * One of the entity caches named in {@link CacheNames}, holding copies of the entities the
+ * services read.
+ *
+ * Entities are mutable, and callers change the ones they are given, e.g. by binding a form onto
+ * them or by updating them, which moves them to the next version. The cache therefore stores a
+ * copy of each entity read and hands out a copy of it on each hit, so no caller ever holds the
+ * cached instance. @Cacheable cannot do that, as it returns the cached instance itself.
+ *
+ * A miss is read from the primary, not a read replica: a row read from a lagging replica just
+ * after an update evicted it would otherwise be cached, and served to everyone, at its old
+ * version.
+ *
+ * @param <E> The type of entity cached
+ */
+final class EntityCache<E> {
+
+    private final Cache cache;
+
+    private final UnaryOperator<E> copier;
+
+    /**
+     * Instantiates an EntityCache
+     *
+     * @param cacheManager The cache manager, which may be a no-op one
+     * @param name The name of the cache, one of {@link CacheNames}
+     * @param copier Copies an entity
+     */
+    EntityCache(CacheManager cacheManager, String name, UnaryOperator<E> copier) {
+        this.cache = cacheManager.getCache(name);
+        this.copier = copier;
+    }
+
+    /**
+     * Get a copy of a cached entity, or read the entity and cache a copy of it.
+     *
+     * @param id The entity ID
+     * @param reader Reads the entity, on a miss, from the primary; its exceptions are thrown as
+     *               they are
+     * @return The entity, which the caller may change
+     */
+    @SuppressWarnings("unchecked")
+    E get(Integer id, Supplier<E> reader) {
+        if (cache == null) {
+            return reader.get();
+        }
+
+        Cache.ValueWrapper cached = cache.get(id);
+        if (cached != null) {
+            return copier.apply((E) cached.get());
+        }
+
+        E entity = ReadWriteRoutingDataSource.readFromPrimary(reader);
+        cache.put(id, copier.apply(entity));
+        return entity;
+    }
+
+}
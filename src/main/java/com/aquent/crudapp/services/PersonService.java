@@ -1,18 +1,31 @@
 package com.aquent.crudapp.services;
 
 import java.util.ArrayList;
+import java.util.Collection;
 import java.util.Collections;
 import java.util.List;
 import java.util.Set;
+import java.util.function.Consumer;
 import javax.validation.ConstraintViolation;
 import javax.validation.Validator;
 
 import com.aquent.crudapp.model.Client;
 import com.aquent.crudapp.interfaces.EntityDao;
 import com.aquent.crudapp.interfaces.EntityService;
+import com.aquent.crudapp.interfaces.EntitySummaryDao;
+import com.aquent.crudapp.interfaces.EntitySummaryService;
+import com.aquent.crudapp.model.EntityWithAssociations;
+import com.aquent.crudapp.model.Page;
+import com.aquent.crudapp.model.PageCursor;
 import com.aquent.crudapp.model.Person;
+import com.aquent.crudapp.model.ClientSummary;
+import com.aquent.crudapp.model.PersonSummary;
+import com.aquent.crudapp.search.SearchIndex;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.cache.CacheManager;
+import org.springframework.cache.annotation.CacheEvict;
+import org.springframework.cache.annotation.Caching;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Propagation;
 import org.springframework.transaction.annotation.Transactional;
@@ -22,16 +35,37 @@ import org.springframework.transaction.annotation.Transactional;
  */
 @Service
 @Qualifier("personService")
-public class PersonService implements EntityService<Person, Client> {
+public class PersonService implements EntityService<Person, Client>,
+                                      EntitySummaryService<PersonSummary, ClientSummary> {
 
     @Autowired
     @Qualifier("personDAO")
     private final EntityDao<Person, Client> entityDao;
+
+    private final EntitySummaryDao<PersonSummary, ClientSummary> summaryDao;
+
     private final Validator                 validator;
+    private final RequestIdentityMap        identityMap;
+    private final SearchIndex               searchIndex;
+    private final AssociationWriteBehind    writeBehind;
+    private final EntityCache<Person>       personCache;
+    private final EntityCache<Client>       clientCache;
 
-    public PersonService(EntityDao<Person, Client> entityDao, Validator validator) {
+    public PersonService(EntityDao<Person, Client> entityDao,
+                         EntitySummaryDao<PersonSummary, ClientSummary> summaryDao,
+                         Validator validator,
+                         RequestIdentityMap identityMap,
+                         SearchIndex searchIndex,
+                         AssociationWriteBehind writeBehind,
+                         CacheManager cacheManager) {
         this.entityDao = entityDao;
+        this.summaryDao = summaryDao;
         this.validator = validator;
+        this.identityMap = identityMap;
+        this.searchIndex = searchIndex;
+        this.writeBehind = writeBehind;
+        this.personCache = new EntityCache<>(cacheManager, CacheNames.PEOPLE, Person::copy);
+        this.clientCache = new EntityCache<>(cacheManager, CacheNames.CLIENTS, Client::copy);
     }
 
     /**
@@ -45,6 +79,30 @@ public class PersonService implements EntityService<Person, Client> {
         return entityDao.listEntities();
     }
 
+    /**
+     * Passes every person record, in listing order, to an action as it is read.
+     *
+     * @param action Receives each person record
+     */
+    @Override
+    @Transactional(propagation = Propagation.SUPPORTS, readOnly = true)
+    public void forEachEntity(Consumer<? super Person> action) {
+        entityDao.forEachEntity(action);
+    }
+
+    /**
+     * Retrieves one page of person records, seeking from a cursor.
+     *
+     * @param cursor The cursor to seek from, or null for the first page
+     * @param pageSize The maximum number of person records on the page
+     * @return The page of person records
+     */
+    @Override
+    @Transactional(propagation = Propagation.SUPPORTS, readOnly = true)
+    public Page<Person> listEntities(PageCursor cursor, int pageSize) {
+        return entityDao.listEntities(cursor, pageSize);
+    }
+
     /**
      * Get a list of all entities associated with this entity via entity ID
      *
@@ -54,18 +112,60 @@ public class PersonService implements EntityService<Person, Client> {
     @Override
     @Transactional(propagation = Propagation.SUPPORTS, readOnly = true)
     public List<Client> getAssociations(Integer personId) {
-        return entityDao.getAssociations(personId);
+        return writeBehind.overlayClients(personId, entityDao.getAssociations(personId),
+                                          entityDao::readAssociatedEntity);
+    }
+
+    /**
+     * Retrieves one page of the entities not associated with this entity, in their listing order,
+     * seeking from a cursor.
+     *
+     * @param personId The entity ID field of this entity
+     * @param cursor The cursor to seek from, or null for the first page
+     * @param pageSize The maximum number of entities on the page
+     * @return The page of the entities not associated with this entity
+     */
+    @Override
+    @Transactional(propagation = Propagation.SUPPORTS, readOnly = true)
+    public Page<Client> getAvailableAssociations(Integer personId, PageCursor cursor, int pageSize) {
+        return writeBehind.availablePage(
+                personId, false, cursor, pageSize,
+                (from, limit) -> entityDao.getAvailableAssociations(personId, from, limit),
+                (client, direction) -> new PageCursor(client.getCompanyName(), client.getWebsite(),
+                                                      client.getEntityId(), direction));
     }
 
     /**
-     * Get a list of all entities not associated with this entity.
+     * Retrieves one page of person summaries, seeking from a cursor.
+     *
+     * @param cursor The cursor to seek from, or null for the first page
+     * @param pageSize The maximum number of person summaries on the page
+     * @return The page of person summaries
+     */
+    @Override
+    @Transactional(propagation = Propagation.SUPPORTS, readOnly = true)
+    public Page<PersonSummary> listSummaries(PageCursor cursor, int pageSize) {
+        return summaryDao.listSummaries(cursor, pageSize);
+    }
+
+    /**
+     * Retrieves one page of summaries of the entities not associated with this entity, in their
+     * listing order, seeking from a cursor.
      *
      * @param personId The entity ID field of this entity
-     * @return A list of all entities not associated with this entity
+     * @param cursor The cursor to seek from, or null for the first page
+     * @param pageSize The maximum number of summaries on the page
+     * @return The page of summaries of the entities not associated with this entity
      */
     @Override
-    public List<Client> getAvailableAssociations(Integer personId) {
-        return entityDao.getAvailableAssociations(personId);
+    @Transactional(propagation = Propagation.SUPPORTS, readOnly = true)
+    public Page<ClientSummary> getAvailableAssociationSummaries(Integer personId, PageCursor cursor,
+                                                                int pageSize) {
+        return writeBehind.availablePage(
+                personId, false, cursor, pageSize,
+                (from, limit) -> summaryDao.getAvailableAssociationSummaries(personId, from, limit),
+                (client, direction) -> new PageCursor(client.getCompanyName(), client.getWebsite(),
+                                                      client.getEntityId(), direction));
     }
 
     /**
@@ -75,8 +175,53 @@ public class PersonService implements EntityService<Person, Client> {
      * @param clientId The ID of this entity
      */
     @Override
+    @Transactional
     public void addAssociation(Integer personId, Integer clientId) {
-        entityDao.addAssociation(personId, clientId);
+        if (writeBehind.isEnabled()) {
+            writeBehind.enqueue(clientId, personId, true);
+        } else {
+            entityDao.addAssociation(personId, clientId);
+        }
+    }
+
+    /**
+     * Add associations with a set of entities in one batch.
+     *
+     * @param personId The ID of this entity
+     * @param clientIds The IDs of the entities which should be associated
+     */
+    @Override
+    @Transactional
+    public void addAssociations(Integer personId, Collection<Integer> clientIds) {
+        writeBehind.flush();
+        entityDao.addAssociations(personId, clientIds);
+    }
+
+    /**
+     * Remove associations with a set of entities in one batch.
+     *
+     * @param personId The ID of this entity
+     * @param clientIds The IDs of the associated entities, the associations with which are
+     *                  to be removed
+     */
+    @Override
+    @Transactional
+    public void removeAssociations(Integer personId, Collection<Integer> clientIds) {
+        writeBehind.flush();
+        entityDao.removeAssociations(personId, clientIds);
+    }
+
+    /**
+     * Make this entity associated with exactly a given set of entities, in one transaction.
+     *
+     * @param personId The ID of this entity
+     * @param desiredIds The IDs of all the entities which should be associated once done
+     */
+    @Override
+    @Transactional
+    public void syncAssociations(Integer personId, Collection<Integer> desiredIds) {
+        writeBehind.flush();
+        entityDao.syncAssociations(personId, desiredIds);
     }
 
     /**
@@ -89,7 +234,37 @@ public class PersonService implements EntityService<Person, Client> {
     @Override
     @Transactional(propagation = Propagation.SUPPORTS, readOnly = true)
     public Person readEntity(Integer id) {
-        return entityDao.readEntity(id);
+        Person person = identityMap.get(CacheNames.PEOPLE, id);
+
+        if (person == null) {
+            person = personCache.get(id, () -> entityDao.readEntity(id));
+            identityMap.put(CacheNames.PEOPLE, id, person);
+        }
+
+        return person;
+    }
+
+    /**
+     * Retrieves a person record by ID together with the clients the person is a contact of, with
+     * one query. The result is not cached, as associations change without the person record
+     * changing, but the records read are remembered for the rest of the request.
+     *
+     * @param id the person ID
+     * @return the person record and the clients the person is a contact of, in listing order
+     */
+    @Override
+    @Transactional(propagation = Propagation.SUPPORTS, readOnly = true)
+    public EntityWithAssociations<Person, Client> readEntityWithAssociations(Integer id) {
+        EntityWithAssociations<Person, Client> read = entityDao.readEntityWithAssociations(id);
+        if (writeBehind.isEnabled()) {
+            read = new EntityWithAssociations<>(read.getEntity(), writeBehind.overlayClients(
+                    id, read.getAssociations(), entityDao::readAssociatedEntity));
+        }
+        identityMap.put(CacheNames.PEOPLE, id, read.getEntity());
+        for (Client associated : read.getAssociations()) {
+            identityMap.put(CacheNames.CLIENTS, associated.getEntityId(), associated);
+        }
+        return read;
     }
 
     /**
@@ -101,7 +276,14 @@ public class PersonService implements EntityService<Person, Client> {
     @Override
     @Transactional(propagation = Propagation.SUPPORTS, readOnly = true)
     public Client readAssociatedEntity(Integer clientId) {
-        return entityDao.readAssociatedEntity(clientId);
+        Client client = identityMap.get(CacheNames.CLIENTS, clientId);
+
+        if (client == null) {
+            client = clientCache.get(clientId, () -> entityDao.readAssociatedEntity(clientId));
+            identityMap.put(CacheNames.CLIENTS, clientId, client);
+        }
+
+        return client;
     }
 
     /**
@@ -112,20 +294,49 @@ public class PersonService implements EntityService<Person, Client> {
      * @return the new client ID
      */
     @Override
-    @Transactional(propagation = Propagation.SUPPORTS, readOnly = false)
+    @Transactional
     public Integer createEntity(Person person) {
-        return entityDao.createEntity(person);
+        Integer personId = entityDao.createEntity(person);
+        searchIndex.index(personId, person);
+        return personId;
     }
 
     /**
-     * Updates an existing person record.
+     * Creates new person records with one batched insert, in one transaction.
      *
-     * @param person the new values to save
+     * @param persons the values to save
+     *
+     * @return the number of person records created
      */
     @Override
-    @Transactional(propagation = Propagation.SUPPORTS, readOnly = false)
+    @Transactional
+    public int createEntities(Collection<Person> persons) {
+        int created = entityDao.createEntities(persons);
+        searchIndex.indexPeople(persons);
+        return created;
+    }
+
+    /**
+     * Updates an existing person record, provided nobody has updated it since it was read.
+     *
+     * The cached copy is evicted before the update as well as after it, so that a copy which is
+     * stale, as the update fails to find its version, is not served again.
+     *
+     * @param person the new values to save, with the version which was read
+     * @throws org.springframework.dao.OptimisticLockingFailureException if the person record has
+     *         been updated or deleted since it was read
+     */
+    @Override
+    @Caching(evict = {
+            @CacheEvict(cacheNames = CacheNames.PEOPLE, key = "#person.entityId",
+                        beforeInvocation = true),
+            @CacheEvict(cacheNames = CacheNames.PEOPLE, key = "#person.entityId")
+    })
+    @Transactional
     public void updateEntity(Person person) {
         entityDao.updateEntity(person);
+        identityMap.put(CacheNames.PEOPLE, person.getEntityId(), person);
+        searchIndex.index(person.getEntityId(), person);
     }
 
     /**
@@ -134,9 +345,12 @@ public class PersonService implements EntityService<Person, Client> {
      * @param id the client ID
      */
     @Override
-    @Transactional(propagation = Propagation.SUPPORTS, readOnly = false)
+    @CacheEvict(cacheNames = CacheNames.PEOPLE, key = "#id")
+    @Transactional
     public void deleteEntity(Integer id) {
         entityDao.deleteEntity(id);
+        identityMap.evict(CacheNames.PEOPLE, id);
+        searchIndex.remove(SearchIndex.DocumentType.PERSON, id);
     }
 
     /**
@@ -147,9 +361,13 @@ public class PersonService implements EntityService<Person, Client> {
      * @param clientId The ID of this entity
      */
     @Override
-    @Transactional(propagation = Propagation.SUPPORTS)
+    @Transactional
     public void removeAssociation(Integer personId, Integer clientId) {
-        entityDao.removeAssociation(personId, clientId);
+        if (writeBehind.isEnabled()) {
+            writeBehind.enqueue(clientId, personId, false);
+        } else {
+            entityDao.removeAssociation(personId, clientId);
+        }
     }
 
     /**
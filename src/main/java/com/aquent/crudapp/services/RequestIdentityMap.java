@@ -0,0 +1,94 @@
+package com.aquent.crudapp.services;
+
+import org.springframework.stereotype.Component;
+import org.springframework.web.context.request.RequestAttributes;
+import org.springframework.web.context.request.RequestContextHolder;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * A first level cache of the entities read or written by the services during the current HTTP
+ * request, so that reading the same entity again within the request needs no SQL.
+ *
+ * Entities are kept by cache name and entity ID, with the names in {@link CacheNames}, in an
+ * attribute of the current request, and so are discarded with it. Outside of a request, e.g. on
+ * the import validation threads, nothing is kept.
+ */
+@Component
+public class RequestIdentityMap {
+
+    /** The request attribute which holds the entities */
+    private static final String ATTRIBUTE = RequestIdentityMap.class.getName();
+
+    /**
+     * Get an entity read or written earlier in the current request.
+     *
+     * @param cacheName The name of the cache for the entity type
+     * @param id The entity ID
+     * @param <E> The type of entity
+     * @return The entity, or null if it is not known in this request
+     */
+    @SuppressWarnings("unchecked")
+    public <E> E get(String cacheName, Integer id) {
+        Map<String, Map<Integer, Object>> entities = entities(false);
+        Map<Integer, Object> byId = entities == null ? null : entities.get(cacheName);
+        return byId == null ? null : (E) byId.get(id);
+    }
+
+    /**
+     * Remember an entity for the rest of the current request.
+     *
+     * @param cacheName The name of the cache for the entity type
+     * @param id The entity ID
+     * @param entity The entity as it is stored
+     */
+    public void put(String cacheName, Integer id, Object entity) {
+        Map<String, Map<Integer, Object>> entities = entities(true);
+
+        if (entities != null && id != null && entity != null) {
+            entities.computeIfAbsent(cacheName, name -> new HashMap<>()).put(id, entity);
+        }
+    }
+
+    /**
+     * Forget an entity for the rest of the current request.
+     *
+     * @param cacheName The name of the cache for the entity type
+     * @param id The entity ID
+     */
+    public void evict(String cacheName, Integer id) {
+        Map<String, Map<Integer, Object>> entities = entities(false);
+
+        if (entities != null && entities.containsKey(cacheName)) {
+            entities.get(cacheName).remove(id);
+        }
+    }
+
+    /**
+     * Get the entities of the current request.
+     *
+     * @param create Whether to create the map if the request has none yet
+     * @return The entities by cache name and ID, or null if there is no current request or none
+     *         were kept and create is false
+     */
+    @SuppressWarnings("unchecked")
+    private Map<String, Map<Integer, Object>> entities(boolean create) {
+        RequestAttributes request = RequestContextHolder.getRequestAttributes();
+
+        if (request == null) {
+            return null;
+        }
+
+        Map<String, Map<Integer, Object>> entities = (Map<String, Map<Integer, Object>>)
+                request.getAttribute(ATTRIBUTE, RequestAttributes.SCOPE_REQUEST);
+
+        if (entities == null && create) {
+            entities = new HashMap<>();
+            request.setAttribute(ATTRIBUTE, entities, RequestAttributes.SCOPE_REQUEST);
+        }
+
+        return entities;
+    }
+
+}
@@ -0,0 +1,38 @@
+package com.aquent.crudapp.startup;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.HttpURLConnection;
+import java.net.URL;
+
+/**
+ * GETs of the application's pages, reading the whole response, as made by the training run and
+ * by the startup benchmark.
+ */
+public final class PageRequests {
+
+    private PageRequests() {
+    }
+
+    /**
+     * GET a page and read the whole response, to load the classes which render it.
+     *
+     * @param url The URL of the page
+     * @return The status of the response
+     * @throws IOException if the request cannot be made, e.g. as nothing is listening yet
+     */
+    public static int get(URL url) throws IOException {
+        HttpURLConnection connection = (HttpURLConnection) url.openConnection();
+        byte[] buffer = new byte[8192];
+        try (InputStream body = connection.getResponseCode() < 400 ?
+                                connection.getInputStream() : connection.getErrorStream()) {
+            while (body != null && body.read(buffer) >= 0) {
+                // read the whole response
+            }
+            return connection.getResponseCode();
+        } finally {
+            connection.disconnect();
+        }
+    }
+
+}
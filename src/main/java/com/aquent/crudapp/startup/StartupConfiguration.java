@@ -0,0 +1,55 @@
+package com.aquent.crudapp.startup;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.boot.SpringApplication;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.boot.web.context.WebServerApplicationContext;
+import org.springframework.context.ApplicationListener;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import java.io.IOException;
+import java.net.URL;
+
+/**
+ * Configuration of the training run, which the Maven cds profile uses to record the classes
+ * loaded by starting the application and serving its first requests into a class data sharing
+ * archive. Later runs map the archived classes rather than loading and verifying them again.
+ */
+@Configuration
+public class StartupConfiguration {
+
+    /** The pages requested by the training run, to load the classes which serve them */
+    private static final String[] TRAINING_PATHS = {"/", "/client/list", "/person/list",
+                                                    "/search?q=a", "/api/people"};
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(StartupConfiguration.class);
+
+    /**
+     * @return The listener which, once the application is ready, requests each of the training
+     *         pages and then exits
+     */
+    @Bean
+    @ConditionalOnProperty("crudapp.startup.training-run")
+    public ApplicationListener<ApplicationReadyEvent> trainingRun() {
+        return event -> {
+            ConfigurableApplicationContext context = event.getApplicationContext();
+            int port = ((WebServerApplicationContext) context).getWebServer().getPort();
+
+            for (String path : TRAINING_PATHS) {
+                try {
+                    LOGGER.info("Training run: GET {} answered {}", path, PageRequests.get(
+                            new URL("http://localhost:" + port + path)));
+                } catch (IOException e) {
+                    LOGGER.warn("Training run: GET {} failed", path, e);
+                }
+            }
+
+            System.exit(SpringApplication.exit(context));
+        };
+    }
+
+}
@@ -0,0 +1,93 @@
+package com.aquent.crudapp.threads;
+
+import org.apache.coyote.ProtocolHandler;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.web.embedded.tomcat.TomcatProtocolHandlerCustomizer;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import javax.annotation.PreDestroy;
+import java.lang.reflect.InvocationTargetException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Serves requests on virtual threads when crudapp.threads.virtual is set and the JVM has them,
+ * Java 21 or later.
+ *
+ * Tomcat then starts a virtual thread for each request instead of taking one from its pool of
+ * server.tomcat.threads.max platform threads, and the EntityService and EntityDao calls made by
+ * the request run on it. A request waiting for the database parks its virtual thread rather than
+ * blocking a platform thread, so the number of requests in progress is no longer capped by the
+ * thread pool; the number which can use the database at once is still capped by the connection
+ * pool, spring.datasource.hikari.maximum-pool-size, and the rest wait there for a connection.
+ *
+ * The application is built for Java 17, so virtual threads are looked up reflectively; on an
+ * older JVM a warning is logged and requests are served on platform threads.
+ */
+@Configuration
+@ConditionalOnProperty("crudapp.threads.virtual")
+public class VirtualThreadConfiguration {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(VirtualThreadConfiguration.class);
+
+    /** The executor given to Tomcat, or null if this JVM has no virtual threads */
+    private ExecutorService executor;
+
+    /**
+     * @return The customizer which gives Tomcat an executor starting a virtual thread per task
+     */
+    @Bean
+    public TomcatProtocolHandlerCustomizer<ProtocolHandler> virtualThreadProtocolHandler() {
+        executor = newVirtualThreadPerTaskExecutor();
+
+        return protocolHandler -> {
+            if (executor != null) {
+                protocolHandler.setExecutor(executor);
+                LOGGER.info("Serving requests on virtual threads");
+            }
+        };
+    }
+
+    /**
+     * @return true if requests are served on virtual threads, false if this JVM has none and they
+     *         are served on platform threads
+     */
+    public boolean isServingOnVirtualThreads() {
+        return executor != null;
+    }
+
+    /**
+     * Shut the executor down once Tomcat has stopped, as Tomcat leaves an executor it was given
+     * running.
+     */
+    @PreDestroy
+    public void stop() {
+        if (executor != null) {
+            executor.shutdown();
+        }
+    }
+
+    /**
+     * @return Executors.newVirtualThreadPerTaskExecutor(), or null if this JVM has no virtual
+     *         threads
+     */
+    static ExecutorService newVirtualThreadPerTaskExecutor() {
+        try {
+            return (ExecutorService) Executors.class.getMethod("newVirtualThreadPerTaskExecutor")
+                                                    .invoke(null);
+        } catch (NoSuchMethodException | IllegalAccessException e) {
+            LOGGER.warn("crudapp.threads.virtual is set, but Java {} has no virtual threads; " +
+                        "serving requests on platform threads",
+                        System.getProperty("java.specification.version"));
+        } catch (InvocationTargetException e) {
+            LOGGER.warn("crudapp.threads.virtual is set, but virtual threads are not available; " +
+                        "serving requests on platform threads", e.getCause());
+        }
+
+        return null;
+    }
+
+}
@@ -6,9 +6,16 @@ CREATE TABLE person (
     street_address varchar(50) NOT NULL,
     city varchar(50) NOT NULL,
     state varchar(2) NOT NULL,
-    zip_code varchar(5) NOT NULL
+    zip_code varchar(5) NOT NULL,
+    version integer DEFAULT 0 NOT NULL,
+    client_count integer DEFAULT 0 NOT NULL,
+    deleted_at timestamp
 );
 
+CREATE INDEX person_listing_idx ON person (first_name, last_name, person_id);
+
+CREATE INDEX person_deleted_idx ON person (deleted_at);
+
 CREATE TABLE client (
     client_id      INTEGER     AUTO_INCREMENT PRIMARY KEY,
     company_name   VARCHAR(100) NOT NULL,
@@ -17,9 +24,16 @@ CREATE TABLE client (
     street_address VARCHAR(50) NOT NULL,
     city           VARCHAR(50) NOT NULL,
     state          VARCHAR(2)  NOT NULL,
-    zip_code       VARCHAR(10) NOT NULL
+    zip_code       VARCHAR(10) NOT NULL,
+    version        INTEGER     DEFAULT 0 NOT NULL,
+    contact_count  INTEGER     DEFAULT 0 NOT NULL,
+    deleted_at     TIMESTAMP
 );
 
+CREATE INDEX client_listing_idx ON client (company_name, website, client_id);
+
+CREATE INDEX client_deleted_idx ON client (deleted_at);
+
 CREATE TABLE client_person_associations (
     association_id INTEGER AUTO_INCREMENT PRIMARY KEY,
     client_id      INTEGER NOT NULL,
@@ -28,3 +42,18 @@ CREATE TABLE client_person_associations (
     FOREIGN KEY (client_id) REFERENCES client (client_id) ON DELETE CASCADE,
     FOREIGN KEY (person_id) REFERENCES person (person_id) ON DELETE CASCADE
 );
+
+CREATE UNIQUE INDEX client_person_idx ON client_person_associations (client_id, person_id);
+
+CREATE UNIQUE INDEX person_client_idx ON client_person_associations (person_id, client_id);
+
+CREATE TABLE change_event (
+    event_id      BIGINT      AUTO_INCREMENT PRIMARY KEY,
+    entity_type   VARCHAR(10) NOT NULL,
+    entity_id     INTEGER     NOT NULL,
+    associated_id INTEGER,
+    change_type   VARCHAR(20) NOT NULL,
+    created_at    TIMESTAMP   DEFAULT CURRENT_TIMESTAMP NOT NULL
+);
+
+CREATE INDEX change_event_created_idx ON change_event (created_at);
@@ -0,0 +1,74 @@
+/**
+ * A script offering suggestions from the search index as a search box is typed into
+ */
+
+/** The search boxes present on the document */
+const searchBoxes = document.querySelectorAll('form.form-search input[name="q"]');
+
+/** The milliseconds to wait after the last key press before asking for suggestions */
+const suggestionDelay = 150;
+
+/**
+ * Replace the suggestions shown beneath a search box.
+ *
+ * @param {HTMLInputElement} searchBox The search box
+ * @param {Array<Object>} suggestions The suggestions, each with a label, detail and url
+ */
+const showSuggestions = (searchBox, suggestions) => {
+    let menu = searchBox.form.querySelector('.dropdown-menu');
+
+    if (menu === null) {
+        menu = document.createElement('ul');
+        menu.classList.add('dropdown-menu');
+        searchBox.form.appendChild(menu);
+    }
+
+    menu.replaceChildren(...suggestions.map(suggestion => {
+        let link = document.createElement('a');
+        link.href = suggestion.url;
+        link.textContent = `${suggestion.label} (${suggestion.detail})`;
+
+        let item = document.createElement('li');
+        item.appendChild(link);
+        return item;
+    }));
+
+    menu.style.display = suggestions.length > 0 ? 'block' : 'none';
+};
+
+/**
+ * Ask for the suggestions for the text of a search box. Suggestions arriving after the text has
+ * changed again are dropped.
+ *
+ * @param {HTMLInputElement} searchBox The search box
+ */
+const suggest = searchBox => {
+    let query = searchBox.value.trim();
+
+    if (query === '') {
+        showSuggestions(searchBox, []);
+        return;
+    }
+
+    fetch(`/search/autocomplete?q=${encodeURIComponent(query)}`)
+        .then(response => response.json())
+        .then(suggestions => {
+            if (searchBox.value.trim() === query) {
+                showSuggestions(searchBox, suggestions);
+            }
+        });
+};
+
+searchBoxes.forEach(searchBox => {
+    let timer;
+
+    searchBox.addEventListener('input', () => {
+        clearTimeout(timer);
+        timer = setTimeout(() => suggest(searchBox), suggestionDelay);
+    });
+
+    searchBox.addEventListener('blur', () => {
+        /* Leave time for a click on a suggestion to follow its link */
+        setTimeout(() => showSuggestions(searchBox, []), suggestionDelay);
+    });
+});
@@ -0,0 +1,47 @@
+package com.aquent.crudapp;
+
+import com.aquent.crudapp.model.Client;
+import com.aquent.crudapp.model.Person;
+
+/**
+ * Valid client and person records for the tests to save.
+ */
+public final class TestEntities {
+
+    private TestEntities() {
+    }
+
+    /**
+     * @param companyName The company name
+     * @return A new client record with the given company name
+     */
+    public static Client client(String companyName) {
+        Client client = new Client();
+        client.setCompanyName(companyName);
+        client.setWebsite("https://example.com/" + companyName.replace(' ', '-'));
+        client.setPhone("5555550100");
+        client.setStreetAddress("1 Main St.");
+        client.setCity("Boston");
+        client.setState("MA");
+        client.setZipCode("02110");
+        return client;
+    }
+
+    /**
+     * @param firstName The first name
+     * @param lastName The last name
+     * @return A new person record with the given name
+     */
+    public static Person person(String firstName, String lastName) {
+        Person person = new Person();
+        person.setFirstName(firstName);
+        person.setLastName(lastName);
+        person.setEmailAddress(firstName + "." + lastName + "@example.com");
+        person.setStreetAddress("1 Main St.");
+        person.setCity("Boston");
+        person.setState("MA");
+        person.setZipCode("02110");
+        return person;
+    }
+
+}
@@ -0,0 +1,137 @@
+package com.aquent.crudapp.controllers;
+
+import com.aquent.crudapp.model.Page;
+import com.aquent.crudapp.model.PageCursor;
+import com.aquent.crudapp.model.PageCursor.Direction;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class StreamedPageTests {
+
+    @Test
+    void pageIsReadInChunksAsItIsIterated() {
+        Listing listing = new Listing(10);
+        StreamedPage<Integer> page = new StreamedPage<>(null, 7, 3, listing);
+
+        assertThat(listing.limits).isEmpty();
+        assertThat(items(page)).containsExactly(1, 2, 3, 4, 5, 6, 7);
+        assertThat(listing.limits).containsExactly(3, 3, 1);
+        assertThat(page.hasPrevious()).isFalse();
+        assertThat(page.getNextCursor().getEntityId()).isEqualTo(7);
+        assertThat(page.getNextCursor().getDirection()).isEqualTo(Direction.AFTER);
+    }
+
+    @Test
+    void lastPageStopsAtTheEndOfTheListing() {
+        Listing listing = new Listing(10);
+        StreamedPage<Integer> page = new StreamedPage<>(after(5), 7, 2, listing);
+
+        assertThat(items(page)).containsExactly(6, 7, 8, 9, 10);
+        assertThat(listing.limits).containsExactly(2, 2, 2);
+        assertThat(page.hasNext()).isFalse();
+        assertThat(page.getPreviousCursor().getEntityId()).isEqualTo(6);
+    }
+
+    @Test
+    void nextCursorReadsTheRestOfAPageNotIterated() {
+        Listing listing = new Listing(10);
+        StreamedPage<Integer> page = new StreamedPage<>(null, 4, 2, listing);
+
+        assertThat(page.isEmpty()).isFalse();
+        assertThat(listing.limits).containsExactly(2);
+        assertThat(page.getNextCursor().getEntityId()).isEqualTo(4);
+        assertThat(listing.limits).containsExactly(2, 2);
+        assertThatThrownBy(page::iterator).isInstanceOf(IllegalStateException.class);
+    }
+
+    @Test
+    void pageBeforeACursorIsReadInOneQuery() {
+        Listing listing = new Listing(10);
+        StreamedPage<Integer> page = new StreamedPage<>(
+                new PageCursor(null, null, 8, Direction.BEFORE), 4, 2, listing);
+
+        assertThat(items(page)).containsExactly(4, 5, 6, 7);
+        assertThat(listing.limits).containsExactly(4);
+        assertThat(page.getPreviousCursor().getEntityId()).isEqualTo(4);
+        assertThat(page.getNextCursor().getEntityId()).isEqualTo(7);
+    }
+
+    @Test
+    void chunksAreNoLargerThanThePage() {
+        Listing listing = new Listing(3);
+        StreamedPage<Integer> page = new StreamedPage<>(null, 5, 50, listing);
+
+        assertThat(items(page)).containsExactly(1, 2, 3);
+        assertThat(listing.limits).containsExactly(5);
+        assertThat(page.hasNext()).isFalse();
+    }
+
+    @Test
+    void anUnboundedPageReadsTheWholeListingInChunks() {
+        Listing listing = new Listing(250);
+        StreamedPage<Integer> page = new StreamedPage<>(null, Integer.MAX_VALUE, 100, listing);
+
+        assertThat(items(page)).hasSize(250).startsWith(1).endsWith(250);
+        assertThat(listing.limits).containsExactly(100, 100, 100);
+        assertThat(page.hasNext()).isFalse();
+    }
+
+    private static PageCursor after(int row) {
+        return new PageCursor(null, null, row, Direction.AFTER);
+    }
+
+    private static List<Integer> items(StreamedPage<Integer> page) {
+        List<Integer> items = new ArrayList<>();
+        page.forEach(items::add);
+        return items;
+    }
+
+    /**
+     * A listing of the rows 1 to n, an int standing in for an entity, recording the limit of
+     * each chunk read.
+     */
+    private static final class Listing implements StreamedPage.ChunkReader<Integer> {
+
+        private final int rows;
+
+        private final List<Integer> limits = new ArrayList<>();
+
+        Listing(int rows) {
+            this.rows = rows;
+        }
+
+        @Override
+        public Page<Integer> read(PageCursor cursor, int limit) {
+            limits.add(limit);
+
+            if (cursor != null && cursor.getDirection() == Direction.BEFORE) {
+                int to = cursor.getEntityId() - 1;
+                int from = Math.max(1, to - limit + 1);
+                return new Page<>(range(from, to), from > 1 ? before(from) : null, after(to));
+            }
+
+            int from = cursor == null ? 1 : cursor.getEntityId() + 1;
+            int to = Math.min(rows, from + limit - 1);
+            List<Integer> items = range(from, to);
+            PageCursor previous = cursor == null || items.isEmpty() ? null : before(from);
+            return new Page<>(items, previous, to < rows ? after(to) : null);
+        }
+
+        private static PageCursor before(int row) {
+            return new PageCursor(null, null, row, Direction.BEFORE);
+        }
+
+        private static List<Integer> range(int from, int to) {
+            return IntStream.rangeClosed(from, to).boxed().collect(Collectors.toList());
+        }
+
+    }
+
+}
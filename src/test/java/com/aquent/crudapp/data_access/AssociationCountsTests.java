@@ -0,0 +1,113 @@
+package com.aquent.crudapp.data_access;
+
+import com.aquent.crudapp.TestEntities;
+import com.aquent.crudapp.interfaces.EntityService;
+import com.aquent.crudapp.model.Client;
+import com.aquent.crudapp.model.Person;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.Collections;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+@SpringBootTest
+class AssociationCountsTests {
+
+    @Autowired
+    @Qualifier("clientService")
+    private EntityService<Client, Person> clientService;
+
+    @Autowired
+    @Qualifier("personService")
+    private EntityService<Person, Client> personService;
+
+    @Autowired
+    @Qualifier("clientDAO")
+    private jdbcClientDAO clientDao;
+
+    @Autowired
+    private NamedParameterJdbcTemplate namedParameterJdbcTemplate;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    @Test
+    void countsFollowTheAssociationsChanged() {
+        int clientId = clientService.createEntity(TestEntities.client("Counted Co"));
+        int a = personService.createEntity(TestEntities.person("Ann", "Counted"));
+        int b = personService.createEntity(TestEntities.person("Ben", "Counted"));
+
+        clientService.addAssociations(clientId, List.of(a, b));
+        clientService.addAssociation(clientId, a);
+        assertThat(contactCount(clientId)).isEqualTo(2);
+        assertThat(clientCount(a)).isEqualTo(1);
+
+        personService.removeAssociation(a, clientId);
+        personService.removeAssociation(a, clientId);
+        assertThat(contactCount(clientId)).isEqualTo(1);
+        assertThat(clientCount(a)).isZero();
+
+        personService.deleteEntity(b);
+        assertThat(contactCount(clientId)).isZero();
+    }
+
+    @Test
+    void countsRollBackWithTheAssociation() {
+        int clientId = clientService.createEntity(TestEntities.client("Rolled Back Co"));
+        int personId = personService.createEntity(TestEntities.person("Rob", "Counted"));
+
+        new TransactionTemplate(transactionManager).executeWithoutResult(status -> {
+            clientDao.addAssociations(clientId, List.of(personId));
+            assertThat(contactCount(clientId)).isEqualTo(1);
+            status.setRollbackOnly();
+        });
+
+        assertThat(contactCount(clientId)).isZero();
+        assertThat(clientCount(personId)).isZero();
+        assertThat(clientService.getAssociations(clientId)).isEmpty();
+    }
+
+    @Test
+    void reconcilerCorrectsCountsWhichDrifted() {
+        int clientId = clientService.createEntity(TestEntities.client("Drifted Co"));
+        int a = personService.createEntity(TestEntities.person("Ada", "Drifted"));
+        int b = personService.createEntity(TestEntities.person("Bo", "Drifted"));
+        clientService.addAssociations(clientId, List.of(a, b));
+        personService.deleteEntity(b);
+
+        namedParameterJdbcTemplate.update("UPDATE client SET contact_count = 7 " +
+                                          "WHERE client_id = :id",
+                                          Collections.singletonMap("id", clientId));
+        namedParameterJdbcTemplate.update("UPDATE person SET client_count = 0 " +
+                                          "WHERE person_id = :id",
+                                          Collections.singletonMap("id", a));
+
+        AssociationCountReconciler reconciler = new AssociationCountReconciler(
+                namedParameterJdbcTemplate, transactionManager, 2, 0);
+
+        assertThat(reconciler.reconcile()).isGreaterThanOrEqualTo(2);
+        assertThat(contactCount(clientId)).isEqualTo(1);
+        assertThat(clientCount(a)).isEqualTo(1);
+        assertThat(reconciler.reconcile()).isZero();
+    }
+
+    private int contactCount(int clientId) {
+        return namedParameterJdbcTemplate.queryForObject(
+                "SELECT contact_count FROM client WHERE client_id = :id",
+                Collections.singletonMap("id", clientId), Integer.class);
+    }
+
+    private int clientCount(int personId) {
+        return namedParameterJdbcTemplate.queryForObject(
+                "SELECT client_count FROM person WHERE person_id = :id",
+                Collections.singletonMap("id", personId), Integer.class);
+    }
+
+}
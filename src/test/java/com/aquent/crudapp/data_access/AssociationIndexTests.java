@@ -0,0 +1,99 @@
+package com.aquent.crudapp.data_access;
+
+import com.aquent.crudapp.TestEntities;
+import com.aquent.crudapp.interfaces.EntityService;
+import com.aquent.crudapp.model.Client;
+import com.aquent.crudapp.model.Person;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+@SpringBootTest
+class AssociationIndexTests {
+
+    /** IDs far above any the tests create, so changes made directly do not meet real rows */
+    private static final int CLIENT = 1_000_001;
+
+    private static final int PERSON = 2_000_001;
+
+    @Autowired
+    private AssociationIndex associationIndex;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    @Autowired
+    @Qualifier("clientService")
+    private EntityService<Client, Person> clientService;
+
+    @Autowired
+    @Qualifier("personService")
+    private EntityService<Person, Client> personService;
+
+    @Test
+    void associationsAreSortedAndSeenFromBothSides() {
+        AssociationIndex.View clients = associationIndex.clientView();
+        AssociationIndex.View people = associationIndex.personView();
+
+        clients.associate(CLIENT, List.of(PERSON + 2, PERSON, PERSON + 1));
+        clients.associate(CLIENT, PERSON);
+
+        assertThat(clients.associated(CLIENT)).containsExactly(PERSON, PERSON + 1, PERSON + 2);
+        assertThat(people.associated(PERSON + 1)).containsExactly(CLIENT);
+        assertThat(people.isAssociated(PERSON + 2, CLIENT)).isTrue();
+
+        people.dissociate(PERSON + 1, CLIENT);
+
+        assertThat(clients.associated(CLIENT)).containsExactly(PERSON, PERSON + 2);
+        assertThat(people.associated(PERSON + 1)).isEmpty();
+
+        clients.deleted(CLIENT);
+
+        assertThat(clients.associated(CLIENT)).isEmpty();
+        assertThat(people.associated(PERSON)).isEmpty();
+        assertThat(people.associated(PERSON + 2)).isEmpty();
+    }
+
+    @Test
+    void changesInATransactionAreAppliedOnlyOnceItCommits() {
+        AssociationIndex.View clients = associationIndex.clientView();
+        TransactionTemplate transactionTemplate = new TransactionTemplate(transactionManager);
+
+        transactionTemplate.executeWithoutResult(status -> {
+            clients.associate(CLIENT + 1, PERSON);
+            assertThat(clients.isAssociated(CLIENT + 1, PERSON)).isFalse();
+        });
+        assertThat(clients.isAssociated(CLIENT + 1, PERSON)).isTrue();
+
+        transactionTemplate.executeWithoutResult(status -> {
+            clients.dissociate(CLIENT + 1, PERSON);
+            status.setRollbackOnly();
+        });
+        assertThat(clients.isAssociated(CLIENT + 1, PERSON)).isTrue();
+
+        clients.deleted(CLIENT + 1);
+    }
+
+    @Test
+    void loadReadsTheAssociationsOfEntitiesNotDeleted() {
+        int clientId = clientService.createEntity(TestEntities.client("Index Co"));
+        int a = personService.createEntity(TestEntities.person("Ann", "Index"));
+        int b = personService.createEntity(TestEntities.person("Bob", "Index"));
+        clientService.addAssociations(clientId, List.of(a, b));
+        personService.deleteEntity(b);
+
+        associationIndex.load();
+
+        assertThat(associationIndex.clientView().associated(clientId)).containsExactly(a);
+        assertThat(associationIndex.personView().associated(a)).containsExactly(clientId);
+        assertThat(associationIndex.personView().associated(b)).isEmpty();
+    }
+
+}
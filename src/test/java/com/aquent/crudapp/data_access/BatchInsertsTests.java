@@ -0,0 +1,77 @@
+package com.aquent.crudapp.data_access;
+
+import com.aquent.crudapp.TestEntities;
+import com.aquent.crudapp.interfaces.EntityService;
+import com.aquent.crudapp.model.Client;
+import com.aquent.crudapp.model.Person;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.namedparam.MapSqlParameterSource;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+import org.springframework.jdbc.core.namedparam.SqlParameterSource;
+
+import java.util.Collections;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+@SpringBootTest
+class BatchInsertsTests {
+
+    /** A plain insert, which fails on an existing association */
+    private static final String INSERT_ASSOCIATION = "INSERT INTO client_person_associations " +
+                                                     "(client_id, person_id) " +
+                                                     "VALUES (:clientId, :personId)";
+
+    @Autowired
+    @Qualifier("clientService")
+    private EntityService<Client, Person> clientService;
+
+    @Autowired
+    @Qualifier("personService")
+    private EntityService<Person, Client> personService;
+
+    @Autowired
+    private NamedParameterJdbcTemplate namedParameterJdbcTemplate;
+
+    @Test
+    void insertSetsTheGeneratedIdOfEachEntity() {
+        Client first = TestEntities.client("Batch First");
+        Client second = TestEntities.client("Batch Second");
+
+        assertThat(clientService.createEntities(List.of(first, second))).isEqualTo(2);
+
+        assertThat(first.getEntityId()).isNotNull().isNotEqualTo(second.getEntityId());
+        assertThat(clientService.readEntity(first.getEntityId()).getCompanyName())
+                .isEqualTo("Batch First");
+        assertThat(clientService.readEntity(second.getEntityId()).getCompanyName())
+                .isEqualTo("Batch Second");
+    }
+
+    @Test
+    void insertIgnoringDuplicatesCountsOnlyTheRowsInserted() {
+        int clientId = clientService.createEntity(TestEntities.client("Batch Co"));
+        int a = personService.createEntity(TestEntities.person("Ann", "Batch"));
+        int b = personService.createEntity(TestEntities.person("Bob", "Batch"));
+        int c = personService.createEntity(TestEntities.person("Cat", "Batch"));
+        namedParameterJdbcTemplate.update(INSERT_ASSOCIATION, association(clientId, b));
+
+        int[] updateCounts = BatchInserts.insertIgnoringDuplicates(
+                namedParameterJdbcTemplate, INSERT_ASSOCIATION,
+                new SqlParameterSource[] {association(clientId, a), association(clientId, b),
+                                          association(clientId, c)});
+
+        assertThat(updateCounts).containsExactly(1, 0, 1);
+        assertThat(namedParameterJdbcTemplate.queryForObject(
+                "SELECT COUNT(*) FROM client_person_associations WHERE client_id = :clientId",
+                Collections.singletonMap("clientId", clientId), Integer.class)).isEqualTo(3);
+    }
+
+    private static SqlParameterSource association(int clientId, int personId) {
+        return new MapSqlParameterSource().addValue("clientId", clientId)
+                                          .addValue("personId", personId);
+    }
+
+}
@@ -0,0 +1,75 @@
+package com.aquent.crudapp.data_access;
+
+import com.aquent.crudapp.model.Page;
+import com.aquent.crudapp.model.PageCursor;
+import com.aquent.crudapp.model.PageCursor.Direction;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.BiFunction;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class KeysetPagesTests {
+
+    /** Cursors carrying only the row, an int standing in for an entity */
+    private static final BiFunction<Integer, Direction, PageCursor> CURSORS =
+            (row, direction) -> new PageCursor(null, null, row, direction);
+
+    @Test
+    void firstPageHasOnlyANextCursorWhenARowIsLeftOver() {
+        Page<Integer> page = KeysetPages.toPage(rows(1, 2, 3, 4), null, 3, CURSORS);
+
+        assertThat(page.getItems()).containsExactly(1, 2, 3);
+        assertThat(page.hasPrevious()).isFalse();
+        assertThat(page.getNextCursor().getEntityId()).isEqualTo(3);
+        assertThat(page.getNextCursor().getDirection()).isEqualTo(Direction.AFTER);
+    }
+
+    @Test
+    void lastPageAfterACursorHasOnlyAPreviousCursor() {
+        Page<Integer> page = KeysetPages.toPage(rows(4, 5), CURSORS.apply(3, Direction.AFTER), 3,
+                                                CURSORS);
+
+        assertThat(page.getItems()).containsExactly(4, 5);
+        assertThat(page.getPreviousCursor().getEntityId()).isEqualTo(4);
+        assertThat(page.getPreviousCursor().getDirection()).isEqualTo(Direction.BEFORE);
+        assertThat(page.hasNext()).isFalse();
+    }
+
+    @Test
+    void pageBeforeACursorIsReversedIntoListingOrder() {
+        Page<Integer> page = KeysetPages.toPage(rows(6, 5, 4, 3),
+                                                CURSORS.apply(7, Direction.BEFORE), 3, CURSORS);
+
+        assertThat(page.getItems()).containsExactly(4, 5, 6);
+        assertThat(page.getPreviousCursor().getEntityId()).isEqualTo(4);
+        assertThat(page.getNextCursor().getEntityId()).isEqualTo(6);
+    }
+
+    @Test
+    void firstPageReadBackwardHasNoPreviousCursor() {
+        Page<Integer> page = KeysetPages.toPage(rows(2, 1), CURSORS.apply(3, Direction.BEFORE), 3,
+                                                CURSORS);
+
+        assertThat(page.getItems()).containsExactly(1, 2);
+        assertThat(page.hasPrevious()).isFalse();
+        assertThat(page.getNextCursor().getEntityId()).isEqualTo(2);
+    }
+
+    @Test
+    void emptyPageHasNoCursors() {
+        Page<Integer> page = KeysetPages.toPage(rows(), CURSORS.apply(9, Direction.AFTER), 3,
+                                                CURSORS);
+
+        assertThat(page.getItems()).isEmpty();
+        assertThat(page.hasPrevious()).isFalse();
+        assertThat(page.hasNext()).isFalse();
+    }
+
+    private static List<Integer> rows(Integer... rows) {
+        return new ArrayList<>(List.of(rows));
+    }
+
+}
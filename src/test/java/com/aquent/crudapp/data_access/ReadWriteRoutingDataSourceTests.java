@@ -0,0 +1,133 @@
+package com.aquent.crudapp.data_access;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.jdbc.datasource.DriverManagerDataSource;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.web.context.request.RequestContextHolder;
+import org.springframework.web.context.request.ServletRequestAttributes;
+
+import javax.servlet.http.Cookie;
+import javax.sql.DataSource;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class ReadWriteRoutingDataSourceTests {
+
+    private final AtomicInteger writes = new AtomicInteger();
+
+    private ReadWriteRoutingDataSource routing;
+
+    private MockHttpServletResponse response;
+
+    @BeforeEach
+    void setUp() {
+        Map<String, DataSource> replicas = new LinkedHashMap<>();
+        replicas.put("replica-1", new DriverManagerDataSource());
+        replicas.put("replica-2", new DriverManagerDataSource());
+        routing = new ReadWriteRoutingDataSource(
+                new DriverManagerDataSource("jdbc:h2:mem:routing-primary"), replicas, 5);
+        routing.setWriteListener(writes::incrementAndGet);
+        routing.setReplicasAvailable(true);
+        response = newRequest(new MockHttpServletRequest());
+    }
+
+    @AfterEach
+    void tearDown() {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.clear();
+        }
+        RequestContextHolder.resetRequestAttributes();
+    }
+
+    @Test
+    void readOnlyTransactionsGoToTheReplicasInTurn() {
+        readOnlyTransaction();
+
+        assertThat(routing.determineCurrentLookupKey()).isEqualTo("replica-1");
+        assertThat(routing.determineCurrentLookupKey()).isEqualTo("replica-2");
+        assertThat(routing.determineCurrentLookupKey()).isEqualTo("replica-1");
+        assertThat(writes).hasValue(0);
+    }
+
+    @Test
+    void everythingGoesToThePrimaryUntilTheReplicasAreAvailable() {
+        routing.setReplicasAvailable(false);
+        readOnlyTransaction();
+
+        assertThat(routing.determineCurrentLookupKey())
+                .isEqualTo(ReadWriteRoutingDataSource.PRIMARY);
+    }
+
+    @Test
+    void aRequestWhichWroteReadsFromThePrimaryAndSoDoesItsClient() {
+        TransactionSynchronizationManager.initSynchronization();
+
+        assertThat(routing.determineCurrentLookupKey())
+                .isEqualTo(ReadWriteRoutingDataSource.PRIMARY);
+
+        TransactionSynchronizationManager.setCurrentTransactionReadOnly(true);
+        assertThat(routing.determineCurrentLookupKey())
+                .isEqualTo(ReadWriteRoutingDataSource.PRIMARY);
+
+        Cookie cookie = response.getCookie(ReadWriteRoutingDataSource.READ_PRIMARY_COOKIE);
+        assertThat(cookie).isNotNull();
+        assertThat(cookie.getMaxAge()).isEqualTo(5);
+
+        MockHttpServletRequest next = new MockHttpServletRequest();
+        next.setCookies(cookie);
+        newRequest(next);
+        assertThat(routing.determineCurrentLookupKey())
+                .isEqualTo(ReadWriteRoutingDataSource.PRIMARY);
+
+        newRequest(new MockHttpServletRequest());
+        assertThat(routing.determineCurrentLookupKey()).isNotEqualTo(
+                ReadWriteRoutingDataSource.PRIMARY);
+    }
+
+    @Test
+    void readsFromThePrimaryAreNotWrites() {
+        readOnlyTransaction();
+
+        Object key = ReadWriteRoutingDataSource.readFromPrimary(
+                () -> ReadWriteRoutingDataSource.readFromPrimary(
+                        routing::determineCurrentLookupKey));
+
+        assertThat(key).isEqualTo(ReadWriteRoutingDataSource.PRIMARY);
+        assertThat(writes).hasValue(0);
+        assertThat(response.getCookie(ReadWriteRoutingDataSource.READ_PRIMARY_COOKIE)).isNull();
+        assertThat(routing.determineCurrentLookupKey()).isNotEqualTo(
+                ReadWriteRoutingDataSource.PRIMARY);
+    }
+
+    @Test
+    void writesAreReportedOnceTheirConnectionIsClosed() throws SQLException {
+        RequestContextHolder.resetRequestAttributes();
+
+        try (Connection connection = routing.getConnection()) {
+            connection.createStatement().execute("SELECT 1");
+            assertThat(writes).hasValue(0);
+        }
+        assertThat(writes).hasValue(1);
+    }
+
+    private static void readOnlyTransaction() {
+        TransactionSynchronizationManager.initSynchronization();
+        TransactionSynchronizationManager.setCurrentTransactionReadOnly(true);
+    }
+
+    private static MockHttpServletResponse newRequest(MockHttpServletRequest request) {
+        MockHttpServletResponse response = new MockHttpServletResponse();
+        RequestContextHolder.setRequestAttributes(new ServletRequestAttributes(request, response));
+        return response;
+    }
+
+}
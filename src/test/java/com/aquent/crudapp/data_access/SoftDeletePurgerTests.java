@@ -0,0 +1,92 @@
+package com.aquent.crudapp.data_access;
+
+import com.aquent.crudapp.TestEntities;
+import com.aquent.crudapp.interfaces.EntityService;
+import com.aquent.crudapp.model.Client;
+import com.aquent.crudapp.model.Person;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.Collections;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+@SpringBootTest
+class SoftDeletePurgerTests {
+
+    @Autowired
+    @Qualifier("clientService")
+    private EntityService<Client, Person> clientService;
+
+    @Autowired
+    @Qualifier("personService")
+    private EntityService<Person, Client> personService;
+
+    @Autowired
+    @Qualifier("personDAO")
+    private JdbcPersonDAO personDao;
+
+    @Autowired
+    private NamedParameterJdbcTemplate namedParameterJdbcTemplate;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    @Test
+    void deletedRowsAreKeptUntilPurgedWithTheirAssociations() throws InterruptedException {
+        int clientId = clientService.createEntity(TestEntities.client("Purged Co"));
+        int a = personService.createEntity(TestEntities.person("Al", "Purged"));
+        int b = personService.createEntity(TestEntities.person("Bea", "Purged"));
+        int c = personService.createEntity(TestEntities.person("Cy", "Purged"));
+        clientService.addAssociations(clientId, List.of(a, b, c));
+
+        clientService.deleteEntity(clientId);
+
+        assertThat(count("SELECT COUNT(*) FROM client WHERE client_id = :id", clientId))
+                .isEqualTo(1);
+        assertThat(count("SELECT client_count FROM person WHERE person_id = :id", a)).isZero();
+        assertThat(personService.getAssociations(a)).isEmpty();
+
+        // one association per transaction, so the client's take several
+        SoftDeletePurger purger = new SoftDeletePurger(namedParameterJdbcTemplate,
+                                                       transactionManager, 0, 1, 0);
+        assertThat(purger.purge()).isGreaterThanOrEqualTo(1);
+
+        assertThat(count("SELECT COUNT(*) FROM client WHERE client_id = :id", clientId))
+                .isZero();
+        assertThat(count("SELECT COUNT(*) FROM client_person_associations " +
+                         "WHERE client_id = :id", clientId)).isZero();
+        assertThat(personService.readEntity(a).getLastName()).isEqualTo("Purged");
+    }
+
+    @Test
+    void aDeleteWhichRollsBackLeavesTheCountsAsTheyWere() {
+        int clientId = clientService.createEntity(TestEntities.client("Kept Co"));
+        int personId = personService.createEntity(TestEntities.person("Kit", "Kept"));
+        clientService.addAssociation(clientId, personId);
+
+        new TransactionTemplate(transactionManager).executeWithoutResult(status -> {
+            personDao.deleteEntity(personId);
+            assertThat(count("SELECT contact_count FROM client WHERE client_id = :id", clientId))
+                    .isZero();
+            status.setRollbackOnly();
+        });
+
+        assertThat(count("SELECT COUNT(*) FROM person " +
+                         "WHERE person_id = :id AND deleted_at IS NULL", personId)).isEqualTo(1);
+        assertThat(count("SELECT contact_count FROM client WHERE client_id = :id", clientId))
+                .isEqualTo(1);
+    }
+
+    private int count(String sql, int id) {
+        return namedParameterJdbcTemplate.queryForObject(sql, Collections.singletonMap("id", id),
+                                                         Integer.class);
+    }
+
+}
@@ -0,0 +1,132 @@
+package com.aquent.crudapp.data_access;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.core.io.ByteArrayResource;
+import org.springframework.core.io.Resource;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DataSourceTransactionManager;
+import org.springframework.jdbc.datasource.DelegatingDataSource;
+import org.springframework.jdbc.datasource.DriverManagerDataSource;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import javax.sql.DataSource;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Proxy;
+import java.nio.charset.StandardCharsets;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class StandInReplicatorTests {
+
+    private static final String SCHEMA = "CREATE TABLE note (id INT PRIMARY KEY, text VARCHAR(20))";
+
+    private final DataSource primary =
+            new DriverManagerDataSource("jdbc:h2:mem:replicator-primary;DB_CLOSE_DELAY=-1");
+
+    private final DataSource replica =
+            new DriverManagerDataSource("jdbc:h2:mem:replicator-replica;DB_CLOSE_DELAY=-1");
+
+    private StandInReplicator replicator;
+
+    @AfterEach
+    void tearDown() {
+        replicator.close();
+        new JdbcTemplate(primary).execute("SHUTDOWN");
+        new JdbcTemplate(replica).execute("SHUTDOWN");
+    }
+
+    @Test
+    void aWriteWhichCommitsWhileACopyRunsIsCopiedNext() throws InterruptedException {
+        new JdbcTemplate(primary).execute(SCHEMA);
+        ReadWriteRoutingDataSource routing = new ReadWriteRoutingDataSource(
+                primary, Collections.emptyMap(), 0);
+        CountDownLatch copied = new CountDownLatch(1);
+        CountDownLatch committed = new CountDownLatch(1);
+        PausingDataSource source = new PausingDataSource(primary, copied, committed);
+
+        replicator = new StandInReplicator(source, List.of(replica), schema());
+        routing.setWriteListener(replicator::changed);
+        replicator.start(20);
+        source.paused = true;
+
+        new TransactionTemplate(new DataSourceTransactionManager(routing)).executeWithoutResult(
+                status -> {
+                    new JdbcTemplate(routing).update("INSERT INTO note VALUES (1, 'late')");
+                    // an earlier write, so a copy runs while this one is uncommitted
+                    replicator.changed();
+                    await(copied);
+                });
+        source.paused = false;
+        committed.countDown();
+
+        JdbcTemplate replicaTemplate = new JdbcTemplate(replica);
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        while (replicaTemplate.queryForObject("SELECT COUNT(*) FROM note", Integer.class) == 0 &&
+               System.nanoTime() < deadline) {
+            Thread.sleep(10);
+        }
+        assertThat(replicaTemplate.queryForObject("SELECT text FROM note WHERE id = 1",
+                                                  String.class)).isEqualTo("late");
+    }
+
+    private static Resource schema() {
+        return new ByteArrayResource((SCHEMA + ";").getBytes(StandardCharsets.UTF_8));
+    }
+
+    private static void await(CountDownLatch latch) {
+        try {
+            assertThat(latch.await(5, TimeUnit.SECONDS)).isTrue();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException(e);
+        }
+    }
+
+    /**
+     * The primary as the replicator reads it, holding a copy which has read the primary until a
+     * write commits.
+     */
+    private static final class PausingDataSource extends DelegatingDataSource {
+
+        private final CountDownLatch copied;
+
+        private final CountDownLatch committed;
+
+        private volatile boolean paused;
+
+        PausingDataSource(DataSource targetDataSource, CountDownLatch copied,
+                          CountDownLatch committed) {
+            super(targetDataSource);
+            this.copied = copied;
+            this.committed = committed;
+        }
+
+        @Override
+        public Connection getConnection() throws SQLException {
+            Connection connection = super.getConnection();
+            return (Connection) Proxy.newProxyInstance(
+                    PausingDataSource.class.getClassLoader(), new Class<?>[] {Connection.class},
+                    (proxy, method, args) -> {
+                        if (paused && method.getName().equals("close")) {
+                            copied.countDown();
+                            await(committed);
+                        }
+
+                        try {
+                            return method.invoke(connection, args);
+                        } catch (InvocationTargetException e) {
+                            throw e.getTargetException();
+                        }
+                    });
+        }
+
+    }
+
+}
@@ -0,0 +1,138 @@
+package com.aquent.crudapp.events;
+
+import com.aquent.crudapp.data_access.JdbcChangeEventDAO;
+import com.aquent.crudapp.model.ChangeEvent;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.web.servlet.mvc.method.annotation.ResponseBodyEmitter;
+
+import java.time.Instant;
+import java.util.List;
+import java.util.TreeMap;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class ChangeEventPublisherTests {
+
+    private final Outbox outbox = new Outbox();
+
+    private ChangeEventPublisher publisher;
+
+    @AfterEach
+    void tearDown() {
+        if (publisher != null) {
+            publisher.stop();
+        }
+    }
+
+    @Test
+    void eventsAfterAGapWaitForItToFill() {
+        publisher = publisher(60_000);
+        outbox.commit(1, 2, 4, 5);
+
+        publisher.poll();
+        assertThat(publisher.getPublished()).isEqualTo(2);
+
+        publisher.poll();
+        assertThat(publisher.getPublished()).isEqualTo(2);
+
+        outbox.commit(3);
+        publisher.poll();
+        assertThat(publisher.getPublished()).isEqualTo(5);
+    }
+
+    @Test
+    void aGapWhichDoesNotFillIsSkippedOnceItTimesOut() throws InterruptedException {
+        publisher = publisher(50);
+        outbox.commit(1, 3);
+
+        publisher.poll();
+        assertThat(publisher.getPublished()).isEqualTo(1);
+
+        Thread.sleep(60);
+        publisher.poll();
+        assertThat(publisher.getPublished()).isEqualTo(3);
+
+        // committed too late, so it stays unpublished, and later gaps are waited for again
+        outbox.commit(2, 4, 6);
+        publisher.poll();
+        assertThat(publisher.getPublished()).isEqualTo(4);
+    }
+
+    @Test
+    void onlyEventsRecordedOnceStartedArePublished() {
+        outbox.commit(1, 2);
+        publisher = publisher(60_000);
+        outbox.commit(3);
+
+        publisher.poll();
+        assertThat(publisher.getPublished()).isEqualTo(3);
+    }
+
+    @Test
+    void aSubscriberIsStalledOnceAWriteBlocksForTheTimeout() {
+        ChangeEventSubscriber subscriber =
+                new ChangeEventSubscriber(new ResponseBodyEmitter(), 10, 0);
+        long timeout = TimeUnit.SECONDS.toNanos(10);
+
+        assertThat(subscriber.markStalled(System.nanoTime() + timeout, timeout)).isFalse();
+
+        subscriber.writing();
+        long now = System.nanoTime();
+        assertThat(subscriber.markStalled(now, timeout)).isFalse();
+        assertThat(subscriber.markStalled(now + timeout, timeout)).isTrue();
+        assertThat(subscriber.markStalled(now + timeout, timeout)).isFalse();
+        assertThat(subscriber.isStalled()).isTrue();
+
+        ChangeEventSubscriber reading =
+                new ChangeEventSubscriber(new ResponseBodyEmitter(), 10, 0);
+        reading.writing();
+        reading.written();
+        assertThat(reading.markStalled(System.nanoTime() + timeout, timeout)).isFalse();
+    }
+
+    private ChangeEventPublisher publisher(long gapTimeoutMillis) {
+        ChangeEventPublisher publisher = new ChangeEventPublisher(
+                outbox, new ObjectMapper().findAndRegisterModules(), 200, 500, 1000, 1, 15, 300,
+                gapTimeoutMillis, 10_000, 24);
+        publisher.init();
+        return publisher;
+    }
+
+    /**
+     * The change_event table, holding the events whose transactions have committed.
+     */
+    private static final class Outbox extends JdbcChangeEventDAO {
+
+        private final TreeMap<Long, ChangeEvent> events = new TreeMap<>();
+
+        Outbox() {
+            super(null);
+        }
+
+        void commit(long... eventIds) {
+            for (long eventId : eventIds) {
+                events.put(eventId, new ChangeEvent(eventId, ChangeEvent.PERSON, (int) eventId,
+                                                    null, ChangeEvent.Type.UPDATED,
+                                                    Instant.now()));
+            }
+        }
+
+        @Override
+        public long lastEventId() {
+            return events.isEmpty() ? 0 : events.lastKey();
+        }
+
+        @Override
+        public List<ChangeEvent> readEvents(long afterId, long upToId, int limit) {
+            return events.subMap(afterId, false, upToId, true).values().stream()
+                         .limit(limit)
+                         .collect(Collectors.toList());
+        }
+
+    }
+
+}
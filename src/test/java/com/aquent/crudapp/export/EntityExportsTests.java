@@ -0,0 +1,103 @@
+package com.aquent.crudapp.export;
+
+import com.aquent.crudapp.TestEntities;
+import com.aquent.crudapp.model.Client;
+import com.aquent.crudapp.model.Person;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.HttpHeaders;
+import org.springframework.mock.web.MockHttpServletResponse;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.function.Consumer;
+import java.util.zip.GZIPInputStream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class EntityExportsTests {
+
+    @Test
+    void csvHasAHeaderRowAndQuotesOnlyWhereNeeded() throws IOException {
+        Client plain = TestEntities.client("Plain");
+        plain.setEntityId(1);
+        Client awkward = TestEntities.client("Smith, Jones & \"Partners\"");
+        awkward.setEntityId(2);
+        awkward.setStreetAddress("1 Main St.\nSuite 2");
+
+        MockHttpServletResponse response = export(ExportFormat.CSV, false,
+                                                  ExportColumn.CLIENT_COLUMNS,
+                                                  List.of(plain, awkward));
+
+        assertThat(response.getContentType()).startsWith("text/csv");
+        assertThat(response.getHeader(HttpHeaders.CONTENT_DISPOSITION))
+                .isEqualTo("attachment; filename=\"export.csv\"");
+        assertThat(response.getContentAsString(StandardCharsets.UTF_8)).isEqualTo(
+                "entityId,companyName,website,phone,streetAddress,city,state,zipCode\r\n" +
+                "1,Plain,https://example.com/Plain,5555550100,1 Main St.,Boston,MA,02110\r\n" +
+                "2,\"Smith, Jones & \"\"Partners\"\"\"," +
+                "\"https://example.com/Smith,-Jones-&-\"\"Partners\"\"\",5555550100," +
+                "\"1 Main St.\nSuite 2\",Boston,MA,02110\r\n");
+    }
+
+    @Test
+    void ndjsonWritesOneObjectPerLine() throws IOException {
+        Person jane = TestEntities.person("Jane", "Doe \"JD\"");
+        jane.setEntityId(7);
+        Person unsaved = TestEntities.person("Émile", "Zola");
+
+        MockHttpServletResponse response = export(ExportFormat.NDJSON, false,
+                                                  ExportColumn.PERSON_COLUMNS,
+                                                  List.of(jane, unsaved));
+
+        String[] lines = response.getContentAsString(StandardCharsets.UTF_8).split("\n", -1);
+        assertThat(lines).hasSize(3);
+        assertThat(lines[2]).isEmpty();
+
+        ObjectMapper objectMapper = new ObjectMapper();
+        JsonNode first = objectMapper.readTree(lines[0]);
+        assertThat(first.get("entityId").isNumber()).isTrue();
+        assertThat(first.get("entityId").asInt()).isEqualTo(7);
+        assertThat(first.get("lastName").asText()).isEqualTo("Doe \"JD\"");
+
+        JsonNode second = objectMapper.readTree(lines[1]);
+        assertThat(second.get("entityId").isNull()).isTrue();
+        assertThat(second.get("firstName").asText()).isEqualTo("Émile");
+    }
+
+    @Test
+    void gzipExportDecompressesToThePlainExport() throws IOException {
+        List<Person> people = List.of(TestEntities.person("Ann", "Gzip"),
+                                      TestEntities.person("Bob", "Gzip"));
+
+        MockHttpServletResponse plain = export(ExportFormat.CSV, false,
+                                               ExportColumn.PERSON_COLUMNS, people);
+        MockHttpServletResponse gzipped = export(ExportFormat.CSV, true,
+                                                 ExportColumn.PERSON_COLUMNS, people);
+
+        assertThat(gzipped.getHeader(HttpHeaders.CONTENT_ENCODING)).isEqualTo("gzip");
+        try (GZIPInputStream in = new GZIPInputStream(
+                new ByteArrayInputStream(gzipped.getContentAsByteArray()))) {
+            assertThat(in.readAllBytes()).isEqualTo(plain.getContentAsByteArray());
+        }
+    }
+
+    @Test
+    void formatsAreLookedUpByExtension() {
+        assertThat(ExportFormat.fromExtension("CSV")).isEqualTo(ExportFormat.CSV);
+        assertThat(ExportFormat.fromExtension("ndjson")).isEqualTo(ExportFormat.NDJSON);
+    }
+
+    private static <E> MockHttpServletResponse export(ExportFormat format, boolean gzip,
+                                                      List<ExportColumn<E>> columns,
+                                                      List<E> entities) throws IOException {
+        MockHttpServletResponse response = new MockHttpServletResponse();
+        Consumer<Consumer<E>> source = entities::forEach;
+        EntityExports.stream(response, "export", format, gzip, columns, source);
+        return response;
+    }
+
+}
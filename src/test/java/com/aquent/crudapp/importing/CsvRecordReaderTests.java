@@ -0,0 +1,59 @@
+package com.aquent.crudapp.importing;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class CsvRecordReaderTests {
+
+    @Test
+    void readsPlainRecords() throws IOException {
+        assertThat(records("a,b,c\n1,2,3\n")).containsExactly(List.of("a", "b", "c"),
+                                                              List.of("1", "2", "3"));
+    }
+
+    @Test
+    void readsQuotedFields() throws IOException {
+        assertThat(records("\"Smith, Jane\",\"say \"\"hi\"\"\",\"two\nlines\"\n"))
+                .containsExactly(List.of("Smith, Jane", "say \"hi\"", "two\nlines"));
+    }
+
+    @Test
+    void acceptsCrlfAndAFinalRecordWithoutALineBreak() throws IOException {
+        assertThat(records("a,b\r\n1,2\r\n3,4")).containsExactly(List.of("a", "b"),
+                                                                 List.of("1", "2"),
+                                                                 List.of("3", "4"));
+    }
+
+    @Test
+    void keepsEmptyFieldsAndSkipsBlankLines() throws IOException {
+        assertThat(records("a,,c,\n\n\r\n,\n")).containsExactly(List.of("a", "", "c", ""),
+                                                                List.of("", ""));
+    }
+
+    @Test
+    void returnsNullAtTheEnd() throws IOException {
+        try (CsvRecordReader reader = new CsvRecordReader(new StringReader(""))) {
+            assertThat(reader.readRecord()).isNull();
+        }
+    }
+
+    private static List<List<String>> records(String csv) throws IOException {
+        List<List<String>> records = new ArrayList<>();
+
+        try (CsvRecordReader reader = new CsvRecordReader(new StringReader(csv))) {
+            List<String> record;
+            while ((record = reader.readRecord()) != null) {
+                records.add(record);
+            }
+        }
+
+        return records;
+    }
+
+}
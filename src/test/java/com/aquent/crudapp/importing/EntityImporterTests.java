@@ -0,0 +1,118 @@
+package com.aquent.crudapp.importing;
+
+import com.aquent.crudapp.interfaces.EntityService;
+import com.aquent.crudapp.model.Client;
+import com.aquent.crudapp.model.Person;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.ExecutorService;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+@SpringBootTest
+class EntityImporterTests {
+
+    @Autowired
+    @Qualifier("personImporter")
+    private EntityImporter<Person> personImporter;
+
+    @Autowired
+    @Qualifier("personService")
+    private EntityService<Person, Client> personService;
+
+    @Autowired
+    @Qualifier("importValidationExecutor")
+    private ExecutorService validationExecutor;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Test
+    void importsTheValidRowsAndReportsTheRejectedOnes() throws IOException {
+        // 2,500 rows span three chunks; every 250th has a zip code which is too short
+        ImportReport report = personImporter.importCsv(generatedCsv("Generated", 2500, 250));
+
+        assertThat(report.getRowsRead()).isEqualTo(2500);
+        assertThat(report.getRowsImported()).isEqualTo(2490);
+        assertThat(report.getRowsRejected()).isEqualTo(10);
+        assertThat(report.isErrorsTruncated()).isFalse();
+        assertThat(report.getErrors()).extracting(ImportReport.RowError::getRow)
+                                       .containsExactly(250L, 500L, 750L, 1000L, 1250L, 1500L,
+                                                        1750L, 2000L, 2250L, 2500L);
+        assertThat(report.getErrors().get(0).getMessages())
+                .containsExactly("Zip code is required with length 5");
+        assertThat(jdbcTemplate.queryForObject("SELECT COUNT(*) FROM person WHERE last_name = ?",
+                                               Integer.class, "Generated")).isEqualTo(2490);
+    }
+
+    @Test
+    void keepsOnlyTheFirstErrorsAcrossChunks() throws IOException {
+        EntityImporter<Person> importer = new EntityImporter<>(personService, Person.class,
+                                                               Person::new, validationExecutor,
+                                                               2, 7, 3);
+
+        ImportReport report = importer.importCsv(generatedCsv("Truncated", 40, 5));
+
+        assertThat(report.getRowsRead()).isEqualTo(40);
+        assertThat(report.getRowsImported()).isEqualTo(32);
+        assertThat(report.getRowsRejected()).isEqualTo(8);
+        assertThat(report.isErrorsTruncated()).isTrue();
+        assertThat(report.getErrors()).extracting(ImportReport.RowError::getRow)
+                                       .containsExactly(5L, 10L, 15L);
+    }
+
+    @Test
+    void acceptsSnakeCaseHeadersAndIgnoresAssignedColumns() throws IOException {
+        String csv = "entity_id,first_name,last_name,email_address,street_address,city,state," +
+                     "zip_code\n" +
+                     "99,\"Ann, Jr.\",SnakeCase,ann@example.com,1 Main St.,Boston,MA,02110\n";
+
+        ImportReport report = personImporter.importCsv(stream(csv));
+
+        assertThat(report.getRowsImported()).isEqualTo(1);
+        assertThat(jdbcTemplate.queryForObject(
+                "SELECT first_name FROM person WHERE last_name = 'SnakeCase'", String.class))
+                .isEqualTo("Ann, Jr.");
+    }
+
+    @Test
+    void rejectsAnUnknownColumn() {
+        assertThatThrownBy(() -> personImporter.importCsv(stream("firstName,shoeSize\nAnn,9\n")))
+                .isInstanceOf(IllegalArgumentException.class)
+                .hasMessage("Unknown column: shoeSize");
+    }
+
+    /**
+     * A CSV of person rows with the given last name, in the columns of the CSV export, of which
+     * every invalidEvery-th row is invalid.
+     */
+    private static InputStream generatedCsv(String lastName, int rows, int invalidEvery) {
+        StringBuilder csv = new StringBuilder("firstName,lastName,emailAddress,streetAddress," +
+                                              "city,state,zipCode\n");
+
+        for (int row = 1; row <= rows; row++) {
+            csv.append("Person").append(row).append(',')
+               .append(lastName).append(',')
+               .append("person").append(row).append("@example.com,")
+               .append("1 Main St.,Boston,MA,")
+               .append(row % invalidEvery == 0 ? "021" : "02110")
+               .append('\n');
+        }
+
+        return stream(csv.toString());
+    }
+
+    private static InputStream stream(String csv) {
+        return new ByteArrayInputStream(csv.getBytes(StandardCharsets.UTF_8));
+    }
+
+}
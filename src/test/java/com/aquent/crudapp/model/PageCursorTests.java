@@ -0,0 +1,40 @@
+package com.aquent.crudapp.model;
+
+import com.aquent.crudapp.model.PageCursor.Direction;
+import org.junit.jupiter.api.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class PageCursorTests {
+
+    @Test
+    void tokenDecodesToTheSameCursor() {
+        PageCursor cursor = new PageCursor("Zoë & Co", "https://example.com/?a=1&b=2", 42,
+                                           Direction.BEFORE);
+
+        PageCursor decoded = PageCursor.decode(cursor.getToken());
+
+        assertThat(decoded.getPrimaryKey()).isEqualTo("Zoë & Co");
+        assertThat(decoded.getSecondaryKey()).isEqualTo("https://example.com/?a=1&b=2");
+        assertThat(decoded.getEntityId()).isEqualTo(42);
+        assertThat(decoded.getDirection()).isEqualTo(Direction.BEFORE);
+    }
+
+    @Test
+    void tokenIsUrlSafe() {
+        String token = new PageCursor("a/b+c", "?=&", 7, Direction.AFTER).getToken();
+
+        assertThat(token).matches("[A-Za-z0-9_-]+");
+        assertThat(PageCursor.decode(token).getDirection()).isEqualTo(Direction.AFTER);
+    }
+
+    @Test
+    void malformedTokensAreRejected() {
+        assertThatThrownBy(() -> PageCursor.decode("not a token"))
+                .isInstanceOf(IllegalArgumentException.class);
+        assertThatThrownBy(() -> PageCursor.decode("YWJj"))
+                .isInstanceOf(IllegalArgumentException.class);
+    }
+
+}
@@ -0,0 +1,113 @@
+package com.aquent.crudapp.search;
+
+import com.aquent.crudapp.TestEntities;
+import com.aquent.crudapp.model.Client;
+import com.aquent.crudapp.model.Person;
+import com.aquent.crudapp.search.SearchIndex.DocumentType;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.stream.Collectors;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class SearchIndexTests {
+
+    private SearchIndex searchIndex;
+
+    @BeforeEach
+    void createIndex() {
+        searchIndex = new SearchIndex();
+        searchIndex.index(1, person("Ann", "Walker", "Boston"));
+        searchIndex.index(2, person("Bob", "Ann", "Springfield"));
+        searchIndex.index(3, person("Cat", "Stone", "Annapolis"));
+        searchIndex.index(1, TestEntities.client("Annex Holdings"));
+    }
+
+    @Test
+    void everyTermMustMatchAndTheLastMayBeAPrefix() {
+        assertThat(ids(searchIndex.search("ann walker", DocumentType.PERSON, 10)))
+                .containsExactly(1);
+        assertThat(ids(searchIndex.search("bob an", DocumentType.PERSON, 10)))
+                .containsExactly(2);
+        assertThat(searchIndex.search("ann nobody", null, 10)).isEmpty();
+        assertThat(searchIndex.search("  ", null, 10)).isEmpty();
+    }
+
+    @Test
+    void nameMatchesRankAboveLocationAndWholeTermsAbovePrefixes() {
+        List<SearchHit> hits = searchIndex.search("Ann", DocumentType.PERSON, 10);
+
+        // Ann is a whole name term of 1 and 2, and only a prefix of Annapolis, a city, for 3
+        assertThat(ids(hits)).containsExactlyInAnyOrder(1, 2, 3);
+        assertThat(hits.get(2).getEntityId()).isEqualTo(3);
+        assertThat(hits.get(0).getScore()).isGreaterThan(hits.get(2).getScore());
+    }
+
+    @Test
+    void typeFiltersTheHits() {
+        List<SearchHit> hits = searchIndex.search("annex", null, 10);
+
+        assertThat(hits).hasSize(1);
+        assertThat(hits.get(0).getType()).isEqualTo(DocumentType.CLIENT);
+        assertThat(searchIndex.search("annex", DocumentType.PERSON, 10)).isEmpty();
+    }
+
+    @Test
+    void indexingAgainReplacesTheDocumentAndRemovingDropsIt() {
+        searchIndex.index(1, person("Ann", "Baker", "Boston"));
+
+        assertThat(searchIndex.search("walker", null, 10)).isEmpty();
+        assertThat(ids(searchIndex.search("baker", null, 10))).containsExactly(1);
+
+        searchIndex.remove(DocumentType.PERSON, 1);
+
+        assertThat(searchIndex.search("baker", null, 10)).isEmpty();
+        assertThat(searchIndex.size()).isEqualTo(3);
+    }
+
+    @Test
+    void loadingKeepsChangesMadeSinceTheIndexWasCreated() {
+        SearchIndex loading = new SearchIndex();
+        loading.index(1, person("Ann", "Newer", "Boston"));
+        loading.remove(DocumentType.PERSON, 2);
+
+        loading.loadPeople(List.of(withId(person("Ann", "Older", "Boston"), 1),
+                                   withId(person("Bob", "Deleted", "Boston"), 2),
+                                   withId(person("Cat", "Loaded", "Boston"), 3)));
+        loading.loaded();
+
+        assertThat(loading.isLoaded()).isTrue();
+        assertThat(ids(loading.search("newer", null, 10))).containsExactly(1);
+        assertThat(loading.search("older", null, 10)).isEmpty();
+        assertThat(loading.search("deleted", null, 10)).isEmpty();
+        assertThat(ids(loading.search("loaded", null, 10))).containsExactly(3);
+    }
+
+    @Test
+    void limitKeepsTheBestHits() {
+        for (int id = 10; id < 60; id++) {
+            searchIndex.index(id, person("Dee", "Many" + id, "Boston"));
+        }
+
+        assertThat(searchIndex.search("dee", DocumentType.PERSON, 5)).hasSize(5);
+        assertThat(searchIndex.search("boston", DocumentType.PERSON, 100)).hasSize(51);
+    }
+
+    private static Person person(String firstName, String lastName, String city) {
+        Person person = TestEntities.person(firstName, lastName);
+        person.setCity(city);
+        return person;
+    }
+
+    private static Person withId(Person person, int id) {
+        person.setEntityId(id);
+        return person;
+    }
+
+    private static List<Integer> ids(List<SearchHit> hits) {
+        return hits.stream().map(SearchHit::getEntityId).collect(Collectors.toList());
+    }
+
+}
@@ -0,0 +1,102 @@
+package com.aquent.crudapp.services;
+
+import com.aquent.crudapp.TestEntities;
+import com.aquent.crudapp.interfaces.Entity;
+import com.aquent.crudapp.interfaces.EntityService;
+import com.aquent.crudapp.model.Client;
+import com.aquent.crudapp.model.Person;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.util.List;
+import java.util.stream.Collectors;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+@SpringBootTest
+class AssociationSyncTests {
+
+    @Autowired
+    @Qualifier("clientService")
+    private EntityService<Client, Person> clientService;
+
+    @Autowired
+    @Qualifier("personService")
+    private EntityService<Person, Client> personService;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    private int clientId;
+
+    private int a;
+
+    private int b;
+
+    private int c;
+
+    @BeforeEach
+    void createEntities() {
+        clientId = clientService.createEntity(TestEntities.client("Sync Co"));
+        a = personService.createEntity(TestEntities.person("Ann", "Sync"));
+        b = personService.createEntity(TestEntities.person("Bob", "Sync"));
+        c = personService.createEntity(TestEntities.person("Cat", "Sync"));
+    }
+
+    @Test
+    void syncWritesTheDifference() {
+        clientService.syncAssociations(clientId, List.of(a, b));
+        assertThat(ids(clientService.getAssociations(clientId))).containsExactlyInAnyOrder(a, b);
+
+        clientService.syncAssociations(clientId, List.of(b, c));
+        assertThat(ids(clientService.getAssociations(clientId))).containsExactlyInAnyOrder(b, c);
+        assertThat(ids(personService.getAssociations(a))).isEmpty();
+        assertThat(ids(personService.getAssociations(c))).containsExactly(clientId);
+
+        assertThat(contactCount(clientId)).isEqualTo(2);
+        assertThat(clientCount(a)).isZero();
+        assertThat(clientCount(b)).isEqualTo(1);
+        assertThat(clientCount(c)).isEqualTo(1);
+    }
+
+    @Test
+    void syncToNothingRemovesEveryAssociation() {
+        clientService.syncAssociations(clientId, List.of(a, b, c));
+        clientService.syncAssociations(clientId, List.of());
+
+        assertThat(clientService.getAssociations(clientId)).isEmpty();
+        assertThat(contactCount(clientId)).isZero();
+    }
+
+    @Test
+    void batchAddLeavesExistingAssociations() {
+        clientService.addAssociation(clientId, a);
+        clientService.addAssociations(clientId, List.of(a, b));
+        personService.addAssociations(c, List.of(clientId, clientId));
+
+        assertThat(ids(clientService.getAssociations(clientId))).containsExactlyInAnyOrder(a, b,
+                                                                                          c);
+        assertThat(contactCount(clientId)).isEqualTo(3);
+        assertThat(clientCount(a)).isEqualTo(1);
+        assertThat(clientCount(c)).isEqualTo(1);
+    }
+
+    private int contactCount(int clientId) {
+        return jdbcTemplate.queryForObject("SELECT contact_count FROM client WHERE client_id = ?",
+                                           Integer.class, clientId);
+    }
+
+    private int clientCount(int personId) {
+        return jdbcTemplate.queryForObject("SELECT client_count FROM person WHERE person_id = ?",
+                                           Integer.class, personId);
+    }
+
+    private static List<Integer> ids(List<? extends Entity> entities) {
+        return entities.stream().map(Entity::getEntityId).collect(Collectors.toList());
+    }
+
+}
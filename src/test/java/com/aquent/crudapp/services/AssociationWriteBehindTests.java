@@ -0,0 +1,209 @@
+package com.aquent.crudapp.services;
+
+import com.aquent.crudapp.TestEntities;
+import com.aquent.crudapp.data_access.AssociationIndex;
+import com.aquent.crudapp.interfaces.Entity;
+import com.aquent.crudapp.interfaces.EntityDao;
+import com.aquent.crudapp.interfaces.EntityService;
+import com.aquent.crudapp.model.Client;
+import com.aquent.crudapp.model.Page;
+import com.aquent.crudapp.model.PageCursor;
+import com.aquent.crudapp.model.Person;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.transaction.PlatformTransactionManager;
+
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Proxy;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.stream.Collectors;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+@SpringBootTest
+class AssociationWriteBehindTests {
+
+    @Autowired
+    @Qualifier("clientDAO")
+    private EntityDao<Client, Person> clientDao;
+
+    @Autowired
+    private AssociationIndex associationIndex;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    @Autowired
+    @Qualifier("clientService")
+    private EntityService<Client, Person> clientService;
+
+    @Autowired
+    @Qualifier("personService")
+    private EntityService<Person, Client> personService;
+
+    @Test
+    void togglesOfOneAssociationAreWrittenAsOneChange() {
+        AssociationWriteBehind writeBehind = writeBehind(clientDao);
+        int clientId = clientService.createEntity(TestEntities.client("Toggled Co"));
+        int personId = personService.createEntity(TestEntities.person("Tess", "Toggled"));
+
+        writeBehind.enqueue(clientId, personId, true);
+        writeBehind.enqueue(clientId, personId, false);
+        writeBehind.enqueue(clientId, personId, true);
+
+        assertThat(ids(clientDao.getAssociations(clientId))).isEmpty();
+        assertThat(ids(writeBehind.overlayContacts(clientId, clientDao.getAssociations(clientId),
+                                                   clientDao::readAssociatedEntity)))
+                .containsExactly(personId);
+
+        assertThat(writeBehind.flush()).isEqualTo(1);
+        assertThat(ids(clientDao.getAssociations(clientId))).containsExactly(personId);
+
+        // undone before it is written, or already reflected, so there is nothing to write
+        writeBehind.enqueue(clientId, personId, false);
+        writeBehind.enqueue(clientId, personId, true);
+        writeBehind.enqueue(clientId, personId, true);
+        assertThat(writeBehind.flush()).isZero();
+        assertThat(ids(clientDao.getAssociations(clientId))).containsExactly(personId);
+
+        writeBehind.stop();
+    }
+
+    @Test
+    void availablePagesStayFullWithoutTheQueuedAdditions() {
+        AssociationWriteBehind writeBehind = writeBehind(clientDao);
+        int clientId = clientService.createEntity(TestEntities.client("Queued Co"));
+        List<Integer> queued = new ArrayList<>();
+        for (String lastName : List.of("Able", "Baker", "Charlie", "Dog", "Easy")) {
+            int personId = personService.createEntity(TestEntities.person("Queue", lastName));
+            queued.add(personId);
+            writeBehind.enqueue(clientId, personId, true);
+        }
+        AssociationWriteBehind.PageReader<Person> reader =
+                (from, limit) -> clientDao.getAvailableAssociations(clientId, from, limit);
+
+        List<Integer> expected = new ArrayList<>();
+        Page<Person> page = reader.read(null, 1_000);
+        expected.addAll(ids(page.getItems()));
+        while (page.hasNext()) {
+            page = reader.read(page.getNextCursor(), 1_000);
+            expected.addAll(ids(page.getItems()));
+        }
+        expected.removeAll(queued);
+
+        List<List<Integer>> pages = new ArrayList<>();
+        page = availablePage(writeBehind, clientId, null, reader);
+        pages.add(ids(page.getItems()));
+        while (page.hasNext()) {
+            assertThat(page.getItems()).hasSize(3);
+            page = availablePage(writeBehind, clientId, page.getNextCursor(), reader);
+            pages.add(ids(page.getItems()));
+        }
+        assertThat(pages.stream().flatMap(List::stream)).containsExactlyElementsOf(expected);
+
+        // walk back from the last page with the Previous cursors
+        for (int i = pages.size() - 2; i >= 0; i--) {
+            page = availablePage(writeBehind, clientId, page.getPreviousCursor(), reader);
+            assertThat(ids(page.getItems())).isEqualTo(pages.get(i));
+        }
+        assertThat(page.hasPrevious()).isFalse();
+
+        writeBehind.stop();
+    }
+
+    @Test
+    void changesWhichCannotBeWrittenAreQueuedAgainAndTheRestWritten() {
+        int clientId = clientService.createEntity(TestEntities.client("Written Co"));
+        int failingId = clientService.createEntity(TestEntities.client("Failing Co"));
+        int personId = personService.createEntity(TestEntities.person("Fay", "Failing"));
+        AtomicBoolean failing = new AtomicBoolean(true);
+        AssociationWriteBehind writeBehind = writeBehind(failingFor(failingId, failing));
+
+        writeBehind.enqueue(clientId, personId, true);
+        writeBehind.enqueue(failingId, personId, true);
+
+        assertThatThrownBy(writeBehind::flush).isInstanceOf(DataIntegrityViolationException.class);
+        assertThat(ids(clientDao.getAssociations(clientId))).containsExactly(personId);
+        assertThat(ids(clientDao.getAssociations(failingId))).isEmpty();
+
+        failing.set(false);
+        assertThat(writeBehind.flush()).isEqualTo(1);
+        assertThat(ids(clientDao.getAssociations(failingId))).containsExactly(personId);
+
+        writeBehind.stop();
+    }
+
+    @Test
+    void changesOfDeletedPeopleAreDropped() {
+        int failingId = clientService.createEntity(TestEntities.client("Failing Co"));
+        int personId = personService.createEntity(TestEntities.person("Dee", "Deleted"));
+        AssociationWriteBehind writeBehind =
+                writeBehind(failingFor(failingId, new AtomicBoolean(true)));
+
+        writeBehind.enqueue(failingId, personId, true);
+        personService.deleteEntity(personId);
+
+        assertThatThrownBy(writeBehind::flush).isInstanceOf(DataIntegrityViolationException.class);
+        assertThat(writeBehind.flush()).isZero();
+
+        writeBehind.stop();
+    }
+
+    @Test
+    void changesWhichCannotBeWrittenAtShutdownFailIt() {
+        int failingId = clientService.createEntity(TestEntities.client("Failing Co"));
+        int personId = personService.createEntity(TestEntities.person("Sid", "Shutdown"));
+        AssociationWriteBehind writeBehind =
+                writeBehind(failingFor(failingId, new AtomicBoolean(true)));
+
+        writeBehind.enqueue(failingId, personId, true);
+
+        assertThatThrownBy(writeBehind::stop).isInstanceOf(DataIntegrityViolationException.class);
+        assertThat(ids(clientDao.getAssociations(failingId))).isEmpty();
+    }
+
+    private AssociationWriteBehind writeBehind(EntityDao<Client, Person> dao) {
+        return new AssociationWriteBehind(dao, associationIndex, transactionManager, true, 60_000,
+                                          1_000);
+    }
+
+    /**
+     * The client DAO, failing to add associations to one client while failing is set.
+     */
+    @SuppressWarnings("unchecked")
+    private EntityDao<Client, Person> failingFor(int failingId, AtomicBoolean failing) {
+        return (EntityDao<Client, Person>) Proxy.newProxyInstance(
+                EntityDao.class.getClassLoader(), new Class<?>[] {EntityDao.class},
+                (proxy, method, args) -> {
+                    if (method.getName().equals("addAssociations") &&
+                        args[0].equals(failingId) && failing.get()) {
+                        throw new DataIntegrityViolationException("Cannot associate " + failingId);
+                    }
+                    try {
+                        return method.invoke(clientDao, args);
+                    } catch (InvocationTargetException e) {
+                        throw e.getCause();
+                    }
+                });
+    }
+
+    private static Page<Person> availablePage(AssociationWriteBehind writeBehind, int clientId,
+                                              PageCursor cursor,
+                                              AssociationWriteBehind.PageReader<Person> reader) {
+        return writeBehind.availablePage(
+                clientId, true, cursor, 3, reader,
+                (person, direction) -> new PageCursor(person.getFirstName(), person.getLastName(),
+                                                      person.getEntityId(), direction));
+    }
+
+    private static List<Integer> ids(List<? extends Entity> entities) {
+        return entities.stream().map(Entity::getEntityId).collect(Collectors.toList());
+    }
+
+}
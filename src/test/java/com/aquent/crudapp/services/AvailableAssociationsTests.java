@@ -0,0 +1,118 @@
+package com.aquent.crudapp.services;
+
+import com.aquent.crudapp.TestEntities;
+import com.aquent.crudapp.interfaces.Entity;
+import com.aquent.crudapp.interfaces.EntityService;
+import com.aquent.crudapp.interfaces.EntitySummaryService;
+import com.aquent.crudapp.model.Client;
+import com.aquent.crudapp.model.ClientSummary;
+import com.aquent.crudapp.model.Page;
+import com.aquent.crudapp.model.PageCursor;
+import com.aquent.crudapp.model.Person;
+import com.aquent.crudapp.model.PersonSummary;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.boot.test.context.SpringBootTest;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.stream.Collectors;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+@SpringBootTest
+class AvailableAssociationsTests {
+
+    private static final int PAGE_SIZE = 100;
+
+    @Autowired
+    @Qualifier("clientService")
+    private EntityService<Client, Person> clientService;
+
+    @Autowired
+    @Qualifier("personService")
+    private EntityService<Person, Client> personService;
+
+    @Autowired
+    private EntitySummaryService<ClientSummary, PersonSummary> clientSummaryService;
+
+    @Autowired
+    private EntitySummaryService<PersonSummary, ClientSummary> personSummaryService;
+
+    @Test
+    void contactsAreListedByName() {
+        int clientId = clientService.createEntity(TestEntities.client("Picker Co"));
+        int zed = personService.createEntity(TestEntities.person("Zed", "Picker"));
+        int amy = personService.createEntity(TestEntities.person("Amy", "Picker"));
+        int amyAgain = personService.createEntity(TestEntities.person("Amy", "Picker"));
+        int bea = personService.createEntity(TestEntities.person("Bea", "Picker"));
+        clientService.addAssociations(clientId, List.of(zed, bea, amyAgain));
+
+        assertThat(ids(clientService.getAssociations(clientId))).containsExactly(amyAgain, bea,
+                                                                                 zed);
+        assertThat(ids(clientService.readEntityWithAssociations(clientId).getAssociations()))
+                .containsExactly(amyAgain, bea, zed);
+
+        List<List<PersonSummary>> pages = new ArrayList<>();
+        PageCursor cursor = null;
+        do {
+            Page<PersonSummary> page = clientSummaryService.getAvailableAssociationSummaries(
+                    clientId, cursor, PAGE_SIZE);
+            pages.add(page.getItems());
+            assertThat(page.hasPrevious()).isEqualTo(cursor != null);
+            cursor = page.getNextCursor();
+        } while (cursor != null);
+
+        List<PersonSummary> available = pages.stream().flatMap(List::stream)
+                                             .collect(Collectors.toList());
+        assertThat(available).isSortedAccordingTo(
+                Comparator.comparing(PersonSummary::getFirstName)
+                          .thenComparing(PersonSummary::getLastName)
+                          .thenComparing(PersonSummary::getEntityId));
+        assertThat(ids(available)).contains(amy).doesNotContain(amyAgain, bea, zed);
+
+        List<Person> entities = clientService.getAvailableAssociations(clientId, null, PAGE_SIZE)
+                                             .getItems();
+        assertThat(ids(entities)).isEqualTo(ids(pages.get(0)));
+    }
+
+    @Test
+    void clientsAreListedByCompanyNameAndPagedBothWays() {
+        int personId = personService.createEntity(TestEntities.person("Pat", "Picker"));
+        int taken = clientService.createEntity(TestEntities.client("Picker Taken"));
+        personService.addAssociation(personId, taken);
+
+        List<List<ClientSummary>> pages = new ArrayList<>();
+        Page<ClientSummary> page = personSummaryService.getAvailableAssociationSummaries(
+                personId, null, 3);
+        pages.add(page.getItems());
+        while (page.hasNext()) {
+            page = personSummaryService.getAvailableAssociationSummaries(
+                    personId, page.getNextCursor(), 3);
+            pages.add(page.getItems());
+        }
+
+        List<ClientSummary> available = pages.stream().flatMap(List::stream)
+                                             .collect(Collectors.toList());
+        assertThat(available).isSortedAccordingTo(
+                Comparator.comparing(ClientSummary::getCompanyName)
+                          .thenComparing(ClientSummary::getWebsite)
+                          .thenComparing(ClientSummary::getEntityId));
+        assertThat(ids(available)).doesNotContain(taken);
+
+        // walk back from the last page with the Previous cursors
+        for (int i = pages.size() - 2; i >= 0; i--) {
+            page = personSummaryService.getAvailableAssociationSummaries(
+                    personId, page.getPreviousCursor(), 3);
+            assertThat(ids(page.getItems())).isEqualTo(ids(pages.get(i)));
+        }
+        assertThat(page.hasPrevious()).isFalse();
+    }
+
+    private static List<Integer> ids(List<? extends Entity> entities) {
+        return entities.stream().map(Entity::getEntityId).collect(Collectors.toList());
+    }
+
+}
@@ -0,0 +1,99 @@
+package com.aquent.crudapp.services;
+
+import com.aquent.crudapp.TestEntities;
+import com.aquent.crudapp.interfaces.EntityService;
+import com.aquent.crudapp.model.Client;
+import com.aquent.crudapp.model.Person;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.cache.CacheManager;
+import org.springframework.dao.OptimisticLockingFailureException;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.web.context.request.RequestContextHolder;
+import org.springframework.web.context.request.ServletRequestAttributes;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+@SpringBootTest
+class EntityCacheTests {
+
+    @Autowired
+    @Qualifier("clientService")
+    private EntityService<Client, Person> clientService;
+
+    @Autowired
+    @Qualifier("personService")
+    private EntityService<Person, Client> personService;
+
+    @Autowired
+    private CacheManager cacheManager;
+
+    @Test
+    void changingAnEntityReadDoesNotChangeTheCachedCopy() {
+        int clientId = clientService.createEntity(TestEntities.client("Cached Co"));
+
+        Client first = clientService.readEntity(clientId);
+        first.setCompanyName("Changed by a form");
+        first.setVersion(first.getVersion() + 1);
+
+        newRequest();
+        Client second = clientService.readEntity(clientId);
+        assertThat(second).isNotSameAs(first);
+        assertThat(second.getCompanyName()).isEqualTo("Cached Co");
+        assertThat(second.getVersion()).isZero();
+        assertThat(cacheManager.getCache(CacheNames.CLIENTS).get(clientId)).isNotNull();
+    }
+
+    @Test
+    void bothServicesShareTheCopyAndUpdatesEvictIt() {
+        int personId = personService.createEntity(TestEntities.person("Cal", "Cached"));
+
+        Person person = clientService.readAssociatedEntity(personId);
+        person.setLastName("Updated");
+        personService.updateEntity(person);
+        assertThat(person.getVersion()).isEqualTo(1);
+
+        newRequest();
+        Person reread = personService.readEntity(personId);
+        assertThat(reread.getLastName()).isEqualTo("Updated");
+        assertThat(reread.getVersion()).isEqualTo(1);
+        newRequest();
+        assertThat(clientService.readAssociatedEntity(personId).getVersion()).isEqualTo(1);
+    }
+
+    @Test
+    void aStaleCopyIsEvictedByTheUpdateItFails() {
+        int clientId = clientService.createEntity(TestEntities.client("Stale Co"));
+        Client stale = clientService.readEntity(clientId);
+        newRequest();
+        Client current = clientService.readEntity(clientId);
+        current.setCompanyName("Current Co");
+        clientService.updateEntity(current);
+
+        // as if a lagging replica had served the old row just after the update evicted it
+        cacheManager.getCache(CacheNames.CLIENTS).put(clientId, stale.copy());
+
+        newRequest();
+        Client edited = clientService.readEntity(clientId);
+        assertThat(edited.getVersion()).isZero();
+        assertThatThrownBy(() -> clientService.updateEntity(edited))
+                .isInstanceOf(OptimisticLockingFailureException.class);
+
+        newRequest();
+        Client reread = clientService.readEntity(clientId);
+        assertThat(reread.getCompanyName()).isEqualTo("Current Co");
+        assertThat(reread.getVersion()).isEqualTo(1);
+    }
+
+    /**
+     * Start another request, so that entities are no longer served by the request's identity map.
+     */
+    private static void newRequest() {
+        RequestContextHolder.setRequestAttributes(
+                new ServletRequestAttributes(new MockHttpServletRequest()));
+    }
+
+}
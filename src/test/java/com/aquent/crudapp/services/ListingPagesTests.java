@@ -0,0 +1,56 @@
+package com.aquent.crudapp.services;
+
+import com.aquent.crudapp.TestEntities;
+import com.aquent.crudapp.interfaces.Entity;
+import com.aquent.crudapp.interfaces.EntityService;
+import com.aquent.crudapp.model.Client;
+import com.aquent.crudapp.model.Page;
+import com.aquent.crudapp.model.Person;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.boot.test.context.SpringBootTest;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.stream.Collectors;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+@SpringBootTest
+class ListingPagesTests {
+
+    @Autowired
+    @Qualifier("clientService")
+    private EntityService<Client, Person> clientService;
+
+    @Test
+    void pagesSeekThroughTheListingOnceInEitherDirection() {
+        // ties on company name and website are broken by ID
+        clientService.createEntity(TestEntities.client("Keyset Co"));
+        clientService.createEntity(TestEntities.client("Keyset Co"));
+        clientService.createEntity(TestEntities.client("Keyset Co"));
+
+        List<List<Integer>> pages = new ArrayList<>();
+        Page<Client> page = clientService.listEntities(null, 2);
+        pages.add(ids(page.getItems()));
+        while (page.hasNext()) {
+            page = clientService.listEntities(page.getNextCursor(), 2);
+            pages.add(ids(page.getItems()));
+        }
+
+        assertThat(pages.stream().flatMap(List::stream).collect(Collectors.toList()))
+                .isEqualTo(ids(clientService.listEntities()));
+
+        for (int i = pages.size() - 2; i >= 0; i--) {
+            page = clientService.listEntities(page.getPreviousCursor(), 2);
+            assertThat(ids(page.getItems())).isEqualTo(pages.get(i));
+        }
+        assertThat(page.hasPrevious()).isFalse();
+    }
+
+    private static List<Integer> ids(List<? extends Entity> entities) {
+        return entities.stream().map(Entity::getEntityId).collect(Collectors.toList());
+    }
+
+}
@@ -0,0 +1,105 @@
+package com.aquent.crudapp.services;
+
+import com.aquent.crudapp.TestEntities;
+import com.aquent.crudapp.interfaces.EntityService;
+import com.aquent.crudapp.model.Client;
+import com.aquent.crudapp.model.Person;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.dao.OptimisticLockingFailureException;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.web.context.request.RequestContextHolder;
+import org.springframework.web.context.request.ServletRequestAttributes;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+@SpringBootTest
+class VersionCheckTests {
+
+    @Autowired
+    @Qualifier("clientService")
+    private EntityService<Client, Person> clientService;
+
+    @Autowired
+    @Qualifier("personService")
+    private EntityService<Person, Client> personService;
+
+    @Test
+    void updatingAClientMovesItToTheNextVersion() {
+        int clientId = clientService.createEntity(TestEntities.client("Versioned Co"));
+
+        Client client = clientService.readEntity(clientId);
+        client.setCompanyName("Versioned Again");
+        clientService.updateEntity(client);
+        assertThat(client.getVersion()).isEqualTo(1);
+        clientService.updateEntity(client);
+        assertThat(client.getVersion()).isEqualTo(2);
+
+        newRequest();
+        Client reread = clientService.readEntity(clientId);
+        assertThat(reread.getCompanyName()).isEqualTo("Versioned Again");
+        assertThat(reread.getVersion()).isEqualTo(2);
+    }
+
+    @Test
+    void updatingAStaleClientFailsAndKeepsTheOtherUpdate() {
+        int clientId = clientService.createEntity(TestEntities.client("Contested Co"));
+        Client first = clientService.readEntity(clientId);
+        newRequest();
+        Client second = clientService.readEntity(clientId);
+
+        first.setCompanyName("First Wins");
+        clientService.updateEntity(first);
+        second.setCompanyName("Second Loses");
+
+        assertThatThrownBy(() -> clientService.updateEntity(second))
+                .isInstanceOf(OptimisticLockingFailureException.class);
+        assertThat(second.getVersion()).isZero();
+
+        newRequest();
+        Client reread = clientService.readEntity(clientId);
+        assertThat(reread.getCompanyName()).isEqualTo("First Wins");
+        assertThat(reread.getVersion()).isEqualTo(1);
+    }
+
+    @Test
+    void updatingAStalePersonFails() {
+        int personId = personService.createEntity(TestEntities.person("Val", "Versioned"));
+        Person first = personService.readEntity(personId);
+        newRequest();
+        Person second = personService.readEntity(personId);
+
+        first.setLastName("First");
+        personService.updateEntity(first);
+        assertThat(first.getVersion()).isEqualTo(1);
+        second.setLastName("Second");
+
+        assertThatThrownBy(() -> personService.updateEntity(second))
+                .isInstanceOf(OptimisticLockingFailureException.class);
+
+        newRequest();
+        assertThat(personService.readEntity(personId).getLastName()).isEqualTo("First");
+    }
+
+    @Test
+    void updatingADeletedPersonFails() {
+        int personId = personService.createEntity(TestEntities.person("Del", "Versioned"));
+        Person person = personService.readEntity(personId);
+        personService.deleteEntity(personId);
+
+        assertThatThrownBy(() -> personService.updateEntity(person))
+                .isInstanceOf(OptimisticLockingFailureException.class);
+    }
+
+    /**
+     * Start another request, so that entities are no longer served by the request's identity map.
+     */
+    private static void newRequest() {
+        RequestContextHolder.setRequestAttributes(
+                new ServletRequestAttributes(new MockHttpServletRequest()));
+    }
+
+}